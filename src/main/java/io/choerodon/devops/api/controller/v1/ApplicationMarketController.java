@@ -1,9 +1,7 @@
 package io.choerodon.devops.api.controller.v1;
 
 import javax.servlet.http.HttpServletResponse;
-import java.io.File;
 import java.io.IOException;
-import java.nio.file.Files;
 import java.util.List;
 import java.util.Optional;
 
@@ -20,11 +18,11 @@ import io.choerodon.core.exception.CommonException;
 import io.choerodon.core.iam.InitRoleCode;
 import io.choerodon.core.iam.ResourceLevel;
 import io.choerodon.devops.api.dto.AppMarketDownloadDTO;
+import io.choerodon.devops.api.dto.AppMarketImportStatusDTO;
 import io.choerodon.devops.api.dto.AppMarketTgzDTO;
 import io.choerodon.devops.api.dto.AppMarketVersionDTO;
 import io.choerodon.devops.api.dto.ApplicationReleasingDTO;
 import io.choerodon.devops.app.service.ApplicationMarketService;
-import io.choerodon.devops.infra.common.util.FileUtil;
 import io.choerodon.mybatis.pagehelper.domain.PageRequest;
 import io.choerodon.swagger.annotation.CustomPageRequest;
 import io.choerodon.swagger.annotation.Permission;
@@ -321,6 +319,27 @@ public class ApplicationMarketController {
                 .orElseThrow(() -> new CommonException("error.market.import"));
     }
 
+    /**
+     * 查询应用市场导入进度
+     *
+     * @param projectId 项目ID
+     * @param fileName  文件名
+     * @return 导入进度
+     */
+    @Permission(level = ResourceLevel.PROJECT, roles = {InitRoleCode.DEPLOY_ADMINISTRATOR})
+    @ApiOperation(value = "查询应用市场导入进度")
+    @GetMapping("/import_status")
+    public ResponseEntity<AppMarketImportStatusDTO> queryImportStatus(
+            @ApiParam(value = "项目ID", required = true)
+            @PathVariable("project_id") Long projectId,
+            @ApiParam(value = "文件名", required = true)
+            @RequestParam(value = "file_name") String fileName) {
+        return Optional.ofNullable(
+                applicationMarketService.getImportStatus(projectId, fileName))
+                .map(target -> new ResponseEntity<>(target, HttpStatus.OK))
+                .orElseThrow(() -> new CommonException("error.market.import.status.get"));
+    }
+
     /**
      * 应用市场取消导入应用
      *
@@ -355,10 +374,10 @@ public class ApplicationMarketController {
             @ApiParam(value = "发布应用的信息", required = true)
             @RequestBody(required = true) List<AppMarketDownloadDTO> appMarkets,
             HttpServletResponse res) {
-        applicationMarketService.export(appMarkets);
-        FileUtil.downloadFile(res, PATH);
+        res.setContentType("application/octet-stream");
+        res.setHeader("Content-Disposition", "attachment;filename=" + PATH);
         try {
-            Files.delete(new File(PATH).toPath());
+            applicationMarketService.export(appMarkets, res.getOutputStream());
         } catch (IOException e) {
             throw new CommonException(e.getMessage());
         }
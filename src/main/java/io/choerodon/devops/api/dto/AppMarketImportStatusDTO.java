@@ -0,0 +1,71 @@
+package io.choerodon.devops.api.dto;
+
+/**
+ * 应用市场导入进度
+ */
+public class AppMarketImportStatusDTO {
+
+    private String fileCode;
+    private String status;
+    private Integer totalApps;
+    private Integer importedApps;
+    private Integer totalVersions;
+    private Integer importedVersions;
+    private String error;
+
+    public String getFileCode() {
+        return fileCode;
+    }
+
+    public void setFileCode(String fileCode) {
+        this.fileCode = fileCode;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public void setStatus(String status) {
+        this.status = status;
+    }
+
+    public Integer getTotalApps() {
+        return totalApps;
+    }
+
+    public void setTotalApps(Integer totalApps) {
+        this.totalApps = totalApps;
+    }
+
+    public Integer getImportedApps() {
+        return importedApps;
+    }
+
+    public void setImportedApps(Integer importedApps) {
+        this.importedApps = importedApps;
+    }
+
+    public Integer getTotalVersions() {
+        return totalVersions;
+    }
+
+    public void setTotalVersions(Integer totalVersions) {
+        this.totalVersions = totalVersions;
+    }
+
+    public Integer getImportedVersions() {
+        return importedVersions;
+    }
+
+    public void setImportedVersions(Integer importedVersions) {
+        this.importedVersions = importedVersions;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+}
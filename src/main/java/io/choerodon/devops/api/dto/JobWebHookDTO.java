@@ -3,9 +3,14 @@ package io.choerodon.devops.api.dto;
 public class JobWebHookDTO {
 
     private String sha;
+    private Long pipelineId;
+    private JobWebHookCommitDTO commit;
+    private Long buildId;
     private String buildName;
     private String buildStage;
     private String buildStatus;
+    private String buildStartedAt;
+    private String buildFinishedAt;
 
     public String getSha() {
         return sha;
@@ -38,4 +43,44 @@ public class JobWebHookDTO {
     public void setBuildStatus(String buildStatus) {
         this.buildStatus = buildStatus;
     }
+
+    public Long getPipelineId() {
+        return pipelineId;
+    }
+
+    public void setPipelineId(Long pipelineId) {
+        this.pipelineId = pipelineId;
+    }
+
+    public JobWebHookCommitDTO getCommit() {
+        return commit;
+    }
+
+    public void setCommit(JobWebHookCommitDTO commit) {
+        this.commit = commit;
+    }
+
+    public Long getBuildId() {
+        return buildId;
+    }
+
+    public void setBuildId(Long buildId) {
+        this.buildId = buildId;
+    }
+
+    public String getBuildStartedAt() {
+        return buildStartedAt;
+    }
+
+    public void setBuildStartedAt(String buildStartedAt) {
+        this.buildStartedAt = buildStartedAt;
+    }
+
+    public String getBuildFinishedAt() {
+        return buildFinishedAt;
+    }
+
+    public void setBuildFinishedAt(String buildFinishedAt) {
+        this.buildFinishedAt = buildFinishedAt;
+    }
 }
@@ -4,6 +4,8 @@ import java.util.Date;
 
 public class PipelineWebHookAttributesDTO {
     private Long id;
+    private String ref;
+    private String status;
     private String detailedStatus;
     private String sha;
     private Date createdAt;
@@ -39,4 +41,20 @@ public class PipelineWebHookAttributesDTO {
     public void setCreatedAt(Date createdAt) {
         this.createdAt = createdAt;
     }
+
+    public String getRef() {
+        return ref;
+    }
+
+    public void setRef(String ref) {
+        this.ref = ref;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public void setStatus(String status) {
+        this.status = status;
+    }
 }
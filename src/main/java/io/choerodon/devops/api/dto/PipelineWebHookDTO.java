@@ -1,8 +1,11 @@
 package io.choerodon.devops.api.dto;
 
+import java.util.List;
+
 public class PipelineWebHookDTO {
     private PipelineWebHookAttributesDTO objectAttributes;
     private PipelineWebHookUserDTO user;
+    private List<PipelineWebHookBuildDTO> builds;
     private String token;
 
     public PipelineWebHookAttributesDTO getObjectAttributes() {
@@ -29,4 +32,11 @@ public class PipelineWebHookDTO {
         this.token = token;
     }
 
+    public List<PipelineWebHookBuildDTO> getBuilds() {
+        return builds;
+    }
+
+    public void setBuilds(List<PipelineWebHookBuildDTO> builds) {
+        this.builds = builds;
+    }
 }
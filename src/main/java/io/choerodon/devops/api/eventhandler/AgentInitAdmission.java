@@ -0,0 +1,163 @@
+package io.choerodon.devops.api.eventhandler;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import com.zaxxer.hikari.util.DefaultThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.stereotype.Component;
+
+import io.choerodon.devops.infra.common.util.TokenBucket;
+
+/**
+ * agent连接后的初始化准入控制，服务重启时大量agent同时重连，初始化消息按令牌桶的速率下发
+ * 启用的环境优先初始化，同一环境在等待期间重复连接时只保留最后一次连接
+ */
+@Component
+public class AgentInitAdmission implements PublicMetrics {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(AgentInitAdmission.class);
+    private static final String METRIC_PREFIX = "devops.agent.init.";
+
+    @Value("${agent.init.permitsPerSecond:20}")
+    private Double permitsPerSecond;
+    @Value("${agent.init.burst:40}")
+    private Integer burst;
+    @Value("${agent.init.threads:4}")
+    private Integer threads;
+
+    private final PriorityBlockingQueue<PendingInit> queue = new PriorityBlockingQueue<>();
+    private final Map<Long, PendingInit> pendingInits = new ConcurrentHashMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicLong connected = new AtomicLong();
+    private final AtomicLong replaced = new AtomicLong();
+    private final AtomicLong admitted = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong waitMillis = new AtomicLong();
+
+    private TokenBucket tokenBucket;
+    private Semaphore running;
+    private ExecutorService executor;
+    private Thread admitter;
+
+    @PostConstruct
+    public void init() {
+        tokenBucket = new TokenBucket(permitsPerSecond, burst);
+        running = new Semaphore(threads);
+        executor = Executors.newFixedThreadPool(threads, new DefaultThreadFactory("devops-agent-init", true));
+        admitter = new DefaultThreadFactory("devops-agent-init-admitter", true).newThread(this::admitLoop);
+        admitter.start();
+    }
+
+    @PreDestroy
+    public void destroy() {
+        admitter.interrupt();
+        executor.shutdown();
+    }
+
+    /**
+     * 排队等待初始化
+     *
+     * @param envId  环境id
+     * @param active 环境是否启用
+     * @param init   下发初始化消息
+     */
+    public void submit(Long envId, Boolean active, Runnable init) {
+        connected.incrementAndGet();
+        PendingInit pendingInit = new PendingInit(envId, Boolean.TRUE.equals(active), sequence.incrementAndGet(), init);
+        PendingInit previous = pendingInits.put(envId, pendingInit);
+        if (previous != null && queue.remove(previous)) {
+            replaced.incrementAndGet();
+        }
+        queue.offer(pendingInit);
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        List<Metric<?>> metrics = new ArrayList<>();
+        long admittedCount = admitted.get();
+        metrics.add(new Metric<>(METRIC_PREFIX + "queue", queue.size()));
+        metrics.add(new Metric<>(METRIC_PREFIX + "queue.active", queue.stream().filter(p -> p.active).count()));
+        metrics.add(new Metric<>(METRIC_PREFIX + "running", threads - running.availablePermits()));
+        metrics.add(new Metric<>(METRIC_PREFIX + "connected", connected.get()));
+        metrics.add(new Metric<>(METRIC_PREFIX + "replaced", replaced.get()));
+        metrics.add(new Metric<>(METRIC_PREFIX + "admitted", admittedCount));
+        metrics.add(new Metric<>(METRIC_PREFIX + "failed", failed.get()));
+        metrics.add(new Metric<>(METRIC_PREFIX + "wait.avg", admittedCount == 0 ? 0 : waitMillis.get() / admittedCount));
+        return metrics;
+    }
+
+    /**
+     * 队列中有任务后才取得令牌和空闲线程，空闲时不占用令牌，running指标也不计入等待中的许可
+     * 等待令牌和线程时任务放回队列，取得后再按优先级取出，保证等待期间新加入的启用环境仍能排在前面
+     */
+    private void admitLoop() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                queue.offer(queue.take());
+                tokenBucket.acquire();
+                running.acquire();
+                PendingInit pendingInit = queue.poll();
+                // 放回队列前的瞬间被同一环境的新连接替换时，旧任务不再执行
+                if (pendingInit == null || !pendingInits.remove(pendingInit.envId, pendingInit)) {
+                    if (pendingInit != null) {
+                        replaced.incrementAndGet();
+                    }
+                    running.release();
+                    continue;
+                }
+                waitMillis.addAndGet(System.currentTimeMillis() - pendingInit.queuedAt);
+                admitted.incrementAndGet();
+                executor.execute(() -> {
+                    try {
+                        pendingInit.init.run();
+                    } catch (Exception e) {
+                        failed.incrementAndGet();
+                        LOGGER.error("init agent of env {} failed", pendingInit.envId, e);
+                    } finally {
+                        running.release();
+                    }
+                });
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static class PendingInit implements Comparable<PendingInit> {
+        private final Long envId;
+        private final boolean active;
+        private final long sequence;
+        private final Runnable init;
+        private final long queuedAt = System.currentTimeMillis();
+
+        PendingInit(Long envId, boolean active, long sequence, Runnable init) {
+            this.envId = envId;
+            this.active = active;
+            this.sequence = sequence;
+            this.init = init;
+        }
+
+        @Override
+        public int compareTo(PendingInit o) {
+            if (active != o.active) {
+                return active ? -1 : 1;
+            }
+            return Long.compare(sequence, o.sequence);
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package io.choerodon.devops.api.eventhandler;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import com.zaxxer.hikari.util.DefaultThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.stereotype.Component;
+
+/**
+ * 按环境分片处理agent消息，同一环境的消息按到达顺序串行执行，不同环境之间并行执行
+ */
+@Component
+public class AgentMsgDispatcher implements PublicMetrics {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(AgentMsgDispatcher.class);
+    private static final String METRIC_PREFIX = "devops.agent.msg.";
+
+    @Value("${agent.dispatcher.shards:8}")
+    private Integer shardCount;
+    @Value("${agent.dispatcher.queueCapacity:1000}")
+    private Integer queueCapacity;
+
+    private ThreadPoolExecutor[] shards;
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong processed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong blocked = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        shards = new ThreadPoolExecutor[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new ThreadPoolExecutor(1, 1,
+                    0L, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(queueCapacity),
+                    new DefaultThreadFactory("devops-agent-msg-" + i, true),
+                    (runnable, executor) -> waitForCapacity(runnable, executor));
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        for (ThreadPoolExecutor shard : shards) {
+            shard.shutdown();
+        }
+    }
+
+    /**
+     * 将消息处理任务分发到环境所在的分片，分片队列满时阻塞调用线程
+     *
+     * @param envId 环境id
+     * @param task  消息处理任务
+     */
+    public void dispatch(Long envId, Runnable task) {
+        submitted.incrementAndGet();
+        shardOf(envId).execute(() -> {
+            try {
+                task.run();
+            } catch (Exception e) {
+                failed.incrementAndGet();
+                LOGGER.error("handle agent message of env {} failed", envId, e);
+            } finally {
+                processed.incrementAndGet();
+            }
+        });
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        List<Metric<?>> metrics = new ArrayList<>();
+        metrics.add(new Metric<>(METRIC_PREFIX + "submitted", submitted.get()));
+        metrics.add(new Metric<>(METRIC_PREFIX + "processed", processed.get()));
+        metrics.add(new Metric<>(METRIC_PREFIX + "failed", failed.get()));
+        metrics.add(new Metric<>(METRIC_PREFIX + "blocked", blocked.get()));
+        for (int i = 0; i < shards.length; i++) {
+            metrics.add(new Metric<>(METRIC_PREFIX + "shard." + i + ".queue", shards[i].getQueue().size()));
+        }
+        return metrics;
+    }
+
+    private ThreadPoolExecutor shardOf(Long envId) {
+        if (envId == null) {
+            return shards[0];
+        }
+        return shards[Math.floorMod(envId.hashCode(), shards.length)];
+    }
+
+    private void waitForCapacity(Runnable runnable, ThreadPoolExecutor executor) {
+        if (executor.isShutdown()) {
+            throw new RejectedExecutionException("agent message dispatcher is shut down");
+        }
+        blocked.incrementAndGet();
+        try {
+            executor.getQueue().put(runnable);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("interrupted while waiting for agent message queue", e);
+        }
+    }
+}
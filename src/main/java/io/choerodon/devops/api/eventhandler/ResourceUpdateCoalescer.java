@@ -0,0 +1,116 @@
+package io.choerodon.devops.api.eventhandler;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import io.choerodon.devops.app.service.DeployMsgHandlerService;
+import io.choerodon.websocket.tool.KeyParseTool;
+
+/**
+ * 合并短时间内同一资源的多次RESOURCE_UPDATE消息，窗口结束时只持久化最后一次收到的内容
+ * 同一agent的消息按顺序到达，所以最后收到的消息即为resourceVersion最新的消息
+ */
+@Component
+public class ResourceUpdateCoalescer implements PublicMetrics {
+
+    private static final String METRIC_PREFIX = "devops.agent.resource.update.";
+
+    private final Map<String, PendingUpdate> pendingUpdates = new ConcurrentHashMap<>();
+    private final AtomicLong received = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+
+    private AgentMsgDispatcher agentMsgDispatcher;
+    private DeployMsgHandlerService deployMsgHandlerService;
+
+    @Autowired
+    public ResourceUpdateCoalescer(AgentMsgDispatcher agentMsgDispatcher,
+                                   DeployMsgHandlerService deployMsgHandlerService) {
+        this.agentMsgDispatcher = agentMsgDispatcher;
+        this.deployMsgHandlerService = deployMsgHandlerService;
+    }
+
+    /**
+     * 缓存资源更新消息，同一资源尚未写入的旧消息会被替换
+     *
+     * @param key     消息key
+     * @param envId   环境id
+     * @param payload 消息内容
+     */
+    public void offer(String key, Long envId, String payload) {
+        received.incrementAndGet();
+        if (pendingUpdates.put(resourceKey(key, envId), new PendingUpdate(key, envId, payload)) != null) {
+            dropped.incrementAndGet();
+        }
+    }
+
+    /**
+     * 资源已被删除时丢弃尚未写入的更新，避免删除之后又被旧的更新消息重新创建
+     *
+     * @param key   消息key
+     * @param envId 环境id
+     */
+    public void discard(String key, Long envId) {
+        if (pendingUpdates.remove(resourceKey(key, envId)) != null) {
+            dropped.incrementAndGet();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${agent.coalesce.windowMs:500}")
+    public void flush() {
+        Iterator<Map.Entry<String, PendingUpdate>> iterator = pendingUpdates.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, PendingUpdate> entry = iterator.next();
+            if (!pendingUpdates.remove(entry.getKey(), entry.getValue())) {
+                continue;
+            }
+            PendingUpdate update = entry.getValue();
+            written.incrementAndGet();
+            agentMsgDispatcher.dispatch(update.envId, () ->
+                    deployMsgHandlerService.resourceUpdate(update.key, update.envId, update.payload));
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        flush();
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        List<Metric<?>> metrics = new ArrayList<>();
+        metrics.add(new Metric<>(METRIC_PREFIX + "received", received.get()));
+        metrics.add(new Metric<>(METRIC_PREFIX + "dropped", dropped.get()));
+        metrics.add(new Metric<>(METRIC_PREFIX + "written", written.get()));
+        metrics.add(new Metric<>(METRIC_PREFIX + "pending", pendingUpdates.size()));
+        return metrics;
+    }
+
+    private static String resourceKey(String key, Long envId) {
+        return envId + ":" + KeyParseTool.getResourceType(key) + ":" + KeyParseTool.getResourceName(key);
+    }
+
+    private static class PendingUpdate {
+        private final String key;
+        private final Long envId;
+        private final String payload;
+
+        PendingUpdate(String key, Long envId, String payload) {
+            this.key = key;
+            this.envId = envId;
+            this.payload = payload;
+        }
+    }
+}
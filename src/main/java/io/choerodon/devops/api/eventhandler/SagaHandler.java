@@ -19,6 +19,8 @@ import io.choerodon.devops.domain.application.event.GitlabGroupPayload;
 import io.choerodon.devops.domain.application.event.HarborPayload;
 import io.choerodon.devops.domain.application.event.OrganizationEventPayload;
 import io.choerodon.devops.domain.application.event.ProjectEvent;
+import io.choerodon.devops.domain.application.repository.IamRepository;
+import io.choerodon.devops.infra.cache.IamUserCache;
 import io.choerodon.devops.infra.common.util.TypeUtil;
 
 /**
@@ -45,6 +47,10 @@ public class SagaHandler {
     private GitlabGroupMemberService gitlabGroupMemberService;
     @Autowired
     private GitlabUserService gitlabUserService;
+    @Autowired
+    private IamUserCache iamUserCache;
+    @Autowired
+    private IamRepository iamRepository;
 
     private void loggerInfo(Object o) {
         LOGGER.info("data: {}", o);
@@ -61,6 +67,7 @@ public class SagaHandler {
     public String handleProjectCreateEvent(String msg) {
         ProjectEvent projectEvent = gson.fromJson(msg, ProjectEvent.class);
         loggerInfo(projectEvent);
+        iamRepository.evictProject(projectEvent.getProjectId());
         projectService.createProject(projectEvent);
         return msg;
     }
@@ -129,6 +136,7 @@ public class SagaHandler {
     public String handleOrganizationCreateEvent(String payload) {
         OrganizationEventPayload organizationEventPayload = gson.fromJson(payload, OrganizationEventPayload.class);
         loggerInfo(organizationEventPayload);
+        iamRepository.evictOrganization(organizationEventPayload.getId());
         organizationService.create(organizationEventPayload);
         return payload;
     }
@@ -211,6 +219,7 @@ public class SagaHandler {
         gitlabUserReqDTO.setProjectsLimit(100);
 
         gitlabUserService.updateGitlabUser(gitlabUserReqDTO);
+        iamUserCache.evict(TypeUtil.objToLong(gitlabUserDTO.getId()), gitlabUserDTO.getUsername());
         return payload;
     }
 
@@ -225,6 +234,7 @@ public class SagaHandler {
         loggerInfo(gitlabUserDTO);
 
         gitlabUserService.isEnabledGitlabUser(TypeUtil.objToInteger(gitlabUserDTO.getId()));
+        iamUserCache.evict(TypeUtil.objToLong(gitlabUserDTO.getId()), gitlabUserDTO.getUsername());
         return payload;
     }
 
@@ -239,6 +249,7 @@ public class SagaHandler {
         loggerInfo(gitlabUserDTO);
 
         gitlabUserService.disEnabledGitlabUser(TypeUtil.objToInteger(gitlabUserDTO.getId()));
+        iamUserCache.evict(TypeUtil.objToLong(gitlabUserDTO.getId()), gitlabUserDTO.getUsername());
         return payload;
     }
 
@@ -25,13 +25,19 @@ public class SocketMessageHandler extends AbstractAgentMsgHandler {
 
     private DeployMsgHandlerService deployMsgHandlerService;
     private ServiceMsgHandlerService serviceMsgHandlerService;
+    private AgentMsgDispatcher agentMsgDispatcher;
+    private ResourceUpdateCoalescer resourceUpdateCoalescer;
 
 
     @Autowired
     public SocketMessageHandler(DeployMsgHandlerService deployMsgHandlerService,
-                                ServiceMsgHandlerService serviceMsgHandlerService) {
+                                ServiceMsgHandlerService serviceMsgHandlerService,
+                                AgentMsgDispatcher agentMsgDispatcher,
+                                ResourceUpdateCoalescer resourceUpdateCoalescer) {
         this.deployMsgHandlerService = deployMsgHandlerService;
         this.serviceMsgHandlerService = serviceMsgHandlerService;
+        this.agentMsgDispatcher = agentMsgDispatcher;
+        this.resourceUpdateCoalescer = resourceUpdateCoalescer;
     }
 
 
@@ -44,6 +50,18 @@ public class SocketMessageHandler extends AbstractAgentMsgHandler {
         if (logger.isDebugEnabled()) {
             logger.debug(msg.toString());
         }
+        Long envId = TypeUtil.objToLong(msg.getEnvId());
+        if (helmType == HelmType.RESOURCE_UPDATE) {
+            resourceUpdateCoalescer.offer(msg.getKey(), envId, msg.getPayload());
+            return;
+        }
+        if (helmType == HelmType.RESOURCE_DELETE) {
+            resourceUpdateCoalescer.discard(msg.getKey(), envId);
+        }
+        agentMsgDispatcher.dispatch(envId, () -> handle(helmType, msg));
+    }
+
+    private void handle(HelmType helmType, Msg msg) {
         switch (helmType) {
             case HELM_RELEASE_PRE_INSTALL:
                 deployMsgHandlerService.handlerPreInstall(
@@ -96,10 +114,6 @@ public class SocketMessageHandler extends AbstractAgentMsgHandler {
                 break;
             case NETWORK_INGRESS_DELETE:
                 break;
-            case RESOURCE_UPDATE:
-                deployMsgHandlerService.resourceUpdate(
-                        msg.getKey(), TypeUtil.objToLong(msg.getEnvId()), msg.getPayload());
-                break;
             case RESOURCE_DELETE:
                 deployMsgHandlerService.resourceDelete(TypeUtil.objToLong(msg.getEnvId()), msg.getKey());
                 break;
@@ -187,7 +201,6 @@ public class SocketMessageHandler extends AbstractAgentMsgHandler {
             default:
                 break;
         }
-
     }
 
     @Override
@@ -1,11 +1,13 @@
 package io.choerodon.devops.app.service;
 
+import java.io.OutputStream;
 import java.util.List;
 
 import org.springframework.web.multipart.MultipartFile;
 
 import io.choerodon.core.domain.Page;
 import io.choerodon.devops.api.dto.AppMarketDownloadDTO;
+import io.choerodon.devops.api.dto.AppMarketImportStatusDTO;
 import io.choerodon.devops.api.dto.AppMarketTgzDTO;
 import io.choerodon.devops.api.dto.AppMarketVersionDTO;
 import io.choerodon.devops.api.dto.ApplicationReleasingDTO;
@@ -79,12 +81,22 @@ public interface ApplicationMarketService {
 
     Boolean importApps(Long projectId, String fileName, Boolean isPublic);
 
+    /**
+     * 查询应用导入进度
+     *
+     * @param projectId 项目id
+     * @param fileName  文件名
+     * @return 导入进度，未导入或已过期时为null
+     */
+    AppMarketImportStatusDTO getImportStatus(Long projectId, String fileName);
+
     void deleteZip(Long projectId, String fileName);
 
     /**
-     * 导出应用市场应用信息
+     * 导出应用市场应用信息，zip包直接写入输出流
      *
-     * @param appMarkets 应用市场应用信息
+     * @param appMarkets   应用市场应用信息
+     * @param outputStream 输出流
      */
-    void export(List<AppMarketDownloadDTO> appMarkets);
+    void export(List<AppMarketDownloadDTO> appMarkets, OutputStream outputStream);
 }
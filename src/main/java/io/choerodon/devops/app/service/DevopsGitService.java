@@ -86,6 +86,13 @@ public interface DevopsGitService {
 
     void branchSync(PushWebHookDTO pushWebHookDTO, String token);
 
+    /**
+     * 根据tag_push事件更新tag缓存
+     *
+     * @param pushWebHookDTO tag_push事件
+     */
+    void tagSync(PushWebHookDTO pushWebHookDTO);
+
     void fileResourceSync(PushWebHookDTO pushWebHookDTO);
 
     void fileResourceSyncSaga(PushWebHookDTO pushWebHookDTO, String token);
@@ -4,6 +4,7 @@ import java.util.Date;
 
 import io.choerodon.core.domain.Page;
 import io.choerodon.devops.api.dto.*;
+import io.choerodon.devops.domain.application.entity.ApplicationE;
 import io.choerodon.mybatis.pagehelper.domain.PageRequest;
 
 public interface DevopsGitlabPipelineService {
@@ -19,4 +20,12 @@ public interface DevopsGitlabPipelineService {
     void handleCreate(PipelineWebHookDTO pipelineWebHookDTO);
 
     Page<DevopsGitlabPipelineDTO> pagePipelines(Long appId, PageRequest pageRequest, Date startTime, Date endTime);
+
+    /**
+     * 从gitlab补齐应用中webhook未记录的pipeline和job，只在应用第一次查看流水线时执行
+     *
+     * @param applicationE 应用
+     * @param gitlabUserId 调用gitlab的用户id
+     */
+    void syncPipelines(ApplicationE applicationE, Integer gitlabUserId);
 }
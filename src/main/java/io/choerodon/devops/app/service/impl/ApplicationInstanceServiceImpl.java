@@ -24,6 +24,8 @@ import io.choerodon.devops.domain.application.handler.ObjectOperation;
 import io.choerodon.devops.domain.application.repository.*;
 import io.choerodon.devops.domain.application.valueobject.*;
 import io.choerodon.devops.domain.service.DeployService;
+import io.choerodon.devops.infra.cache.IamUserCache;
+import io.choerodon.devops.infra.cache.ReplaceResultCache;
 import io.choerodon.devops.infra.common.util.*;
 import io.choerodon.devops.infra.common.util.enums.*;
 import io.choerodon.devops.infra.dataobject.ApplicationInstanceDO;
@@ -100,6 +102,10 @@ public class ApplicationInstanceServiceImpl implements ApplicationInstanceServic
     @Autowired
     private DeployMsgHandlerService deployMsgHandlerService;
     @Autowired
+    private ReplaceResultCache replaceResultCache;
+    @Autowired
+    private IamUserCache iamUserCache;
+    @Autowired
     private DevopsEnvCommitRepository devopsEnvCommitRepository;
     @Autowired
     private GitlabGroupMemberService gitlabGroupMemberService;
@@ -338,12 +344,15 @@ public class ApplicationInstanceServiceImpl implements ApplicationInstanceServic
         Page<DeployDetailDTO> pageDeployDetailDTOS = new Page<>();
         List<DeployDetailDTO> deployDetailDTOS = new ArrayList<>();
         BeanUtils.copyProperties(deployDOS, pageDeployDetailDTOS);
+        Map<Long, UserE> users = iamUserCache.listByIds(deployDOS.getContent().stream()
+                .map(DeployDO::getLastUpdatedBy)
+                .collect(Collectors.toList()));
         deployDOS.getContent().stream().forEach(deployDO -> {
             DeployDetailDTO deployDetailDTO = new DeployDetailDTO();
             BeanUtils.copyProperties(deployDO, deployDetailDTO);
             deployDetailDTO.setDeployTime(getDeployTime(deployDO.getLastUpdateDate().getTime() - deployDO.getCreationDate().getTime()));
-            if (deployDO.getLastUpdatedBy() != 0) {
-                UserE userE = iamRepository.queryById(deployDO.getLastUpdatedBy());
+            UserE userE = users.get(deployDO.getLastUpdatedBy());
+            if (userE != null) {
                 deployDetailDTO.setLastUpdatedName(userE.getRealName());
             }
             deployDetailDTOS.add(deployDetailDTO);
@@ -612,7 +621,7 @@ public class ApplicationInstanceServiceImpl implements ApplicationInstanceServic
                 pipelineResultV.setId(gitlabPipelineE.getId().longValue());
                 pipelineResultV.setRef(gitlabPipelineE.getRef());
 
-                UserE userE = iamRepository.queryByLoginName(gitlabPipelineE.getUser().getUsername());
+                UserE userE = iamUserCache.queryByLoginName(gitlabPipelineE.getUser().getUsername());
                 if (userE != null) {
                     pipelineResultV.setImageUrl(userE.getImageUrl());
                 }
@@ -836,21 +845,16 @@ public class ApplicationInstanceServiceImpl implements ApplicationInstanceServic
             return replaceResult;
         }
 
-        String fileName = GenerateUUID.generateUUID() + ".yaml";
-        String path = "deployfile";
-        FileUtil.saveDataToFile(path, fileName, versionValue + "\n" + "---" + "\n" + deployValue);
-        ReplaceResult replaceResult;
-        try {
-            replaceResult = FileUtil.replaceNew(path + System.getProperty("file.separator") + fileName);
-        } catch (Exception e) {
-            throw new CommonException(e.getMessage(), e);
-        }
-        if (replaceResult.getHighlightMarkers() == null) {
-            replaceResult.setHighlightMarkers(new ArrayList<>());
-        }
-        replaceResult.setTotalLine(FileUtil.getFileTotalLine(replaceResult.getYaml()));
-        FileUtil.deleteFile(path + System.getProperty("file.separator") + fileName);
-        return replaceResult;
+        return replaceResultCache.get(versionValue, deployValue, () -> {
+            ReplaceResult replaceResult;
+            try {
+                replaceResult = ValuesYamlUtil.replace(versionValue, deployValue);
+            } catch (Exception e) {
+                throw new CommonException(e.getMessage(), e);
+            }
+            replaceResult.setTotalLine(FileUtil.getFileTotalLine(replaceResult.getYaml()));
+            return replaceResult;
+        });
     }
 
 
@@ -1,6 +1,7 @@
 package io.choerodon.devops.app.service.impl;
 
 import java.io.*;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -17,18 +18,18 @@ import io.choerodon.core.convertor.ConvertPageHelper;
 import io.choerodon.core.domain.Page;
 import io.choerodon.core.exception.CommonException;
 import io.choerodon.devops.api.dto.AppMarketDownloadDTO;
+import io.choerodon.devops.api.dto.AppMarketImportStatusDTO;
 import io.choerodon.devops.api.dto.AppMarketTgzDTO;
 import io.choerodon.devops.api.dto.AppMarketVersionDTO;
 import io.choerodon.devops.api.dto.ApplicationReleasingDTO;
 import io.choerodon.devops.app.service.ApplicationMarketService;
 import io.choerodon.devops.domain.application.entity.*;
 import io.choerodon.devops.domain.application.factory.ApplicationMarketFactory;
+import io.choerodon.devops.domain.application.handler.MarketAppImporter;
 import io.choerodon.devops.domain.application.repository.*;
 import io.choerodon.devops.domain.application.valueobject.Organization;
 import io.choerodon.devops.infra.common.util.FileUtil;
-import io.choerodon.devops.infra.common.util.GenerateUUID;
-import io.choerodon.devops.infra.common.util.HttpClientUtil;
-import io.choerodon.devops.infra.config.HarborConfigurationProperties;
+import io.choerodon.devops.infra.common.util.MarketExportWriter;
 import io.choerodon.devops.infra.dataobject.DevopsAppMarketDO;
 import io.choerodon.devops.infra.dataobject.DevopsAppMarketVersionDO;
 import io.choerodon.mybatis.pagehelper.domain.PageRequest;
@@ -64,9 +65,9 @@ public class ApplicationMarketServiceImpl implements ApplicationMarketService {
     @Autowired
     private ApplicationRepository applicationRepository;
     @Autowired
-    private HarborConfigurationProperties harborConfigurationProperties;
+    private MarketExportWriter marketExportWriter;
     @Autowired
-    private ApplicationVersionValueRepository applicationVersionValueRepository;
+    private MarketAppImporter marketAppImporter;
 
     @Override
     public Long release(Long projectId, ApplicationReleasingDTO applicationReleasingDTO) {
@@ -372,7 +373,9 @@ public class ApplicationMarketServiceImpl implements ApplicationMarketService {
                 }
                 List<File> appFileList = Arrays.stream(appFiles)
                         .filter(File::isDirectory).collect(Collectors.toCollection(ArrayList::new));
-                importAppFile(projectId, appFileList, isPublic);
+                //先校验整个导入包，再按应用并行导入
+                marketAppImporter.importApps(fileName, appFileList, projectId,
+                        organization.getCode(), projectE.getCode(), isPublic);
             } else {
                 throw new CommonException("error.zip.illegal");
             }
@@ -383,6 +386,11 @@ public class ApplicationMarketServiceImpl implements ApplicationMarketService {
         return true;
     }
 
+    @Override
+    public AppMarketImportStatusDTO getImportStatus(Long projectId, String fileName) {
+        return marketAppImporter.getStatus(projectId, fileName);
+    }
+
     @Override
     public void deleteZip(Long projectId, String fileName) {
         ProjectE projectE = iamRepository.queryIamProject(projectId);
@@ -435,63 +443,30 @@ public class ApplicationMarketServiceImpl implements ApplicationMarketService {
         });
     }
 
-    private void importAppFile(Long projectId, List<File> appFileList, Boolean isPublic) {
-        ProjectE projectE = iamRepository.queryIamProject(projectId);
-        Organization organization = iamRepository.queryOrganizationById(projectE.getOrganization().getId());
-        String orgCode = organization.getCode();
-        String projectCode = projectE.getCode();
-        appFileList.parallelStream().forEach(t -> {
-            String appName = t.getName();
-            File[] appFiles = t.listFiles();
-            if (appFiles != null && !appFileList.isEmpty()) {
-                String appFileName = String.format("%s%s", appName, JSON_FILE);
-                List<File> appMarkets = Arrays.stream(appFiles).parallel()
-                        .filter(k -> k.getName().equals(appFileName))
-                        .collect(Collectors.toCollection(ArrayList::new));
-                if (appMarkets != null && !appMarkets.isEmpty() && appMarkets.size() == 1) {
-                    File appMarket = appMarkets.get(0);
-                    String appMarketJson = FileUtil.getFileContent(appMarket);
-                    ApplicationReleasingDTO applicationReleasingDTO =
-                            gson.fromJson(appMarketJson, ApplicationReleasingDTO.class);
-                    ApplicationE applicationE = new ApplicationE();
-                    String appCode = applicationReleasingDTO.getCode();
-                    applicationE.setName(applicationReleasingDTO.getName());
-                    Long appId = createOrUpdateApp(applicationE, appCode, projectId);
-                    Boolean isVersionPublish = isPublic != null;
-                    applicationReleasingDTO.getAppVersions().parallelStream()
-                            .forEach(appVersion -> createVersion(
-                                    appVersion, orgCode, projectCode, appCode, appId, appFiles, isVersionPublish
-                            ));
-                    // 发布应用
-                    releaseApp(isPublic, applicationReleasingDTO, appId);
-                }
-            }
-        });
-    }
-
     /**
      * 导出应用市场应用 zip
      *
      * @param appMarkets 应用市场应用信息
      */
-    public void export(List<AppMarketDownloadDTO> appMarkets) {
+    public void export(List<AppMarketDownloadDTO> appMarkets, OutputStream outputStream) {
         List<String> images = new ArrayList<>();
+        Map<String, byte[]> files = new LinkedHashMap<>();
+        Map<String, String> charts = new LinkedHashMap<>();
         for (AppMarketDownloadDTO appMarketDownloadDTO : appMarkets) {
             ApplicationReleasingDTO applicationReleasingDTO = getMarketApp(appMarketDownloadDTO.getAppMarketId(), null);
-            String destpath = String.format("charts%s%s",
-                    FILE_SEPARATOR,
-                    applicationReleasingDTO.getCode());
+            String destpath = String.format("%s/%s", CHARTS, applicationReleasingDTO.getCode());
             ApplicationE applicationE = applicationRepository.query(applicationReleasingDTO.getAppId());
             ProjectE projectE = iamRepository.queryIamProject(applicationE.getProjectE().getId());
             Organization organization = iamRepository.queryOrganizationById(projectE.getOrganization().getId());
             applicationReleasingDTO.setAppVersions(
-                    applicationReleasingDTO.getAppVersions().parallelStream()
+                    applicationReleasingDTO.getAppVersions().stream()
                             .filter(t -> appMarketDownloadDTO.getAppVersionIds().contains(t.getId()))
                             .collect(Collectors.toCollection(ArrayList::new))
             );
             String appMarketJson = gson.toJson(applicationReleasingDTO);
-            FileUtil.saveDataToFile(destpath, applicationReleasingDTO.getCode() + JSON_FILE, appMarketJson);
-            appMarketDownloadDTO.getAppVersionIds().parallelStream().forEach(appVersionId -> {
+            files.put(String.format("%s/%s%s", destpath, applicationReleasingDTO.getCode(), JSON_FILE),
+                    appMarketJson.getBytes(StandardCharsets.UTF_8));
+            for (Long appVersionId : appMarketDownloadDTO.getAppVersionIds()) {
                 ApplicationVersionE applicationVersionE = applicationVersionRepository.query(appVersionId);
                 images.add(applicationVersionE.getImage());
                 String repoUrl = String.format("%s%s%s%s%s%s%s%s%s%s%s%s", helmUrl,
@@ -506,30 +481,25 @@ public class ApplicationMarketServiceImpl implements ApplicationMarketService {
                         "-",
                         applicationVersionE.getVersion(),
                         ".tgz");
-
-                HttpClientUtil.getTgz(repoUrl,
-                        String.format("%s%s%s-%s.tgz",
-                                destpath,
-                                FILE_SEPARATOR,
-                                applicationE.getCode(),
-                                applicationVersionE.getVersion()));
-
-            });
+                charts.put(String.format("%s/%s-%s.tgz",
+                        destpath,
+                        applicationE.getCode(),
+                        applicationVersionE.getVersion()), repoUrl);
+            }
+        }
+        if (!appMarkets.isEmpty()) {
             StringBuilder stringBuilder = new StringBuilder();
             for (String image : images) {
                 stringBuilder.append(image);
                 stringBuilder.append(System.getProperty("line.separator"));
             }
             InputStream inputStream = this.getClass().getResourceAsStream("/shell/push_image.sh");
-            FileUtil.saveDataToFile(CHARTS, PUSH_IAMGES, FileUtil.replaceReturnString(inputStream, null));
-            FileUtil.saveDataToFile(CHARTS, IMAGES, stringBuilder.toString());
-        }
-        try (FileOutputStream outputStream = new FileOutputStream(CHARTS + ".zip")) {
-            FileUtil.toZip(CHARTS, outputStream, true);
-            FileUtil.deleteDirectory(new File(CHARTS));
-        } catch (IOException e) {
-            throw new CommonException(e.getMessage());
+            files.put(CHARTS + "/" + PUSH_IAMGES,
+                    FileUtil.replaceReturnString(inputStream, null).getBytes(StandardCharsets.UTF_8));
+            files.put(CHARTS + "/" + IMAGES, stringBuilder.toString().getBytes(StandardCharsets.UTF_8));
         }
+        //chart包边下载边写入zip，不再先在工作目录下生成charts目录和charts.zip
+        marketExportWriter.write(outputStream, files, charts);
     }
 
 
@@ -549,131 +519,4 @@ public class ApplicationMarketServiceImpl implements ApplicationMarketService {
         }
         return applicationReleasingDTOPage;
     }
-
-
-    private void createVersion(AppMarketVersionDTO appVersion,
-                               String organizationCode,
-                               String projectCode,
-                               String appCode,
-                               Long appId,
-                               File[] appFiles,
-                               Boolean isVersionPublish) {
-        ApplicationVersionE applicationVersionE = new ApplicationVersionE();
-        String image = String.format("%s%s%s%s%s%s%s%s%s", harborConfigurationProperties.getBaseUrl(),
-                FILE_SEPARATOR,
-                organizationCode,
-                "-",
-                projectCode,
-                FILE_SEPARATOR,
-                appCode,
-                ":",
-                appVersion.getVersion()
-        );
-        applicationVersionE.setImage(image);
-        applicationVersionE.setRepository(String.format("%s%s%s%s%s",
-                FILE_SEPARATOR,
-                organizationCode,
-                FILE_SEPARATOR,
-                projectCode,
-                FILE_SEPARATOR));
-        applicationVersionE.setVersion(appVersion.getVersion());
-        applicationVersionE.initApplicationEById(appId);
-        String tazName = String.format("%s%s%s%s",
-                appCode,
-                "-",
-                appVersion.getVersion(),
-                ".tgz"
-        );
-        List<File> tgzVersions = Arrays.stream(appFiles).parallel()
-                .filter(k -> k.getName().equals(tazName))
-                .collect(Collectors.toCollection(ArrayList::new));
-        if (!tgzVersions.isEmpty()) {
-            ApplicationVersionValueE applicationVersionValueE = new ApplicationVersionValueE();
-            try {
-                FileUtil.unTarGZ(tgzVersions.get(0).getAbsolutePath(), appCode);
-                File valueYaml = FileUtil.queryFileFromFiles(new File(appCode), "values.yaml");
-                if (valueYaml == null) {
-                    throw new CommonException("error.version.values.notExist");
-                }
-                applicationVersionValueE.setValue(FileUtil.replaceReturnString(new FileInputStream(valueYaml), null));
-
-                applicationVersionE.initApplicationVersionValueE(applicationVersionValueRepository
-                        .create(applicationVersionValueE).getId());
-            } catch (Exception e) {
-                throw new CommonException("error.version.insert");
-            }
-            applicationVersionE.initApplicationVersionReadmeV(FileUtil.getReadme(appCode));
-            ApplicationVersionE version = applicationVersionRepository
-                    .queryByAppAndVersion(appId, appVersion.getVersion());
-
-            if (isVersionPublish) {
-                applicationVersionE.setIsPublish(1L);
-            } else {
-                applicationVersionE.setIsPublish(version == null ? null : version.getIsPublish());
-            }
-            if (version == null) {
-                applicationVersionRepository.create(applicationVersionE);
-            } else {
-                applicationVersionE.setId(version.getId());
-                applicationVersionRepository.updateVersion(applicationVersionE);
-            }
-            String classPath = String.format("Charts%s%s%s%s",
-                    FILE_SEPARATOR,
-                    organizationCode,
-                    FILE_SEPARATOR,
-                    projectCode);
-            FileUtil.copyFile(tgzVersions.get(0).getAbsolutePath(), classPath);
-            FileUtil.deleteDirectory(new File(appCode));
-        }
-    }
-
-    private Long createOrUpdateApp(ApplicationE applicationE, String appCode, Long projectId) {
-        applicationE.setCode(appCode);
-        applicationE.initProjectE(projectId);
-        Long appId;
-        Boolean appCodeExist = false;
-        try {
-            applicationRepository.checkCode(applicationE);
-        } catch (Exception e) {
-            logger.info(e.getMessage());
-            appCodeExist = true;
-        }
-        if (!appCodeExist) {
-            applicationE.setActive(true);
-            applicationE.setSynchro(true);
-            applicationE.setToken(GenerateUUID.generateUUID());
-            appId = applicationRepository.create(applicationE).getId();
-        } else {
-            ApplicationE existApplication = applicationRepository.queryByCode(appCode, projectId);
-            appId = existApplication.getId();
-            applicationE.setId(appId);
-            applicationRepository.update(applicationE);
-        }
-        return appId;
-    }
-
-    private Boolean checkAppCanPub(Long appId) {
-        try {
-            return applicationMarketRepository.checkCanPub(appId);
-        } catch (Exception e) {
-            return false;
-        }
-    }
-
-    private void releaseApp(Boolean isPublic,
-                            ApplicationReleasingDTO applicationReleasingDTO, Long appId) {
-        if (isPublic != null) {
-            Boolean canPub = checkAppCanPub(appId);
-            if (canPub) {
-                ApplicationMarketE applicationMarketE = new ApplicationMarketE();
-                applicationMarketE.initApplicationEById(appId);
-                applicationMarketE.setPublishLevel(isPublic ? PUBLIC : ORGANIZATION);
-                applicationMarketE.setActive(true);
-                applicationMarketE.setContributor(applicationReleasingDTO.getContributor());
-                applicationMarketE.setDescription(applicationReleasingDTO.getDescription());
-                applicationMarketE.setCategory(applicationReleasingDTO.getCategory());
-                applicationMarketRepository.create(applicationMarketE);
-            }
-        }
-    }
 }
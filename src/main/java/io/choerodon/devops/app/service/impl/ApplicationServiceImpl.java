@@ -1,14 +1,11 @@
 package io.choerodon.devops.app.service.impl;
 
-import java.io.File;
 import java.io.InputStream;
 import java.util.*;
 
 import com.google.gson.Gson;
-import org.eclipse.jgit.api.Git;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 
 import io.choerodon.asgard.saga.annotation.Saga;
@@ -31,6 +28,7 @@ import io.choerodon.devops.domain.application.factory.ApplicationFactory;
 import io.choerodon.devops.domain.application.repository.*;
 import io.choerodon.devops.domain.application.valueobject.Organization;
 import io.choerodon.devops.domain.application.valueobject.ProjectHook;
+import io.choerodon.devops.infra.cache.SonarLinkCache;
 import io.choerodon.devops.infra.common.util.*;
 import io.choerodon.devops.infra.common.util.enums.AccessLevel;
 import io.choerodon.devops.infra.config.CiYamlConfig;
@@ -70,6 +68,8 @@ public class ApplicationServiceImpl implements ApplicationService {
     @Autowired
     private GitUtil gitUtil;
     @Autowired
+    private TemplateRepositoryMirror templateRepositoryMirror;
+    @Autowired
     private CiYamlConfig ciYamlConfig;
     @Autowired
     private GitlabUserRepository gitlabUserRepository;
@@ -81,6 +81,8 @@ public class ApplicationServiceImpl implements ApplicationService {
     private DevopsGitRepository devopsGitRepository;
     @Autowired
     private SagaClient sagaClient;
+    @Autowired
+    private SonarLinkCache sonarLinkCache;
 
     @Override
     @Saga(code = "devops-create-gitlab-project",
@@ -168,10 +170,7 @@ public class ApplicationServiceImpl implements ApplicationService {
         ProjectE projectE = iamRepository.queryIamProject(projectId);
         Organization organization = iamRepository.queryOrganizationById(projectE.getOrganization().getId());
         String urlSlash = gitlabUrl.endsWith("/") ? "" : "/";
-        applicationES.getContent().parallelStream()
-                .forEach(t ->
-                        getSonarUrl(projectE, organization, urlSlash, t)
-                );
+        applicationES.getContent().forEach(t -> getSonarUrl(projectE, organization, urlSlash, t));
         return ConvertPageHelper.convertPage(applicationES, ApplicationRepDTO.class);
     }
 
@@ -181,27 +180,19 @@ public class ApplicationServiceImpl implements ApplicationService {
                     + organization.getCode() + "-" + projectE.getCode() + "/"
                     + t.getCode() + ".git");
             if (!sonarqubeUrl.equals("")) {
-                Integer result = 0;
-                try {
-                    result = HttpClientUtil.getSonar(
-                            sonarqubeUrl.endsWith("/")
-                                    ? sonarqubeUrl
-                                    : String.format(
-                                    "%s/api/project_links/search?projectKey=%s-%s:%s",
-                                    sonarqubeUrl,
-                                    organization.getCode(),
-                                    projectE.getCode(),
-                                    t.getCode()
-                            ));
-                    if (result.equals(HttpStatus.OK.value())) {
-                        t.initSonarUrl(sonarqubeUrl.endsWith("/") ? sonarqubeUrl : sonarqubeUrl + "/"
-                                + "dashboard?id="
-                                + organization.getCode() + "-" + projectE.getCode() + ":"
-                                + t.getCode());
-                    }
-                } catch (Exception e) {
-                    t.initSonarUrl(null);
-                }
+                String checkUrl = sonarqubeUrl.endsWith("/")
+                        ? sonarqubeUrl
+                        : String.format(
+                        "%s/api/project_links/search?projectKey=%s-%s:%s",
+                        sonarqubeUrl,
+                        organization.getCode(),
+                        projectE.getCode(),
+                        t.getCode());
+                String linkUrl = sonarqubeUrl.endsWith("/") ? sonarqubeUrl : sonarqubeUrl + "/"
+                        + "dashboard?id="
+                        + organization.getCode() + "-" + projectE.getCode() + ":"
+                        + t.getCode();
+                t.initSonarUrl(sonarLinkCache.getLink(t.getId(), checkUrl, linkUrl));
             }
         }
     }
@@ -267,30 +258,20 @@ public class ApplicationServiceImpl implements ApplicationService {
             ApplicationTemplateE applicationTemplateE = applicationTemplateRepository.query(
                     applicationE.getApplicationTemplateE().getId());
             String applicationDir = APPLICATION + System.currentTimeMillis();
-            //拉取模板
+            //模板库地址
             String repoUrl = applicationTemplateE.getRepoUrl();
-            String type = applicationTemplateE.getCode();
+            String branch = gitUtil.getTemplateBranch(applicationTemplateE.getCode());
             boolean teamplateType = true;
             if (applicationTemplateE.getOrganization().getId() != null) {
                 repoUrl = repoUrl.startsWith("/") ? repoUrl.substring(1, repoUrl.length()) : repoUrl;
                 repoUrl = !gitlabUrl.endsWith("/") ? gitlabUrl + "/" + repoUrl : gitlabUrl + repoUrl;
-                type = MASTER;
+                branch = MASTER;
                 teamplateType = false;
             }
-            Git git = gitUtil.clone(applicationDir, type,
-                    repoUrl);
-            //渲染模板里面的参数
-            try {
-                File file = new File(gitUtil.getWorkingDirectory(applicationDir));
-                Map<String, String> params = new HashMap<>();
-                params.put("{{group.name}}", organization.getCode() + "-" + projectE.getCode());
-                params.put("{{service.code}}", applicationE.getCode());
-                FileUtil.replaceReturnFile(file, params);
-            } catch (Exception e) {
-                //删除模板
-                gitUtil.deleteWorkingDirectory(applicationDir);
-                throw new CommonException(e.getMessage());
-            }
+            //模板里面的参数
+            Map<String, String> params = new HashMap<>();
+            params.put("{{group.name}}", organization.getCode() + "-" + projectE.getCode());
+            params.put("{{service.code}}", applicationE.getCode());
 
             List<String> tokens = gitlabRepository.listTokenByUserId(gitlabProjectPayload.getGitlabProjectId(),
                     applicationDir, gitlabProjectPayload.getUserId());
@@ -301,12 +282,13 @@ public class ApplicationServiceImpl implements ApplicationService {
             } else {
                 accessToken = tokens.get(tokens.size() - 1);
             }
-            repoUrl = !gitlabUrl.endsWith("/") ? gitlabUrl + "/" : gitlabUrl;
-            applicationE.initGitlabProjectEByUrl(repoUrl
+            String gitlabRepoUrl = !gitlabUrl.endsWith("/") ? gitlabUrl + "/" : gitlabUrl;
+            applicationE.initGitlabProjectEByUrl(gitlabRepoUrl
                     + organization.getCode() + "-" + projectE.getCode() + "/"
                     + applicationE.getCode() + ".git");
             GitlabUserE gitlabUserE = gitlabUserRepository.getGitlabUserByUserId(gitlabProjectPayload.getUserId());
-            gitUtil.push(git, applicationDir, applicationE.getGitlabProjectE().getRepoURL(),
+            //从模板镜像渲染并推送到新项目
+            templateRepositoryMirror.push(repoUrl, branch, params, applicationE.getGitlabProjectE().getRepoURL(),
                     gitlabUserE.getUsername(), accessToken, teamplateType);
             gitlabRepository.createProtectBranch(gitlabProjectPayload.getGitlabProjectId(), MASTER,
                     AccessLevel.MASTER.toString(), AccessLevel.MASTER.toString(), gitlabProjectPayload.getUserId());
@@ -1,8 +1,9 @@
 package io.choerodon.devops.app.service.impl;
 
-import java.io.File;
-import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.List;
+import java.util.Map;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
@@ -30,7 +31,9 @@ import io.choerodon.mybatis.pagehelper.domain.PageRequest;
 @Service
 public class ApplicationVersionServiceImpl implements ApplicationVersionService {
 
-    private static final String DESTPATH = "devops";
+    private static final String VALUES = "values.yaml";
+    private static final String README = "README.md";
+    private static final String NO_README = "# 暂无";
 
     @Autowired
     private ApplicationVersionRepository applicationVersionRepository;
@@ -64,6 +67,10 @@ public class ApplicationVersionServiceImpl implements ApplicationVersionService
         Organization organization = iamRepository.queryOrganizationById(projectE.getOrganization().getId());
         ApplicationVersionE newApplicationVersionE = applicationVersionRepository
                 .queryByAppAndVersion(applicationE.getId(), version);
+        //版本已存在时不再保存chart包
+        if (newApplicationVersionE != null) {
+            return;
+        }
         applicationVersionE.initApplicationEById(applicationE.getId());
         applicationVersionE.setImage(image);
         applicationVersionE.setCommit(commit);
@@ -74,25 +81,22 @@ public class ApplicationVersionServiceImpl implements ApplicationVersionService
                 organization.getCode(),
                 System.getProperty("file.separator"),
                 projectE.getCode());
-        String path = FileUtil.multipartFileToFile(classPath, files);
-        if (newApplicationVersionE != null) {
-            return;
+        //保存chart包的同时读取values.yaml和README.md，不再解压到磁盘
+        Map<String, String> chartFiles;
+        try (InputStream inputStream = files.getInputStream()) {
+            chartFiles = FileUtil.saveTgzAndReadFiles(
+                    inputStream, classPath, files.getOriginalFilename(), VALUES, README);
+        } catch (IOException e) {
+            throw new CommonException("error.file.transfer", e);
         }
-        String destFilePath = DESTPATH + version;
-        try {
-            FileUtil.unTarGZ(path, destFilePath);
-            applicationVersionValueE.setValue(
-                    FileUtil.replaceReturnString(new FileInputStream(new File(FileUtil.queryFileFromFiles(
-                            new File(destFilePath), "values.yaml").getAbsolutePath())), null));
-
-            applicationVersionE.initApplicationVersionValueE(applicationVersionValueRepository
-                    .create(applicationVersionValueE).getId());
-        } catch (Exception e) {
+        if (chartFiles.get(VALUES) == null) {
             throw new CommonException("error.version.insert");
         }
-        applicationVersionE.initApplicationVersionReadmeV(FileUtil.getReadme(destFilePath));
+        applicationVersionValueE.setValue(chartFiles.get(VALUES));
+        applicationVersionE.initApplicationVersionValueE(applicationVersionValueRepository
+                .create(applicationVersionValueE).getId());
+        applicationVersionE.initApplicationVersionReadmeV(chartFiles.getOrDefault(README, NO_README));
         applicationVersionRepository.create(applicationVersionE);
-        FileUtil.deleteDirectory(new File(destFilePath));
     }
 
     @Override
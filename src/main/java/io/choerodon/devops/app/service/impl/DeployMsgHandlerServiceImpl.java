@@ -183,48 +183,32 @@ public class DeployMsgHandlerServiceImpl implements DeployMsgHandlerService {
             devopsEnvPodE.setReady(false);
         }
 
-        Boolean flag = false;
-        if (applicationInstanceE.getId() != null) {
-            List<DevopsEnvPodE> devopsEnvPodEList = devopsEnvPodRepository
-                    .selectByInstanceId(applicationInstanceE.getId());
-            if (devopsEnvPodEList == null || devopsEnvPodEList.isEmpty()) {
-                devopsEnvPodE.initApplicationInstanceE(applicationInstanceE.getId());
-                devopsEnvPodRepository.insert(devopsEnvPodE);
-                Long podId = devopsEnvPodRepository.get(devopsEnvPodE).getId();
-                v1Pod.getSpec().getContainers().parallelStream().forEach(t ->
-                        containerRepository.insert(new DevopsEnvPodContainerDO(
-                                podId,
-                                t.getName())));
-            } else {
-                for (DevopsEnvPodE pod : devopsEnvPodEList) {
-                    if (pod.getName().equals(v1Pod.getMetadata().getName())
-                            && pod.getNamespace().equals(v1Pod.getMetadata().getNamespace())) {
-                        if (!resourceVersion.equals(pod.getResourceVersion())) {
-                            devopsEnvPodE.setId(pod.getId());
-                            devopsEnvPodE.initApplicationInstanceE(pod.getApplicationInstanceE().getId());
-                            devopsEnvPodE.setObjectVersionNumber(pod.getObjectVersionNumber());
-                            devopsEnvPodRepository.update(devopsEnvPodE);
-                            containerRepository.deleteByPodId(pod.getId());
-                            v1Pod.getSpec().getContainers().parallelStream().forEach(t ->
-                                    containerRepository.insert(
-                                            new DevopsEnvPodContainerDO(pod.getId(), t.getName())));
-                        }
-                        flag = true;
-                    }
-                }
-                if (!flag) {
-                    devopsEnvPodE.initApplicationInstanceE(applicationInstanceE.getId());
-                    devopsEnvPodRepository.insert(devopsEnvPodE);
-                    Long podId = devopsEnvPodRepository.get(devopsEnvPodE).getId();
-                    v1Pod.getSpec().getContainers().parallelStream().forEach(t ->
-                            containerRepository.insert(new DevopsEnvPodContainerDO(
-                                    podId,
-                                    t.getName())));
-                }
-            }
+        if (applicationInstanceE.getId() == null) {
+            logger.info("instance of pod {} not resolved, skip", devopsEnvPodE.getName());
+            return;
+        }
+        DevopsEnvPodE oldPod = devopsEnvPodRepository.get(
+                new DevopsEnvPodE(devopsEnvPodE.getName(), devopsEnvPodE.getNamespace()));
+        if (oldPod != null && resourceVersion.equals(oldPod.getResourceVersion())) {
+            return;
+        }
+        devopsEnvPodE.initApplicationInstanceE(applicationInstanceE.getId());
+        Long podId = devopsEnvPodRepository.upsert(devopsEnvPodE);
+        //pod创建后容器列表不会再变化，只有新pod或被新实例接管的同名pod才需要写入容器
+        if (oldPod == null) {
+            containerRepository.batchInsert(getContainers(podId, v1Pod));
+        } else if (oldPod.getApplicationInstanceE() == null
+                || !applicationInstanceE.getId().equals(oldPod.getApplicationInstanceE().getId())) {
+            containerRepository.replaceByPodId(podId, getContainers(podId, v1Pod));
         }
     }
 
+    private List<DevopsEnvPodContainerDO> getContainers(Long podId, V1Pod v1Pod) {
+        return v1Pod.getSpec().getContainers().stream()
+                .map(container -> new DevopsEnvPodContainerDO(podId, container.getName()))
+                .collect(Collectors.toList());
+    }
+
     @Override
     public void handlerReleaseInstall(String msg, Long envId) {
         ReleasePayload releasePayload = JSONArray.parseObject(msg, ReleasePayload.class);
@@ -853,8 +837,11 @@ public class DeployMsgHandlerServiceImpl implements DeployMsgHandlerService {
         }
         List<DevopsEnvFileErrorE> errorDevopsFiles = new ArrayList<>();
         if (gitOpsSync.getMetadata().getErrors() != null) {
+            Map<String, DevopsEnvFileErrorE> envFileErrors = new HashMap<>();
+            devopsEnvFileErrorRepository.listByEnvId(envId)
+                    .forEach(devopsEnvFileErrorE -> envFileErrors.putIfAbsent(devopsEnvFileErrorE.getFilePath(), devopsEnvFileErrorE));
             gitOpsSync.getMetadata().getErrors().stream().forEach(error -> {
-                DevopsEnvFileErrorE devopsEnvFileErrorE = devopsEnvFileErrorRepository.queryByEnvIdAndFilePath(envId, error.getPath());
+                DevopsEnvFileErrorE devopsEnvFileErrorE = envFileErrors.get(error.getPath());
                 if (devopsEnvFileErrorE == null) {
                     devopsEnvFileErrorE = new DevopsEnvFileErrorE();
                     devopsEnvFileErrorE.setCommit(error.getCommit());
@@ -868,106 +855,195 @@ public class DeployMsgHandlerServiceImpl implements DeployMsgHandlerService {
                     devopsEnvFileErrorE = devopsEnvFileErrorRepository.createOrUpdate(devopsEnvFileErrorE);
                     devopsEnvFileErrorE.setResource(error.getId());
                 }
+                envFileErrors.put(error.getPath(), devopsEnvFileErrorE);
                 errorDevopsFiles.add(devopsEnvFileErrorE);
             });
         }
-        gitOpsSync.getMetadata().getFilesCommit().parallelStream().forEach(fileCommit -> {
-            DevopsEnvFileE devopsEnvFileE = devopsEnvFileRepository.queryByEnvAndPath(devopsEnvironmentE.getId(), fileCommit.getFile());
-            devopsEnvFileE.setAgentCommit(fileCommit.getCommit());
-            devopsEnvFileRepository.update(devopsEnvFileE);
+        Map<String, DevopsEnvFileE> envFiles = devopsEnvFileRepository.listByEnvId(envId).stream()
+                .collect(Collectors.toMap(DevopsEnvFileE::getFilePath, t -> t, (a, b) -> a));
+        List<DevopsEnvFileE> updateEnvFiles = new ArrayList<>();
+        gitOpsSync.getMetadata().getFilesCommit().forEach(fileCommit -> {
+            DevopsEnvFileE devopsEnvFileE = envFiles.get(fileCommit.getFile());
+            if (devopsEnvFileE != null) {
+                devopsEnvFileE.setAgentCommit(fileCommit.getCommit());
+                updateEnvFiles.add(devopsEnvFileE);
+            }
         });
-        gitOpsSync.getMetadata().getResourceCommits()
-                .parallelStream()
-                .forEach(resourceCommit -> {
-                    String[] objects = resourceCommit.getResourceId().split("/");
-                    switch (objects[0]) {
-                        case "c7nhelmrelease": {
-                            ApplicationInstanceE applicationInstanceE = applicationInstanceRepository
-                                    .selectByCode(objects[1], envId);
-                            DevopsEnvFileResourceE devopsEnvFileResourceE = devopsEnvFileResourceRepository
-                                    .queryByEnvIdAndResource(envId, applicationInstanceE.getId(), "C7NHelmRelease");
-                            if (updateEnvCommandStatus(envId, resourceCommit, applicationInstanceE.getCommandId(),
-                                    devopsEnvFileResourceE, "c7nhelmrelease", applicationInstanceE.getCode(), null, errorDevopsFiles)) {
-                                applicationInstanceE.setStatus(InstanceStatus.FAILED.getStatus());
-                                applicationInstanceRepository.update(applicationInstanceE);
-                            }
-                            break;
-                        }
-                        case "ingress": {
-                            DevopsIngressE devopsIngressE = devopsIngressRepository
-                                    .selectByEnvAndName(envId, objects[1]);
-                            DevopsEnvFileResourceE devopsEnvFileResourceE = devopsEnvFileResourceRepository
-                                    .queryByEnvIdAndResource(envId, devopsIngressE.getId(), "Ingress");
-                            if (updateEnvCommandStatus(envId, resourceCommit, devopsIngressE.getCommandId(),
-                                    devopsEnvFileResourceE, "ingress", devopsIngressE.getName(), CommandStatus.SUCCESS.getStatus(), errorDevopsFiles)) {
-                                devopsIngressRepository.setStatus(envId, devopsIngressE.getName(), IngressStatus.FAILED.getStatus());
-                            } else {
-                                devopsIngressRepository.setStatus(envId, devopsIngressE.getName(), IngressStatus.RUNNING.getStatus());
-                            }
-                            break;
-                        }
-                        case "service": {
-                            DevopsServiceE devopsServiceE = devopsServiceRepository
-                                    .selectByNameAndNamespace(objects[1], devopsEnvironmentE.getCode());
-                            DevopsEnvFileResourceE devopsEnvFileResourceE = devopsEnvFileResourceRepository
-                                    .queryByEnvIdAndResource(envId, devopsServiceE.getId(), "Service");
-                            if (updateEnvCommandStatus(envId, resourceCommit, devopsServiceE.getCommandId(),
-                                    devopsEnvFileResourceE, "service", devopsServiceE.getName(), CommandStatus.SUCCESS.getStatus(), errorDevopsFiles)) {
-                                devopsServiceE.setStatus(ServiceStatus.FAILED.getStatus());
-                            } else {
-                                devopsServiceE.setStatus(ServiceStatus.RUNNING.getStatus());
-                            }
-                            devopsServiceRepository.update(devopsServiceE);
-                            break;
-                        }
-                        case "certificate": {
-                            CertificationE certificationE = certificationRepository
-                                    .queryByEnvAndName(envId, objects[1]);
-                            DevopsEnvFileResourceE devopsEnvFileResourceE = devopsEnvFileResourceRepository
-                                    .queryByEnvIdAndResource(
-                                            envId, certificationE.getId(), ObjectType.CERTIFICATE.getType());
-                            if (updateEnvCommandStatus(envId, resourceCommit, certificationE.getCommandId(),
-                                    devopsEnvFileResourceE, "certificate", certificationE.getName(),
-                                    null, errorDevopsFiles)) {
-                                certificationE.setStatus(CertificationStatus.FAILED.getStatus());
-                            } else {
-                                certificationE.setStatus(CertificationStatus.APPLYING.getStatus());
-                            }
-                            certificationRepository.updateStatus(certificationE);
-                            break;
-                        }
-                        default:
-                            break;
-                    }
-                });
+        devopsEnvFileRepository.batchUpdateAgentCommit(updateEnvFiles);
+        reconcileResourceStatus(envId, gitOpsSync.getMetadata().getResourceCommits(), errorDevopsFiles);
     }
 
-    private boolean updateEnvCommandStatus(Long envId, ResourceCommit resourceCommit, Long commandId,
-                                           DevopsEnvFileResourceE devopsEnvFileResourceE,
-                                           String objectType, String objectName, String passStatus,
-                                           List<DevopsEnvFileErrorE> envFileErrorES) {
-        DevopsEnvCommandE devopsEnvCommandE = devopsEnvCommandRepository.query(commandId);
-        if (resourceCommit.getCommit().equals(devopsEnvCommandE.getSha())) {
-            if (passStatus != null) {
-                devopsEnvCommandE.setStatus(passStatus);
+    /**
+     * 一次性查出环境下的实例、网络、域名、证书、文件对象关系和操作记录，在内存中计算状态变化后批量更新
+     */
+    private void reconcileResourceStatus(Long envId, List<ResourceCommit> resourceCommits,
+                                         List<DevopsEnvFileErrorE> errorDevopsFiles) {
+        Map<String, ApplicationInstanceE> instances = applicationInstanceRepository.selectByEnvId(envId).stream()
+                .collect(Collectors.toMap(ApplicationInstanceE::getCode, t -> t, (a, b) -> a));
+        Map<String, DevopsIngressE> ingresses = devopsIngressRepository.listByEnvId(envId).stream()
+                .collect(Collectors.toMap(DevopsIngressE::getName, t -> t, (a, b) -> a));
+        Map<String, DevopsServiceE> services = devopsServiceRepository.selectByEnvId(envId).stream()
+                .collect(Collectors.toMap(DevopsServiceE::getName, t -> t, (a, b) -> a));
+        Map<String, CertificationE> certifications = certificationRepository.listByEnvId(envId).stream()
+                .collect(Collectors.toMap(CertificationE::getName, t -> t, (a, b) -> a));
+        Map<String, DevopsEnvFileResourceE> fileResources = devopsEnvFileResourceRepository.listByEnvId(envId).stream()
+                .collect(Collectors.toMap(t -> t.getResourceType() + "/" + t.getResourceId(), t -> t, (a, b) -> a));
+
+        //同一文件可能有多条错误，错误内容取最后一次写入的，对应的资源取第一条错误的
+        Map<String, DevopsEnvFileErrorE> fileErrors = new HashMap<>();
+        Map<String, String> fileErrorResources = new HashMap<>();
+        errorDevopsFiles.forEach(devopsEnvFileErrorE -> {
+            fileErrors.put(devopsEnvFileErrorE.getFilePath(), devopsEnvFileErrorE);
+            fileErrorResources.putIfAbsent(devopsEnvFileErrorE.getFilePath(), devopsEnvFileErrorE.getResource());
+        });
+
+        List<SyncResource> syncResources = new ArrayList<>();
+        resourceCommits.forEach(resourceCommit -> {
+            String[] objects = resourceCommit.getResourceId().split("/");
+            SyncResource syncResource = null;
+            switch (objects[0]) {
+                case "c7nhelmrelease": {
+                    ApplicationInstanceE applicationInstanceE = instances.get(objects[1]);
+                    if (applicationInstanceE != null) {
+                        syncResource = new SyncResource(objects[0], applicationInstanceE.getCode(), applicationInstanceE.getId(),
+                                applicationInstanceE.getCommandId(), "C7NHelmRelease", null, applicationInstanceE.getStatus());
+                    }
+                    break;
+                }
+                case "ingress": {
+                    DevopsIngressE devopsIngressE = ingresses.get(objects[1]);
+                    if (devopsIngressE != null) {
+                        //不可用的域名即使状态相同也需要更新，以便同时置为可用
+                        syncResource = new SyncResource(objects[0], devopsIngressE.getName(), devopsIngressE.getId(),
+                                devopsIngressE.getCommandId(), "Ingress", CommandStatus.SUCCESS.getStatus(),
+                                Boolean.TRUE.equals(devopsIngressE.getUsable()) ? devopsIngressE.getStatus() : null);
+                    }
+                    break;
+                }
+                case "service": {
+                    DevopsServiceE devopsServiceE = services.get(objects[1]);
+                    if (devopsServiceE != null) {
+                        syncResource = new SyncResource(objects[0], devopsServiceE.getName(), devopsServiceE.getId(),
+                                devopsServiceE.getCommandId(), "Service", CommandStatus.SUCCESS.getStatus(), devopsServiceE.getStatus());
+                    }
+                    break;
+                }
+                case "certificate": {
+                    CertificationE certificationE = certifications.get(objects[1]);
+                    if (certificationE != null) {
+                        syncResource = new SyncResource(objects[0], certificationE.getName(), certificationE.getId(),
+                                certificationE.getCommandId(), ObjectType.CERTIFICATE.getType(), null, certificationE.getStatus());
+                    }
+                    break;
+                }
+                default:
+                    return;
             }
-        }
-        DevopsEnvFileErrorE devopsEnvFileErrorE = devopsEnvFileErrorRepository
-                .queryByEnvIdAndFilePath(envId, devopsEnvFileResourceE.getFilePath());
-        if (devopsEnvFileErrorE != null) {
-            List<DevopsEnvFileErrorE> devopsEnvFileErrorES = envFileErrorES.parallelStream().filter(devopsEnvFileErrorE1 -> devopsEnvFileErrorE1.getId().equals(devopsEnvFileErrorE.getId())).collect(Collectors.toList());
-            if (!devopsEnvFileErrorES.isEmpty()) {
-                String[] objects = devopsEnvFileErrorES.get(0).getResource().split("/");
-                if (objects[0].equals(objectType) && objects[1].equals(objectName)) {
-                    devopsEnvCommandE.setStatus(CommandStatus.FAILED.getStatus());
-                    devopsEnvCommandE.setError(devopsEnvFileErrorE.getError());
-                    devopsEnvCommandRepository.update(devopsEnvCommandE);
-                    return true;
+            if (syncResource == null) {
+                logger.info("env {} resource {} not found when sync", envId, resourceCommit.getResourceId());
+                return;
+            }
+            syncResource.commit = resourceCommit.getCommit();
+            syncResources.add(syncResource);
+        });
+
+        Map<Long, DevopsEnvCommandE> commands = devopsEnvCommandRepository.listByIds(syncResources.stream()
+                .map(syncResource -> syncResource.commandId)
+                .filter(Objects::nonNull)
+                .distinct()
+                .collect(Collectors.toList()))
+                .stream().collect(Collectors.toMap(DevopsEnvCommandE::getId, t -> t));
+        Map<Long, DevopsEnvCommandE> updateCommands = new LinkedHashMap<>();
+        Map<String, Map<String, List<Long>>> updateStatus = new HashMap<>();
+        syncResources.forEach(syncResource -> {
+            DevopsEnvCommandE devopsEnvCommandE = commands.get(syncResource.commandId);
+            String commandStatus = devopsEnvCommandE == null ? null : devopsEnvCommandE.getStatus();
+            String commandError = devopsEnvCommandE == null ? null : devopsEnvCommandE.getError();
+            if (devopsEnvCommandE != null && syncResource.commit.equals(devopsEnvCommandE.getSha())
+                    && syncResource.passStatus != null) {
+                devopsEnvCommandE.setStatus(syncResource.passStatus);
+            }
+            boolean failed = false;
+            DevopsEnvFileResourceE devopsEnvFileResourceE = fileResources.get(syncResource.resourceType + "/" + syncResource.id);
+            if (devopsEnvFileResourceE != null && fileErrors.containsKey(devopsEnvFileResourceE.getFilePath())) {
+                String[] objects = fileErrorResources.get(devopsEnvFileResourceE.getFilePath()).split("/");
+                if (objects[0].equals(syncResource.objectType) && objects[1].equals(syncResource.name)) {
+                    failed = true;
+                    if (devopsEnvCommandE != null) {
+                        devopsEnvCommandE.setStatus(CommandStatus.FAILED.getStatus());
+                        devopsEnvCommandE.setError(fileErrors.get(devopsEnvFileResourceE.getFilePath()).getError());
+                    }
                 }
             }
+            if (devopsEnvCommandE != null && (!Objects.equals(commandStatus, devopsEnvCommandE.getStatus())
+                    || !Objects.equals(commandError, devopsEnvCommandE.getError()))) {
+                updateCommands.put(devopsEnvCommandE.getId(), devopsEnvCommandE);
+            }
+            //只更新状态有变化的对象
+            String status = syncStatus(syncResource.objectType, failed);
+            if (status != null && !status.equals(syncResource.status)) {
+                updateStatus.computeIfAbsent(syncResource.objectType, k -> new HashMap<>())
+                        .computeIfAbsent(status, k -> new ArrayList<>())
+                        .add(syncResource.id);
+            }
+        });
+
+        devopsEnvCommandRepository.batchUpdateStatus(new ArrayList<>(updateCommands.values()));
+        updateStatus.forEach((objectType, statusIds) -> statusIds.forEach((status, ids) -> {
+            switch (objectType) {
+                case "c7nhelmrelease":
+                    applicationInstanceRepository.updateStatusByIds(ids, status);
+                    break;
+                case "ingress":
+                    devopsIngressRepository.updateStatusByIds(ids, status);
+                    break;
+                case "service":
+                    devopsServiceRepository.updateStatusByIds(ids, status);
+                    break;
+                case "certificate":
+                    certificationRepository.updateStatusByIds(ids, status);
+                    break;
+                default:
+                    break;
+            }
+        }));
+    }
+
+    private static String syncStatus(String objectType, boolean failed) {
+        switch (objectType) {
+            case "c7nhelmrelease":
+                return failed ? InstanceStatus.FAILED.getStatus() : null;
+            case "ingress":
+                return failed ? IngressStatus.FAILED.getStatus() : IngressStatus.RUNNING.getStatus();
+            case "service":
+                return failed ? ServiceStatus.FAILED.getStatus() : ServiceStatus.RUNNING.getStatus();
+            case "certificate":
+                return failed ? CertificationStatus.FAILED.getStatus() : CertificationStatus.APPLYING.getStatus();
+            default:
+                return null;
+        }
+    }
+
+    private static class SyncResource {
+        private final String objectType;
+        private final String name;
+        private final Long id;
+        private final Long commandId;
+        private final String resourceType;
+        private final String passStatus;
+        private final String status;
+        private String commit;
+
+        SyncResource(String objectType, String name, Long id, Long commandId, String resourceType, String passStatus,
+                     String status) {
+            this.objectType = objectType;
+            this.name = name;
+            this.id = id;
+            this.commandId = commandId;
+            this.resourceType = resourceType;
+            this.passStatus = passStatus;
+            this.status = status;
         }
-        devopsEnvCommandRepository.update(devopsEnvCommandE);
-        return false;
     }
 
     private void saveOrUpdateResource(DevopsEnvResourceE devopsEnvResourceE,
@@ -1105,12 +1181,8 @@ public class DeployMsgHandlerServiceImpl implements DeployMsgHandlerService {
             devopsEnvPodE.setReady(false);
         }
         devopsEnvPodE.initApplicationInstanceE(applicationInstanceE.getId());
-        devopsEnvPodRepository.insert(devopsEnvPodE);
-        Long podId = devopsEnvPodRepository.get(devopsEnvPodE).getId();
-        v1Pod.getSpec().getContainers().parallelStream().forEach(t ->
-                containerRepository.insert(new DevopsEnvPodContainerDO(
-                        podId,
-                        t.getName())));
+        Long podId = devopsEnvPodRepository.upsert(devopsEnvPodE);
+        containerRepository.replaceByPodId(podId, getContainers(podId, v1Pod));
     }
 
     private void syncIngress(String msg, Long envId) {
@@ -1215,8 +1287,7 @@ public class DeployMsgHandlerServiceImpl implements DeployMsgHandlerService {
     public void gitOpsCommandSyncEvent(Long envId) {
         logger.info("sync command status!");
         DevopsEnvironmentE devopsEnvironmentE = devopsEnvironmentRepository.queryById(envId);
-        List<Command> commands = new ArrayList<>();
-        getCommands(envId, commands);
+        List<Command> commands = getCommands(envId);
         Msg msg = new Msg();
         msg.setKey(String.format("env:%s.envId:%d",
                 devopsEnvironmentE.getCode(),
@@ -1233,59 +1304,12 @@ public class DeployMsgHandlerServiceImpl implements DeployMsgHandlerService {
     }
 
 
-    private void getCommands(Long envId, List<Command> commands) {
-        List<Command> removeCommands = new ArrayList<>();
-        applicationInstanceRepository.selectByEnvId(envId).stream().forEach(applicationInstanceE -> {
-            Long commandId = applicationInstanceE.getCommandId();
-            if (commandId != null) {
-                Command command = new Command();
-                command.setId(applicationInstanceE.getCommandId());
-                command.setResourceType("instance");
-                command.setResourceName(applicationInstanceE.getCode());
-                commands.add(command);
-            }
-        });
-        devopsServiceRepository.selectByEnvId(envId).stream().forEach(devopsServiceE -> {
-            Long commandId = devopsServiceE.getCommandId();
-            if (commandId != null) {
-                Command command = new Command();
-                command.setId(devopsServiceE.getCommandId());
-                command.setResourceType("service");
-                command.setResourceName(devopsServiceE.getName());
-                commands.add(command);
-            }
-        });
-        devopsIngressRepository.listByEnvId(envId).stream().forEach(devopsIngressE -> {
-            Long commandId = devopsIngressE.getCommandId();
-            if (commandId != null) {
-                Command command = new Command();
-                command.setId(devopsIngressE.getCommandId());
-                command.setResourceType("ingress");
-                command.setResourceName(devopsIngressE.getName());
-                commands.add(command);
-            }
-        });
-        certificationRepository.listByEnvId(envId).stream().forEach(certificationE -> {
-            Long commandId = certificationE.getCommandId();
-            if (commandId != null) {
-                Command command = new Command();
-                command.setId(certificationE.getCommandId());
-                command.setResourceType("certificate");
-                command.setResourceName(certificationE.getName());
-                commands.add(command);
-            }
-        });
-        Date d = new Date();
-        if (!commands.isEmpty()) {
-            commands.parallelStream().forEach(command -> {
-                DevopsEnvCommandE devopsEnvCommandE = devopsEnvCommandRepository.query(command.getId());
-                command.setCommit(devopsEnvCommandE.getSha());
-                if (!CommandStatus.OPERATING.getStatus().equals(devopsEnvCommandE.getStatus()) || (CommandStatus.OPERATING.getStatus().equals(devopsEnvCommandE.getStatus()) && d.getTime() - devopsEnvCommandE.getLastUpdateDate().getTime() <= 180000)) {
-                    removeCommands.add(command);
-                }
-            });
-            commands.removeAll(removeCommands);
-        }
+    /**
+     * 查询环境下处于操作中且超过3分钟未更新的操作记录，一次联表查询得到操作及其所属对象
+     */
+    private List<Command> getCommands(Long envId) {
+        return devopsEnvCommandRepository.listPendingByEnvId(envId, CommandStatus.OPERATING.getStatus(),
+                new Date(System.currentTimeMillis() - 180000));
     }
 
 
@@ -1293,45 +1317,70 @@ public class DeployMsgHandlerServiceImpl implements DeployMsgHandlerService {
     public void gitOpsCommandSyncEventResult(Long envId, String msg) {
         logger.info("sync command status result:" + msg);
         List<Command> commands = JSONArray.parseArray(msg, Command.class);
-        List<Command> oldCommands = new ArrayList<>();
-        getCommands(envId, oldCommands);
-        if (!oldCommands.isEmpty()) {
-            oldCommands.parallelStream().forEach(command -> {
-                commands.parallelStream().filter(command1 -> command1.getId().equals(command.getId())).forEach(command1 -> {
-                    DevopsEnvCommandE devopsEnvCommandE = devopsEnvCommandRepository.query(command.getId());
-                    if (command.getCommit().equals(command1.getCommit())) {
-                        devopsEnvCommandE.setStatus(CommandStatus.SUCCESS.getStatus());
-                        updateResourceStatus(envId, devopsEnvCommandE, InstanceStatus.RUNNING, ServiceStatus.RUNNING, IngressStatus.RUNNING, CertificationStatus.ACTIVE);
-
-                    } else {
-                        devopsEnvCommandE.setStatus(CommandStatus.FAILED.getStatus());
-                        updateResourceStatus(envId, devopsEnvCommandE, InstanceStatus.FAILED, ServiceStatus.FAILED, IngressStatus.FAILED, CertificationStatus.FAILED);
-                    }
-                    devopsEnvCommandRepository.update(devopsEnvCommandE);
-                });
-            });
+        if (commands == null || commands.isEmpty()) {
+            return;
         }
+        Map<Long, String> commitMap = new HashMap<>();
+        commands.forEach(command -> {
+            if (command.getId() != null) {
+                commitMap.put(command.getId(), command.getCommit());
+            }
+        });
+        List<Long> commandIds = getCommands(envId).stream()
+                .map(Command::getId)
+                .filter(commitMap::containsKey)
+                .distinct()
+                .collect(Collectors.toList());
+        List<DevopsEnvCommandE> devopsEnvCommandES = devopsEnvCommandRepository.listByIds(commandIds);
+        Map<String, Map<String, List<Long>>> updateStatus = new HashMap<>();
+        devopsEnvCommandES.forEach(devopsEnvCommandE -> {
+            boolean success = devopsEnvCommandE.getSha() != null
+                    && devopsEnvCommandE.getSha().equals(commitMap.get(devopsEnvCommandE.getId()));
+            devopsEnvCommandE.setStatus(success
+                    ? CommandStatus.SUCCESS.getStatus() : CommandStatus.FAILED.getStatus());
+            String status = commandResourceStatus(devopsEnvCommandE.getObject(), success);
+            if (status != null) {
+                updateStatus.computeIfAbsent(devopsEnvCommandE.getObject(), k -> new HashMap<>())
+                        .computeIfAbsent(status, k -> new ArrayList<>())
+                        .add(devopsEnvCommandE.getObjectId());
+            }
+        });
+        devopsEnvCommandRepository.batchUpdateStatus(devopsEnvCommandES);
+        updateStatus.forEach((object, statusIds) -> statusIds.forEach((status, ids) -> {
+            switch (object) {
+                case "instance":
+                    applicationInstanceRepository.updateStatusByIds(ids, status);
+                    break;
+                case "service":
+                    devopsServiceRepository.updateStatusByIds(ids, status);
+                    break;
+                case "ingress":
+                    devopsIngressRepository.updateStatusByIds(ids, status);
+                    break;
+                case "certificate":
+                    certificationRepository.updateStatusByIds(ids, status);
+                    break;
+                default:
+                    break;
+            }
+        }));
     }
 
-    private void updateResourceStatus(Long envId, DevopsEnvCommandE devopsEnvCommandE, InstanceStatus running, ServiceStatus running2, IngressStatus running3, CertificationStatus active) {
-        if (devopsEnvCommandE.getObject().equals("instance")) {
-            ApplicationInstanceE applicationInstanceE = applicationInstanceRepository.selectById(devopsEnvCommandE.getObjectId());
-            applicationInstanceE.setStatus(running.getStatus());
-            applicationInstanceRepository.update(applicationInstanceE);
+    private static String commandResourceStatus(String object, boolean success) {
+        if (object == null) {
+            return null;
         }
-        if (devopsEnvCommandE.getObject().equals("service")) {
-            DevopsServiceE devopsServiceE = devopsServiceRepository.query(devopsEnvCommandE.getObjectId());
-            devopsServiceE.setStatus(running2.getStatus());
-            devopsServiceRepository.update(devopsServiceE);
-        }
-        if (devopsEnvCommandE.getObject().equals("ingress")) {
-            DevopsIngressDO devopsIngressDO = devopsIngressRepository.getIngress(devopsEnvCommandE.getObjectId());
-            devopsIngressRepository.setStatus(envId, devopsIngressDO.getName(), running3.getStatus());
-        }
-        if (devopsEnvCommandE.getObject().equals("certificate")) {
-            CertificationE certificationE = certificationRepository.queryById(devopsEnvCommandE.getObjectId());
-            certificationE.setStatus(active.getStatus());
-            certificationRepository.updateStatus(certificationE);
+        switch (object) {
+            case "instance":
+                return success ? InstanceStatus.RUNNING.getStatus() : InstanceStatus.FAILED.getStatus();
+            case "service":
+                return success ? ServiceStatus.RUNNING.getStatus() : ServiceStatus.FAILED.getStatus();
+            case "ingress":
+                return success ? IngressStatus.RUNNING.getStatus() : IngressStatus.FAILED.getStatus();
+            case "certificate":
+                return success ? CertificationStatus.ACTIVE.getStatus() : CertificationStatus.FAILED.getStatus();
+            default:
+                return null;
         }
     }
 
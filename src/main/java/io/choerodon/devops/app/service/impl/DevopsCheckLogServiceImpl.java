@@ -12,6 +12,7 @@ import java.util.stream.Collectors;
 import com.alibaba.fastjson.JSON;
 import com.google.common.reflect.TypeToken;
 import com.google.gson.Gson;
+import com.jcraft.jsch.KeyPair;
 import com.zaxxer.hikari.util.DefaultThreadFactory;
 import io.kubernetes.client.custom.IntOrString;
 import io.kubernetes.client.models.*;
@@ -53,6 +54,7 @@ import io.choerodon.devops.domain.application.valueobject.ProjectHook;
 import io.choerodon.devops.infra.common.util.FileUtil;
 import io.choerodon.devops.infra.common.util.GitUtil;
 import io.choerodon.devops.infra.common.util.SkipNullRepresenterUtil;
+import io.choerodon.devops.infra.common.util.SshKeyPool;
 import io.choerodon.devops.infra.common.util.TypeUtil;
 import io.choerodon.devops.infra.common.util.enums.InstanceStatus;
 import io.choerodon.devops.infra.common.util.enums.ResourceType;
@@ -94,6 +96,8 @@ public class DevopsCheckLogServiceImpl implements DevopsCheckLogService {
     @Autowired
     private ApplicationMapper applicationMapper;
     @Autowired
+    private SshKeyPool sshKeyPool;
+    @Autowired
     private GitlabRepository gitlabRepository;
     @Autowired
     private UserAttrRepository userAttrRepository;
@@ -150,40 +154,50 @@ public class DevopsCheckLogServiceImpl implements DevopsCheckLogService {
 
     private void syncEnvProject(List<CheckLog> logs) {
         LOGGER.info("start to sync env project");
-        List<DevopsEnvironmentE> devopsEnvironmentES = devopsEnvironmentRepository.list();
-        devopsEnvironmentES
+        List<DevopsEnvironmentE> devopsEnvironmentES = devopsEnvironmentRepository.list()
                 .stream()
                 .filter(devopsEnvironmentE -> devopsEnvironmentE.getGitlabEnvProjectId() == null)
-                .forEach(devopsEnvironmentE -> {
-                    CheckLog checkLog = new CheckLog();
-                    try {
-                        //generate git project code
-                        checkLog.setContent("env: " + devopsEnvironmentE.getName() + " create gitops project");
-                        ProjectE projectE = iamRepository.queryIamProject(devopsEnvironmentE.getProjectE().getId());
-                        Organization organization = iamRepository
-                                .queryOrganizationById(projectE.getOrganization().getId());
-                        //generate rsa key
-                        List<String> sshKeys = FileUtil.getSshKey(String.format("%s/%s/%s",
-                                organization.getCode(), projectE.getCode(), devopsEnvironmentE.getCode()));
-                        devopsEnvironmentE.setEnvIdRsa(sshKeys.get(0));
-                        devopsEnvironmentE.setEnvIdRsaPub(sshKeys.get(1));
-                        devopsEnvironmentRepository.update(devopsEnvironmentE);
-                        GitlabProjectPayload gitlabProjectPayload = new GitlabProjectPayload();
-                        GitlabGroupE gitlabGroupE = devopsProjectRepository.queryDevopsProject(projectE.getId());
-                        gitlabProjectPayload.setGroupId(gitlabGroupE.getEnvGroupId());
-                        gitlabProjectPayload.setUserId(ADMIN);
-                        gitlabProjectPayload.setPath(devopsEnvironmentE.getCode());
-                        gitlabProjectPayload.setOrganizationId(null);
-                        gitlabProjectPayload.setType(ENV);
-                        devopsEnvironmentService.handleCreateEnvSaga(gitlabProjectPayload);
-                        checkLog.setResult(SUCCESS);
-                    } catch (Exception e) {
-                        LOGGER.info("create env git project error", e);
-                        checkLog.setResult(FAILED + e.getMessage());
-                    }
-                    LOGGER.info(checkLog.toString());
-                    logs.add(checkLog);
-                });
+                .collect(Collectors.toList());
+        //并行生成所有环境需要的rsa密钥
+        List<KeyPair> takenKeyPairs = sshKeyPool.takeKeyPairs(devopsEnvironmentES.size());
+        Iterator<KeyPair> keyPairs = takenKeyPairs.iterator();
+        try {
+            devopsEnvironmentES
+                    .forEach(devopsEnvironmentE -> {
+                        KeyPair keyPair = keyPairs.next();
+                        CheckLog checkLog = new CheckLog();
+                        try {
+                            //generate git project code
+                            checkLog.setContent("env: " + devopsEnvironmentE.getName() + " create gitops project");
+                            ProjectE projectE = iamRepository.queryIamProject(devopsEnvironmentE.getProjectE().getId());
+                            Organization organization = iamRepository
+                                    .queryOrganizationById(projectE.getOrganization().getId());
+                            //generate rsa key
+                            List<String> sshKeys = FileUtil.getSshKey(keyPair, String.format("%s/%s/%s",
+                                    organization.getCode(), projectE.getCode(), devopsEnvironmentE.getCode()));
+                            devopsEnvironmentE.setEnvIdRsa(sshKeys.get(0));
+                            devopsEnvironmentE.setEnvIdRsaPub(sshKeys.get(1));
+                            devopsEnvironmentRepository.update(devopsEnvironmentE);
+                            GitlabProjectPayload gitlabProjectPayload = new GitlabProjectPayload();
+                            GitlabGroupE gitlabGroupE = devopsProjectRepository.queryDevopsProject(projectE.getId());
+                            gitlabProjectPayload.setGroupId(gitlabGroupE.getEnvGroupId());
+                            gitlabProjectPayload.setUserId(ADMIN);
+                            gitlabProjectPayload.setPath(devopsEnvironmentE.getCode());
+                            gitlabProjectPayload.setOrganizationId(null);
+                            gitlabProjectPayload.setType(ENV);
+                            devopsEnvironmentService.handleCreateEnvSaga(gitlabProjectPayload);
+                            checkLog.setResult(SUCCESS);
+                        } catch (Exception e) {
+                            LOGGER.info("create env git project error", e);
+                            checkLog.setResult(FAILED + e.getMessage());
+                        }
+                        LOGGER.info(checkLog.toString());
+                        logs.add(checkLog);
+                    });
+        } finally {
+            //中途失败时未输出的密钥也要释放
+            takenKeyPairs.forEach(KeyPair::dispose);
+        }
     }
 
 
@@ -347,7 +361,9 @@ public class DevopsCheckLogServiceImpl implements DevopsCheckLogService {
                     CheckLog checkLog = new CheckLog();
                     checkLog.setContent("app: " + applicationDO.getName() + "update gitlab webhook");
                     try {
-                        gitlabRepository.updateWebHook(applicationDO.getGitlabProjectId(), TypeUtil.objToInteger(applicationDO.getHookId()), ADMIN);
+                        //按当前的事件配置更新已注册的webhook，包括tag事件
+                        gitlabRepository.updateWebHook(applicationDO.getGitlabProjectId(),
+                                TypeUtil.objToInteger(applicationDO.getHookId()), ADMIN, appHook(applicationDO));
                         checkLog.setResult(SUCCESS);
                     } catch (Exception e) {
                         checkLog.setResult(FAILED + e.getMessage());
@@ -356,6 +372,17 @@ public class DevopsCheckLogServiceImpl implements DevopsCheckLogService {
                 });
     }
 
+    private ProjectHook appHook(ApplicationDO applicationDO) {
+        ProjectHook projectHook = ProjectHook.allHook();
+        projectHook.setEnableSslVerification(true);
+        projectHook.setProjectId(applicationDO.getGitlabProjectId());
+        projectHook.setToken(applicationDO.getToken());
+        String uri = !gatewayUrl.endsWith("/") ? gatewayUrl + "/" : gatewayUrl;
+        uri += "devops/webhook";
+        projectHook.setUrl(uri);
+        return projectHook;
+    }
+
     private class SyncInstanceByEnv {
         private List<CheckLog> logs;
         private DevopsEnvironmentE env;
@@ -596,15 +623,8 @@ public class DevopsCheckLogServiceImpl implements DevopsCheckLogService {
             CheckLog checkLog = new CheckLog();
             checkLog.setContent("app: " + applicationDO.getName() + " create gitlab webhook");
             try {
-                ProjectHook projectHook = ProjectHook.allHook();
-                projectHook.setEnableSslVerification(true);
-                projectHook.setProjectId(applicationDO.getGitlabProjectId());
-                projectHook.setToken(applicationDO.getToken());
-                String uri = !gatewayUrl.endsWith("/") ? gatewayUrl + "/" : gatewayUrl;
-                uri += "devops/webhook";
-                projectHook.setUrl(uri);
                 applicationDO.setHookId(TypeUtil.objToLong(gitlabRepository
-                        .createWebHook(applicationDO.getGitlabProjectId(), ADMIN, projectHook).getId()));
+                        .createWebHook(applicationDO.getGitlabProjectId(), ADMIN, appHook(applicationDO)).getId()));
                 applicationMapper.updateByPrimaryKey(applicationDO);
                 checkLog.setResult(SUCCESS);
             } catch (Exception e) {
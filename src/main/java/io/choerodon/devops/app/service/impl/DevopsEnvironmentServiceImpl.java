@@ -30,6 +30,7 @@ import io.choerodon.devops.domain.application.factory.DevopsEnvironmentFactory;
 import io.choerodon.devops.domain.application.repository.*;
 import io.choerodon.devops.domain.application.valueobject.Organization;
 import io.choerodon.devops.domain.application.valueobject.ProjectHook;
+import io.choerodon.devops.infra.cache.AgentInitPayloadCache;
 import io.choerodon.devops.infra.common.util.*;
 import io.choerodon.devops.infra.common.util.enums.InstanceStatus;
 import io.choerodon.devops.infra.dataobject.gitlab.GitlabProjectDO;
@@ -71,6 +72,8 @@ public class DevopsEnvironmentServiceImpl implements DevopsEnvironmentService {
     @Autowired
     private IamRepository iamRepository;
     @Autowired
+    private SshKeyPool sshKeyPool;
+    @Autowired
     private DevopsEnvironmentRepository devopsEnviromentRepository;
     @Autowired
     private EnvListener envListener;
@@ -96,6 +99,10 @@ public class DevopsEnvironmentServiceImpl implements DevopsEnvironmentService {
     private DevopsEnvCommitRepository devopsEnvCommitRepository;
     @Autowired
     private DevopsEnvGroupRepository devopsEnvGroupRepository;
+    @Autowired
+    private AgentInitPayloadCache agentInitPayloadCache;
+    @Autowired
+    private GitOpsRepositoryManager gitOpsRepositoryManager;
 
     @Override
     @Saga(code = "devops-create-env", description = "创建环境", inputSchema = "{}")
@@ -118,7 +125,7 @@ public class DevopsEnvironmentServiceImpl implements DevopsEnvironmentService {
         } else {
             devopsEnvironmentE.initSequence(devopsEnvironmentES.stream().filter(devopsEnvironmentE1 -> devopsEnviromentDTO.getDevopsEnvGroupId().equals(devopsEnvironmentE1.getDevopsEnvGroupId())).collect(Collectors.toList()));
         }
-        List<String> sshKeys = FileUtil.getSshKey(
+        List<String> sshKeys = sshKeyPool.take(
                 organization.getCode() + "/" + projectE.getCode() + "/" + devopsEnviromentDTO.getCode());
         devopsEnvironmentE.setEnvIdRsa(sshKeys.get(0));
         devopsEnvironmentE.setEnvIdRsaPub(sshKeys.get(1));
@@ -268,6 +275,11 @@ public class DevopsEnvironmentServiceImpl implements DevopsEnvironmentService {
             sort(environmentIds.toArray(ids));
         }
         devopsEnviromentRepository.update(devopsEnvironmentE);
+        agentInitPayloadCache.evict(environmentId);
+        //停用环境后释放本节点的gitops本地库，重新启用后下次同步时重新clone
+        if (!active) {
+            gitOpsRepositoryManager.remove(environmentId, getGitOpsPath(devopsEnvironmentE));
+        }
         return true;
     }
 
@@ -443,6 +455,8 @@ public class DevopsEnvironmentServiceImpl implements DevopsEnvironmentService {
                 true,
                 gitlabProjectPayload.getUserId());
         ProjectHook projectHook = ProjectHook.allHook();
+        //gitops库的tag由agent维护，不需要tag事件
+        projectHook.setTagPushEvents(false);
         projectHook.setEnableSslVerification(true);
         projectHook.setProjectId(gitlabProjectDO.getId());
         projectHook.setToken(devopsEnvironmentE.getToken());
@@ -485,8 +499,7 @@ public class DevopsEnvironmentServiceImpl implements DevopsEnvironmentService {
         ProjectE projectE = iamRepository.queryIamProject(devopsEnvironmentE.getProjectE().getId());
         Organization organization = iamRepository.queryOrganizationById(projectE.getOrganization().getId());
         //本地路径
-        String path = String.format("gitops/%s/%s/%s",
-                organization.getCode(), projectE.getCode(), devopsEnvironmentE.getCode());
+        String path = getGitOpsPath(organization, projectE, devopsEnvironmentE);
         //生成环境git仓库ssh地址
         String url = String.format("git@%s:%s-%s-gitops/%s.git",
                 gitlabSshUrl, organization.getCode(), projectE.getCode(), devopsEnvironmentE.getCode());
@@ -498,6 +511,17 @@ public class DevopsEnvironmentServiceImpl implements DevopsEnvironmentService {
         return path;
     }
 
+    private String getGitOpsPath(DevopsEnvironmentE devopsEnvironmentE) {
+        ProjectE projectE = iamRepository.queryIamProject(devopsEnvironmentE.getProjectE().getId());
+        Organization organization = iamRepository.queryOrganizationById(projectE.getOrganization().getId());
+        return getGitOpsPath(organization, projectE, devopsEnvironmentE);
+    }
+
+    private String getGitOpsPath(Organization organization, ProjectE projectE, DevopsEnvironmentE devopsEnvironmentE) {
+        return String.format("gitops/%s/%s/%s",
+                organization.getCode(), projectE.getCode(), devopsEnvironmentE.getCode());
+    }
+
     @Override
     public void initMockService(SagaClient sagaClient) {
         this.sagaClient = sagaClient;
@@ -1,12 +1,8 @@
 package io.choerodon.devops.app.service.impl;
 
-import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
 import java.util.*;
 import java.util.stream.Collectors;
 
-import com.alibaba.fastjson.JSONObject;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import io.kubernetes.client.models.V1Service;
@@ -21,7 +17,6 @@ import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.transaction.interceptor.TransactionAspectSupport;
-import org.yaml.snakeyaml.Yaml;
 
 import io.choerodon.asgard.saga.annotation.Saga;
 import io.choerodon.asgard.saga.dto.StartInstanceDTO;
@@ -33,9 +28,10 @@ import io.choerodon.devops.api.dto.*;
 import io.choerodon.devops.app.service.*;
 import io.choerodon.devops.domain.application.entity.*;
 import io.choerodon.devops.domain.application.entity.gitlab.CommitE;
-import io.choerodon.devops.domain.application.entity.gitlab.CompareResultsE;
+import io.choerodon.devops.domain.application.entity.gitlab.DiffE;
 import io.choerodon.devops.domain.application.entity.iam.UserE;
 import io.choerodon.devops.domain.application.handler.GitOpsExplainException;
+import io.choerodon.devops.domain.application.handler.GitOpsObjectParser;
 import io.choerodon.devops.domain.application.handler.ResourceBundleHandler;
 import io.choerodon.devops.domain.application.repository.*;
 import io.choerodon.devops.domain.application.valueobject.C7nCertification;
@@ -49,6 +45,8 @@ import io.choerodon.devops.domain.service.impl.ConvertC7nCertificationServiceImp
 import io.choerodon.devops.domain.service.impl.ConvertC7nHelmReleaseServiceImpl;
 import io.choerodon.devops.domain.service.impl.ConvertV1ServiceServiceImpl;
 import io.choerodon.devops.domain.service.impl.ConvertV1beta1IngressServiceImpl;
+import io.choerodon.devops.infra.cache.GitlabTagCache;
+import io.choerodon.devops.infra.cache.IamUserCache;
 import io.choerodon.devops.infra.common.util.*;
 import io.choerodon.devops.infra.config.HarborConfigurationProperties;
 import io.choerodon.devops.infra.dataobject.gitlab.BranchDO;
@@ -69,7 +67,6 @@ public class DevopsGitServiceImpl implements DevopsGitService {
     public static final String CERTIFICATE = "Certificate";
     private static final String NO_COMMIT_SHA = "0000000000000000000000000000000000000000";
     private static final String REF_HEADS = "refs/heads/";
-    private static final String GIT_SUFFIX = "/.git";
     private static final Logger LOGGER = LoggerFactory.getLogger(DevopsGitServiceImpl.class);
 
     private ObjectMapper objectMapper = new ObjectMapper();
@@ -132,6 +129,12 @@ public class DevopsGitServiceImpl implements DevopsGitService {
     @Autowired
     private CertificationService certificationService;
     @Autowired
+    private GitOpsRepositoryManager gitOpsRepositoryManager;
+    @Autowired
+    private IamUserCache iamUserCache;
+    @Autowired
+    private GitlabTagCache gitlabTagCache;
+    @Autowired
     @Qualifier("handlerC7nReleaseRelationsServiceImpl")
     private HandlerObjectFileRelationsService handlerC7nReleaseRelationsService;
     @Autowired
@@ -222,15 +225,19 @@ public class DevopsGitServiceImpl implements DevopsGitService {
                 devopsGitRepository.listBranches(applicationId, pageRequest, params);
         Page<BranchDTO> page = new Page<>();
         BeanUtils.copyProperties(branches, page);
+        Map<Long, Long> gitlabUserIds = new HashMap<>();
+        branches.forEach(t -> {
+            gitlabUserIds.computeIfAbsent(t.getUserId(), devopsGitRepository::getUserIdByGitlabUserId);
+            gitlabUserIds.computeIfAbsent(t.getLastCommitUser(), devopsGitRepository::getUserIdByGitlabUserId);
+        });
+        Map<Long, UserE> users = iamUserCache.listByIds(gitlabUserIds.values());
         page.setContent(branches.parallelStream().map(t -> {
             Issue issue = null;
             if (t.getIssueId() != null) {
                 issue = agileRepository.queryIssue(projectId, t.getIssueId());
             }
-            UserE userE = iamRepository.queryUserByUserId(
-                    devopsGitRepository.getUserIdByGitlabUserId(t.getUserId()));
-            UserE commitUserE = iamRepository.queryUserByUserId(
-                    devopsGitRepository.getUserIdByGitlabUserId(t.getLastCommitUser()));
+            UserE userE = users.get(gitlabUserIds.get(t.getUserId()));
+            UserE commitUserE = users.get(gitlabUserIds.get(t.getLastCommitUser()));
             String commitUrl = String.format("%s/commit/%s?view=parallel", path, t.getLastCommit());
             return getBranchDTO(t, commitUrl, commitUserE, userE, issue);
         }).collect(Collectors.toList()));
@@ -314,8 +321,18 @@ public class DevopsGitServiceImpl implements DevopsGitService {
 
     @Override
     public Boolean checkTag(Long projectId, Long applicationId, String tagName) {
-        return devopsGitRepository.getTagList(applicationId, getGitlabUserId()).parallelStream()
-                .noneMatch(t -> tagName.equals(t.getName()));
+        return !devopsGitRepository.tagExists(
+                devopsGitRepository.getGitLabId(applicationId), tagName, getGitlabUserId());
+    }
+
+    @Override
+    public void tagSync(PushWebHookDTO pushWebHookDTO) {
+        if (NO_COMMIT_SHA.equals(pushWebHookDTO.getAfter())) {
+            gitlabTagCache.removeTag(pushWebHookDTO.getProjectId(),
+                    pushWebHookDTO.getRef().replaceFirst("^refs/tags/", ""));
+        } else {
+            gitlabTagCache.invalidate(pushWebHookDTO.getProjectId());
+        }
     }
 
     @Override
@@ -391,13 +408,13 @@ public class DevopsGitServiceImpl implements DevopsGitService {
 
         try {
             //更新本地库到最新提交
-            handDevopsEnvGitRepository(path, url, devopsEnvironmentE.getEnvIdRsa(), devopsEnvCommitE.getCommitSha());
+            gitOpsRepositoryManager.sync(envId, path, url, devopsEnvironmentE.getEnvIdRsa(), devopsEnvCommitE.getCommitSha());
 
             //查询devops-sync tag是否存在，存在则比较tag和最新commit的diff，不存在则识别gitops库下所有文件为新增文件
-            tagNotExist = getDevopsSyncTag(pushWebHookDTO);
+            tagNotExist = !gitOpsRepositoryManager.syncTagExist(envId);
 
             if (tagNotExist) {
-                operationFiles.addAll(FileUtil.getFilesPath(path));
+                operationFiles.addAll(gitOpsRepositoryManager.listFiles(envId, devopsEnvCommitE.getCommitSha()));
                 operationFiles.parallelStream().forEach(file -> {
                     List<DevopsEnvFileResourceE> devopsEnvFileResourceES = devopsEnvFileResourceRepository
                             .queryByEnvIdAndPath(devopsEnvironmentE.getId(), file);
@@ -406,7 +423,7 @@ public class DevopsGitServiceImpl implements DevopsGitService {
                     }
                 });
             } else {
-                handleDiffs(gitLabProjectId, operationFiles, deletedFiles, beforeSync, beforeSyncDelete, devopsEnvironmentE, devopsEnvCommitE);
+                handleDiffs(operationFiles, deletedFiles, beforeSync, beforeSyncDelete, devopsEnvironmentE, devopsEnvCommitE);
             }
             List<C7nHelmRelease> c7nHelmReleases = new ArrayList<>();
             List<V1Service> v1Services = new ArrayList<>();
@@ -426,17 +443,18 @@ public class DevopsGitServiceImpl implements DevopsGitService {
             handlerIngressRelationsService.handlerRelations(objectPath, beforeSyncFileResource, v1beta1Ingresses, envId, projectId, path);
             handlerC7nCertificationRelationsService.handlerRelations(objectPath, beforeSyncFileResource, c7nCertifications, envId, projectId, path);
 
-            //新增解释文件记录
+            //新增解释文件记录，一次遍历历史得到所有文件的最近提交
+            Map<String, String> latestCommits = gitOpsRepositoryManager.latestCommits(envId, operationFiles);
             for (String filePath : operationFiles) {
                 DevopsEnvFileE devopsEnvFileE = devopsEnvFileRepository.queryByEnvAndPath(devopsEnvironmentE.getId(), filePath);
                 if (devopsEnvFileE == null) {
                     devopsEnvFileE = new DevopsEnvFileE();
-                    devopsEnvFileE.setDevopsCommit(GitUtil.getFileLatestCommit(path + GIT_SUFFIX, filePath));
+                    devopsEnvFileE.setDevopsCommit(latestCommits.getOrDefault(filePath, ""));
                     devopsEnvFileE.setFilePath(filePath);
                     devopsEnvFileE.setEnvId(devopsEnvCommitE.getEnvId());
                     devopsEnvFileRepository.create(devopsEnvFileE);
                 } else {
-                    devopsEnvFileE.setDevopsCommit(GitUtil.getFileLatestCommit(path + GIT_SUFFIX, filePath));
+                    devopsEnvFileE.setDevopsCommit(latestCommits.getOrDefault(filePath, ""));
                     devopsEnvFileRepository.update(devopsEnvFileE);
                 }
             }
@@ -511,11 +529,11 @@ public class DevopsGitServiceImpl implements DevopsGitService {
         }
     }
 
-    private void handleDiffs(Integer gitLabProjectId, List<String> operationFiles, List<String> deletedFiles, Set<DevopsEnvFileResourceE> beforeSync, Set<DevopsEnvFileResourceE> beforeSyncDelete, DevopsEnvironmentE devopsEnvironmentE, DevopsEnvCommitE devopsEnvCommitE) {
-        //获取将此次最新提交与tag作比价得到diff
-        CompareResultsE compareResultsE = devopsGitRepository
-                .getCompareResults(gitLabProjectId, GitUtil.DEV_OPS_SYNC_TAG, devopsEnvCommitE.getCommitSha());
-        compareResultsE.getDiffs().forEach(t -> {
+    private void handleDiffs(List<String> operationFiles, List<String> deletedFiles, Set<DevopsEnvFileResourceE> beforeSync, Set<DevopsEnvFileResourceE> beforeSyncDelete, DevopsEnvironmentE devopsEnvironmentE, DevopsEnvCommitE devopsEnvCommitE) {
+        //在本地库中将此次最新提交与tag作比较得到diff
+        List<DiffE> diffs = gitOpsRepositoryManager
+                .diffFromSyncTag(devopsEnvironmentE.getId(), devopsEnvCommitE.getCommitSha());
+        diffs.forEach(t -> {
             if (t.getNewPath().contains("yaml") || t.getNewPath().contains("yml")) {
                 if (t.getDeletedFile()) {
                     deletedFiles.add(t.getNewPath());
@@ -553,63 +571,53 @@ public class DevopsGitServiceImpl implements DevopsGitService {
                                                         List<DevopsEnvFileResourceE> beforeSyncDelete,
                                                         List<C7nCertification> c7nCertifications) {
         Map<String, String> objectPath = new HashMap<>();
-
-        files.stream().forEach(filePath -> {
-            Yaml yaml = new Yaml();
-            File file = new File(String.format("%s/%s", path, filePath));
-            try {
-                for (Object data : yaml.loadAll(new FileInputStream(file))) {
-                    JSONObject jsonObject = new JSONObject((Map<String, Object>) data);
-                    String type = jsonObject.get("kind").toString();
-                    switch (type) {
-                        case C7NHELM_RELEASE:
-                            //反序列文件为c7nHelmRelease对象,
-                            ConvertK8sObjectService<C7nHelmRelease> convertC7nHelmRelease = new ConvertC7nHelmReleaseServiceImpl();
-                            convertC7nHelmRelease.setT(new C7nHelmRelease());
-                            C7nHelmRelease c7nHelmRelease = convertC7nHelmRelease.SerializableObject(jsonObject.toJSONString(), filePath, objectPath);
-                            //校验参数校验参数是否合法
-                            convertC7nHelmRelease.checkParameters(c7nHelmRelease, objectPath);
-                            //校验对象是否在其它文件中已经定义
-                            convertC7nHelmRelease.checkIfExist(c7nHelmReleases, envId, beforeSyncDelete, objectPath, c7nHelmRelease);
-                            break;
-                        case INGRESS:
-                            //反序列文件为V1beta1ingress对象,
-                            ConvertK8sObjectService<V1beta1Ingress> convertV1beta1Ingress = new ConvertV1beta1IngressServiceImpl();
-                            convertV1beta1Ingress.setT(new V1beta1Ingress());
-                            V1beta1Ingress v1beta1Ingress = convertV1beta1Ingress.SerializableObject(jsonObject.toJSONString(), filePath, objectPath);
-                            //校验参数校验参数是否合法
-                            convertV1beta1Ingress.checkParameters(v1beta1Ingress, objectPath);
-                            //校验对象是否在其它文件中已经定义
-                            convertV1beta1Ingress.checkIfExist(v1beta1Ingresses, envId, beforeSyncDelete, objectPath, v1beta1Ingress);
-                            break;
-                        case SERVICE:
-                            //反序列文件为V1service对象,
-                            ConvertK8sObjectService<V1Service> convertV1Service = new ConvertV1ServiceServiceImpl();
-                            convertV1Service.setT(new V1Service());
-                            V1Service v1Service = convertV1Service.SerializableObject(jsonObject.toJSONString(), filePath, objectPath);
-                            //校验参数校验参数是否合法
-                            convertV1Service.checkParameters(v1Service, objectPath);
-                            //校验对象是否在其它文件中已经定义
-                            convertV1Service.checkIfExist(v1Services, envId, beforeSyncDelete, objectPath, v1Service);
-                            break;
-                        case CERTIFICATE:
-                            //反序列文件为C7nCertification对象,
-                            ConvertK8sObjectService<C7nCertification> convertC7nCertification = new ConvertC7nCertificationServiceImpl();
-                            convertC7nCertification.setT(new C7nCertification());
-                            C7nCertification c7nCertification = convertC7nCertification.SerializableObject(jsonObject.toJSONString(), filePath, objectPath);
-                            //校验参数校验参数是否合法
-                            convertC7nCertification.checkParameters(c7nCertification, objectPath);
-                            //校验对象是否在其它文件中已经定义
-                            convertC7nCertification.checkIfExist(c7nCertifications, envId, beforeSyncDelete, objectPath, c7nCertification);
-                            break;
-                        default:
-                            break;
-                    }
+        ConvertK8sObjectService<C7nHelmRelease> convertC7nHelmRelease = new ConvertC7nHelmReleaseServiceImpl();
+        ConvertK8sObjectService<V1beta1Ingress> convertV1beta1Ingress = new ConvertV1beta1IngressServiceImpl();
+        ConvertK8sObjectService<V1Service> convertV1Service = new ConvertV1ServiceServiceImpl();
+        ConvertK8sObjectService<C7nCertification> convertC7nCertification = new ConvertC7nCertificationServiceImpl();
+
+        //并行解析文件，再按文件顺序依次校验，保证报错的文件和对象重复的判断与串行处理时一致
+        for (GitOpsObjectParser.ParsedFile parsedFile : GitOpsObjectParser.parse(path, files)) {
+            if (parsedFile.getError() != null) {
+                throw parsedFile.getError();
+            }
+            String filePath = parsedFile.getFilePath();
+            for (GitOpsObjectParser.ParsedObject parsedObject : parsedFile.getObjects()) {
+                objectPath.put(TypeUtil.objToString(parsedObject.getObject().hashCode()), filePath);
+                switch (parsedObject.getKind()) {
+                    case C7NHELM_RELEASE:
+                        C7nHelmRelease c7nHelmRelease = (C7nHelmRelease) parsedObject.getObject();
+                        //校验参数校验参数是否合法
+                        convertC7nHelmRelease.checkParameters(c7nHelmRelease, objectPath);
+                        //校验对象是否在其它文件中已经定义
+                        convertC7nHelmRelease.checkIfExist(c7nHelmReleases, envId, beforeSyncDelete, objectPath, c7nHelmRelease);
+                        break;
+                    case INGRESS:
+                        V1beta1Ingress v1beta1Ingress = (V1beta1Ingress) parsedObject.getObject();
+                        //校验参数校验参数是否合法
+                        convertV1beta1Ingress.checkParameters(v1beta1Ingress, objectPath);
+                        //校验对象是否在其它文件中已经定义
+                        convertV1beta1Ingress.checkIfExist(v1beta1Ingresses, envId, beforeSyncDelete, objectPath, v1beta1Ingress);
+                        break;
+                    case SERVICE:
+                        V1Service v1Service = (V1Service) parsedObject.getObject();
+                        //校验参数校验参数是否合法
+                        convertV1Service.checkParameters(v1Service, objectPath);
+                        //校验对象是否在其它文件中已经定义
+                        convertV1Service.checkIfExist(v1Services, envId, beforeSyncDelete, objectPath, v1Service);
+                        break;
+                    case CERTIFICATE:
+                        C7nCertification c7nCertification = (C7nCertification) parsedObject.getObject();
+                        //校验参数校验参数是否合法
+                        convertC7nCertification.checkParameters(c7nCertification, objectPath);
+                        //校验对象是否在其它文件中已经定义
+                        convertC7nCertification.checkIfExist(c7nCertifications, envId, beforeSyncDelete, objectPath, c7nCertification);
+                        break;
+                    default:
+                        break;
                 }
-            } catch (FileNotFoundException e) {
-                throw new CommonException(e.getMessage(), e);
             }
-        });
+        }
         return objectPath;
     }
 
@@ -683,35 +691,21 @@ public class DevopsGitServiceImpl implements DevopsGitService {
             devopsEnvFileErrorE = new DevopsEnvFileErrorE();
             devopsEnvFileErrorE.setFilePath(filePath);
             devopsEnvFileErrorE.setEnvId(envId);
-            devopsEnvFileErrorE.setCommit(GitUtil.getFileLatestCommit(path + GIT_SUFFIX, filePath));
+            devopsEnvFileErrorE.setCommit(gitOpsRepositoryManager.latestCommit(envId, filePath));
         } else {
             devopsEnvFileErrorE.setFilePath(filePath);
-            devopsEnvFileErrorE.setCommit(GitUtil.getFileLatestCommit(path + GIT_SUFFIX, filePath));
+            devopsEnvFileErrorE.setCommit(gitOpsRepositoryManager.latestCommit(envId, filePath));
         }
         return devopsEnvFileErrorE;
     }
 
     private boolean getDevopsSyncTag(PushWebHookDTO pushWebHookDTO) {
-        return devopsGitRepository.getGitLabTags(pushWebHookDTO.getProjectId(), pushWebHookDTO.getUserId()).parallelStream().noneMatch(tagDO -> tagDO.getName().equals(GitUtil.DEV_OPS_SYNC_TAG));
+        return !devopsGitRepository.tagExists(
+                pushWebHookDTO.getProjectId(), GitUtil.DEV_OPS_SYNC_TAG, pushWebHookDTO.getUserId());
 
     }
 
 
-    private void handDevopsEnvGitRepository(String path, String url, String envIdRsa, String commit) {
-        File file = new File(path);
-        GitUtil gitUtil = new GitUtil(envIdRsa);
-        final String repoPath = path + GIT_SUFFIX;
-        if (!file.exists()) {
-            gitUtil.cloneBySsh(path, url);
-            gitUtil.checkout(repoPath, commit);
-        } else {
-            gitUtil.checkout(repoPath, "master");
-            gitUtil.pullBySsh(repoPath);
-            gitUtil.checkout(repoPath, commit);
-        }
-    }
-
-
     @Override
     public void initMockService(SagaClient sagaClient) {
         this.sagaClient = sagaClient;
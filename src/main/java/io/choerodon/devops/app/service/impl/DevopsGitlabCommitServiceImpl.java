@@ -1,5 +1,9 @@
 package io.choerodon.devops.app.service.impl;
 
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
@@ -12,11 +16,17 @@ import io.choerodon.devops.domain.application.repository.ApplicationRepository;
 import io.choerodon.devops.domain.application.repository.DevopsGitlabCommitRepository;
 import io.choerodon.devops.domain.application.repository.IamRepository;
 import io.choerodon.devops.domain.application.repository.UserAttrRepository;
+import io.choerodon.devops.infra.cache.IamUserCache;
 
 
 @Service
 public class DevopsGitlabCommitServiceImpl implements DevopsGitlabCommitService {
 
+    /**
+     * 单条insert语句写入的最大commit数
+     */
+    private static final int BATCH_SIZE = 500;
+
     @Autowired
     DevopsGitlabCommitRepository devopsGitlabCommitRepository;
     @Autowired
@@ -25,23 +35,37 @@ public class DevopsGitlabCommitServiceImpl implements DevopsGitlabCommitService
     UserAttrRepository userAttrRepository;
     @Autowired
     IamRepository iamRepository;
+    @Autowired
+    IamUserCache iamUserCache;
 
+    /**
+     * 一次推送的commit作者邮箱去重后通过缓存解析为用户，commit按批写入，已存在的commit sha跳过
+     */
     @Override
     public void create(PushWebHookDTO pushWebHookDTO, String token) {
         ApplicationE applicationE = applicationRepository.queryByToken(token);
-        pushWebHookDTO.getCommits().parallelStream().forEach(commitDTO -> {
+        String ref = pushWebHookDTO.getRef().split("/")[2];
+        Map<String, UserE> users = iamUserCache.listByEmails(applicationE.getProjectE().getId(),
+                pushWebHookDTO.getCommits().stream()
+                        .filter(commitDTO -> commitDTO.getAuthor() != null)
+                        .map(commitDTO -> commitDTO.getAuthor().getEmail())
+                        .collect(Collectors.toList()));
+        List<DevopsGitlabCommitE> devopsGitlabCommitES = pushWebHookDTO.getCommits().stream().map(commitDTO -> {
             DevopsGitlabCommitE devopsGitlabCommitE = new DevopsGitlabCommitE();
             devopsGitlabCommitE.setAppId(applicationE.getId());
             devopsGitlabCommitE.setCommitContent(commitDTO.getMessage());
             devopsGitlabCommitE.setCommitSha(commitDTO.getId());
-            devopsGitlabCommitE.setRef(pushWebHookDTO.getRef().split("/")[2]);
-            UserE userE = iamRepository.queryByEmail(applicationE.getProjectE().getId(), commitDTO.getAuthor().getEmail());
+            devopsGitlabCommitE.setRef(ref);
+            UserE userE = commitDTO.getAuthor() == null ? null : users.get(commitDTO.getAuthor().getEmail());
             if (userE != null) {
                 devopsGitlabCommitE.setUserId(userE.getId());
             }
             devopsGitlabCommitE.setCommitDate(commitDTO.getTimestamp());
-            devopsGitlabCommitRepository.create(devopsGitlabCommitE);
-        });
+            return devopsGitlabCommitE;
+        }).collect(Collectors.toList());
+        for (int i = 0; i < devopsGitlabCommitES.size(); i += BATCH_SIZE) {
+            devopsGitlabCommitRepository.batchCreate(
+                    devopsGitlabCommitES.subList(i, Math.min(i + BATCH_SIZE, devopsGitlabCommitES.size())));
+        }
     }
 }
-
@@ -12,6 +12,7 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.stereotype.Service;
 
 import io.choerodon.asgard.saga.annotation.Saga;
@@ -22,11 +23,17 @@ import io.choerodon.core.exception.CommonException;
 import io.choerodon.devops.api.dto.*;
 import io.choerodon.devops.app.service.DevopsGitlabPipelineService;
 import io.choerodon.devops.domain.application.entity.*;
+import io.choerodon.devops.domain.application.entity.gitlab.GitlabJobE;
+import io.choerodon.devops.domain.application.entity.gitlab.GitlabPipelineE;
 import io.choerodon.devops.domain.application.entity.iam.UserE;
 import io.choerodon.devops.domain.application.repository.*;
 import io.choerodon.devops.domain.application.valueobject.Organization;
+import io.choerodon.devops.infra.cache.IamUserCache;
+import io.choerodon.devops.infra.cache.SonarLinkCache;
 import io.choerodon.devops.infra.common.util.TypeUtil;
+import io.choerodon.devops.infra.common.util.enums.PipelineStatus;
 import io.choerodon.devops.infra.dataobject.DevopsGitlabPipelineDO;
+import io.choerodon.devops.infra.dataobject.DevopsGitlabPipelineJobDO;
 import io.choerodon.devops.infra.dataobject.gitlab.CommitStatuseDO;
 import io.choerodon.mybatis.pagehelper.domain.PageRequest;
 
@@ -34,6 +41,8 @@ import io.choerodon.mybatis.pagehelper.domain.PageRequest;
 public class DevopsGitlabPipelineServiceImpl implements DevopsGitlabPipelineService {
 
     private static final Integer ADMIN = 1;
+    private static final String[] GITLAB_DATE_PATTERNS = {
+            "yyyy-MM-dd HH:mm:ss z", "yyyy-MM-dd HH:mm:ss Z", "yyyy-MM-dd'T'HH:mm:ss.SSSXXX", "yyyy-MM-dd'T'HH:mm:ssXXX"};
     private ObjectMapper objectMapper = new ObjectMapper();
     @Value("${services.gitlab.url}")
     private String gitlabUrl;
@@ -54,12 +63,19 @@ public class DevopsGitlabPipelineServiceImpl implements DevopsGitlabPipelineServ
     private ApplicationVersionRepository applicationVersionRepository;
     @Autowired
     private SagaClient sagaClient;
+    @Autowired
+    private SonarLinkCache sonarLinkCache;
+    @Autowired
+    private IamUserCache iamUserCache;
 
     @Override
     @Saga(code = "devops-gitlab-pipeline", description = "gitlab-pipeline", inputSchemaClass = PipelineWebHookDTO.class)
     public void create(PipelineWebHookDTO pipelineWebHookDTO, String token) {
         pipelineWebHookDTO.setToken(token);
         ApplicationE applicationE = applicationRepository.queryByToken(token);
+        //流水线中的代码检查可能创建或更新了sonarqube项目
+        sonarLinkCache.refresh(applicationE.getId());
+        savePipeline(applicationE, pipelineWebHookDTO);
         try {
             String input;
             input = objectMapper.writeValueAsString(pipelineWebHookDTO);
@@ -77,7 +93,7 @@ public class DevopsGitlabPipelineServiceImpl implements DevopsGitlabPipelineServ
         if (pipelineWebHookDTO.getUser().getUsername().equals("admin1")) {
             pipelineWebHookDTO.getUser().setUsername("admin");
         }
-        UserE userE = iamRepository.queryByLoginName(pipelineWebHookDTO.getUser().getUsername());
+        UserE userE = iamUserCache.queryByLoginName(pipelineWebHookDTO.getUser().getUsername());
         Integer gitlabUserId = ADMIN;
         if (userE != null) {
             gitlabUserId = TypeUtil.objToInteger(userAttrRepository.queryById(userE.getId()).getGitlabUserId());
@@ -88,7 +104,9 @@ public class DevopsGitlabPipelineServiceImpl implements DevopsGitlabPipelineServ
         if (devopsGitlabPipelineE == null) {
             devopsGitlabPipelineE = new DevopsGitlabPipelineE();
             devopsGitlabPipelineE.setAppId(applicationE.getId());
-            devopsGitlabPipelineE.setPipelineCreateUserId(userE.getId());
+            if (userE != null) {
+                devopsGitlabPipelineE.setPipelineCreateUserId(userE.getId());
+            }
             devopsGitlabPipelineE.setPipelineId(pipelineWebHookDTO.getObjectAttributes().getId());
             devopsGitlabPipelineE.setStatus(pipelineWebHookDTO.getObjectAttributes()
                     .getDetailedStatus());
@@ -111,11 +129,26 @@ public class DevopsGitlabPipelineServiceImpl implements DevopsGitlabPipelineServ
 
     @Override
     public void updateStages(JobWebHookDTO jobWebHookDTO) {
+        Long pipelineId = jobWebHookDTO.getPipelineId();
+        if (pipelineId == null && jobWebHookDTO.getCommit() != null) {
+            pipelineId = jobWebHookDTO.getCommit().getId();
+        }
+        if (pipelineId != null && jobWebHookDTO.getBuildId() != null) {
+            DevopsGitlabPipelineJobDO job = new DevopsGitlabPipelineJobDO();
+            job.setJobId(jobWebHookDTO.getBuildId());
+            job.setName(jobWebHookDTO.getBuildName());
+            job.setStage(jobWebHookDTO.getBuildStage());
+            job.setStatus(jobWebHookDTO.getBuildStatus());
+            job.setStartedAt(parseGitlabDate(jobWebHookDTO.getBuildStartedAt()));
+            job.setFinishedAt(parseGitlabDate(jobWebHookDTO.getBuildFinishedAt()));
+            devopsGitlabPipelineRepository.saveJobs(pipelineId, Collections.singletonList(job));
+        }
         DevopsGitlabCommitE devopsGitlabCommitE = devopsGitlabCommitRepository.queryBySha(jobWebHookDTO.getSha());
         if (!jobWebHookDTO.getBuildStatus().equals("created")) {
             if (devopsGitlabCommitE != null) {
                 DevopsGitlabPipelineE devopsGitlabPipelineE = devopsGitlabPipelineRepository.queryByCommitId(devopsGitlabCommitE.getId());
-                if (devopsGitlabPipelineE != null) {
+                // pipeline webhook同步写入的记录在saga补齐commit状态之前没有stage，由saga写入完整的状态
+                if (devopsGitlabPipelineE != null && devopsGitlabPipelineE.getStage() != null) {
                     List<CommitStatuseDO> commitStatuseDOS = JSONArray.parseArray(devopsGitlabPipelineE.getStage(), CommitStatuseDO.class);
                     commitStatuseDOS.parallelStream().filter(commitStatuseDO -> jobWebHookDTO.getBuildName().equals(commitStatuseDO.getName())).forEach(commitStatuseDO -> {
                         commitStatuseDO.setStatus(jobWebHookDTO.getBuildStatus());
@@ -148,8 +181,7 @@ public class DevopsGitlabPipelineServiceImpl implements DevopsGitlabPipelineServ
             } else {
                 versions.add("");
             }
-            List<CommitStatuseDO> commitStatuseDOS = JSONArray.parseArray(devopsGitlabPipelineDO.getStage(), CommitStatuseDO.class);
-            pipelineTimes.add(getPipelineTime(commitStatuseDOS));
+            pipelineTimes.add(getPipelineTime(listStages(devopsGitlabPipelineDO.getStage())));
         });
         pipelineTimeDTO.setCreateDates(createDates);
         pipelineTimeDTO.setPipelineTime(pipelineTimes);
@@ -230,6 +262,12 @@ public class DevopsGitlabPipelineServiceImpl implements DevopsGitlabPipelineServ
         ApplicationE applicationE = applicationRepository.query(appId);
         ProjectE projectE = iamRepository.queryIamProject(applicationE.getProjectE().getId());
         Organization organization = iamRepository.queryOrganizationById(projectE.getOrganization().getId());
+        List<Long> userIds = new ArrayList<>();
+        devopsGitlabPipelineDOS.getContent().forEach(devopsGitlabPipelineDO -> {
+            userIds.add(devopsGitlabPipelineDO.getCommitUserId());
+            userIds.add(devopsGitlabPipelineDO.getPipelineCreateUserId());
+        });
+        Map<Long, UserE> users = iamUserCache.listByIds(userIds);
         devopsGitlabPipelineDOS.getContent().forEach(devopsGitlabPipelineDO -> {
             DevopsGitlabPipelineDTO devopsGitlabPipelineDTO = new DevopsGitlabPipelineDTO();
             if (devopsGitlabPipelineDO.getPipelineId().equals(refWithPipelineIds.get(devopsGitlabPipelineDO.getRef()))) {
@@ -237,11 +275,11 @@ public class DevopsGitlabPipelineServiceImpl implements DevopsGitlabPipelineServ
             }
             devopsGitlabPipelineDTO.setCommit(devopsGitlabPipelineDO.getSha());
             devopsGitlabPipelineDTO.setCommitContent(devopsGitlabPipelineDO.getContent());
-            UserE userE = iamRepository.queryById(devopsGitlabPipelineDO.getCommitUserId());
+            UserE userE = users.get(devopsGitlabPipelineDO.getCommitUserId());
             if (userE != null) {
                 devopsGitlabPipelineDTO.setCommitUserUrl(userE.getImageUrl());
             }
-            UserE newUserE = iamRepository.queryById(devopsGitlabPipelineDO.getPipelineCreateUserId());
+            UserE newUserE = users.get(devopsGitlabPipelineDO.getPipelineCreateUserId());
             if (newUserE != null) {
                 devopsGitlabPipelineDTO.setPipelineUserUrl(newUserE.getImageUrl());
             }
@@ -253,7 +291,7 @@ public class DevopsGitlabPipelineServiceImpl implements DevopsGitlabPipelineServ
             if (applicationVersionE != null) {
                 devopsGitlabPipelineDTO.setVersion(applicationVersionE.getVersion());
             }
-            List<CommitStatuseDO> commitStatuseDOS = JSONArray.parseArray(devopsGitlabPipelineDO.getStage(), CommitStatuseDO.class);
+            List<CommitStatuseDO> commitStatuseDOS = listStages(devopsGitlabPipelineDO.getStage());
             devopsGitlabPipelineDTO.setPipelineTime(getPipelineTime(commitStatuseDOS));
             devopsGitlabPipelineDTO.setStages(commitStatuseDOS);
             devopsGitlabPipelineDTO.setGitlabUrl(gitlabUrl + "/"
@@ -266,6 +304,161 @@ public class DevopsGitlabPipelineServiceImpl implements DevopsGitlabPipelineServ
     }
 
 
+    @Override
+    public void syncPipelines(ApplicationE applicationE, Integer gitlabUserId) {
+        Integer gitlabProjectId = applicationE.getGitlabProjectE().getId();
+        List<GitlabPipelineE> gitlabPipelineES = gitlabProjectRepository.listPipeline(gitlabProjectId, gitlabUserId);
+        if (gitlabPipelineES == null || gitlabPipelineES.isEmpty()) {
+            return;
+        }
+        Set<Long> syncedPipelineIds = new HashSet<>(
+                devopsGitlabPipelineRepository.listSyncedPipelineIds(applicationE.getId()));
+        for (GitlabPipelineE gitlabPipeline : gitlabPipelineES) {
+            if (syncedPipelineIds.contains(gitlabPipeline.getId().longValue())) {
+                continue;
+            }
+            GitlabPipelineE gitlabPipelineE = gitlabProjectRepository
+                    .getPipeline(gitlabProjectId, gitlabPipeline.getId(), gitlabUserId);
+            DevopsGitlabPipelineE devopsGitlabPipelineE = devopsGitlabPipelineRepository
+                    .queryByGitlabPipelineId(gitlabPipelineE.getId().longValue());
+            boolean created = devopsGitlabPipelineE == null;
+            if (created) {
+                devopsGitlabPipelineE = new DevopsGitlabPipelineE();
+                devopsGitlabPipelineE.setAppId(applicationE.getId());
+                devopsGitlabPipelineE.setPipelineId(gitlabPipelineE.getId().longValue());
+                devopsGitlabPipelineE.setStatus(detailedStatus(gitlabPipelineE.getStatus()));
+                devopsGitlabPipelineE.setPipelineCreationDate(parseGitlabDate(gitlabPipelineE.getCreated_at()));
+                devopsGitlabPipelineE.setStage(JSONArray.toJSONString(gitlabProjectRepository
+                        .getCommitStatuse(gitlabProjectId, gitlabPipelineE.getSha(), gitlabUserId)));
+                DevopsGitlabCommitE devopsGitlabCommitE = devopsGitlabCommitRepository.queryBySha(gitlabPipelineE.getSha());
+                if (devopsGitlabCommitE != null) {
+                    devopsGitlabPipelineE.initDevopsGitlabCommitEById(devopsGitlabCommitE.getId());
+                }
+            }
+            devopsGitlabPipelineE.setRef(gitlabPipelineE.getRef());
+            devopsGitlabPipelineE.setSha(gitlabPipelineE.getSha());
+            devopsGitlabPipelineE.setPipelineStatus(gitlabPipelineE.getStatus() == null
+                    ? null : gitlabPipelineE.getStatus().toValue());
+            if (gitlabPipelineE.getUser() != null) {
+                setCreateUser(devopsGitlabPipelineE, gitlabPipelineE.getUser().getUsername());
+            }
+            if (created) {
+                savePipeline(devopsGitlabPipelineE);
+            } else {
+                devopsGitlabPipelineRepository.update(devopsGitlabPipelineE);
+            }
+            List<GitlabJobE> gitlabJobES = gitlabProjectRepository
+                    .listJobs(gitlabProjectId, gitlabPipelineE.getId(), gitlabUserId);
+            if (gitlabJobES != null) {
+                devopsGitlabPipelineRepository.saveJobs(devopsGitlabPipelineE.getPipelineId(),
+                        gitlabJobES.stream().map(gitlabJobE -> {
+                            DevopsGitlabPipelineJobDO job = new DevopsGitlabPipelineJobDO();
+                            job.setJobId(gitlabJobE.getId().longValue());
+                            job.setName(gitlabJobE.getName());
+                            job.setStage(gitlabJobE.getStage());
+                            job.setStatus(gitlabJobE.getStatus() == null ? null : gitlabJobE.getStatus().toValue());
+                            job.setJobCreationDate(gitlabJobE.getCreatedAt());
+                            job.setStartedAt(gitlabJobE.getStartedAt());
+                            job.setFinishedAt(gitlabJobE.getFinishedAt());
+                            return job;
+                        }).collect(Collectors.toList()));
+            }
+        }
+    }
+
+    /**
+     * 根据pipeline webhook更新pipeline的分支、状态、触发用户和job，流水线列表直接从这里查询
+     */
+    private void savePipeline(ApplicationE applicationE, PipelineWebHookDTO pipelineWebHookDTO) {
+        PipelineWebHookAttributesDTO attributes = pipelineWebHookDTO.getObjectAttributes();
+        DevopsGitlabPipelineE devopsGitlabPipelineE = new DevopsGitlabPipelineE();
+        devopsGitlabPipelineE.setAppId(applicationE.getId());
+        devopsGitlabPipelineE.setPipelineId(attributes.getId());
+        devopsGitlabPipelineE.setRef(attributes.getRef());
+        devopsGitlabPipelineE.setSha(attributes.getSha());
+        devopsGitlabPipelineE.setStatus(attributes.getDetailedStatus());
+        devopsGitlabPipelineE.setPipelineStatus(attributes.getStatus());
+        devopsGitlabPipelineE.setPipelineCreationDate(attributes.getCreatedAt());
+        if (pipelineWebHookDTO.getUser() != null) {
+            setCreateUser(devopsGitlabPipelineE, pipelineWebHookDTO.getUser().getUsername());
+        }
+        savePipeline(devopsGitlabPipelineE);
+        if (pipelineWebHookDTO.getBuilds() != null) {
+            devopsGitlabPipelineRepository.saveJobs(attributes.getId(),
+                    pipelineWebHookDTO.getBuilds().stream().map(build -> {
+                        DevopsGitlabPipelineJobDO job = new DevopsGitlabPipelineJobDO();
+                        job.setJobId(build.getId());
+                        job.setName(build.getName());
+                        job.setStage(build.getStage());
+                        job.setStatus(build.getStatus());
+                        job.setJobCreationDate(parseGitlabDate(build.getCreatedAt()));
+                        job.setStartedAt(parseGitlabDate(build.getStartedAt()));
+                        job.setFinishedAt(parseGitlabDate(build.getFinishedAt()));
+                        return job;
+                    }).collect(Collectors.toList()));
+        }
+    }
+
+    private void savePipeline(DevopsGitlabPipelineE devopsGitlabPipelineE) {
+        DevopsGitlabPipelineE existedPipelineE = devopsGitlabPipelineRepository
+                .queryByGitlabPipelineId(devopsGitlabPipelineE.getPipelineId());
+        if (existedPipelineE == null) {
+            try {
+                devopsGitlabPipelineRepository.create(devopsGitlabPipelineE);
+                return;
+            } catch (DuplicateKeyException e) {
+                // 同一pipeline的webhook并发写入
+                existedPipelineE = devopsGitlabPipelineRepository
+                        .queryByGitlabPipelineId(devopsGitlabPipelineE.getPipelineId());
+            }
+        }
+        devopsGitlabPipelineE.setId(existedPipelineE.getId());
+        devopsGitlabPipelineRepository.update(devopsGitlabPipelineE);
+    }
+
+    private void setCreateUser(DevopsGitlabPipelineE devopsGitlabPipelineE, String gitlabUserName) {
+        devopsGitlabPipelineE.setPipelineCreateUserName(gitlabUserName);
+        UserE userE = iamUserCache.queryByLoginName("admin1".equals(gitlabUserName) ? "admin" : gitlabUserName);
+        if (userE != null) {
+            devopsGitlabPipelineE.setPipelineCreateUserId(userE.getId());
+        }
+    }
+
+    /**
+     * pipeline webhook先同步写入pipeline，stage由saga中查询的commit状态补齐，补齐之前按没有状态处理
+     */
+    private static List<CommitStatuseDO> listStages(String stage) {
+        return stage == null ? new ArrayList<>() : JSONArray.parseArray(stage, CommitStatuseDO.class);
+    }
+
+    /**
+     * 与webhook中的detailed_status保持一致，用于pipeline的统计
+     */
+    private static String detailedStatus(PipelineStatus pipelineStatus) {
+        if (pipelineStatus == null) {
+            return null;
+        }
+        return pipelineStatus == PipelineStatus.SUCCESS ? "passed" : pipelineStatus.toValue();
+    }
+
+    /**
+     * webhook中的时间形如2018-09-28 06:33:21 UTC，api返回的时间为ISO 8601格式
+     */
+    private static Date parseGitlabDate(String date) {
+        if (date == null || date.isEmpty()) {
+            return null;
+        }
+        for (String pattern : GITLAB_DATE_PATTERNS) {
+            try {
+                return new SimpleDateFormat(pattern).parse(date);
+            } catch (ParseException e) {
+                // 尝试下一种格式
+            }
+        }
+        return null;
+    }
+
+
     public String getDeployTime(Long diff) {
         float num = (float) diff / (60 * 1000);
         DecimalFormat df = new DecimalFormat("0.00");
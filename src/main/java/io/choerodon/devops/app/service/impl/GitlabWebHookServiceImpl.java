@@ -59,6 +59,10 @@ public class GitlabWebHookServiceImpl implements GitlabWebHookService {
                 devopsGitService.branchSync(pushWebHookDTO, token);
                 devopsGitlabCommitService.create(pushWebHookDTO, token);
                 break;
+            case "tag_push":
+                PushWebHookDTO tagPushWebHookDTO = JSONArray.parseObject(body, PushWebHookDTO.class);
+                devopsGitService.tagSync(tagPushWebHookDTO);
+                break;
             case "pipeline":
                 PipelineWebHookDTO pipelineWebHookDTO = JSONArray.parseObject(body, PipelineWebHookDTO.class);
                 devopsGitlabPipelineService.create(pipelineWebHookDTO, token);
@@ -1,35 +1,47 @@
 package io.choerodon.devops.app.service.impl;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Date;
-import java.util.List;
+import java.text.SimpleDateFormat;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 
+import com.alibaba.fastjson.JSONArray;
+import com.zaxxer.hikari.util.DefaultThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import io.choerodon.core.convertor.ConvertHelper;
+import io.choerodon.core.domain.Page;
 import io.choerodon.core.exception.CommonException;
 import io.choerodon.devops.api.dto.ProjectPipelineResultTotalDTO;
+import io.choerodon.devops.app.service.DevopsGitlabPipelineService;
 import io.choerodon.devops.app.service.ProjectPipelineService;
 import io.choerodon.devops.domain.application.entity.ApplicationE;
 import io.choerodon.devops.domain.application.entity.ProjectE;
 import io.choerodon.devops.domain.application.entity.UserAttrE;
-import io.choerodon.devops.domain.application.entity.gitlab.BranchE;
 import io.choerodon.devops.domain.application.entity.gitlab.GitlabJobE;
-import io.choerodon.devops.domain.application.entity.gitlab.GitlabPipelineE;
 import io.choerodon.devops.domain.application.entity.iam.UserE;
 import io.choerodon.devops.domain.application.repository.*;
 import io.choerodon.devops.domain.application.valueobject.Organization;
 import io.choerodon.devops.domain.application.valueobject.PipelineResultV;
 import io.choerodon.devops.domain.application.valueobject.ProjectPipelineResultTotalV;
+import io.choerodon.devops.infra.cache.IamUserCache;
 import io.choerodon.devops.infra.common.util.GitUserNameUtil;
 import io.choerodon.devops.infra.common.util.TypeUtil;
 import io.choerodon.devops.infra.common.util.enums.JobStatus;
+import io.choerodon.devops.infra.dataobject.DevopsGitlabPipelineDO;
+import io.choerodon.devops.infra.dataobject.DevopsGitlabPipelineJobDO;
 import io.choerodon.devops.infra.dataobject.gitlab.CommitStatuseDO;
-import io.choerodon.devops.infra.dataobject.gitlab.TagDO;
 import io.choerodon.mybatis.pagehelper.domain.PageRequest;
 
 /**
@@ -37,9 +49,13 @@ import io.choerodon.mybatis.pagehelper.domain.PageRequest;
  */
 @Service
 public class ProjectPipelineServiceImpl implements ProjectPipelineService {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ProjectPipelineServiceImpl.class);
     private static final String SONAR_QUBE = "sonarqube";
+    private static final String CREATED_AT_PATTERN = "yyyy-MM-dd'T'HH:mm:ss.SSSXXX";
     @Value("${services.gitlab.url}")
     private String gitlabUrl;
+    @Value("${pipeline.sync.threads:2}")
+    private Integer syncThreads;
     @Autowired
     private ApplicationRepository applicationRepository;
     @Autowired
@@ -49,14 +65,36 @@ public class ProjectPipelineServiceImpl implements ProjectPipelineService {
     @Autowired
     private UserAttrRepository userAttrRepository;
     @Autowired
-    private DevopsGitRepository devopsGitRepository;
+    private DevopsGitlabPipelineRepository devopsGitlabPipelineRepository;
+    @Autowired
+    private DevopsGitlabPipelineService devopsGitlabPipelineService;
+    @Autowired
+    private IamUserCache iamUserCache;
+
+    private final Set<Long> syncedAppIds = ConcurrentHashMap.newKeySet();
+    private final Set<Long> syncingAppIds = ConcurrentHashMap.newKeySet();
 
+    private ExecutorService syncer;
+
+    @PostConstruct
+    public void init() {
+        syncer = new ThreadPoolExecutor(syncThreads, syncThreads, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), new DefaultThreadFactory("devops-pipeline-sync", true));
+    }
+
+    @PreDestroy
+    public void destroy() {
+        syncer.shutdownNow();
+    }
 
     public Integer getGitlabUserId() {
         UserAttrE userAttrE = userAttrRepository.queryById(TypeUtil.objToLong(GitUserNameUtil.getUserId()));
         return TypeUtil.objToInteger(userAttrE.getGitlabUserId());
     }
 
+    /**
+     * 流水线从webhook维护的pipeline和job表中分页查询，应用第一次查看时在后台从gitlab补齐历史pipeline
+     */
     @Override
     public ProjectPipelineResultTotalDTO listPipelines(Long projectId, Long appId, PageRequest pageRequest) {
         ProjectPipelineResultTotalV projectPipelineResultTotalV = new ProjectPipelineResultTotalV();
@@ -64,54 +102,39 @@ public class ProjectPipelineServiceImpl implements ProjectPipelineService {
         if (app == null) {
             throw new CommonException("error.application.query");
         }
-        Integer userId = getGitlabUserId();
-        String userName = GitUserNameUtil.getUsername();
-        Integer gitlabProjectId = app.getGitlabProjectE().getId();
-        List<BranchE> branchES = gitlabProjectRepository.listBranches(
-                gitlabProjectId, getGitlabUserId());
-        List<TagDO> tagTotalList = devopsGitRepository.getGitLabTags(gitlabProjectId, userId);
-        if (branchES == null) {
-            return new ProjectPipelineResultTotalDTO();
-        }
-        int page = pageRequest.getPage();
-        int size = pageRequest.getSize();
-        List<GitlabPipelineE> gitlabPipelineEList =
-                gitlabProjectRepository.listPipeline(gitlabProjectId, getGitlabUserId());
-        List<GitlabPipelineE> gitlabPipelineEListByPage = gitlabProjectRepository.listPipelines(
-                gitlabProjectId, page + 1, size, getGitlabUserId());
-        List<String> branchNames = branchES.stream().map(BranchE::getName).collect(Collectors.toList());
-        List<String> tagNames = tagTotalList.stream().map(TagDO::getName).collect(Collectors.toList());
-        branchNames.addAll(tagNames);
+        syncPipelines(app);
+        Page<DevopsGitlabPipelineDO> devopsGitlabPipelineDOS = devopsGitlabPipelineRepository
+                .pagePipelineWithLatest(appId, pageRequest);
         List<PipelineResultV> pipelineResultVS = new ArrayList<>();
-        if (gitlabPipelineEListByPage != null && !gitlabPipelineEListByPage.isEmpty()) {
-            listPipelineResultV(
-                    gitlabPipelineEListByPage,
-                    pipelineResultVS,
-                    app,
-                    gitlabProjectId,
-                    userId,
-                    projectId,
-                    userName);
-            branchNames.forEach(branchName -> {
-                final long[] id = {0};
-                gitlabPipelineEList.parallelStream()
-                        .filter(p -> branchName.contains(p.getRef()) && p.getId() > id[0])
-                        .forEach(r -> id[0] = r.getId());
-                pipelineResultVS.parallelStream().filter(p -> p.getId() == id[0]).forEach(r -> r.setLatest(true));
+        if (!devopsGitlabPipelineDOS.getContent().isEmpty()) {
+            List<Long> pipelineIds = devopsGitlabPipelineDOS.getContent().stream()
+                    .map(DevopsGitlabPipelineDO::getPipelineId).collect(Collectors.toList());
+            Map<Long, List<DevopsGitlabPipelineJobDO>> jobs = devopsGitlabPipelineRepository.listJobs(pipelineIds)
+                    .stream().collect(Collectors.groupingBy(DevopsGitlabPipelineJobDO::getPipelineId));
+            Map<Long, UserE> users = iamUserCache.listByIds(devopsGitlabPipelineDOS.getContent().stream()
+                    .map(DevopsGitlabPipelineDO::getPipelineCreateUserId).collect(Collectors.toList()));
+            ProjectE projectE = iamRepository.queryIamProject(projectId);
+            Organization organization = iamRepository.queryOrganizationById(projectE.getOrganization().getId());
+            String repoUrl = gitlabUrl + "/"
+                    + organization.getCode() + "-" + projectE.getCode() + "/"
+                    + app.getCode() + ".git";
+            devopsGitlabPipelineDOS.getContent().forEach(devopsGitlabPipelineDO -> {
+                PipelineResultV pipelineResultV = getPipelineResultV(app, devopsGitlabPipelineDO,
+                        jobs.getOrDefault(devopsGitlabPipelineDO.getPipelineId(), Collections.emptyList()));
+                UserE userE = users.get(devopsGitlabPipelineDO.getPipelineCreateUserId());
+                if (userE != null) {
+                    pipelineResultV.setImageUrl(userE.getImageUrl());
+                }
+                pipelineResultV.setGitlabUrl(repoUrl);
+                pipelineResultVS.add(pipelineResultV);
             });
-            Collections.sort(pipelineResultVS);
-            int allIndex = gitlabPipelineEList.size();
-            int totalPages = 0;
-            if (size != 0) {
-                totalPages = allIndex % size == 0 ? allIndex / size : allIndex / size + 1;
-            }
-            projectPipelineResultTotalV.setTotalElements(allIndex);
-            projectPipelineResultTotalV.setTotalPages(totalPages);
-            projectPipelineResultTotalV.setNumberOfElements(gitlabPipelineEListByPage.size());
-            projectPipelineResultTotalV.setNumber(page);
-            projectPipelineResultTotalV.setSize(size);
-            projectPipelineResultTotalV.setContent(pipelineResultVS);
         }
+        projectPipelineResultTotalV.setTotalElements((int) devopsGitlabPipelineDOS.getTotalElements());
+        projectPipelineResultTotalV.setTotalPages(devopsGitlabPipelineDOS.getTotalPages());
+        projectPipelineResultTotalV.setNumberOfElements(devopsGitlabPipelineDOS.getNumberOfElements());
+        projectPipelineResultTotalV.setNumber(pageRequest.getPage());
+        projectPipelineResultTotalV.setSize(pageRequest.getSize());
+        projectPipelineResultTotalV.setContent(pipelineResultVS);
         return ConvertHelper.convert(projectPipelineResultTotalV,
                 ProjectPipelineResultTotalDTO.class);
     }
@@ -129,74 +152,103 @@ public class ProjectPipelineServiceImpl implements ProjectPipelineService {
     }
 
 
-    private void listPipelineResultV(List<GitlabPipelineE> gitlabPipelineEListByPage,
-                                     List<PipelineResultV> pipelineResultVS,
-                                     ApplicationE applicationE,
-                                     Integer gitlabProjectId,
-                                     Integer userId,
-                                     Long projectId,
-                                     String userName) {
-
-        gitlabPipelineEListByPage.parallelStream().forEach(gitlabPipeline -> {
-            GitlabPipelineE gitlabPipelineE =
-                    gitlabProjectRepository.getPipeline(gitlabProjectId, gitlabPipeline.getId(), userId);
-            PipelineResultV pipelineResultV = new PipelineResultV();
-            pipelineResultV.setGitlabProjectId(gitlabProjectId.longValue());
-            pipelineResultV.setAppCode(applicationE.getCode());
-            pipelineResultV.setAppName(applicationE.getName());
-            pipelineResultV.setAppStatus(applicationE.getActive());
-            pipelineResultV.setLatest(false);
-            pipelineResultV.setId(gitlabPipelineE.getId().longValue());
-            pipelineResultV.setStatus(gitlabPipelineE.getStatus().toString());
-            pipelineResultV.setCreateUser(gitlabPipelineE.getUser().getUsername());
-            pipelineResultV.setRef(gitlabPipelineE.getRef());
-            pipelineResultV.setSha(gitlabPipelineE.getSha());
-            pipelineResultV.setCreatedAt(gitlabPipelineE.getCreated_at());
-
-            List<GitlabJobE> jobs =
-                    gitlabProjectRepository.listJobs(gitlabProjectId, gitlabPipelineE.getId(), userId);
-            List<CommitStatuseDO> commitStatuseDOS = gitlabProjectRepository
-                    .getCommitStatuse(gitlabProjectId, gitlabPipelineE.getSha(), userId);
-            commitStatuseDOS.stream()
-                    .filter(commitStatuseDO ->
-                            commitStatuseDO.getRef().equals(pipelineResultV.getRef())
-                                    && commitStatuseDO.getName().equals(SONAR_QUBE))
-                    .forEach(commitStatuseDO -> {
-                        GitlabJobE gitlabJobE = new GitlabJobE();
-                        gitlabJobE.setName(commitStatuseDO.getName());
-                        gitlabJobE.setStatus(JobStatus.SUCCESS);
-                        gitlabJobE.setStage(commitStatuseDO.getName());
-                        if (commitStatuseDO.getStatus().equals(JobStatus.FAILED.toString())) {
-                            gitlabJobE.setStatus(JobStatus.FAILED);
-                        }
-                        gitlabJobE.setDescription(commitStatuseDO.getDescription());
-                        jobs.add(gitlabJobE);
-                    });
-
-            if (!jobs.isEmpty()) {
-                List<GitlabJobE> realJobs = getRealJobs(jobs);
-                pipelineResultV.setJobs(realJobs);
-                Long diffs = 0L;
-                for (Long diff : realJobs.stream().map(GitlabJobE::getJobTime).collect(Collectors.toList())) {
-                    diffs = diff + diffs;
-                }
-                pipelineResultV.setTime(getStageTime(diffs));
+    /**
+     * 每个节点上应用只检查一次是否需要补齐，需要时在后台补齐，同一应用同时只有一个补齐任务，
+     * 补齐完成前返回已有数据，补齐失败时下次查看再重试
+     */
+    private void syncPipelines(ApplicationE app) {
+        if (syncedAppIds.contains(app.getId()) || !syncingAppIds.add(app.getId())) {
+            return;
+        }
+        try {
+            if (!devopsGitlabPipelineRepository.needSync(app.getId())) {
+                syncedAppIds.add(app.getId());
+                syncingAppIds.remove(app.getId());
+                return;
             }
-
-            UserE userE = iamRepository.queryByLoginName(userName);
-            if (userE != null) {
-                pipelineResultV.setImageUrl(userE.getImageUrl());
+            // 后台线程中没有登录用户，在请求线程中取得gitlab用户
+            Integer gitlabUserId = getGitlabUserId();
+            syncer.execute(() -> syncPipelines(app, gitlabUserId));
+        } catch (RuntimeException e) {
+            syncingAppIds.remove(app.getId());
+            if (!(e instanceof RejectedExecutionException)) {
+                LOGGER.warn("check pipelines of application {} failed", app.getId(), e);
             }
+        }
+    }
 
-            ProjectE projectE = iamRepository.queryIamProject(projectId);
-            Organization organization = iamRepository.queryOrganizationById(projectE.getOrganization().getId());
-            pipelineResultV.setGitlabUrl(gitlabUrl + "/"
-                    + organization.getCode() + "-" + projectE.getCode() + "/"
-                    + applicationE.getCode() + ".git");
-            pipelineResultVS.add(pipelineResultV);
-        });
+    private void syncPipelines(ApplicationE app, Integer gitlabUserId) {
+        try {
+            devopsGitlabPipelineService.syncPipelines(app, gitlabUserId);
+            syncedAppIds.add(app.getId());
+        } catch (RuntimeException e) {
+            LOGGER.warn("sync pipelines of application {} from gitlab failed", app.getId(), e);
+        } finally {
+            syncingAppIds.remove(app.getId());
+        }
+    }
 
+    private PipelineResultV getPipelineResultV(ApplicationE applicationE,
+                                               DevopsGitlabPipelineDO devopsGitlabPipelineDO,
+                                               List<DevopsGitlabPipelineJobDO> pipelineJobs) {
+        PipelineResultV pipelineResultV = new PipelineResultV();
+        pipelineResultV.setGitlabProjectId(applicationE.getGitlabProjectE().getId().longValue());
+        pipelineResultV.setAppCode(applicationE.getCode());
+        pipelineResultV.setAppName(applicationE.getName());
+        pipelineResultV.setAppStatus(applicationE.getActive());
+        pipelineResultV.setLatest(Boolean.TRUE.equals(devopsGitlabPipelineDO.getLatest()));
+        pipelineResultV.setId(devopsGitlabPipelineDO.getPipelineId());
+        pipelineResultV.setStatus(devopsGitlabPipelineDO.getPipelineStatus() == null
+                ? devopsGitlabPipelineDO.getStatus() : devopsGitlabPipelineDO.getPipelineStatus());
+        pipelineResultV.setCreateUser(devopsGitlabPipelineDO.getPipelineCreateUserName());
+        pipelineResultV.setRef(devopsGitlabPipelineDO.getRef());
+        pipelineResultV.setSha(devopsGitlabPipelineDO.getSha());
+        if (devopsGitlabPipelineDO.getPipelineCreationDate() != null) {
+            pipelineResultV.setCreatedAt(new SimpleDateFormat(CREATED_AT_PATTERN)
+                    .format(devopsGitlabPipelineDO.getPipelineCreationDate()));
+        }
 
+        List<GitlabJobE> jobs = pipelineJobs.stream().map(job -> {
+            GitlabJobE gitlabJobE = new GitlabJobE();
+            gitlabJobE.setId(job.getJobId().intValue());
+            gitlabJobE.setName(job.getName());
+            gitlabJobE.setStage(job.getStage());
+            gitlabJobE.setStatus(JobStatus.forValue(job.getStatus()));
+            gitlabJobE.setCreatedAt(job.getJobCreationDate());
+            gitlabJobE.setStartedAt(job.getStartedAt());
+            gitlabJobE.setFinishedAt(job.getFinishedAt());
+            return gitlabJobE;
+        }).collect(Collectors.toList());
+        // 代码检查的结果来自webhook记录的commit状态
+        List<CommitStatuseDO> commitStatuseDOS = devopsGitlabPipelineDO.getStage() == null
+                ? Collections.emptyList()
+                : JSONArray.parseArray(devopsGitlabPipelineDO.getStage(), CommitStatuseDO.class);
+        commitStatuseDOS.stream()
+                .filter(commitStatuseDO ->
+                        SONAR_QUBE.equals(commitStatuseDO.getName())
+                                && Objects.equals(commitStatuseDO.getRef(), pipelineResultV.getRef()))
+                .forEach(commitStatuseDO -> {
+                    GitlabJobE gitlabJobE = new GitlabJobE();
+                    gitlabJobE.setName(commitStatuseDO.getName());
+                    gitlabJobE.setStatus(JobStatus.SUCCESS);
+                    gitlabJobE.setStage(commitStatuseDO.getName());
+                    if (JobStatus.FAILED.toString().equals(commitStatuseDO.getStatus())) {
+                        gitlabJobE.setStatus(JobStatus.FAILED);
+                    }
+                    gitlabJobE.setDescription(commitStatuseDO.getDescription());
+                    jobs.add(gitlabJobE);
+                });
+
+        if (!jobs.isEmpty()) {
+            List<GitlabJobE> realJobs = getRealJobs(jobs);
+            pipelineResultV.setJobs(realJobs);
+            Long diffs = 0L;
+            for (Long diff : realJobs.stream().map(GitlabJobE::getJobTime).collect(Collectors.toList())) {
+                diffs = diff + diffs;
+            }
+            pipelineResultV.setTime(getStageTime(diffs));
+        }
+        return pipelineResultV;
     }
 
 
@@ -219,7 +271,7 @@ public class ProjectPipelineServiceImpl implements ProjectPipelineService {
     }
 
     /**
-     * job正序
+     * job正序，每个阶段只保留最后一次执行的job
      *
      * @param jobs jobs
      * @return
@@ -237,10 +289,10 @@ public class ProjectPipelineServiceImpl implements ProjectPipelineService {
             List<GitlabJobE> gitlabJobEList = jobs.stream()
                     .filter(gitlabJobE -> gitlabJobE.getStage().equals(s)).collect(Collectors.toList());
             if (!s.equals(SONAR_QUBE)) {
-                Date max = gitlabJobEList.get(0).getCreatedAt();
+                // 重试的job id更大，同一阶段取最后一次执行的job
                 int index = 0;
                 for (int i = 0; i < gitlabJobEList.size(); i++) {
-                    if (gitlabJobEList.get(i).getCreatedAt().after(max)) {
+                    if (gitlabJobEList.get(i).getId() > gitlabJobEList.get(index).getId()) {
                         index = i;
                     }
                 }
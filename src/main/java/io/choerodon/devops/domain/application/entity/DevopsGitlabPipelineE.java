@@ -11,6 +11,10 @@ public class DevopsGitlabPipelineE {
     private DevopsGitlabCommitE devopsGitlabCommitE;
     private String stage;
     private String status;
+    private String pipelineStatus;
+    private String pipelineCreateUserName;
+    private String ref;
+    private String sha;
     private Date pipelineCreationDate;
 
     public Long getId() {
@@ -80,4 +84,36 @@ public class DevopsGitlabPipelineE {
     public void setPipelineCreationDate(Date pipelineCreationDate) {
         this.pipelineCreationDate = pipelineCreationDate;
     }
+
+    public String getPipelineStatus() {
+        return pipelineStatus;
+    }
+
+    public void setPipelineStatus(String pipelineStatus) {
+        this.pipelineStatus = pipelineStatus;
+    }
+
+    public String getPipelineCreateUserName() {
+        return pipelineCreateUserName;
+    }
+
+    public void setPipelineCreateUserName(String pipelineCreateUserName) {
+        this.pipelineCreateUserName = pipelineCreateUserName;
+    }
+
+    public String getRef() {
+        return ref;
+    }
+
+    public void setRef(String ref) {
+        this.ref = ref;
+    }
+
+    public String getSha() {
+        return sha;
+    }
+
+    public void setSha(String sha) {
+        this.sha = sha;
+    }
 }
@@ -0,0 +1,271 @@
+package io.choerodon.devops.domain.application.handler;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.jgit.lib.PersonIdent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.stereotype.Component;
+
+import io.choerodon.core.exception.CommonException;
+import io.choerodon.core.oauth.DetailsHelper;
+import io.choerodon.devops.domain.application.entity.DevopsEnvironmentE;
+import io.choerodon.devops.domain.application.entity.ProjectE;
+import io.choerodon.devops.domain.application.repository.DevopsEnvironmentRepository;
+import io.choerodon.devops.domain.application.repository.GitlabRepository;
+import io.choerodon.devops.domain.application.repository.IamRepository;
+import io.choerodon.devops.domain.application.valueobject.Organization;
+import io.choerodon.devops.infra.common.util.GitOpsRepositoryManager;
+import io.choerodon.devops.infra.common.util.GitUserNameUtil;
+import io.choerodon.devops.infra.common.util.TypeUtil;
+
+/**
+ * 合并gitops库的文件写入，batch中对同一环境、同一用户的多个文件修改只产生一个提交，
+ * 对应一次webhook和一次文件资源同步
+ * 多个文件的提交在环境本地库中生成并使用环境的部署密钥推送，推送失败时退回逐个文件调用gitlab接口，
+ * batch之外的写入和只有一个文件的提交仍以操作用户调用gitlab接口
+ */
+@Component
+public class GitOpsCommitBuffer implements PublicMetrics {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(GitOpsCommitBuffer.class);
+    private static final String METRIC_PREFIX = "devops.gitops.commit.";
+    private static final ThreadLocal<Map<CommitKey, PendingCommit>> BATCH = new ThreadLocal<>();
+
+    @Value("${services.gitlab.sshUrl}")
+    private String gitlabSshUrl;
+
+    @Autowired
+    private GitOpsRepositoryManager gitOpsRepositoryManager;
+    @Autowired
+    private GitlabRepository gitlabRepository;
+    @Autowired
+    private DevopsEnvironmentRepository devopsEnvironmentRepository;
+    @Autowired
+    private IamRepository iamRepository;
+
+    private final AtomicLong files = new AtomicLong();
+    private final AtomicLong commits = new AtomicLong();
+    private final AtomicLong fallbacks = new AtomicLong();
+
+    /**
+     * 写入环境库中的文件，batch之外调用时返回时文件已经提交到gitlab，在batch中调用时到batch结束才提交
+     *
+     * @param envId           环境id
+     * @param path            环境库本地路径
+     * @param gitlabProjectId 环境库gitlab项目id
+     * @param gitlabUserId    gitlab用户id
+     * @param filePath        文件相对路径
+     * @param content         文件内容
+     * @param create          是否为新增文件
+     */
+    public void write(Long envId, String path, Integer gitlabProjectId, Long gitlabUserId,
+                      String filePath, String content, boolean create) {
+        files.incrementAndGet();
+        Map<CommitKey, PendingCommit> batch = BATCH.get();
+        if (batch != null) {
+            batch.computeIfAbsent(new CommitKey(envId, gitlabUserId),
+                    key -> new PendingCommit(envId, path, gitlabProjectId, gitlabUserId))
+                    .add(filePath, content, create);
+            return;
+        }
+        PendingCommit commit = new PendingCommit(envId, path, gitlabProjectId, gitlabUserId);
+        commit.add(filePath, content, create);
+        flush(commit);
+    }
+
+    /**
+     * 当前batch中待提交的文件内容，更新batch中已修改过的文件时以此为准而不是本地库中的文件
+     *
+     * @param envId    环境id
+     * @param filePath 文件相对路径
+     * @return 文件内容，没有待提交的修改时为null
+     */
+    public String pendingContent(Long envId, String filePath) {
+        Map<CommitKey, PendingCommit> batch = BATCH.get();
+        if (batch == null) {
+            return null;
+        }
+        return batch.values().stream()
+                .filter(commit -> commit.envId.equals(envId))
+                .map(commit -> commit.content(filePath))
+                .filter(Objects::nonNull)
+                .reduce((first, second) -> second)
+                .orElse(null);
+    }
+
+    /**
+     * 在一个提交中完成runnable里对环境库的所有写入，嵌套调用时并入外层
+     * 同一环境中不同用户的写入分别提交，runnable抛出异常时不提交
+     *
+     * @param runnable 写入操作
+     */
+    public void batch(Runnable runnable) {
+        if (BATCH.get() != null) {
+            runnable.run();
+            return;
+        }
+        Map<CommitKey, PendingCommit> batch = new LinkedHashMap<>();
+        BATCH.set(batch);
+        try {
+            runnable.run();
+        } finally {
+            BATCH.remove();
+        }
+        batch.values().forEach(this::flush);
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        List<Metric<?>> metrics = new ArrayList<>();
+        metrics.add(new Metric<>(METRIC_PREFIX + "files", files.get()));
+        metrics.add(new Metric<>(METRIC_PREFIX + "commits", commits.get()));
+        metrics.add(new Metric<>(METRIC_PREFIX + "fallbacks", fallbacks.get()));
+        return metrics;
+    }
+
+    private void flush(PendingCommit commit) {
+        Map<String, String> contents = commit.contents();
+        if (contents.isEmpty()) {
+            return;
+        }
+        commits.incrementAndGet();
+        if (contents.size() == 1) {
+            // 单个文件不需要合并，保持以操作用户提交，webhook中的推送人仍为操作用户
+            commitByApi(commit);
+            return;
+        }
+        String sha;
+        try {
+            DevopsEnvironmentE devopsEnvironmentE = devopsEnvironmentRepository.queryById(commit.envId);
+            ProjectE projectE = iamRepository.queryIamProject(devopsEnvironmentE.getProjectE().getId());
+            Organization organization = iamRepository.queryOrganizationById(projectE.getOrganization().getId());
+            String url = String.format("git@%s:%s-%s-gitops/%s.git",
+                    gitlabSshUrl, organization.getCode(), projectE.getCode(), devopsEnvironmentE.getCode());
+            sha = gitOpsRepositoryManager.commitFiles(commit.envId, commit.path, url, devopsEnvironmentE.getEnvIdRsa(),
+                    contents, new PersonIdent(commit.author, ""), commit.message());
+        } catch (CommonException e) {
+            // 部署密钥没有推送权限等情况下保持原有的逐个文件提交方式
+            LOGGER.info("commit files of env {} by deploy key failed, use gitlab api: {}",
+                    commit.envId, e.getMessage());
+            fallbacks.incrementAndGet();
+            commitByApi(commit);
+            return;
+        }
+        // 文件内容没有变化时不会推送，也就不会触发webhook，与gitlab接口一样作为错误返回，避免操作一直处于处理中
+        if (sha == null) {
+            throw new CommonException("error.gitops.file.unchanged");
+        }
+    }
+
+    private void commitByApi(PendingCommit commit) {
+        Integer userId = TypeUtil.objToInteger(commit.gitlabUserId);
+        commit.operations().forEach((filePath, file) -> {
+            if (file.create) {
+                gitlabRepository.createFile(commit.gitlabProjectId, filePath, file.content, "ADD FILE", userId);
+            } else {
+                gitlabRepository.updateFile(commit.gitlabProjectId, filePath, file.content, "UPDATE FILE", userId);
+            }
+        });
+    }
+
+    private static String currentUsername() {
+        return DetailsHelper.getUserDetails() == null ? "devops" : GitUserNameUtil.getUsername();
+    }
+
+    private static class CommitKey {
+        private final Long envId;
+        private final Long gitlabUserId;
+
+        CommitKey(Long envId, Long gitlabUserId) {
+            this.envId = envId;
+            this.gitlabUserId = gitlabUserId;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof CommitKey)) {
+                return false;
+            }
+            CommitKey commitKey = (CommitKey) o;
+            return Objects.equals(envId, commitKey.envId) && Objects.equals(gitlabUserId, commitKey.gitlabUserId);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(envId, gitlabUserId);
+        }
+    }
+
+    private static class PendingCommit {
+        private final Long envId;
+        private final String path;
+        private final Integer gitlabProjectId;
+        private final Long gitlabUserId;
+        private final String author;
+        private final Map<String, PendingFile> files = new LinkedHashMap<>();
+
+        PendingCommit(Long envId, String path, Integer gitlabProjectId, Long gitlabUserId) {
+            this.envId = envId;
+            this.path = path;
+            this.gitlabProjectId = gitlabProjectId;
+            this.gitlabUserId = gitlabUserId;
+            this.author = currentUsername();
+        }
+
+        void add(String filePath, String content, boolean create) {
+            PendingFile previous = files.get(filePath);
+            // 同一提交中先新增后更新的文件仍按新增提交
+            files.put(filePath, new PendingFile(content, create || previous != null && previous.create));
+        }
+
+        String content(String filePath) {
+            PendingFile file = files.get(filePath);
+            return file == null ? null : file.content;
+        }
+
+        Map<String, PendingFile> operations() {
+            return new LinkedHashMap<>(files);
+        }
+
+        Map<String, String> contents() {
+            Map<String, String> contents = new HashMap<>();
+            files.forEach((filePath, file) -> contents.put(filePath, file.content));
+            return contents;
+        }
+
+        String message() {
+            if (files.size() == 1) {
+                return files.values().iterator().next().create ? "ADD FILE" : "UPDATE FILE";
+            }
+            StringBuilder message = new StringBuilder("UPDATE FILES\n");
+            files.forEach((filePath, file) ->
+                    message.append('\n').append(file.create ? "ADD " : "UPDATE ").append(filePath));
+            return message.toString();
+        }
+    }
+
+    private static class PendingFile {
+        private final String content;
+        private final boolean create;
+
+        PendingFile(String content, boolean create) {
+            this.content = content;
+            this.create = create;
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package io.choerodon.devops.domain.application.handler;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import io.kubernetes.client.models.V1Service;
+import io.kubernetes.client.models.V1beta1Ingress;
+import org.yaml.snakeyaml.Yaml;
+import org.yaml.snakeyaml.constructor.Constructor;
+import org.yaml.snakeyaml.nodes.MappingNode;
+import org.yaml.snakeyaml.nodes.Node;
+import org.yaml.snakeyaml.nodes.NodeTuple;
+import org.yaml.snakeyaml.nodes.ScalarNode;
+import org.yaml.snakeyaml.nodes.Tag;
+
+import io.choerodon.core.exception.CommonException;
+import io.choerodon.devops.domain.application.valueobject.C7nCertification;
+import io.choerodon.devops.domain.application.valueobject.C7nHelmRelease;
+
+/**
+ * 并行解析gitops库中的文件，逐个文档直接反序列化为对应的k8s对象
+ * 解析结果按文件顺序返回，文件中的对象按文档顺序排列
+ */
+public class GitOpsObjectParser {
+
+    public static final String C7NHELM_RELEASE = "C7NHelmRelease";
+    public static final String INGRESS = "Ingress";
+    public static final String SERVICE = "Service";
+    public static final String CERTIFICATE = "Certificate";
+
+    private static final String KIND = "kind";
+    private static final Map<String, Class<?>> KIND_TYPES = new HashMap<>();
+    private static final ThreadLocal<TypedConstructor> CONSTRUCTORS = ThreadLocal.withInitial(TypedConstructor::new);
+
+    static {
+        KIND_TYPES.put(C7NHELM_RELEASE, C7nHelmRelease.class);
+        KIND_TYPES.put(INGRESS, V1beta1Ingress.class);
+        KIND_TYPES.put(SERVICE, V1Service.class);
+        KIND_TYPES.put(CERTIFICATE, C7nCertification.class);
+    }
+
+    private GitOpsObjectParser() {
+    }
+
+    /**
+     * 并行解析文件
+     *
+     * @param path  本地库路径
+     * @param files 文件相对路径
+     * @return 按files顺序排列的解析结果
+     */
+    public static List<ParsedFile> parse(String path, List<String> files) {
+        return files.parallelStream()
+                .map(filePath -> parseFile(path, filePath))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * 解析单个文件，解析异常记录在结果中，由调用方按文件顺序抛出，保证报错的文件是确定的
+     *
+     * @param path     本地库路径
+     * @param filePath 文件相对路径
+     * @return 解析结果
+     */
+    public static ParsedFile parseFile(String path, String filePath) {
+        File file = new File(String.format("%s/%s", path, filePath));
+        TypedConstructor constructor = CONSTRUCTORS.get();
+        Yaml yaml = new Yaml(constructor);
+        List<ParsedObject> objects = new ArrayList<>();
+        try (Reader reader = new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8)) {
+            for (Node node : yaml.composeAll(reader)) {
+                String kind = kindOf(node);
+                Class<?> type = KIND_TYPES.get(kind);
+                if (type != null) {
+                    objects.add(new ParsedObject(kind, construct(constructor, node, type, filePath)));
+                }
+            }
+        } catch (IOException e) {
+            return new ParsedFile(filePath, objects, new CommonException(e.getMessage(), e));
+        } catch (CommonException e) {
+            return new ParsedFile(filePath, objects, e);
+        } catch (Exception e) {
+            return new ParsedFile(filePath, objects, new GitOpsExplainException(e.getMessage(), filePath));
+        }
+        return new ParsedFile(filePath, objects, null);
+    }
+
+    private static Object construct(TypedConstructor constructor, Node node, Class<?> type, String filePath) {
+        try {
+            return constructor.construct(node, type);
+        } catch (Exception e) {
+            throw new GitOpsExplainException(e.getMessage(), filePath);
+        }
+    }
+
+    private static String kindOf(Node node) {
+        if (!(node instanceof MappingNode)) {
+            return null;
+        }
+        for (NodeTuple tuple : ((MappingNode) node).getValue()) {
+            if (tuple.getKeyNode() instanceof ScalarNode
+                    && KIND.equals(((ScalarNode) tuple.getKeyNode()).getValue())
+                    && tuple.getValueNode() instanceof ScalarNode) {
+                return ((ScalarNode) tuple.getValueNode()).getValue();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 直接从已解析的节点构造指定类型的对象，省去先转成Map再序列化的过程
+     */
+    private static class TypedConstructor extends Constructor {
+
+        Object construct(Node node, Class<?> type) {
+            node.setTag(new Tag(type));
+            return constructDocument(node);
+        }
+    }
+
+    public static class ParsedFile {
+        private final String filePath;
+        private final List<ParsedObject> objects;
+        private final CommonException error;
+
+        ParsedFile(String filePath, List<ParsedObject> objects, CommonException error) {
+            this.filePath = filePath;
+            this.objects = Collections.unmodifiableList(objects);
+            this.error = error;
+        }
+
+        public String getFilePath() {
+            return filePath;
+        }
+
+        public List<ParsedObject> getObjects() {
+            return objects;
+        }
+
+        public CommonException getError() {
+            return error;
+        }
+    }
+
+    public static class ParsedObject {
+        private final String kind;
+        private final Object object;
+
+        ParsedObject(String kind, Object object) {
+            this.kind = kind;
+            this.object = object;
+        }
+
+        public String getKind() {
+            return kind;
+        }
+
+        public Object getObject() {
+            return object;
+        }
+    }
+}
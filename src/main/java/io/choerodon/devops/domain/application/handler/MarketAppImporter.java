@@ -0,0 +1,439 @@
+package io.choerodon.devops.domain.application.handler;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.gson.Gson;
+import com.zaxxer.hikari.util.DefaultThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.security.concurrent.DelegatingSecurityContextRunnable;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import io.choerodon.core.exception.CommonException;
+import io.choerodon.devops.api.dto.AppMarketImportStatusDTO;
+import io.choerodon.devops.api.dto.AppMarketVersionDTO;
+import io.choerodon.devops.api.dto.ApplicationReleasingDTO;
+import io.choerodon.devops.domain.application.entity.ApplicationE;
+import io.choerodon.devops.domain.application.entity.ApplicationMarketE;
+import io.choerodon.devops.domain.application.entity.ApplicationVersionE;
+import io.choerodon.devops.domain.application.entity.ApplicationVersionValueE;
+import io.choerodon.devops.domain.application.repository.ApplicationMarketRepository;
+import io.choerodon.devops.domain.application.repository.ApplicationRepository;
+import io.choerodon.devops.domain.application.repository.ApplicationVersionRepository;
+import io.choerodon.devops.domain.application.repository.ApplicationVersionValueRepository;
+import io.choerodon.devops.infra.common.util.FileUtil;
+import io.choerodon.devops.infra.common.util.GenerateUUID;
+import io.choerodon.devops.infra.config.HarborConfigurationProperties;
+
+/**
+ * 导入应用市场导出的应用包
+ * 先校验整个导入包，并在线程池中并行从各版本的chart包内存中读取values.yaml和README.md，
+ * 再按应用并行写入，每个应用的应用、版本参数、版本和readme在一个事务中批量插入
+ */
+@Component
+public class MarketAppImporter implements PublicMetrics {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MarketAppImporter.class);
+    private static final String METRIC_PREFIX = "devops.market.import.";
+    private static final String ANALYZING = "analyzing";
+    private static final String IMPORTING = "importing";
+    private static final String SUCCESS = "success";
+    private static final String FAILED = "failed";
+    private static final String ORGANIZATION = "organization";
+    private static final String PUBLIC = "public";
+    private static final String JSON_FILE = ".json";
+    private static final String VALUES = "values.yaml";
+    private static final String README = "README.md";
+    private static final String NO_README = "# 暂无";
+    private static final String FILE_SEPARATOR = System.getProperty("file.separator");
+
+    private static Gson gson = new Gson();
+
+    @Value("${market.import.threads:4}")
+    private Integer importThreads;
+    @Value("${market.import.statusExpireMinutes:60}")
+    private Long statusExpireMinutes;
+
+    @Autowired
+    private ApplicationRepository applicationRepository;
+    @Autowired
+    private ApplicationVersionRepository applicationVersionRepository;
+    @Autowired
+    private ApplicationVersionValueRepository applicationVersionValueRepository;
+    @Autowired
+    private ApplicationMarketRepository applicationMarketRepository;
+    @Autowired
+    private HarborConfigurationProperties harborConfigurationProperties;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private final AtomicLong running = new AtomicLong();
+    private final AtomicLong imports = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong versions = new AtomicLong();
+    private final AtomicLong lastMillis = new AtomicLong();
+
+    private Cache<String, ImportTask> tasks;
+    private ExecutorService executor;
+    private TransactionTemplate transactionTemplate;
+
+    @PostConstruct
+    public void init() {
+        tasks = CacheBuilder.newBuilder()
+                .expireAfterWrite(statusExpireMinutes, TimeUnit.MINUTES)
+                .build();
+        executor = new ThreadPoolExecutor(importThreads, importThreads, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), new DefaultThreadFactory("devops-market-import", true));
+        // 应用在线程池中写入，不经过代理调用，使用编程式事务
+        transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * 导入解压后的应用目录，导入过程中可以通过getStatus查询进度
+     *
+     * @param fileCode         导入包编码
+     * @param appDirectories   应用目录
+     * @param projectId        项目id
+     * @param organizationCode 组织编码
+     * @param projectCode      项目编码
+     * @param isPublic         是否发布，为空时不发布
+     */
+    public void importApps(String fileCode, List<File> appDirectories, Long projectId,
+                           String organizationCode, String projectCode, Boolean isPublic) {
+        long start = System.currentTimeMillis();
+        ImportTask task = new ImportTask(fileCode);
+        String taskKey = taskKey(projectId, fileCode);
+        tasks.put(taskKey, task);
+        running.incrementAndGet();
+        try {
+            List<MarketApp> apps = analyze(appDirectories, task);
+            task.status = IMPORTING;
+            Path chartPath = Paths.get("Charts", organizationCode, projectCode);
+            // 应用在线程池中写入，带上导入用户的登录信息，审计字段仍记录为导入用户
+            SecurityContext securityContext = SecurityContextHolder.getContext();
+            join(apps.stream()
+                    .map(app -> CompletableFuture.runAsync(new DelegatingSecurityContextRunnable(() -> {
+                        transactionTemplate.execute(status -> {
+                            importApp(app, projectId, organizationCode, projectCode, isPublic);
+                            return null;
+                        });
+                        copyCharts(app, chartPath);
+                        task.importedApps.incrementAndGet();
+                        task.importedVersions.addAndGet(app.versions.size());
+                        versions.addAndGet(app.versions.size());
+                    }, securityContext), executor))
+                    .collect(Collectors.toList()));
+            task.status = SUCCESS;
+            imports.incrementAndGet();
+        } catch (RuntimeException e) {
+            task.status = FAILED;
+            task.error = e.getMessage();
+            failures.incrementAndGet();
+            throw e;
+        } finally {
+            // 导入结束后重新计时保留进度
+            tasks.put(taskKey, task);
+            long elapsed = System.currentTimeMillis() - start;
+            lastMillis.set(elapsed);
+            running.decrementAndGet();
+            LOGGER.info("market import {} finished with status {}: {} apps, {} versions in {} ms", fileCode,
+                    task.status, task.importedApps.get(), task.importedVersions.get(), elapsed);
+        }
+    }
+
+    /**
+     * 查询导入进度
+     *
+     * @param projectId 项目id
+     * @param fileCode  导入包编码
+     * @return 导入进度，未导入或已过期时为null
+     */
+    public AppMarketImportStatusDTO getStatus(Long projectId, String fileCode) {
+        ImportTask task = tasks.getIfPresent(taskKey(projectId, fileCode));
+        return task == null ? null : task.toDTO();
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        List<Metric<?>> metrics = new ArrayList<>();
+        metrics.add(new Metric<>(METRIC_PREFIX + "running", running.get()));
+        metrics.add(new Metric<>(METRIC_PREFIX + "count", imports.get()));
+        metrics.add(new Metric<>(METRIC_PREFIX + "failure", failures.get()));
+        metrics.add(new Metric<>(METRIC_PREFIX + "versions", versions.get()));
+        metrics.add(new Metric<>(METRIC_PREFIX + "last.time", lastMillis.get()));
+        return metrics;
+    }
+
+    /**
+     * 校验导入包并读取全部版本的chart文件，任何一个版本有问题时不写入任何数据
+     */
+    private List<MarketApp> analyze(List<File> appDirectories, ImportTask task) {
+        List<MarketApp> apps = new ArrayList<>();
+        List<CompletableFuture<Void>> reads = new ArrayList<>();
+        int totalVersions = 0;
+        for (File appDirectory : appDirectories) {
+            File appFile = new File(appDirectory, appDirectory.getName() + JSON_FILE);
+            if (!appFile.isFile()) {
+                continue;
+            }
+            ApplicationReleasingDTO applicationReleasingDTO =
+                    gson.fromJson(FileUtil.getFileContent(appFile), ApplicationReleasingDTO.class);
+            if (applicationReleasingDTO == null || applicationReleasingDTO.getCode() == null) {
+                throw new CommonException("error.zip.illegal");
+            }
+            MarketApp app = new MarketApp(applicationReleasingDTO);
+            List<AppMarketVersionDTO> appVersions = applicationReleasingDTO.getAppVersions() == null
+                    ? Collections.emptyList() : applicationReleasingDTO.getAppVersions();
+            Set<String> versionNames = new HashSet<>();
+            for (AppMarketVersionDTO appVersion : appVersions) {
+                if (!versionNames.add(appVersion.getVersion())) {
+                    continue;
+                }
+                File tgz = new File(appDirectory, String.format("%s-%s.tgz",
+                        applicationReleasingDTO.getCode(), appVersion.getVersion()));
+                if (!tgz.isFile()) {
+                    throw new CommonException("error.version.tgz.notFound");
+                }
+                MarketVersion version = new MarketVersion(appVersion.getVersion(), tgz);
+                app.versions.add(version);
+                reads.add(CompletableFuture.runAsync(() -> readChart(version), executor));
+            }
+            totalVersions += app.versions.size();
+            apps.add(app);
+        }
+        task.totalApps = apps.size();
+        task.totalVersions = totalVersions;
+        join(reads);
+        return apps;
+    }
+
+    private void readChart(MarketVersion version) {
+        Map<String, String> chartFiles;
+        try (InputStream inputStream = new FileInputStream(version.tgz)) {
+            chartFiles = FileUtil.readFilesFromTgz(inputStream, VALUES, README);
+        } catch (IOException e) {
+            throw new CommonException("error.tgz.read", e);
+        }
+        if (chartFiles.get(VALUES) == null) {
+            throw new CommonException("error.version.insert");
+        }
+        version.values = chartFiles.get(VALUES);
+        version.readme = chartFiles.getOrDefault(README, NO_README);
+    }
+
+    private void importApp(MarketApp app, Long projectId, String organizationCode, String projectCode,
+                           Boolean isPublic) {
+        ApplicationReleasingDTO applicationReleasingDTO = app.application;
+        String appCode = applicationReleasingDTO.getCode();
+        ApplicationE applicationE = new ApplicationE();
+        applicationE.setName(applicationReleasingDTO.getName());
+        Long appId = createOrUpdateApp(applicationE, appCode, projectId);
+
+        Map<String, ApplicationVersionE> existVersions = applicationVersionRepository.listAllByAppId(appId).stream()
+                .collect(Collectors.toMap(ApplicationVersionE::getVersion, Function.identity(), (a, b) -> a));
+        List<ApplicationVersionValueE> applicationVersionValueES = applicationVersionValueRepository.batchCreate(
+                app.versions.stream().map(version -> {
+                    ApplicationVersionValueE applicationVersionValueE = new ApplicationVersionValueE();
+                    applicationVersionValueE.setValue(version.values);
+                    return applicationVersionValueE;
+                }).collect(Collectors.toList()));
+        String repository = String.format("%s%s%s%s%s",
+                FILE_SEPARATOR, organizationCode, FILE_SEPARATOR, projectCode, FILE_SEPARATOR);
+        List<ApplicationVersionE> newVersions = new ArrayList<>();
+        for (int i = 0; i < app.versions.size(); i++) {
+            MarketVersion version = app.versions.get(i);
+            ApplicationVersionE applicationVersionE = new ApplicationVersionE();
+            applicationVersionE.setImage(String.format("%s%s%s-%s%s%s:%s",
+                    harborConfigurationProperties.getBaseUrl(),
+                    FILE_SEPARATOR, organizationCode, projectCode, FILE_SEPARATOR, appCode, version.version));
+            applicationVersionE.setRepository(repository);
+            applicationVersionE.setVersion(version.version);
+            applicationVersionE.initApplicationEById(appId);
+            applicationVersionE.initApplicationVersionValueE(applicationVersionValueES.get(i).getId());
+            applicationVersionE.initApplicationVersionReadmeV(version.readme);
+            ApplicationVersionE existVersion = existVersions.get(version.version);
+            if (isPublic != null) {
+                applicationVersionE.setIsPublish(1L);
+            } else {
+                applicationVersionE.setIsPublish(existVersion == null ? null : existVersion.getIsPublish());
+            }
+            if (existVersion == null) {
+                newVersions.add(applicationVersionE);
+            } else {
+                applicationVersionE.setId(existVersion.getId());
+                applicationVersionRepository.updateVersion(applicationVersionE);
+            }
+        }
+        applicationVersionRepository.batchCreate(newVersions);
+        // 发布应用
+        releaseApp(isPublic, applicationReleasingDTO, appId);
+    }
+
+    private void copyCharts(MarketApp app, Path chartPath) {
+        try {
+            Files.createDirectories(chartPath);
+            for (MarketVersion version : app.versions) {
+                Files.copy(version.tgz.toPath(), chartPath.resolve(version.tgz.getName()),
+                        StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            throw new CommonException("error.file.transfer", e);
+        }
+    }
+
+    private Long createOrUpdateApp(ApplicationE applicationE, String appCode, Long projectId) {
+        applicationE.setCode(appCode);
+        applicationE.initProjectE(projectId);
+        Long appId;
+        Boolean appCodeExist = false;
+        try {
+            applicationRepository.checkCode(applicationE);
+        } catch (Exception e) {
+            LOGGER.info(e.getMessage());
+            appCodeExist = true;
+        }
+        if (!appCodeExist) {
+            applicationE.setActive(true);
+            applicationE.setSynchro(true);
+            applicationE.setToken(GenerateUUID.generateUUID());
+            appId = applicationRepository.create(applicationE).getId();
+        } else {
+            ApplicationE existApplication = applicationRepository.queryByCode(appCode, projectId);
+            appId = existApplication.getId();
+            applicationE.setId(appId);
+            applicationRepository.update(applicationE);
+        }
+        return appId;
+    }
+
+    private Boolean checkAppCanPub(Long appId) {
+        try {
+            return applicationMarketRepository.checkCanPub(appId);
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    private void releaseApp(Boolean isPublic,
+                            ApplicationReleasingDTO applicationReleasingDTO, Long appId) {
+        if (isPublic != null) {
+            Boolean canPub = checkAppCanPub(appId);
+            if (canPub) {
+                ApplicationMarketE applicationMarketE = new ApplicationMarketE();
+                applicationMarketE.initApplicationEById(appId);
+                applicationMarketE.setPublishLevel(isPublic ? PUBLIC : ORGANIZATION);
+                applicationMarketE.setActive(true);
+                applicationMarketE.setContributor(applicationReleasingDTO.getContributor());
+                applicationMarketE.setDescription(applicationReleasingDTO.getDescription());
+                applicationMarketE.setCategory(applicationReleasingDTO.getCategory());
+                applicationMarketRepository.create(applicationMarketE);
+            }
+        }
+    }
+
+    private static String taskKey(Long projectId, String fileCode) {
+        return projectId + ":" + fileCode;
+    }
+
+    /**
+     * 等待全部任务结束，有任务失败时抛出第一个失败的异常
+     */
+    private static void join(List<CompletableFuture<Void>> futures) {
+        try {
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new CommonException("error.market.import", e.getCause());
+        }
+    }
+
+    private static class MarketApp {
+        private final ApplicationReleasingDTO application;
+        private final List<MarketVersion> versions = new ArrayList<>();
+
+        MarketApp(ApplicationReleasingDTO application) {
+            this.application = application;
+        }
+    }
+
+    private static class MarketVersion {
+        private final String version;
+        private final File tgz;
+        private volatile String values;
+        private volatile String readme;
+
+        MarketVersion(String version, File tgz) {
+            this.version = version;
+            this.tgz = tgz;
+        }
+    }
+
+    private static class ImportTask {
+        private final String fileCode;
+        private final AtomicInteger importedApps = new AtomicInteger();
+        private final AtomicInteger importedVersions = new AtomicInteger();
+        private volatile String status = ANALYZING;
+        private volatile String error;
+        private volatile int totalApps;
+        private volatile int totalVersions;
+
+        ImportTask(String fileCode) {
+            this.fileCode = fileCode;
+        }
+
+        AppMarketImportStatusDTO toDTO() {
+            AppMarketImportStatusDTO appMarketImportStatusDTO = new AppMarketImportStatusDTO();
+            appMarketImportStatusDTO.setFileCode(fileCode);
+            appMarketImportStatusDTO.setStatus(status);
+            appMarketImportStatusDTO.setTotalApps(totalApps);
+            appMarketImportStatusDTO.setImportedApps(importedApps.get());
+            appMarketImportStatusDTO.setTotalVersions(totalVersions);
+            appMarketImportStatusDTO.setImportedVersions(importedVersions.get());
+            appMarketImportStatusDTO.setError(error);
+            return appMarketImportStatusDTO;
+        }
+    }
+}
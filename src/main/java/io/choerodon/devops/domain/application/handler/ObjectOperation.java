@@ -16,10 +16,8 @@ import io.choerodon.core.convertor.ApplicationContextHelper;
 import io.choerodon.core.exception.CommonException;
 import io.choerodon.devops.domain.application.entity.DevopsEnvFileResourceE;
 import io.choerodon.devops.domain.application.repository.DevopsEnvFileResourceRepository;
-import io.choerodon.devops.domain.application.repository.GitlabRepository;
 import io.choerodon.devops.domain.application.valueobject.C7nHelmRelease;
 import io.choerodon.devops.infra.common.util.SkipNullRepresenterUtil;
-import io.choerodon.devops.infra.common.util.TypeUtil;
 
 public class ObjectOperation<T> {
 
@@ -38,7 +36,7 @@ public class ObjectOperation<T> {
     }
 
     /**
-     * operate files in GitLab
+     * operate files in GitLab, writes to the same environment made close together are committed at once
      *
      * @param fileCode           file's code
      * @param gitlabEnvProjectId Environment corresponding GitLab project ID
@@ -47,24 +45,23 @@ public class ObjectOperation<T> {
      */
     public void operationEnvGitlabFile(String fileCode, Integer gitlabEnvProjectId, String operationType,
                                        Long userId, Long objectId, String objectType, Long envId, String filePath) {
-        GitlabRepository gitlabRepository = ApplicationContextHelper.getSpringFactory().getBean(GitlabRepository.class);
+        GitOpsCommitBuffer gitOpsCommitBuffer = ApplicationContextHelper.getSpringFactory().getBean(GitOpsCommitBuffer.class);
         Tag tag = new Tag(type.getClass().toString());
         Yaml yaml = getYamlObject(tag);
         String content = yaml.dump(type).replace("!<" + tag.getValue() + ">", "---");
         if (operationType.equals("create")) {
             String path = fileCode + ".yaml";
-            gitlabRepository.createFile(gitlabEnvProjectId, path, content,
-                    "ADD FILE", TypeUtil.objToInteger(userId));
-
+            gitOpsCommitBuffer.write(envId, filePath, gitlabEnvProjectId, userId, path, content, true);
         } else {
             DevopsEnvFileResourceRepository devopsEnvFileResourceRepository = ApplicationContextHelper.getSpringFactory().getBean(DevopsEnvFileResourceRepository.class);
             DevopsEnvFileResourceE devopsEnvFileResourceE = devopsEnvFileResourceRepository.queryByEnvIdAndResource(envId, objectId, objectType);
             if (devopsEnvFileResourceE == null) {
                 throw new CommonException("error.fileResource.not.exist");
             }
-            gitlabRepository.updateFile(gitlabEnvProjectId, devopsEnvFileResourceE.getFilePath(), getUpdateContent(type,
-                    devopsEnvFileResourceE.getFilePath(), objectType, filePath, operationType),
-                    "UPDATE FILE", TypeUtil.objToInteger(userId));
+            String updateContent = getUpdateContent(type, devopsEnvFileResourceE.getFilePath(), objectType, filePath,
+                    operationType, gitOpsCommitBuffer.pendingContent(envId, devopsEnvFileResourceE.getFilePath()));
+            gitOpsCommitBuffer.write(envId, filePath, gitlabEnvProjectId, userId,
+                    devopsEnvFileResourceE.getFilePath(), updateContent, false);
         }
     }
 
@@ -79,12 +76,16 @@ public class ObjectOperation<T> {
     }
 
 
-    private String getUpdateContent(T t, String filePath, String objectType, String path, String operationType) {
+    private String getUpdateContent(T t, String filePath, String objectType, String path, String operationType,
+                                    String pendingContent) {
         Yaml yaml = new Yaml();
         String result = "";
         File file = new File(path + "/" + filePath);
         try {
-            for (Object data : yaml.loadAll(new FileInputStream(file))) {
+            //同一提交中已修改过的文件以待提交的内容为准
+            Iterable<Object> documents = pendingContent != null
+                    ? yaml.loadAll(pendingContent) : yaml.loadAll(new FileInputStream(file));
+            for (Object data : documents) {
                 JSONObject jsonObject = new JSONObject((Map<String, Object>) data);
                 String type = jsonObject.get("kind").toString();
                 switch (type) {
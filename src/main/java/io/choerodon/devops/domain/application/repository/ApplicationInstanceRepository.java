@@ -49,4 +49,6 @@ public interface ApplicationInstanceRepository {
     Page<DeployDO> pageDeployFrequencyDetail(Long projectId, PageRequest pageRequest, Long[] envIds, Long appId, Date startTime, Date endTime);
 
     Page<DeployDO> pageDeployTimeDetail(Long projectId, PageRequest pageRequest, Long envId, Long[] appIds, Date startTime, Date endTime);
+
+    void updateStatusByIds(List<Long> ids, String status);
 }
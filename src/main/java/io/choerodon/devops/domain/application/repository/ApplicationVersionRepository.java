@@ -30,6 +30,21 @@ public interface ApplicationVersionRepository {
 
     ApplicationVersionE queryByAppAndVersion(Long appId, String version);
 
+    /**
+     * 查询应用的全部版本，包含发布状态
+     *
+     * @param appId 应用id
+     * @return 版本列表
+     */
+    List<ApplicationVersionE> listAllByAppId(Long appId);
+
+    /**
+     * 批量创建版本及其readme，创建后回填版本id
+     *
+     * @param applicationVersionES 版本列表
+     */
+    void batchCreate(List<ApplicationVersionE> applicationVersionES);
+
     void updatePublishLevelByIds(List<Long> appVersionIds, Long level);
 
     Page<ApplicationVersionE> listApplicationVersionInApp(Long projectId,
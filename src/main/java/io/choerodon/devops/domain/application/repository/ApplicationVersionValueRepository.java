@@ -1,9 +1,13 @@
 package io.choerodon.devops.domain.application.repository;
 
+import java.util.List;
+
 import io.choerodon.devops.domain.application.entity.ApplicationVersionValueE;
 
 public interface ApplicationVersionValueRepository {
 
     ApplicationVersionValueE create(ApplicationVersionValueE applicationVersionValueE);
 
+    List<ApplicationVersionValueE> batchCreate(List<ApplicationVersionValueE> applicationVersionValueES);
+
 }
@@ -43,4 +43,6 @@ public interface CertificationRepository {
     CertificationFileDO getCertFile(Long certId);
 
     List<CertificationE> listByEnvId(Long envId);
+
+    void updateStatusByIds(List<Long> ids, String status);
 }
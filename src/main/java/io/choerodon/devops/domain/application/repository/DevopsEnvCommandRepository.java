@@ -1,8 +1,10 @@
 package io.choerodon.devops.domain.application.repository;
 
+import java.util.Date;
 import java.util.List;
 
 import io.choerodon.devops.domain.application.entity.DevopsEnvCommandE;
+import io.choerodon.devops.domain.application.valueobject.Command;
 
 public interface DevopsEnvCommandRepository {
 
@@ -15,4 +17,10 @@ public interface DevopsEnvCommandRepository {
     DevopsEnvCommandE query(Long id);
 
     List<DevopsEnvCommandE> listByEnvId(Long envId);
+
+    List<DevopsEnvCommandE> listByIds(List<Long> ids);
+
+    void batchUpdateStatus(List<DevopsEnvCommandE> devopsEnvCommandES);
+
+    List<Command> listPendingByEnvId(Long envId, String status, Date before);
 }
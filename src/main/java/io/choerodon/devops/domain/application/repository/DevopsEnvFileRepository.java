@@ -26,4 +26,5 @@ public interface DevopsEnvFileRepository {
 
     List<DevopsEnvFileE> listByEnvIdAndPath(Long envId, String path);
 
+    void batchUpdateAgentCommit(List<DevopsEnvFileE> devopsEnvFileES);
 }
@@ -26,4 +26,5 @@ public interface DevopsEnvFileResourceRepository {
 
     void deleteByEnvIdAndResource(Long envId, Long resourceId, String resourceType);
 
+    List<DevopsEnvFileResourceE> listByEnvId(Long envId);
 }
@@ -15,6 +15,10 @@ import io.choerodon.mybatis.pagehelper.domain.PageRequest;
 public interface DevopsEnvPodContainerRepository {
     void insert(DevopsEnvPodContainerDO containerDO);
 
+    void batchInsert(List<DevopsEnvPodContainerDO> containers);
+
+    void replaceByPodId(Long podId, List<DevopsEnvPodContainerDO> containers);
+
     void update(DevopsEnvPodContainerDO containerDO);
 
     void delete(Long id);
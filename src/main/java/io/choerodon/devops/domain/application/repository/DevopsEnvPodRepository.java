@@ -16,6 +16,8 @@ public interface DevopsEnvPodRepository {
 
     void insert(DevopsEnvPodE devopsEnvPodE);
 
+    Long upsert(DevopsEnvPodE devopsEnvPodE);
+
     List<DevopsEnvPodE> selectByInstanceId(Long instanceId);
 
     void update(DevopsEnvPodE devopsEnvPodE);
@@ -53,6 +53,8 @@ public interface DevopsGitRepository {
 
     List<TagDO> getGitLabTags(Integer projectId, Integer userId);
 
+    Boolean tagExists(Integer projectId, String tagName, Integer userId);
+
     BranchDO getBranch(Integer gitlabProjectId, String branch);
 
     CompareResultsE getCompareResults(Integer gitlabProjectId, String from, String to);
@@ -1,5 +1,7 @@
 package io.choerodon.devops.domain.application.repository;
 
+import java.util.List;
+
 import io.choerodon.devops.domain.application.entity.DevopsGitlabCommitE;
 
 public interface DevopsGitlabCommitRepository {
@@ -8,4 +10,12 @@ public interface DevopsGitlabCommitRepository {
 
 
     DevopsGitlabCommitE queryBySha(String sha);
+
+    /**
+     * 批量创建commit，已存在的commit sha会被跳过，webhook重试时不会重复写入
+     *
+     * @param devopsGitlabCommitES commit列表
+     * @return 新写入的commit
+     */
+    List<DevopsGitlabCommitE> batchCreate(List<DevopsGitlabCommitE> devopsGitlabCommitES);
 }
@@ -6,6 +6,7 @@ import java.util.List;
 import io.choerodon.core.domain.Page;
 import io.choerodon.devops.domain.application.entity.DevopsGitlabPipelineE;
 import io.choerodon.devops.infra.dataobject.DevopsGitlabPipelineDO;
+import io.choerodon.devops.infra.dataobject.DevopsGitlabPipelineJobDO;
 import io.choerodon.mybatis.pagehelper.domain.PageRequest;
 
 public interface DevopsGitlabPipelineRepository {
@@ -22,4 +23,23 @@ public interface DevopsGitlabPipelineRepository {
 
     Page<DevopsGitlabPipelineDO> pagePipeline(Long appId, PageRequest pageRequest, Date startTime, Date endTime);
 
+    /**
+     * 按pipeline id倒序分页查询应用的pipeline，latest为每个分支或标签最新的pipeline
+     */
+    Page<DevopsGitlabPipelineDO> pagePipelineWithLatest(Long appId, PageRequest pageRequest);
+
+    /**
+     * 应用没有pipeline记录，或存在记录分支信息之前由webhook写入的记录时，需要从gitlab补齐
+     */
+    Boolean needSync(Long appId);
+
+    List<Long> listSyncedPipelineIds(Long appId);
+
+    List<DevopsGitlabPipelineJobDO> listJobs(List<Long> pipelineIds);
+
+    /**
+     * 按gitlab job id新增或更新pipeline的job，未变化的job不更新
+     */
+    void saveJobs(Long pipelineId, List<DevopsGitlabPipelineJobDO> jobs);
+
 }
@@ -0,0 +1,45 @@
+package io.choerodon.devops.domain.application.repository;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 域名、网络、实例列表的搜索索引
+ * 每个资源的搜索字段（包括关联的环境、应用等名称）拆分为小写的三字符片段保存，
+ * 列表搜索时先用片段筛选候选资源，再用原有的LIKE条件精确过滤
+ */
+public interface DevopsSearchIndexRepository {
+
+    /**
+     * 重建资源的索引，资源新增或搜索字段变化后调用
+     *
+     * @param resourceType 资源类型，见ObjectType
+     * @param resourceIds  资源id
+     */
+    void index(String resourceType, Collection<Long> resourceIds);
+
+    void index(String resourceType, Long resourceId);
+
+    /**
+     * 环境名称或编码变化后，重建环境下所有资源的索引
+     */
+    void indexByEnvId(Long envId);
+
+    /**
+     * 应用名称变化后，重建应用的网络和实例的索引
+     */
+    void indexByAppId(Long appId);
+
+    void delete(String resourceType, Long resourceId);
+
+    /**
+     * 获取搜索词的三字符片段，供列表查询筛选候选资源
+     * 首次搜索项目时会为尚未建立索引的资源补建索引
+     *
+     * @param projectId    项目id
+     * @param resourceType 资源类型
+     * @param param        搜索词
+     * @return 片段，搜索词不足三个字符或包含LIKE通配符时返回null，此时不使用索引
+     */
+    List<String> listSearchGrams(Long projectId, String resourceType, String param);
+}
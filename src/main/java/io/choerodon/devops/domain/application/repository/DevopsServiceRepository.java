@@ -40,4 +40,6 @@ public interface DevopsServiceRepository {
     List<DevopsServiceE> list();
 
     List<DevopsServiceE> selectByEnvId(Long envId);
+
+    void updateStatusByIds(List<Long> ids, String status);
 }
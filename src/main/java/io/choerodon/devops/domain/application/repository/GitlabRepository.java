@@ -43,6 +43,6 @@ public interface GitlabRepository {
 
     Boolean getFile(Integer projectId, String branch, String filePath);
 
-    ProjectHook updateWebHook(Integer projectId, Integer hookId, Integer userId);
+    ProjectHook updateWebHook(Integer projectId, Integer hookId, Integer userId, ProjectHook projectHook);
 
 }
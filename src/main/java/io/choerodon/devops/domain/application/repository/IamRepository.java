@@ -13,6 +13,10 @@ public interface IamRepository {
 
     ProjectE queryIamProject(Long projectId);
 
+    void evictProject(Long projectId);
+
+    void evictOrganization(Long organizationId);
+
     Organization queryOrganization();
 
     Organization queryOrganizationById(Long organizationId);
@@ -71,4 +71,20 @@ public class HighlightMarker {
                 ", endColumn=" + endColumn +
                 '}';
     }
+
+    /**
+     * 复制高亮标记
+     *
+     * @return 标记副本
+     */
+    public HighlightMarker copy() {
+        HighlightMarker highlightMarker = new HighlightMarker();
+        highlightMarker.setLine(line);
+        highlightMarker.setEndLine(endLine);
+        highlightMarker.setStartIndex(startIndex);
+        highlightMarker.setEndIndex(endIndex);
+        highlightMarker.setStartColumn(startColumn);
+        highlightMarker.setEndColumn(endColumn);
+        return highlightMarker;
+    }
 }
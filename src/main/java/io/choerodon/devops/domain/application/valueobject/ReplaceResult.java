@@ -1,5 +1,6 @@
 package io.choerodon.devops.domain.application.valueobject;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import io.choerodon.devops.api.dto.ErrorLineDTO;
@@ -73,4 +74,29 @@ public class ReplaceResult {
     public void setDeltaYaml(String deltaYaml) {
         this.deltaYaml = deltaYaml;
     }
+
+    /**
+     * 复制结果，缓存中的结果不会被调用方修改
+     *
+     * @return 结果副本
+     */
+    public ReplaceResult copy() {
+        ReplaceResult replaceResult = new ReplaceResult();
+        replaceResult.setYaml(yaml);
+        replaceResult.setTotalLine(totalLine);
+        replaceResult.setErrorMsg(errorMsg);
+        replaceResult.setDeltaYaml(deltaYaml);
+        if (errorLines != null) {
+            replaceResult.setErrorLines(new ArrayList<>(errorLines));
+        }
+        if (newLines != null) {
+            replaceResult.setNewLines(new ArrayList<>(newLines));
+        }
+        if (highlightMarkers != null) {
+            List<HighlightMarker> markers = new ArrayList<>();
+            highlightMarkers.forEach(highlightMarker -> markers.add(highlightMarker.copy()));
+            replaceResult.setHighlightMarkers(markers);
+        }
+        return replaceResult;
+    }
 }
@@ -23,7 +23,7 @@ import io.choerodon.devops.domain.application.valueobject.C7nCertification;
 import io.choerodon.devops.domain.application.valueobject.certification.CertificationExistCert;
 import io.choerodon.devops.domain.application.valueobject.certification.CertificationSpec;
 import io.choerodon.devops.domain.service.HandlerObjectFileRelationsService;
-import io.choerodon.devops.infra.common.util.GitUtil;
+import io.choerodon.devops.infra.common.util.GitOpsRepositoryManager;
 import io.choerodon.devops.infra.common.util.TypeUtil;
 import io.choerodon.devops.infra.common.util.enums.*;
 import io.choerodon.devops.infra.dataobject.CertificationFileDO;
@@ -33,11 +33,12 @@ import io.choerodon.devops.infra.dataobject.CertificationFileDO;
 public class HandlerC7nCertificationServiceImpl implements HandlerObjectFileRelationsService<C7nCertification> {
 
     private static final String CERTIFICATE = "Certificate";
-    private static final String GIT_SUFFIX = "/.git";
 
     @Autowired
     private CertificationRepository certificationRepository;
     @Autowired
+    private GitOpsRepositoryManager gitOpsRepositoryManager;
+    @Autowired
     private CertificationService certificationService;
     @Autowired
     private DevopsEnvFileResourceRepository devopsEnvFileResourceRepository;
@@ -143,7 +144,7 @@ public class HandlerC7nCertificationServiceImpl implements HandlerObjectFileRela
         if (!c7nCertification.equals(oldC7nCertification)) {
             throw new GitOpsExplainException(GitOpsObjectError.CERT_CHANGED.getError(), filePath);
         }
-        updateCommandSha(filePath, path, certificationE.getCommandId());
+        updateCommandSha(envId, filePath, certificationE.getCommandId());
         return certificationE.getId();
     }
 
@@ -177,13 +178,13 @@ public class HandlerC7nCertificationServiceImpl implements HandlerObjectFileRela
             certificationE.setCommandId(commandId);
             certificationRepository.updateCommandId(certificationE);
         }
-        updateCommandSha(filePath, path, certificationE.getCommandId());
+        updateCommandSha(envId, filePath, certificationE.getCommandId());
         return certificationE.getId();
     }
 
-    private void updateCommandSha(String filePath, String path, Long commandId) {
+    private void updateCommandSha(Long envId, String filePath, Long commandId) {
         DevopsEnvCommandE devopsEnvCommandE = devopsEnvCommandRepository.query(commandId);
-        devopsEnvCommandE.setSha(GitUtil.getFileLatestCommit(path + GIT_SUFFIX, filePath));
+        devopsEnvCommandE.setSha(gitOpsRepositoryManager.latestCommit(envId, filePath));
         devopsEnvCommandRepository.update(devopsEnvCommandE);
     }
 }
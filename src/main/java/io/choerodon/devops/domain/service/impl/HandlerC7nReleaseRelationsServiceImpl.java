@@ -21,7 +21,7 @@ import io.choerodon.devops.domain.application.valueobject.C7nHelmRelease;
 import io.choerodon.devops.domain.application.valueobject.Organization;
 import io.choerodon.devops.domain.application.valueobject.ReplaceResult;
 import io.choerodon.devops.domain.service.HandlerObjectFileRelationsService;
-import io.choerodon.devops.infra.common.util.GitUtil;
+import io.choerodon.devops.infra.common.util.GitOpsRepositoryManager;
 import io.choerodon.devops.infra.common.util.TypeUtil;
 import io.choerodon.devops.infra.common.util.enums.CommandStatus;
 import io.choerodon.devops.infra.common.util.enums.CommandType;
@@ -31,10 +31,11 @@ import io.choerodon.devops.infra.common.util.enums.ObjectType;
 public class HandlerC7nReleaseRelationsServiceImpl implements HandlerObjectFileRelationsService<C7nHelmRelease> {
 
     public static final String C7NHELM_RELEASE = "C7NHelmRelease";
-    private static final String GIT_SUFFIX = "/.git";
     @Autowired
     private ApplicationInstanceRepository applicationInstanceRepository;
     @Autowired
+    private GitOpsRepositoryManager gitOpsRepositoryManager;
+    @Autowired
     private DevopsEnvCommandRepository devopsEnvCommandRepository;
     @Autowired
     private ApplicationInstanceService applicationInstanceService;
@@ -126,7 +127,7 @@ public class HandlerC7nReleaseRelationsServiceImpl implements HandlerObjectFileR
                                     applicationInstanceE.setCommandId(devopsEnvCommandE.getId());
                                     applicationInstanceRepository.update(applicationInstanceE);
                                 }
-                                devopsEnvCommandE.setSha(GitUtil.getFileLatestCommit(path + GIT_SUFFIX, filePath));
+                                devopsEnvCommandE.setSha(gitOpsRepositoryManager.latestCommit(envId, filePath));
                                 devopsEnvCommandRepository.update(devopsEnvCommandE);
                                 DevopsEnvFileResourceE devopsEnvFileResourceE = devopsEnvFileResourceRepository
                                         .queryByEnvIdAndResource(envId, applicationDeployDTO.getAppInstanceId(), c7nHelmRelease.getKind());
@@ -178,7 +179,7 @@ public class HandlerC7nReleaseRelationsServiceImpl implements HandlerObjectFileR
                             applicationInstanceE.setCommandId(devopsEnvCommandE.getId());
                             applicationInstanceRepository.update(applicationInstanceE);
                         }
-                        devopsEnvCommandE.setSha(GitUtil.getFileLatestCommit(path + GIT_SUFFIX, filePath));
+                        devopsEnvCommandE.setSha(gitOpsRepositoryManager.latestCommit(envId, filePath));
                         devopsEnvCommandRepository.update(devopsEnvCommandE);
                         DevopsEnvFileResourceE devopsEnvFileResourceE = new DevopsEnvFileResourceE();
                         devopsEnvFileResourceE.setEnvironment(new DevopsEnvironmentE(envId));
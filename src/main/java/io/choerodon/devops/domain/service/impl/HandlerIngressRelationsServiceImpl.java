@@ -23,7 +23,7 @@ import io.choerodon.devops.domain.application.entity.*;
 import io.choerodon.devops.domain.application.handler.GitOpsExplainException;
 import io.choerodon.devops.domain.application.repository.*;
 import io.choerodon.devops.domain.service.HandlerObjectFileRelationsService;
-import io.choerodon.devops.infra.common.util.GitUtil;
+import io.choerodon.devops.infra.common.util.GitOpsRepositoryManager;
 import io.choerodon.devops.infra.common.util.TypeUtil;
 import io.choerodon.devops.infra.common.util.enums.CommandStatus;
 import io.choerodon.devops.infra.common.util.enums.CommandType;
@@ -37,10 +37,11 @@ public class HandlerIngressRelationsServiceImpl implements HandlerObjectFileRela
 
     Pattern pattern = Pattern.compile("^[-\\+]?[\\d]*$");
     public static final String INGRESS = "Ingress";
-    private static final String GIT_SUFFIX = "/.git";
     @Autowired
     private DevopsIngressRepository devopsIngressRepository;
     @Autowired
+    private GitOpsRepositoryManager gitOpsRepositoryManager;
+    @Autowired
     private DevopsIngressService devopsIngressService;
     @Autowired
     private DevopsEnvFileResourceRepository devopsEnvFileResourceRepository;
@@ -134,7 +135,7 @@ public class HandlerIngressRelationsServiceImpl implements HandlerObjectFileRela
                             devopsIngressDO.setCommandId(devopsEnvCommandE.getId());
                             devopsIngressRepository.updateIngress(devopsIngressDO);
                         }
-                        devopsEnvCommandE.setSha(GitUtil.getFileLatestCommit(path + GIT_SUFFIX, filePath));
+                        devopsEnvCommandE.setSha(gitOpsRepositoryManager.latestCommit(envId, filePath));
                         devopsEnvCommandRepository.update(devopsEnvCommandE);
                         DevopsEnvFileResourceE devopsEnvFileResourceE = new DevopsEnvFileResourceE();
                         devopsEnvFileResourceE.setEnvironment(new DevopsEnvironmentE(envId));
@@ -190,7 +191,7 @@ public class HandlerIngressRelationsServiceImpl implements HandlerObjectFileRela
                             devopsIngressDO.setCommandId(devopsEnvCommandE.getId());
                             devopsIngressRepository.updateIngress(devopsIngressDO);
                         }
-                        devopsEnvCommandE.setSha(GitUtil.getFileLatestCommit(path + GIT_SUFFIX, filePath));
+                        devopsEnvCommandE.setSha(gitOpsRepositoryManager.latestCommit(envId, filePath));
                         devopsEnvCommandRepository.update(devopsEnvCommandE);
                         DevopsEnvFileResourceE devopsEnvFileResourceE = devopsEnvFileResourceRepository
                                 .queryByEnvIdAndResource(envId, devopsIngressE.getId(), v1beta1Ingress.getKind());
@@ -20,7 +20,7 @@ import io.choerodon.devops.domain.application.entity.*;
 import io.choerodon.devops.domain.application.handler.GitOpsExplainException;
 import io.choerodon.devops.domain.application.repository.*;
 import io.choerodon.devops.domain.service.HandlerObjectFileRelationsService;
-import io.choerodon.devops.infra.common.util.GitUtil;
+import io.choerodon.devops.infra.common.util.GitOpsRepositoryManager;
 import io.choerodon.devops.infra.common.util.TypeUtil;
 import io.choerodon.devops.infra.common.util.enums.CommandStatus;
 import io.choerodon.devops.infra.common.util.enums.CommandType;
@@ -31,11 +31,12 @@ import io.choerodon.devops.infra.common.util.enums.ObjectType;
 public class HandlerServiceRelationsServiceImpl implements HandlerObjectFileRelationsService<V1Service> {
 
     public static final String SERVICE = "Service";
-    private static final String GIT_SUFFIX = "/.git";
 
     @Autowired
     private DevopsServiceRepository devopsServiceRepository;
     @Autowired
+    private GitOpsRepositoryManager gitOpsRepositoryManager;
+    @Autowired
     private DevopsServiceService devopsServiceService;
     @Autowired
     private DevopsEnvFileResourceRepository devopsEnvFileResourceRepository;
@@ -123,7 +124,7 @@ public class HandlerServiceRelationsServiceImpl implements HandlerObjectFileRela
                             devopsServiceE.setCommandId(devopsEnvCommandE.getId());
                             devopsServiceRepository.update(devopsServiceE);
                         }
-                        devopsEnvCommandE.setSha(GitUtil.getFileLatestCommit(path + GIT_SUFFIX, filePath));
+                        devopsEnvCommandE.setSha(gitOpsRepositoryManager.latestCommit(envId, filePath));
                         devopsEnvCommandRepository.update(devopsEnvCommandE);
                         devopsServiceService.updateDevopsServiceByGitOps(
                                 projectId, devopsServiceE.getId(), devopsServiceReqDTO);
@@ -171,7 +172,7 @@ public class HandlerServiceRelationsServiceImpl implements HandlerObjectFileRela
                             devopsServiceE.setCommandId(devopsEnvCommandE.getId());
                             devopsServiceRepository.update(devopsServiceE);
                         }
-                        devopsEnvCommandE.setSha(GitUtil.getFileLatestCommit(path + GIT_SUFFIX, filePath));
+                        devopsEnvCommandE.setSha(gitOpsRepositoryManager.latestCommit(envId, filePath));
                         devopsEnvCommandRepository.update(devopsEnvCommandE);
                         DevopsEnvFileResourceE devopsEnvFileResourceE = new DevopsEnvFileResourceE();
                         devopsEnvFileResourceE.setEnvironment(new DevopsEnvironmentE(envId));
@@ -0,0 +1,160 @@
+package io.choerodon.devops.infra.cache;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.PostConstruct;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.stereotype.Component;
+
+import io.choerodon.core.exception.CommonException;
+import io.choerodon.devops.api.dto.GitConfigDTO;
+import io.choerodon.devops.domain.application.entity.DevopsEnvironmentE;
+import io.choerodon.devops.domain.application.entity.ProjectE;
+import io.choerodon.devops.domain.application.repository.DevopsEnvironmentRepository;
+import io.choerodon.devops.domain.application.repository.IamRepository;
+import io.choerodon.devops.domain.application.valueobject.Organization;
+
+/**
+ * agent初始化消息用到的环境和项目信息缓存，服务重启后大量agent重连时不再逐个查询环境和iam
+ * 环境是否启用在启动时一次加载，连接时只读缓存判断是否优先初始化
+ * 消息在真正下发时按主键重新读取环境，密钥以数据库为准，其他节点更新密钥后不会下发旧密钥
+ * gitops库的组织和项目编码按项目缓存，每个项目只查询一次iam
+ */
+@Component
+public class AgentInitPayloadCache implements PublicMetrics {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(AgentInitPayloadCache.class);
+    private static final String METRIC_PREFIX = "devops.cache.agent.init.";
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    @Value("${cache.agent.init.maxEntries:10000}")
+    private Long maxEntries;
+    @Value("${cache.agent.init.expireMinutes:60}")
+    private Long expireMinutes;
+    @Value("${services.gitlab.sshUrl}")
+    private String gitlabSshUrl;
+
+    private DevopsEnvironmentRepository devopsEnvironmentRepository;
+    private IamRepository iamRepository;
+
+    private Cache<Long, Boolean> activeEnvs;
+    private Cache<Long, String> gitopsGroups;
+
+    public AgentInitPayloadCache(DevopsEnvironmentRepository devopsEnvironmentRepository,
+                                 IamRepository iamRepository) {
+        this.devopsEnvironmentRepository = devopsEnvironmentRepository;
+        this.iamRepository = iamRepository;
+    }
+
+    @PostConstruct
+    public void init() {
+        activeEnvs = CacheBuilder.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfterWrite(expireMinutes, TimeUnit.MINUTES)
+                .recordStats()
+                .build();
+        gitopsGroups = CacheBuilder.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfterWrite(expireMinutes, TimeUnit.MINUTES)
+                .build();
+        warm();
+    }
+
+    /**
+     * 环境是否启用，启用的环境重连后优先初始化
+     * 在agent连接的线程中调用，只读缓存，未缓存的环境按启用处理
+     */
+    public Boolean isActive(Long envId) {
+        Boolean active = activeEnvs.getIfPresent(envId);
+        return active == null || active;
+    }
+
+    /**
+     * 获取环境的初始化消息，包含gitops库地址和环境密钥
+     * 在准入控制的线程中按速率调用，每次读取环境的最新密钥
+     */
+    public String getPayload(Long envId) {
+        DevopsEnvironmentE devopsEnvironmentE = devopsEnvironmentRepository.queryById(envId);
+        if (devopsEnvironmentE == null) {
+            throw new CommonException("error.env.query");
+        }
+        activeEnvs.put(envId, active(devopsEnvironmentE));
+        GitConfigDTO gitConfigDTO = new GitConfigDTO();
+        gitConfigDTO.setGitUrl(String.format("git@%s:%s-gitops/%s.git",
+                gitlabSshUrl, gitopsGroup(devopsEnvironmentE.getProjectE().getId()), devopsEnvironmentE.getCode()));
+        gitConfigDTO.setSshKey(devopsEnvironmentE.getEnvIdRsa());
+        try {
+            return OBJECT_MAPPER.writeValueAsString(gitConfigDTO);
+        } catch (JsonProcessingException e) {
+            throw new CommonException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 环境状态变化后清除缓存
+     */
+    public void evict(Long envId) {
+        activeEnvs.invalidate(envId);
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        CacheStats stats = activeEnvs.stats();
+        List<Metric<?>> metrics = new ArrayList<>();
+        metrics.add(new Metric<>(METRIC_PREFIX + "hit", stats.hitCount()));
+        metrics.add(new Metric<>(METRIC_PREFIX + "miss", stats.missCount()));
+        metrics.add(new Metric<>(METRIC_PREFIX + "hitRate", stats.hitRate()));
+        metrics.add(new Metric<>(METRIC_PREFIX + "size", activeEnvs.size()));
+        return metrics;
+    }
+
+    /**
+     * 启动时一次查询所有环境，agent重连时不再逐个查询数据库，失败时未缓存的环境按启用处理
+     */
+    private void warm() {
+        try {
+            devopsEnvironmentRepository.list().stream()
+                    .limit(maxEntries)
+                    .forEach(devopsEnvironmentE ->
+                            activeEnvs.put(devopsEnvironmentE.getId(), active(devopsEnvironmentE)));
+        } catch (RuntimeException e) {
+            LOGGER.warn("warm agent init payloads failed", e);
+        }
+    }
+
+    /**
+     * gitops库所在的gitlab组，组织编码-项目编码
+     */
+    private String gitopsGroup(Long projectId) {
+        try {
+            return gitopsGroups.get(projectId, () -> {
+                ProjectE projectE = iamRepository.queryIamProject(projectId);
+                Organization organization = iamRepository.queryOrganizationById(projectE.getOrganization().getId());
+                return organization.getCode() + "-" + projectE.getCode();
+            });
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new CommonException(e.getCause());
+        }
+    }
+
+    private static Boolean active(DevopsEnvironmentE devopsEnvironmentE) {
+        return !Boolean.FALSE.equals(devopsEnvironmentE.getActive());
+    }
+}
@@ -0,0 +1,207 @@
+package io.choerodon.devops.infra.cache;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import io.choerodon.core.exception.CommonException;
+import io.choerodon.devops.infra.dataobject.gitlab.TagDO;
+import io.choerodon.devops.infra.dataobject.gitlab.TagNodeDO;
+
+/**
+ * 按gitlab项目缓存已排好序的tag列表，由tag_push webhook和本服务创建删除tag时维护
+ * 删除tag时直接从列表中移除，新建或更新tag时webhook中没有完整的tag信息，清除后在下次访问时重新加载
+ * webhook和接口请求只会落到一个节点上，变更通过redis频道广播给所有节点
+ */
+@Component
+public class GitlabTagCache implements PublicMetrics {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(GitlabTagCache.class);
+    private static final String METRIC_PREFIX = "devops.cache.gitlab.tag.";
+    static final String CHANNEL = "devops:cache:gitlab-tag";
+
+    @Value("${cache.gitlab.tag.maxProjects:2000}")
+    private Long maxProjects;
+    @Value("${cache.gitlab.tag.expireMinutes:60}")
+    private Long expireMinutes;
+
+    @Autowired
+    private RedisConnectionFactory redisConnectionFactory;
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    private Cache<Integer, ProjectTags> cache;
+    private RedisMessageListenerContainer listenerContainer;
+
+    @PostConstruct
+    public void init() {
+        cache = CacheBuilder.newBuilder()
+                .maximumSize(maxProjects)
+                .expireAfterWrite(expireMinutes, TimeUnit.MINUTES)
+                .recordStats()
+                .build();
+        if (redisConnectionFactory != null) {
+            listenerContainer = new RedisMessageListenerContainer();
+            listenerContainer.setConnectionFactory(redisConnectionFactory);
+            listenerContainer.addMessageListener(this::onMessage, new ChannelTopic(CHANNEL));
+            listenerContainer.afterPropertiesSet();
+            listenerContainer.start();
+        }
+    }
+
+    @PreDestroy
+    public void destroy() throws Exception {
+        if (listenerContainer != null) {
+            listenerContainer.destroy();
+        }
+    }
+
+    /**
+     * 获取项目的tag列表，未命中时通过loader加载
+     *
+     * @param gitlabProjectId gitlab项目id
+     * @param loader          从gitlab查询全部tag
+     * @return 按版本号倒序排列的只读列表
+     */
+    public List<TagDO> listTags(Integer gitlabProjectId, Supplier<List<TagDO>> loader) {
+        return get(gitlabProjectId, loader).tags;
+    }
+
+    public boolean exists(Integer gitlabProjectId, String tagName, Supplier<List<TagDO>> loader) {
+        return get(gitlabProjectId, loader).names.contains(tagName);
+    }
+
+    public void removeTag(Integer gitlabProjectId, String tagName) {
+        removeLocal(gitlabProjectId, tagName);
+        publish(gitlabProjectId + ":" + tagName);
+    }
+
+    public void invalidate(Integer gitlabProjectId) {
+        cache.invalidate(gitlabProjectId);
+        publish(String.valueOf(gitlabProjectId));
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        CacheStats stats = cache.stats();
+        List<Metric<?>> metrics = new ArrayList<>();
+        metrics.add(new Metric<>(METRIC_PREFIX + "hit", stats.hitCount()));
+        metrics.add(new Metric<>(METRIC_PREFIX + "miss", stats.missCount()));
+        metrics.add(new Metric<>(METRIC_PREFIX + "hitRate", stats.hitRate()));
+        metrics.add(new Metric<>(METRIC_PREFIX + "size", cache.size()));
+        return metrics;
+    }
+
+    /**
+     * 消息为"gitlab项目id"时清除整个项目，为"gitlab项目id:tag名"时移除单个tag，tag名中不会出现冒号
+     */
+    void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        int separator = body.indexOf(':');
+        try {
+            if (separator < 0) {
+                cache.invalidate(Integer.valueOf(body));
+            } else {
+                removeLocal(Integer.valueOf(body.substring(0, separator)), body.substring(separator + 1));
+            }
+        } catch (NumberFormatException e) {
+            LOGGER.warn("ignore malformed gitlab tag cache message {}", body);
+        }
+    }
+
+    private void removeLocal(Integer gitlabProjectId, String tagName) {
+        cache.asMap().computeIfPresent(gitlabProjectId, (key, projectTags) -> projectTags.without(tagName));
+    }
+
+    /**
+     * 广播失败时其他节点的缓存只能等过期，不影响本次操作
+     */
+    private void publish(String body) {
+        if (stringRedisTemplate == null) {
+            return;
+        }
+        try {
+            stringRedisTemplate.convertAndSend(CHANNEL, body);
+        } catch (RuntimeException e) {
+            LOGGER.warn("publish gitlab tag cache message {} failed", body, e);
+        }
+    }
+
+    private ProjectTags get(Integer gitlabProjectId, Supplier<List<TagDO>> loader) {
+        try {
+            return cache.get(gitlabProjectId, () -> new ProjectTags(loader.get()));
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new CommonException(e.getCause());
+        }
+    }
+
+    private static int compareTag(TagDO a, TagNodeDO tagA, TagDO b, TagNodeDO tagB) {
+        if (tagA != null && tagB != null) {
+            return tagA.compareTo(tagB) * -1;
+        } else if (tagA == null && tagB != null) {
+            return 1;
+        } else if (tagA != null) {
+            return -1;
+        } else {
+            return a.getName().compareToIgnoreCase(b.getName());
+        }
+    }
+
+    private static class ProjectTags {
+        private final List<TagDO> tags;
+        private final Set<String> names;
+
+        ProjectTags(List<TagDO> tags) {
+            List<TagDO> sortedTags = tags == null ? new ArrayList<>() : new ArrayList<>(tags);
+            // 排序前先解析版本号，避免每次比较都做正则匹配
+            Map<TagDO, TagNodeDO> tagNodes = new IdentityHashMap<>();
+            sortedTags.forEach(tagDO -> tagNodes.put(tagDO, TagNodeDO.tagNameToTagNode(tagDO.getName())));
+            sortedTags.sort((a, b) -> compareTag(a, tagNodes.get(a), b, tagNodes.get(b)));
+            this.tags = Collections.unmodifiableList(sortedTags);
+            this.names = Collections.unmodifiableSet(sortedTags.stream()
+                    .map(TagDO::getName)
+                    .collect(Collectors.toCollection(HashSet::new)));
+        }
+
+        ProjectTags without(String tagName) {
+            if (!names.contains(tagName)) {
+                return this;
+            }
+            return new ProjectTags(tags.stream()
+                    .filter(tagDO -> !tagName.equals(tagDO.getName()))
+                    .collect(Collectors.toList()));
+        }
+    }
+}
@@ -0,0 +1,267 @@
+package io.choerodon.devops.infra.cache;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import javax.annotation.PostConstruct;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.stereotype.Component;
+
+import io.choerodon.core.exception.CommonException;
+import io.choerodon.devops.domain.application.entity.iam.UserE;
+import io.choerodon.devops.domain.application.repository.IamRepository;
+
+/**
+ * 缓存iam用户信息，分页渲染时先收集整页的用户id，未命中的用户通过一次listUsersByIds查询
+ * iam确认不存在的用户也会缓存一段较短的时间，避免反复查询，iam调用失败时不缓存
+ */
+@Component
+public class IamUserCache implements PublicMetrics {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(IamUserCache.class);
+    private static final String METRIC_PREFIX = "devops.cache.iam.user.";
+
+    @Value("${cache.iam.user.maxEntries:10000}")
+    private Long maxEntries;
+    @Value("${cache.iam.user.expireMinutes:10}")
+    private Long expireMinutes;
+    @Value("${cache.iam.user.missingExpireSeconds:60}")
+    private Long missingExpireSeconds;
+
+    private IamRepository iamRepository;
+
+    private Cache<Long, UserE> users;
+    private Cache<String, UserE> loginNameUsers;
+    private Cache<Long, Boolean> missingIds;
+    private Cache<String, Boolean> missingLoginNames;
+    private Cache<String, UserE> emailUsers;
+    private Cache<String, Boolean> missingEmails;
+
+    public IamUserCache(IamRepository iamRepository) {
+        this.iamRepository = iamRepository;
+    }
+
+    @PostConstruct
+    public void init() {
+        users = CacheBuilder.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfterWrite(expireMinutes, TimeUnit.MINUTES)
+                .recordStats()
+                .build();
+        loginNameUsers = CacheBuilder.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfterWrite(expireMinutes, TimeUnit.MINUTES)
+                .recordStats()
+                .build();
+        missingIds = CacheBuilder.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfterWrite(missingExpireSeconds, TimeUnit.SECONDS)
+                .build();
+        missingLoginNames = CacheBuilder.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfterWrite(missingExpireSeconds, TimeUnit.SECONDS)
+                .build();
+        emailUsers = CacheBuilder.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfterWrite(expireMinutes, TimeUnit.MINUTES)
+                .recordStats()
+                .build();
+        missingEmails = CacheBuilder.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfterWrite(missingExpireSeconds, TimeUnit.SECONDS)
+                .build();
+    }
+
+    /**
+     * 批量获取用户，未命中的用户合并为一次远程查询
+     *
+     * @param ids 用户id，可包含null和重复值
+     * @return 用户id与用户的映射，不存在的用户不在结果中
+     */
+    public Map<Long, UserE> listByIds(Collection<Long> ids) {
+        Map<Long, UserE> result = new HashMap<>();
+        List<Long> missIds = new ArrayList<>();
+        for (Long id : new LinkedHashSet<>(ids)) {
+            if (id == null) {
+                continue;
+            }
+            UserE userE = users.getIfPresent(id);
+            if (userE != null) {
+                result.put(id, userE);
+            } else if (missingIds.getIfPresent(id) == null) {
+                missIds.add(id);
+            }
+        }
+        if (missIds.isEmpty()) {
+            return result;
+        }
+        List<UserE> userES;
+        try {
+            userES = iamRepository.listUsersByIds(missIds);
+        } catch (CommonException e) {
+            // iam不可用时不缓存查询结果，本次按用户不存在处理
+            LOGGER.warn("list users by ids failed: {}", e.getMessage());
+            return result;
+        }
+        Set<Long> foundIds = new LinkedHashSet<>();
+        userES.stream().filter(Objects::nonNull).forEach(userE -> {
+            put(userE);
+            result.put(userE.getId(), userE);
+            foundIds.add(userE.getId());
+        });
+        missIds.stream().filter(id -> !foundIds.contains(id)).forEach(id -> missingIds.put(id, Boolean.TRUE));
+        return result;
+    }
+
+    public UserE queryById(Long id) {
+        if (id == null) {
+            return null;
+        }
+        List<Long> ids = new ArrayList<>();
+        ids.add(id);
+        return listByIds(ids).get(id);
+    }
+
+    /**
+     * 按登录名批量获取用户，iam没有按登录名批量查询的接口，所以去重后逐个查询未命中的登录名
+     *
+     * @param loginNames 登录名，可包含null和重复值
+     * @return 登录名与用户的映射，不存在的用户不在结果中
+     */
+    public Map<String, UserE> listByLoginNames(Collection<String> loginNames) {
+        Set<String> distinctNames = loginNames.stream()
+                .filter(Objects::nonNull)
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+        Map<String, UserE> result = new HashMap<>();
+        for (String loginName : distinctNames) {
+            UserE userE = loginNameUsers.getIfPresent(loginName);
+            if (userE == null && missingLoginNames.getIfPresent(loginName) == null) {
+                try {
+                    userE = iamRepository.queryByLoginName(loginName);
+                } catch (CommonException e) {
+                    // iam不可用时不缓存查询结果，本次按用户不存在处理
+                    LOGGER.warn("query user by login name {} failed: {}", loginName, e.getMessage());
+                    continue;
+                }
+                if (userE == null || userE.getId() == null) {
+                    missingLoginNames.put(loginName, Boolean.TRUE);
+                    continue;
+                }
+                put(userE);
+                loginNameUsers.put(loginName, userE);
+            }
+            if (userE != null) {
+                result.put(loginName, userE);
+            }
+        }
+        return result;
+    }
+
+    public UserE queryByLoginName(String loginName) {
+        if (loginName == null) {
+            return null;
+        }
+        List<String> loginNames = new ArrayList<>();
+        loginNames.add(loginName);
+        return listByLoginNames(loginNames).get(loginName);
+    }
+
+    /**
+     * 按邮箱批量获取项目下的用户，iam没有按邮箱批量查询的接口，所以去重后逐个查询未命中的邮箱
+     *
+     * @param projectId 项目id
+     * @param emails    邮箱，可包含null和重复值
+     * @return 邮箱与用户的映射，不存在的用户不在结果中
+     */
+    public Map<String, UserE> listByEmails(Long projectId, Collection<String> emails) {
+        Set<String> distinctEmails = emails.stream()
+                .filter(Objects::nonNull)
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+        Map<String, UserE> result = new HashMap<>();
+        for (String email : distinctEmails) {
+            String key = projectId + ":" + email;
+            UserE userE = emailUsers.getIfPresent(key);
+            if (userE == null && missingEmails.getIfPresent(key) == null) {
+                try {
+                    userE = iamRepository.queryByEmail(projectId, email);
+                } catch (CommonException e) {
+                    // iam不可用时不缓存查询结果，本次按用户不存在处理
+                    LOGGER.warn("query user by email {} failed: {}", email, e.getMessage());
+                    continue;
+                }
+                if (userE == null || userE.getId() == null) {
+                    missingEmails.put(key, Boolean.TRUE);
+                    continue;
+                }
+                put(userE);
+                emailUsers.put(key, userE);
+            }
+            if (userE != null) {
+                result.put(email, userE);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 用户信息变更后清除缓存
+     *
+     * @param id        用户id
+     * @param loginName 登录名
+     */
+    public void evict(Long id, String loginName) {
+        if (id != null) {
+            users.invalidate(id);
+            missingIds.invalidate(id);
+            loginNameUsers.asMap().values().removeIf(userE -> id.equals(userE.getId()));
+            emailUsers.asMap().values().removeIf(userE -> id.equals(userE.getId()));
+        }
+        if (loginName != null) {
+            loginNameUsers.invalidate(loginName);
+            missingLoginNames.invalidate(loginName);
+        }
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        CacheStats idStats = users.stats();
+        CacheStats loginNameStats = loginNameUsers.stats();
+        CacheStats emailStats = emailUsers.stats();
+        List<Metric<?>> metrics = new ArrayList<>();
+        metrics.add(new Metric<>(METRIC_PREFIX + "id.hit", idStats.hitCount()));
+        metrics.add(new Metric<>(METRIC_PREFIX + "id.miss", idStats.missCount()));
+        metrics.add(new Metric<>(METRIC_PREFIX + "id.hitRate", idStats.hitRate()));
+        metrics.add(new Metric<>(METRIC_PREFIX + "loginName.hit", loginNameStats.hitCount()));
+        metrics.add(new Metric<>(METRIC_PREFIX + "loginName.miss", loginNameStats.missCount()));
+        metrics.add(new Metric<>(METRIC_PREFIX + "loginName.hitRate", loginNameStats.hitRate()));
+        metrics.add(new Metric<>(METRIC_PREFIX + "email.hit", emailStats.hitCount()));
+        metrics.add(new Metric<>(METRIC_PREFIX + "email.miss", emailStats.missCount()));
+        metrics.add(new Metric<>(METRIC_PREFIX + "email.hitRate", emailStats.hitRate()));
+        metrics.add(new Metric<>(METRIC_PREFIX + "size", users.size()));
+        metrics.add(new Metric<>(METRIC_PREFIX + "missing",
+                missingIds.size() + missingLoginNames.size() + missingEmails.size()));
+        return metrics;
+    }
+
+    private void put(UserE userE) {
+        users.put(userE.getId(), userE);
+        if (userE.getLoginName() != null) {
+            loginNameUsers.put(userE.getLoginName(), userE);
+        }
+    }
+}
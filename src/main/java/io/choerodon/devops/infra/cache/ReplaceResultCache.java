@@ -0,0 +1,110 @@
+package io.choerodon.devops.infra.cache;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import javax.annotation.PostConstruct;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.stereotype.Component;
+
+import io.choerodon.core.exception.CommonException;
+import io.choerodon.devops.domain.application.valueobject.ReplaceResult;
+
+/**
+ * 按chart values与部署values的内容摘要缓存values比较结果，同一对values只计算一次
+ */
+@Component
+public class ReplaceResultCache implements PublicMetrics {
+
+    private static final String METRIC_PREFIX = "devops.cache.values.";
+
+    @Value("${cache.values.maxEntries:2000}")
+    private Integer maxEntries;
+    @Value("${cache.values.maxWeight:20000000}")
+    private Long maxWeight;
+    @Value("${cache.values.expireMinutes:60}")
+    private Long expireMinutes;
+
+    private Cache<String, ReplaceResult> cache;
+
+    @PostConstruct
+    public void init() {
+        // 权重为结果文本长度且不低于 maxWeight / maxEntries，从而同时限制总文本量和缓存条数
+        long minWeight = Math.max(maxWeight / maxEntries, 1L);
+        cache = CacheBuilder.newBuilder()
+                .maximumWeight(maxWeight)
+                .weigher((String key, ReplaceResult value) -> (int) Math.max(weightOf(value), minWeight))
+                .expireAfterAccess(expireMinutes, TimeUnit.MINUTES)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * 获取values比较结果，未命中时计算并缓存
+     *
+     * @param versionValue chart values
+     * @param deployValue  部署values
+     * @param supplier     比较逻辑
+     * @return 结果副本
+     */
+    public ReplaceResult get(String versionValue, String deployValue, Supplier<ReplaceResult> supplier) {
+        String key = digest(versionValue, deployValue);
+        ReplaceResult replaceResult = cache.getIfPresent(key);
+        if (replaceResult == null) {
+            replaceResult = supplier.get();
+            cache.put(key, replaceResult.copy());
+            return replaceResult;
+        }
+        return replaceResult.copy();
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        CacheStats stats = cache.stats();
+        List<Metric<?>> metrics = new ArrayList<>();
+        metrics.add(new Metric<>(METRIC_PREFIX + "hit", stats.hitCount()));
+        metrics.add(new Metric<>(METRIC_PREFIX + "miss", stats.missCount()));
+        metrics.add(new Metric<>(METRIC_PREFIX + "hitRate", stats.hitRate()));
+        metrics.add(new Metric<>(METRIC_PREFIX + "eviction", stats.evictionCount()));
+        metrics.add(new Metric<>(METRIC_PREFIX + "size", cache.size()));
+        return metrics;
+    }
+
+    private static int weightOf(ReplaceResult replaceResult) {
+        int weight = 0;
+        if (replaceResult.getYaml() != null) {
+            weight += replaceResult.getYaml().length();
+        }
+        if (replaceResult.getDeltaYaml() != null) {
+            weight += replaceResult.getDeltaYaml().length();
+        }
+        return weight;
+    }
+
+    private static String digest(String versionValue, String deployValue) {
+        try {
+            MessageDigest messageDigest = MessageDigest.getInstance("SHA-256");
+            messageDigest.update(versionValue.getBytes(StandardCharsets.UTF_8));
+            messageDigest.update((byte) 0);
+            messageDigest.update(deployValue.getBytes(StandardCharsets.UTF_8));
+            StringBuilder stringBuilder = new StringBuilder();
+            for (byte b : messageDigest.digest()) {
+                stringBuilder.append(String.format("%02x", b));
+            }
+            return stringBuilder.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new CommonException(e);
+        }
+    }
+}
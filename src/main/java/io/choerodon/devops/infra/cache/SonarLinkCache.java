@@ -0,0 +1,171 @@
+package io.choerodon.devops.infra.cache;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.zaxxer.hikari.util.DefaultThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+
+import io.choerodon.devops.infra.common.util.HttpClientUtil;
+
+/**
+ * 缓存应用在sonarqube中是否存在对应项目，列表查询只读取缓存，
+ * 未命中或过期的应用在专用线程池中异步检查，流水线webhook到达时也会重新检查
+ */
+@Component
+public class SonarLinkCache implements PublicMetrics {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SonarLinkCache.class);
+    private static final String METRIC_PREFIX = "devops.cache.sonar.link.";
+
+    @Value("${cache.sonar.link.maxEntries:10000}")
+    private Long maxEntries;
+    @Value("${cache.sonar.link.refreshMinutes:10}")
+    private Long refreshMinutes;
+    @Value("${cache.sonar.link.expireMinutes:60}")
+    private Long expireMinutes;
+    @Value("${cache.sonar.link.refreshThreads:4}")
+    private Integer refreshThreads;
+
+    private final Map<Long, Boolean> refreshing = new ConcurrentHashMap<>();
+    private final AtomicLong refreshCount = new AtomicLong();
+    private final AtomicLong refreshFailure = new AtomicLong();
+    private final AtomicLong refreshMillis = new AtomicLong();
+    private final AtomicLong lastRefreshMillis = new AtomicLong();
+    private final AtomicLong maxRefreshMillis = new AtomicLong();
+
+    private Cache<Long, SonarLink> links;
+    private ExecutorService refresher;
+
+    @PostConstruct
+    public void init() {
+        links = CacheBuilder.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfterWrite(expireMinutes, TimeUnit.MINUTES)
+                .recordStats()
+                .build();
+        refresher = new ThreadPoolExecutor(refreshThreads, refreshThreads, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), new DefaultThreadFactory("devops-sonar-link", true));
+    }
+
+    @PreDestroy
+    public void destroy() {
+        refresher.shutdownNow();
+    }
+
+    /**
+     * 读取应用的sonarqube链接，不发起请求，未命中或已过刷新时间时在后台检查
+     *
+     * @param appId    应用id
+     * @param checkUrl 检查sonarqube项目是否存在的地址
+     * @param linkUrl  sonarqube项目存在时返回的链接
+     * @return 链接，未知或不存在时为null
+     */
+    public String getLink(Long appId, String checkUrl, String linkUrl) {
+        SonarLink sonarLink = links.getIfPresent(appId);
+        if (sonarLink == null || !sonarLink.checkUrl.equals(checkUrl)) {
+            // 尚未检查过时先按不存在返回，检查完成后下次列表即可显示
+            refresh(appId, new SonarLink(checkUrl, linkUrl, false, 0L));
+            return null;
+        }
+        if (System.currentTimeMillis() - sonarLink.checkedAt > TimeUnit.MINUTES.toMillis(refreshMinutes)) {
+            refresh(appId, sonarLink);
+        }
+        return sonarLink.exists ? sonarLink.linkUrl : null;
+    }
+
+    /**
+     * 应用有新的流水线时重新检查，未缓存的应用等到列表查询时再检查
+     *
+     * @param appId 应用id
+     */
+    public void refresh(Long appId) {
+        SonarLink sonarLink = links.getIfPresent(appId);
+        if (sonarLink != null) {
+            refresh(appId, sonarLink);
+        }
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        CacheStats stats = links.stats();
+        long count = refreshCount.get();
+        List<Metric<?>> metrics = new ArrayList<>();
+        metrics.add(new Metric<>(METRIC_PREFIX + "hit", stats.hitCount()));
+        metrics.add(new Metric<>(METRIC_PREFIX + "miss", stats.missCount()));
+        metrics.add(new Metric<>(METRIC_PREFIX + "size", links.size()));
+        metrics.add(new Metric<>(METRIC_PREFIX + "refresh.count", count));
+        metrics.add(new Metric<>(METRIC_PREFIX + "refresh.failure", refreshFailure.get()));
+        metrics.add(new Metric<>(METRIC_PREFIX + "refresh.pending", refreshing.size()));
+        metrics.add(new Metric<>(METRIC_PREFIX + "refresh.time.avg", count == 0 ? 0 : refreshMillis.get() / count));
+        metrics.add(new Metric<>(METRIC_PREFIX + "refresh.time.last", lastRefreshMillis.get()));
+        metrics.add(new Metric<>(METRIC_PREFIX + "refresh.time.max", maxRefreshMillis.get()));
+        return metrics;
+    }
+
+    private void refresh(Long appId, SonarLink sonarLink) {
+        if (refreshing.putIfAbsent(appId, Boolean.TRUE) != null) {
+            return;
+        }
+        try {
+            refresher.execute(() -> check(appId, sonarLink));
+        } catch (RejectedExecutionException e) {
+            refreshing.remove(appId);
+        }
+    }
+
+    private void check(Long appId, SonarLink sonarLink) {
+        long start = System.currentTimeMillis();
+        boolean exists = sonarLink.exists;
+        try {
+            exists = HttpStatus.OK.value() == HttpClientUtil.getSonar(sonarLink.checkUrl);
+        } catch (Exception e) {
+            // 检查失败时保留上次的结果，到下次刷新时间再检查，避免sonarqube不可用时反复请求
+            refreshFailure.incrementAndGet();
+            LOGGER.info("check sonar project of app {} failed: {}", appId, e.getMessage());
+        } finally {
+            long now = System.currentTimeMillis();
+            links.put(appId, new SonarLink(sonarLink.checkUrl, sonarLink.linkUrl, exists, now));
+            long elapsed = now - start;
+            refreshCount.incrementAndGet();
+            refreshMillis.addAndGet(elapsed);
+            lastRefreshMillis.set(elapsed);
+            maxRefreshMillis.accumulateAndGet(elapsed, Math::max);
+            refreshing.remove(appId);
+        }
+    }
+
+    private static class SonarLink {
+        private final String checkUrl;
+        private final String linkUrl;
+        private final boolean exists;
+        private final long checkedAt;
+
+        SonarLink(String checkUrl, String linkUrl, boolean exists, long checkedAt) {
+            this.checkUrl = checkUrl;
+            this.linkUrl = linkUrl;
+            this.exists = exists;
+            this.checkedAt = checkedAt;
+        }
+    }
+}
@@ -1,17 +1,17 @@
 package io.choerodon.devops.infra.common.util;
 
-import javax.servlet.http.HttpServletResponse;
 import java.io.*;
 import java.math.BigInteger;
 import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.security.MessageDigest;
 import java.util.*;
 import java.util.stream.Collectors;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
-import java.util.zip.ZipOutputStream;
 
 import com.alibaba.fastjson.JSONObject;
 import com.fasterxml.jackson.core.JsonProcessingException;
@@ -19,7 +19,6 @@ import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.dataformat.yaml.YAMLMapper;
 import com.google.gson.Gson;
-import com.jcraft.jsch.JSch;
 import com.jcraft.jsch.KeyPair;
 import io.codearte.props2yaml.Props2YAML;
 import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
@@ -27,6 +26,8 @@ import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
 import org.apache.commons.compress.compressors.gzip.GzipCompressorInputStream;
 import org.apache.commons.compress.utils.IOUtils;
 import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.input.TeeInputStream;
+import org.apache.commons.io.output.NullOutputStream;
 import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -50,7 +51,6 @@ import io.choerodon.devops.domain.application.valueobject.ReplaceResult;
 public class FileUtil {
     private static final int BUFFER_SIZE = 2048;
     private static final Logger logger = LoggerFactory.getLogger(FileUtil.class);
-    private static final String EXEC_PATH = "/usr/lib/yaml/values_yaml";
 
 
     private FileUtil() {
@@ -294,6 +294,76 @@ public class FileUtil {
         }
     }
 
+    /**
+     * 顺序读取一遍tgz包，只把指定文件名的文件读入内存，不解压到磁盘
+     * 同名文件取目录层级最浅的一个，即chart本身而不是子chart中的文件
+     *
+     * @param inputStream tgz包
+     * @param fileNames   需要读取的文件名
+     * @return 文件名与文件内容的映射，包内不存在的文件不在结果中
+     */
+    public static Map<String, String> readFilesFromTgz(InputStream inputStream, String... fileNames) {
+        Set<String> names = new HashSet<>(Arrays.asList(fileNames));
+        Map<String, String> contents = new HashMap<>();
+        Map<String, Integer> depths = new HashMap<>();
+        try {
+            TarArchiveInputStream tarIn = new TarArchiveInputStream(
+                    new GzipCompressorInputStream(new BufferedInputStream(inputStream)), BUFFER_SIZE);
+            TarArchiveEntry entry;
+            while ((entry = tarIn.getNextTarEntry()) != null) {
+                if (entry.isDirectory()) {
+                    continue;
+                }
+                String entryName = entry.getName();
+                String name = entryName.substring(entryName.lastIndexOf('/') + 1);
+                int depth = StringUtils.countMatches(entryName, "/");
+                if (names.contains(name) && depth < depths.getOrDefault(name, Integer.MAX_VALUE)) {
+                    contents.put(name, new String(IOUtils.toByteArray(tarIn), StandardCharsets.UTF_8));
+                    depths.put(name, depth);
+                }
+            }
+        } catch (IOException e) {
+            throw new CommonException("error.tgz.read", e);
+        }
+        return contents;
+    }
+
+    /**
+     * 保存上传的tgz包并在同一次读取中取出包内的指定文件
+     * 先写入同目录下唯一的临时文件，读取成功后再替换为目标文件，并发上传同名包时互不影响
+     *
+     * @param inputStream tgz包
+     * @param path        保存目录
+     * @param fileName    保存的文件名
+     * @param fileNames   需要读取的文件名
+     * @return 文件名与文件内容的映射，包内不存在的文件不在结果中
+     */
+    public static Map<String, String> saveTgzAndReadFiles(InputStream inputStream, String path, String fileName,
+                                                          String... fileNames) {
+        File directory = new File(path);
+        directory.mkdirs();
+        File tmpFile = null;
+        try {
+            tmpFile = File.createTempFile(fileName, ".tmp", directory);
+            Map<String, String> contents;
+            try (OutputStream out = new BufferedOutputStream(new FileOutputStream(tmpFile))) {
+                TeeInputStream teeIn = new TeeInputStream(inputStream, out);
+                contents = readFilesFromTgz(teeIn, fileNames);
+                // tar结束标记之后可能还有填充的数据，也要完整保存
+                IOUtils.copy(teeIn, NullOutputStream.NULL_OUTPUT_STREAM);
+            }
+            Files.move(tmpFile.toPath(), new File(directory, fileName).toPath(),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return contents;
+        } catch (IOException e) {
+            throw new CommonException("error.file.transfer", e);
+        } finally {
+            if (tmpFile != null && tmpFile.exists()) {
+                deleteFile(tmpFile);
+            }
+        }
+    }
+
     /**
      * 创建目录
      */
@@ -407,128 +477,6 @@ public class FileUtil {
     }
 
 
-    /**
-     * 指定values文件路径
-     *
-     * @param path 路径
-     * @return 返回替换结果
-     */
-    public static ReplaceResult replaceNew(String path) {
-        BufferedReader stdInput = null;
-        BufferedReader stdError = null;
-        ReplaceResult replaceResult = null;
-        try {
-            String command = EXEC_PATH + " " + path;
-            Process p = Runtime.getRuntime().exec(command);
-
-            stdInput = new BufferedReader(new
-                    InputStreamReader(p.getInputStream()));
-
-            stdError = new BufferedReader(new
-                    InputStreamReader(p.getErrorStream()));
-
-            StringBuilder stringBuilder = new StringBuilder();
-            String s = null;
-            while ((s = stdInput.readLine()) != null) {
-                stringBuilder.append(s).append("\n");
-            }
-            String result = stringBuilder.toString();
-            String err = null;
-            replaceResult = loadResult(result);
-            while ((err = stdError.readLine()) != null) {
-                err += err;
-            }
-        } catch (IOException e) {
-            throw new CommonException(e);
-        } finally {
-            try {
-                if (stdError != null) {
-                    stdError.close();
-                }
-                if (stdInput != null) {
-                    stdInput.close();
-                }
-            } catch (IOException e) {
-                logger.info(e.getMessage(), e);
-            }
-        }
-        return replaceResult;
-    }
-
-    private static ReplaceResult loadResult(String yml) {
-        String[] strings = yml.split("------love----you------choerodon----");
-        Yaml yaml = new Yaml();
-        Object map = yaml.load(strings[2]);
-        ReplaceResult replaceResult = replaceNew(strings[0], (Map) map);
-        replaceResult.setDeltaYaml(strings[1]);
-        return replaceResult;
-    }
-
-    private static ReplaceResult replaceNew(String yaml, Map map) {
-        Composer composer = new Composer(new ParserImpl(new StreamReader(yaml)), new Resolver());
-        MappingNode mappingNode = (MappingNode) composer.getSingleNode();
-        List<Integer> addLines = new ArrayList<>();
-
-        //处理新增
-        ArrayList addLists = (ArrayList) map.get("add");
-        for (Object add : addLists) {
-            ArrayList<String> addList = (ArrayList<String>) add;
-            Node node = getKeysNode(addList, mappingNode);
-            if (node != null) {
-                appendLine(node.getStartMark().getLine(), node.getEndMark().getLine(), addLines);
-            }
-        }
-
-        List<HighlightMarker> highlightMarkers = new ArrayList<>();
-
-        //处理修改
-        ArrayList updateList = (ArrayList) map.get("update");
-        for (Object add : updateList) {
-            ArrayList<String> addList = (ArrayList<String>) add;
-            Node node = getKeysNode(addList, mappingNode);
-            HighlightMarker highlightMarker = new HighlightMarker();
-            if (node != null) {
-                highlightMarker.setLine(node.getStartMark().getLine());
-                highlightMarker.setEndLine(node.getEndMark().getLine());
-                highlightMarker.setStartColumn(node.getStartMark().getColumn());
-                highlightMarker.setEndColumn(node.getEndMark().getColumn());
-                highlightMarkers.add(highlightMarker);
-            }
-        }
-
-        ReplaceResult replaceResult = new ReplaceResult();
-        replaceResult.setNewLines(addLines);
-        replaceResult.setHighlightMarkers(highlightMarkers);
-        replaceResult.setYaml(yaml);
-        return replaceResult;
-
-    }
-
-    private static void appendLine(int start, int end, List<Integer> adds) {
-        for (int i = start; i <= end; i++) {
-            adds.add(i);
-        }
-    }
-
-    private static Node getKeysNode(List<String> keys, MappingNode mappingNode) {
-        Node value = null;
-        for (int i = 0; i < keys.size(); i++) {
-            List<NodeTuple> nodeTuples = mappingNode.getValue();
-            for (NodeTuple nodeTuple : nodeTuples) {
-                if (nodeTuple.getKeyNode() instanceof ScalarNode && ((ScalarNode) nodeTuple.getKeyNode()).getValue().equals(keys.get(i))) {
-                    if (i == keys.size() - 1) {
-                        value = nodeTuple.getValueNode();
-                    } else {
-                        mappingNode = (MappingNode) nodeTuple.getValueNode();
-
-                    }
-                }
-            }
-        }
-        return value;
-    }
-
-
     /**
      * 结果以新的yaml结构为主,主要将旧yaml文件的属性值替换至新yaml文件中
      *
@@ -1119,105 +1067,6 @@ public class FileUtil {
         }
     }
 
-    /**
-     * 压缩成ZIP 方法1
-     *
-     * @param srcDir           压缩文件夹路径
-     * @param outputStream     压缩文件
-     * @param keepDirStructure 是否保留原来的目录结构,true:保留目录结构;
-     *                         false:所有文件跑到压缩包根目录下(注意：不保留目录结构可能会出现同名文件,会压缩失败)
-     * @throws RuntimeException 压缩失败会抛出运行时异常
-     */
-    public static void toZip(String srcDir, OutputStream outputStream, boolean keepDirStructure) {
-        try (ZipOutputStream zos = new ZipOutputStream(outputStream)) {
-            File sourceFile = new File(srcDir);
-            compress(sourceFile, zos, sourceFile.getName(), keepDirStructure);
-        } catch (Exception e) {
-            throw new CommonException(e.getMessage());
-        }
-    }
-
-
-    /**
-     * 递归压缩方法
-     *
-     * @param sourceFile       源文件
-     * @param zos              zip输出流
-     * @param name             压缩后的名称
-     * @param keepDirStructure 是否保留原来的目录结构,
-     *                         true:保留目录结构;
-     *                         false:所有文件跑到压缩包根目录下(注意：不保留目录结构可能会出现同名文件,会压缩失败)
-     */
-    private static void compress(File sourceFile, ZipOutputStream zos, String name,
-                                 boolean keepDirStructure) {
-        byte[] buf = new byte[BUFFER_SIZE];
-        if (sourceFile.isFile()) {
-            // copy文件到zip输出流中
-            int len;
-            try (FileInputStream in = new FileInputStream(sourceFile)) {
-                // 向zip输出流中添加一个zip实体，构造器中name为zip实体的文件的名字
-                zos.putNextEntry(new ZipEntry(name));
-                while ((len = in.read(buf)) != -1) {
-                    zos.write(buf, 0, len);
-                }
-                zos.closeEntry();
-            } catch (IOException e) {
-                throw new CommonException(e.getMessage());
-            }
-        } else {
-            File[] listFiles = sourceFile.listFiles();
-            if (listFiles == null || listFiles.length == 0) {
-                // 需要保留原来的文件结构时,需要对空文件夹进行处理
-                if (keepDirStructure) {
-                    // 空文件夹的处理
-                    try {
-                        zos.putNextEntry(new ZipEntry(name + "/"));
-                        zos.closeEntry();
-                    } catch (IOException e) {
-                        throw new CommonException(e.getMessage());
-                    }
-                }
-
-            } else {
-                // 判断是否需要保留原来的文件结构
-                Arrays.stream(listFiles).forEachOrdered(file ->
-                        // 注意：file.getName()前面需要带上父文件夹的名字加一斜杠,
-                        // 不然最后压缩包中就不能保留原来的文件结构,即：所有文件都跑到压缩包根目录下了
-                        compress(file, zos,
-                                keepDirStructure
-                                        ? name + "/" + file.getName()
-                                        : file.getName(), keepDirStructure)
-                );
-            }
-        }
-    }
-
-    /**
-     * 下载文件
-     *
-     * @param res      HttpServletResponse
-     * @param filePath 文件路径
-     */
-    public static void downloadFile(HttpServletResponse res, String filePath) {
-        res.setHeader("content-type", "application/octet-stream");
-        res.setContentType("application/octet-stream");
-        res.setHeader("Content-Disposition", "attachment;filename=" + filePath);
-        byte[] buff = new byte[1024];
-        OutputStream os = null;
-        try (BufferedInputStream bis = new BufferedInputStream(new FileInputStream(new File(filePath)))) {
-            os = res.getOutputStream();
-            int i = bis.read(buff);
-            while (i != -1) {
-                os.write(buff, 0, buff.length);
-                os.flush();
-                i = bis.read(buff);
-            }
-        } catch (IOException e) {
-            throw new CommonException(e.getMessage());
-        }
-
-    }
-
     public static void deleteFile(String file) {
         deleteFile(new File(file));
     }
@@ -1362,26 +1211,25 @@ public class FileUtil {
     }
 
 
-    public static List<String> getSshKey(String path) {
+    /**
+     * 在内存中输出密钥对，输出后释放密钥
+     *
+     * @param keyPair 密钥对
+     * @param comment 公钥注释
+     * @return 私钥和公钥
+     */
+    public static List<String> getSshKey(KeyPair keyPair, String comment) {
         List<String> sshkeys = new ArrayList<>();
-        int type = KeyPair.RSA;
-        String strPath = "id_rsa";
-        JSch jsch = new JSch();
-        String passphrase = "";
+        ByteArrayOutputStream privateKey = new ByteArrayOutputStream();
+        ByteArrayOutputStream publicKey = new ByteArrayOutputStream();
         try {
-            KeyPair kpair = KeyPair.genKeyPair(jsch, type);
-            kpair.setPassphrase(passphrase);
-            kpair.writePrivateKey(strPath);
-            kpair.writePublicKey(strPath + ".pub", path);
-            kpair.dispose();
-            FileUtil.moveFiles("id_rsa", "ssh/" + path);
-            FileUtil.moveFiles("id_rsa.pub", "ssh/" + path);
-            sshkeys.add(FileUtil.getFileContent(new File("ssh/" + path + "/id_rsa")));
-            sshkeys.add(FileUtil.getFileContent(new File("ssh/" + path + "/id_rsa.pub")));
-            FileUtil.deleteDirectory(new File("ssh"));
-        } catch (Exception e) {
-            logger.info(e.getMessage());
+            keyPair.writePrivateKey(privateKey);
+            keyPair.writePublicKey(publicKey, comment);
+        } finally {
+            keyPair.dispose();
         }
+        sshkeys.add(new String(privateKey.toByteArray(), StandardCharsets.UTF_8));
+        sshkeys.add(new String(publicKey.toByteArray(), StandardCharsets.UTF_8));
         return sshkeys;
     }
 
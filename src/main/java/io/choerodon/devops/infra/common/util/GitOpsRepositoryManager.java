@@ -0,0 +1,599 @@
+package io.choerodon.devops.infra.common.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.annotation.PreDestroy;
+
+import com.jcraft.jsch.JSch;
+import com.jcraft.jsch.JSchException;
+import com.jcraft.jsch.Session;
+import org.apache.commons.io.FileUtils;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.ResetCommand;
+import org.eclipse.jgit.api.TransportConfigCallback;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.diff.DiffEntry;
+import org.eclipse.jgit.diff.DiffFormatter;
+import org.eclipse.jgit.dircache.DirCache;
+import org.eclipse.jgit.dircache.DirCacheBuilder;
+import org.eclipse.jgit.dircache.DirCacheEntry;
+import org.eclipse.jgit.lib.CommitBuilder;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.lib.RefUpdate;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevSort;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
+import org.eclipse.jgit.transport.*;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
+import org.eclipse.jgit.util.FS;
+import org.eclipse.jgit.util.io.DisabledOutputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import io.choerodon.core.exception.CommonException;
+import io.choerodon.devops.domain.application.entity.gitlab.DiffE;
+
+/**
+ * 按环境常驻的gitops本地仓库，复用打开的Repository和ssh会话工厂，
+ * 每次推送只fetch新增对象并在本地计算devops-sync tag与最新提交之间的差异
+ */
+@Component
+public class GitOpsRepositoryManager {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(GitOpsRepositoryManager.class);
+    private static final String MASTER = "master";
+    private static final String ORIGIN = "origin";
+    private static final String SYNC_TAG_REF = Constants.R_TAGS + GitUtil.DEV_OPS_SYNC_TAG;
+    private static final String REMOTE_MASTER = Constants.R_REMOTES + ORIGIN + "/" + MASTER;
+
+    private final Map<Long, EnvRepository> repositories = new ConcurrentHashMap<>();
+
+    /**
+     * 将环境本地库更新到指定提交，本地库不存在时clone，存在时只fetch
+     *
+     * @param envId  环境id
+     * @param path   本地路径
+     * @param url    环境库ssh地址
+     * @param sshKey 环境私钥
+     * @param commit 目标提交
+     */
+    public void sync(Long envId, String path, String url, String sshKey, String commit) {
+        EnvRepository envRepository = open(envId, path, url, sshKey);
+        synchronized (envRepository) {
+            Git git = envRepository.git;
+            try {
+                git.fetch()
+                        .setRemote(ORIGIN)
+                        .setRefSpecs(new RefSpec("+refs/heads/*:refs/remotes/origin/*"),
+                                new RefSpec("+refs/tags/*:refs/tags/*"))
+                        .setRemoveDeletedRefs(true)
+                        .setTransportConfigCallback(envRepository.transportConfigCallback)
+                        .call();
+                // 丢弃工作区中残留的修改，避免切换提交时冲突
+                git.reset().setMode(ResetCommand.ResetType.HARD).call();
+                git.checkout().setName(commit).call();
+                fastForwardMaster(git.getRepository());
+            } catch (GitAPIException | IOException e) {
+                throw new CommonException(e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * 在远程master最新提交的基础上把多个文件的修改写成一个提交并推送，不改动本地工作区
+     * 推送时远程master已前进则重新fetch后再提交一次
+     *
+     * @param envId   环境id
+     * @param path    本地路径
+     * @param url     环境库ssh地址
+     * @param sshKey  环境私钥
+     * @param files   文件相对路径与文件内容的映射
+     * @param author  提交人
+     * @param message 提交信息
+     * @return 推送的commit sha，文件内容没有变化、不需要提交时为null
+     */
+    public String commitFiles(Long envId, String path, String url, String sshKey,
+                              Map<String, String> files, PersonIdent author, String message) {
+        EnvRepository envRepository = open(envId, path, url, sshKey);
+        synchronized (envRepository) {
+            Git git = envRepository.git;
+            Repository repository = git.getRepository();
+            try {
+                for (int attempt = 0; ; attempt++) {
+                    git.fetch()
+                            .setRemote(ORIGIN)
+                            .setRefSpecs(new RefSpec("+" + Constants.R_HEADS + MASTER + ":" + REMOTE_MASTER))
+                            .setTransportConfigCallback(envRepository.transportConfigCallback)
+                            .call();
+                    ObjectId parent = repository.resolve(REMOTE_MASTER);
+                    ObjectId commit = writeCommit(repository, parent, files, author, message);
+                    if (commit.equals(parent)) {
+                        return null;
+                    }
+                    RemoteRefUpdate.Status status = pushMaster(envRepository, commit);
+                    if (status == RemoteRefUpdate.Status.OK || status == RemoteRefUpdate.Status.UP_TO_DATE) {
+                        return commit.getName();
+                    }
+                    boolean remoteChanged = status == RemoteRefUpdate.Status.REJECTED_NONFASTFORWARD
+                            || status == RemoteRefUpdate.Status.REJECTED_REMOTE_CHANGED;
+                    if (!remoteChanged || attempt > 0) {
+                        throw new CommonException("error.git.push");
+                    }
+                }
+            } catch (GitAPIException | IOException e) {
+                throw new CommonException(e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * 本地库中devops-sync tag是否存在，需在sync之后调用
+     *
+     * @param envId 环境id
+     * @return 是否存在
+     */
+    public boolean syncTagExist(Long envId) {
+        EnvRepository envRepository = get(envId);
+        synchronized (envRepository) {
+            try {
+                return envRepository.git.getRepository().exactRef(SYNC_TAG_REF) != null;
+            } catch (IOException e) {
+                throw new CommonException(e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * 计算devops-sync tag与指定提交之间的文件差异，结构与gitlab compare接口返回的diff一致
+     *
+     * @param envId  环境id
+     * @param commit 目标提交
+     * @return diff列表
+     */
+    public List<DiffE> diffFromSyncTag(Long envId, String commit) {
+        EnvRepository envRepository = get(envId);
+        synchronized (envRepository) {
+            Repository repository = envRepository.git.getRepository();
+            try (RevWalk revWalk = new RevWalk(repository);
+                 DiffFormatter diffFormatter = new DiffFormatter(DisabledOutputStream.INSTANCE)) {
+                RevCommit from = revWalk.parseCommit(resolve(repository, SYNC_TAG_REF));
+                RevCommit to = revWalk.parseCommit(resolve(repository, commit));
+                diffFormatter.setRepository(repository);
+                diffFormatter.setDetectRenames(true);
+                List<DiffE> diffs = new ArrayList<>();
+                for (DiffEntry entry : diffFormatter.scan(from.getTree(), to.getTree())) {
+                    diffs.add(toDiff(entry));
+                }
+                return diffs;
+            } catch (IOException e) {
+                throw new CommonException(e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * 列出指定提交中所有yaml文件的相对路径
+     *
+     * @param envId  环境id
+     * @param commit 目标提交
+     * @return 文件路径列表
+     */
+    public List<String> listFiles(Long envId, String commit) {
+        EnvRepository envRepository = get(envId);
+        synchronized (envRepository) {
+            Repository repository = envRepository.git.getRepository();
+            try (RevWalk revWalk = new RevWalk(repository);
+                 TreeWalk treeWalk = new TreeWalk(repository)) {
+                treeWalk.addTree(revWalk.parseCommit(resolve(repository, commit)).getTree());
+                treeWalk.setRecursive(true);
+                List<String> files = new ArrayList<>();
+                while (treeWalk.next()) {
+                    String filePath = treeWalk.getPathString();
+                    if (filePath.endsWith(".yml") || filePath.endsWith(".yaml")) {
+                        files.add(filePath);
+                    }
+                }
+                return files;
+            } catch (IOException e) {
+                throw new CommonException(e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * 查询文件在当前检出提交下最近一次修改所在的提交
+     *
+     * @param envId    环境id
+     * @param filePath 文件相对路径
+     * @return commit sha，无法获取时为空字符串
+     */
+    public String latestCommit(Long envId, String filePath) {
+        return latestCommits(envId, Collections.singletonList(filePath)).getOrDefault(filePath, "");
+    }
+
+    /**
+     * 批量查询文件在当前检出提交下最近一次修改所在的提交
+     * 索引按环境和检出提交缓存，检出提交前进时只遍历新增的提交
+     *
+     * @param envId     环境id
+     * @param filePaths 文件相对路径
+     * @return 文件路径与commit sha的映射，不存在的文件不包含在内
+     */
+    public Map<String, String> latestCommits(Long envId, Collection<String> filePaths) {
+        EnvRepository envRepository = repositories.get(envId);
+        Map<String, String> commits = new HashMap<>();
+        if (envRepository == null) {
+            return commits;
+        }
+        synchronized (envRepository) {
+            try {
+                CommitIndex commitIndex = commitIndex(envRepository);
+                filePaths.forEach(filePath -> {
+                    String commit = commitIndex.commits.get(filePath);
+                    if (commit != null) {
+                        commits.put(filePath, commit);
+                    }
+                });
+            } catch (IOException e) {
+                LOGGER.info("index commits of env {} failed", envId, e);
+            }
+        }
+        return commits;
+    }
+
+    /**
+     * 关闭并移除环境的本地库句柄
+     *
+     * @param envId 环境id
+     */
+    public void evict(Long envId) {
+        EnvRepository envRepository = repositories.remove(envId);
+        if (envRepository != null) {
+            synchronized (envRepository) {
+                envRepository.git.close();
+            }
+        }
+    }
+
+    /**
+     * 关闭环境的本地库句柄并删除本地库，重新打开时会重新clone
+     *
+     * @param envId 环境id
+     * @param path  本地路径
+     */
+    public void remove(Long envId, String path) {
+        evict(envId);
+        try {
+            FileUtils.deleteDirectory(new File(path));
+        } catch (IOException e) {
+            LOGGER.info("delete env repository {} failed", path, e);
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        repositories.keySet().forEach(this::evict);
+    }
+
+    private EnvRepository get(Long envId) {
+        EnvRepository envRepository = repositories.get(envId);
+        if (envRepository == null) {
+            throw new CommonException("error.env.repository.not.open");
+        }
+        return envRepository;
+    }
+
+    private EnvRepository open(Long envId, String path, String url, String sshKey) {
+        EnvRepository envRepository = repositories.get(envId);
+        if (envRepository != null && envRepository.matches(path, sshKey)) {
+            return envRepository;
+        }
+        synchronized (repositories) {
+            envRepository = repositories.get(envId);
+            if (envRepository != null && envRepository.matches(path, sshKey)) {
+                return envRepository;
+            }
+            if (envRepository != null) {
+                evict(envId);
+            }
+            TransportConfigCallback callback = transportConfigCallback(sshKey);
+            envRepository = new EnvRepository(path, sshKey, openOrClone(path, url, callback), callback);
+            repositories.put(envId, envRepository);
+            return envRepository;
+        }
+    }
+
+    private Git openOrClone(String path, String url, TransportConfigCallback callback) {
+        File directory = new File(path);
+        File gitDir = new File(directory, Constants.DOT_GIT);
+        if (gitDir.exists()) {
+            try {
+                Repository repository = new FileRepositoryBuilder()
+                        .setGitDir(gitDir)
+                        .setMustExist(true)
+                        .build();
+                return new Git(repository);
+            } catch (IOException e) {
+                LOGGER.info("open env repository {} failed, clone again", path, e);
+            }
+        }
+        try {
+            FileUtils.deleteDirectory(directory);
+            return Git.cloneRepository()
+                    .setURI(url)
+                    .setBranch(MASTER)
+                    .setDirectory(directory)
+                    .setTransportConfigCallback(callback)
+                    .call();
+        } catch (GitAPIException | IOException e) {
+            throw new CommonException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 本地master分支跟随远程master前进，供需要在master上提交的逻辑使用
+     */
+    private static void fastForwardMaster(Repository repository) throws IOException {
+        ObjectId remoteMaster = repository.resolve(REMOTE_MASTER);
+        if (remoteMaster == null) {
+            return;
+        }
+        RefUpdate refUpdate = repository.updateRef(Constants.R_HEADS + MASTER);
+        refUpdate.setNewObjectId(remoteMaster);
+        RefUpdate.Result result = refUpdate.update();
+        if (result == RefUpdate.Result.REJECTED) {
+            LOGGER.info("local master of {} is not fast-forward to origin", repository.getDirectory());
+        }
+    }
+
+    /**
+     * 以parent的目录树为基础替换指定文件，直接写入对象库，内容与parent一致时返回parent
+     */
+    private static ObjectId writeCommit(Repository repository, ObjectId parent, Map<String, String> files,
+                                        PersonIdent author, String message) throws IOException {
+        try (ObjectInserter inserter = repository.newObjectInserter();
+             RevWalk revWalk = new RevWalk(repository)) {
+            DirCache dirCache = DirCache.newInCore();
+            DirCacheBuilder builder = dirCache.builder();
+            ObjectId parentTree = null;
+            if (parent != null) {
+                parentTree = revWalk.parseCommit(parent).getTree();
+                try (TreeWalk treeWalk = new TreeWalk(repository)) {
+                    treeWalk.addTree(parentTree);
+                    treeWalk.setRecursive(true);
+                    while (treeWalk.next()) {
+                        if (files.containsKey(treeWalk.getPathString())) {
+                            continue;
+                        }
+                        DirCacheEntry entry = new DirCacheEntry(treeWalk.getPathString());
+                        entry.setFileMode(treeWalk.getFileMode(0));
+                        entry.setObjectId(treeWalk.getObjectId(0));
+                        builder.add(entry);
+                    }
+                }
+            }
+            for (Map.Entry<String, String> file : files.entrySet()) {
+                DirCacheEntry entry = new DirCacheEntry(file.getKey());
+                entry.setFileMode(FileMode.REGULAR_FILE);
+                entry.setObjectId(inserter.insert(Constants.OBJ_BLOB, file.getValue().getBytes(StandardCharsets.UTF_8)));
+                builder.add(entry);
+            }
+            builder.finish();
+            ObjectId tree = dirCache.writeTree(inserter);
+            if (tree.equals(parentTree)) {
+                return parent;
+            }
+            CommitBuilder commitBuilder = new CommitBuilder();
+            commitBuilder.setTreeId(tree);
+            if (parent != null) {
+                commitBuilder.setParentId(parent);
+            }
+            commitBuilder.setAuthor(author);
+            commitBuilder.setCommitter(author);
+            commitBuilder.setMessage(message);
+            ObjectId commit = inserter.insert(commitBuilder);
+            inserter.flush();
+            return commit;
+        }
+    }
+
+    private static RemoteRefUpdate.Status pushMaster(EnvRepository envRepository, ObjectId commit)
+            throws GitAPIException {
+        String masterRef = Constants.R_HEADS + MASTER;
+        Iterable<PushResult> results = envRepository.git.push()
+                .setRemote(ORIGIN)
+                .setRefSpecs(new RefSpec(commit.getName() + ":" + masterRef))
+                .setTransportConfigCallback(envRepository.transportConfigCallback)
+                .call();
+        for (PushResult result : results) {
+            RemoteRefUpdate update = result.getRemoteUpdate(masterRef);
+            if (update != null) {
+                return update.getStatus();
+            }
+        }
+        return RemoteRefUpdate.Status.NOT_ATTEMPTED;
+    }
+
+    private static CommitIndex commitIndex(EnvRepository envRepository) throws IOException {
+        Repository repository = envRepository.git.getRepository();
+        ObjectId head = repository.resolve(Constants.HEAD);
+        if (head == null) {
+            return new CommitIndex(null, new HashMap<>());
+        }
+        CommitIndex previous = envRepository.commitIndex;
+        if (previous != null && head.equals(previous.head)) {
+            return previous;
+        }
+        Set<String> headPaths = treePaths(repository, head);
+        Map<String, String> commits = new HashMap<>();
+        try (RevWalk revWalk = new RevWalk(repository)) {
+            boolean incremental = previous != null && previous.head != null
+                    && revWalk.isMergedInto(revWalk.parseCommit(previous.head), revWalk.parseCommit(head));
+            revWalk.reset();
+            revWalk.setRetainBody(false);
+            revWalk.sort(RevSort.COMMIT_TIME_DESC);
+            revWalk.markStart(revWalk.parseCommit(head));
+            Set<String> remaining = new HashSet<>(headPaths);
+            if (incremental) {
+                // 只遍历上次索引之后的提交，未被修改的文件沿用上次的结果
+                revWalk.markUninteresting(revWalk.parseCommit(previous.head));
+            }
+            indexChangedPaths(repository, revWalk, commits, remaining, !incremental);
+            if (incremental) {
+                previous.commits.forEach((filePath, commit) -> {
+                    if (headPaths.contains(filePath)) {
+                        commits.putIfAbsent(filePath, commit);
+                    }
+                });
+            }
+        }
+        // 已删除的文件不再保留
+        commits.keySet().retainAll(headPaths);
+        CommitIndex commitIndex = new CommitIndex(head.copy(), commits);
+        envRepository.commitIndex = commitIndex;
+        return commitIndex;
+    }
+
+    /**
+     * 按提交时间倒序遍历一次历史，每个文件第一次出现变更的提交即为其最近一次修改的提交
+     * 合并提交中与任一父提交相同的文件不算作修改，与git log的结果保持一致
+     */
+    private static void indexChangedPaths(Repository repository, RevWalk revWalk, Map<String, String> commits,
+                                          Set<String> remaining, boolean stopWhenComplete) throws IOException {
+        try (TreeWalk treeWalk = new TreeWalk(repository)) {
+            for (RevCommit commit : revWalk) {
+                treeWalk.reset();
+                treeWalk.setRecursive(true);
+                treeWalk.setFilter(TreeFilter.ANY_DIFF);
+                treeWalk.addTree(commit.getTree());
+                for (RevCommit parent : commit.getParents()) {
+                    revWalk.parseHeaders(parent);
+                    treeWalk.addTree(parent.getTree());
+                }
+                while (treeWalk.next()) {
+                    String filePath = treeWalk.getPathString();
+                    if (!commits.containsKey(filePath) && changedFromAllParents(treeWalk)) {
+                        commits.put(filePath, commit.getName());
+                        remaining.remove(filePath);
+                    }
+                }
+                if (stopWhenComplete && remaining.isEmpty()) {
+                    break;
+                }
+            }
+        }
+    }
+
+    private static boolean changedFromAllParents(TreeWalk treeWalk) {
+        for (int i = 1; i < treeWalk.getTreeCount(); i++) {
+            if (treeWalk.idEqual(0, i) && treeWalk.getRawMode(0) == treeWalk.getRawMode(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Set<String> treePaths(Repository repository, ObjectId commit) throws IOException {
+        Set<String> paths = new HashSet<>();
+        try (RevWalk revWalk = new RevWalk(repository);
+             TreeWalk treeWalk = new TreeWalk(repository)) {
+            treeWalk.addTree(revWalk.parseCommit(commit).getTree());
+            treeWalk.setRecursive(true);
+            while (treeWalk.next()) {
+                paths.add(treeWalk.getPathString());
+            }
+        }
+        return paths;
+    }
+
+    private static ObjectId resolve(Repository repository, String revision) throws IOException {
+        ObjectId objectId = repository.resolve(revision + "^{commit}");
+        if (objectId == null) {
+            throw new CommonException("error.git.revision.not.exist");
+        }
+        return objectId;
+    }
+
+    private static DiffE toDiff(DiffEntry entry) {
+        DiffE diffE = new DiffE();
+        DiffEntry.ChangeType changeType = entry.getChangeType();
+        // 与gitlab保持一致，新增和删除文件的old_path与new_path相同
+        String newPath = changeType == DiffEntry.ChangeType.DELETE ? entry.getOldPath() : entry.getNewPath();
+        String oldPath = changeType == DiffEntry.ChangeType.ADD ? entry.getNewPath() : entry.getOldPath();
+        diffE.setNewPath(newPath);
+        diffE.setOldPath(oldPath);
+        diffE.setNewFile(changeType == DiffEntry.ChangeType.ADD || changeType == DiffEntry.ChangeType.COPY);
+        diffE.setDeletedFile(changeType == DiffEntry.ChangeType.DELETE);
+        diffE.setRenamedFile(changeType == DiffEntry.ChangeType.RENAME);
+        return diffE;
+    }
+
+    private static TransportConfigCallback transportConfigCallback(String sshKey) {
+        SshSessionFactory sshSessionFactory = new JschConfigSessionFactory() {
+            @Override
+            protected void configure(OpenSshConfig.Host host, Session session) {
+                session.setConfig("StrictHostKeyChecking", "no");
+            }
+
+            @Override
+            protected JSch createDefaultJSch(FS fs) throws JSchException {
+                JSch defaultJSch = super.createDefaultJSch(fs);
+                defaultJSch.getIdentityRepository().removeAll();
+                defaultJSch.getIdentityRepository().add(sshKey.getBytes());
+                return defaultJSch;
+            }
+        };
+        return transport -> {
+            if (transport instanceof SshTransport) {
+                ((SshTransport) transport).setSshSessionFactory(sshSessionFactory);
+            }
+        };
+    }
+
+    private static class EnvRepository {
+        private final String path;
+        private final String sshKey;
+        private final Git git;
+        private final TransportConfigCallback transportConfigCallback;
+        private CommitIndex commitIndex;
+
+        EnvRepository(String path, String sshKey, Git git, TransportConfigCallback transportConfigCallback) {
+            this.path = path;
+            this.sshKey = sshKey;
+            this.git = git;
+            this.transportConfigCallback = transportConfigCallback;
+        }
+
+        boolean matches(String path, String sshKey) {
+            return this.path.equals(path) && this.sshKey.equals(sshKey);
+        }
+    }
+
+    private static class CommitIndex {
+        private final ObjectId head;
+        private final Map<String, String> commits;
+
+        CommitIndex(ObjectId head, Map<String, String> commits) {
+            this.head = head;
+            this.commits = commits;
+        }
+    }
+}
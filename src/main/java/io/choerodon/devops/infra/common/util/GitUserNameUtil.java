@@ -29,6 +29,16 @@ public class GitUserNameUtil {
         return TypeUtil.objToInteger(userId);
     }
 
+    /**
+     * 获取写入审计字段的用户Id，没有登录用户时与审计字段的默认值一样为0
+     *
+     * @return userId
+     */
+    public static Long getAuditUserId() {
+        CustomUserDetails details = DetailsHelper.getUserDetails();
+        return details == null ? 0L : details.getUserId();
+    }
+
 
     /**
      * 获取登录用户名
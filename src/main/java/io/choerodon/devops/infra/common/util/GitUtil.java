@@ -2,7 +2,6 @@ package io.choerodon.devops.infra.common.util;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.Iterator;
 import java.util.List;
 
 import com.jcraft.jsch.JSch;
@@ -17,7 +16,6 @@ import org.eclipse.jgit.api.errors.GitAPIException;
 import org.eclipse.jgit.internal.storage.file.FileRepository;
 import org.eclipse.jgit.lib.Ref;
 import org.eclipse.jgit.lib.Repository;
-import org.eclipse.jgit.revwalk.RevCommit;
 import org.eclipse.jgit.transport.*;
 import org.eclipse.jgit.util.FS;
 import org.slf4j.Logger;
@@ -74,28 +72,6 @@ public class GitUtil {
         this.sshKey = sshKey;
     }
 
-    private static String getLog(String repoPath, String fileName) {
-        String latestCommit = "";
-        File file = new File(repoPath);
-        try (Repository repository = new FileRepository(file.getAbsolutePath())) {
-            try (Git git = new Git(repository)) {
-                Iterable<RevCommit> logs = git.log().addPath(fileName).call();
-                Iterator<RevCommit> revCommitIterator = logs.iterator();
-                if (revCommitIterator.hasNext()) {
-                    latestCommit = revCommitIterator.next().getName();
-                }
-            }
-        } catch (Exception e) {
-            LOGGER.info(e.getMessage());
-        }
-        return latestCommit;
-    }
-
-    public static String getFileLatestCommit(String path, String filePath) {
-        String[] fileName = filePath.split("/");
-        return GitUtil.getLog(path, fileName[fileName.length - 1]);
-    }
-
     /**
      * clone by ssh
      *
@@ -193,24 +169,10 @@ public class GitUtil {
      */
     public Git clone(String name, String type, String remoteUrl) {
         Git git;
-        String branch;
+        String branch = getTemplateBranch(type);
         String workingDirectory = getWorkingDirectory(name);
         File localPathFile = new File(workingDirectory);
         deleteDirectory(localPathFile);
-        switch (type) {
-            case "MicroServiceFront":
-                branch = microServiceFront;
-                break;
-            case "MicroService":
-                branch = microService;
-                break;
-            case "JavaLib":
-                branch = javaLib;
-                break;
-            default:
-                branch = MASTER;
-                break;
-        }
         try {
             git = Git.cloneRepository()
                     .setURI(remoteUrl)
@@ -223,6 +185,22 @@ public class GitUtil {
         return git;
     }
 
+    /**
+     * 模板对应的分支，预置模板使用配置的版本分支，其它模板使用master
+     */
+    public String getTemplateBranch(String type) {
+        switch (type) {
+            case "MicroServiceFront":
+                return microServiceFront;
+            case "MicroService":
+                return microService;
+            case "JavaLib":
+                return javaLib;
+            default:
+                return MASTER;
+        }
+    }
+
     /**
      * 将代码推到目标库
      */
@@ -1,9 +1,12 @@
 package io.choerodon.devops.infra.common.util;
 
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 
+import org.apache.http.HttpStatus;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.impl.client.CloseableHttpClient;
@@ -17,23 +20,19 @@ public class HttpClientUtil {
     }
 
     /**
-     * 下载 tgz
+     * 下载 tgz 到文件
      *
-     * @param getUrl  tgz路径
-     * @param fileUrl 目标路径
+     * @param getUrl tgz路径
+     * @param target 目标文件
      */
-    public static void getTgz(String getUrl, String fileUrl) {
-        try (CloseableHttpClient httpclient = HttpClients.createDefault()) {
-            HttpGet httpGet = new HttpGet(getUrl);
-            CloseableHttpResponse response1 = httpclient.execute(httpGet);
-            try (FileOutputStream fos = new FileOutputStream(fileUrl)) {
-                InputStream is = response1.getEntity().getContent();
-                byte[] buffer = new byte[4096];
-                int r = 0;
-                while ((r = is.read(buffer)) > 0) {
-                    fos.write(buffer, 0, r);
-                }
-                is.close();
+    public static void getTgz(String getUrl, Path target) {
+        try (CloseableHttpClient httpclient = HttpClients.createDefault();
+             CloseableHttpResponse response = httpclient.execute(new HttpGet(getUrl))) {
+            if (response.getStatusLine().getStatusCode() != HttpStatus.SC_OK) {
+                throw new CommonException("error.chart.download");
+            }
+            try (InputStream is = response.getEntity().getContent()) {
+                Files.copy(is, target, StandardCopyOption.REPLACE_EXISTING);
             }
         } catch (IOException e) {
             throw new CommonException(e.getMessage());
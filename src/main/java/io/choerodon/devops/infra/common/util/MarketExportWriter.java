@@ -0,0 +1,210 @@
+package io.choerodon.devops.infra.common.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import com.zaxxer.hikari.util.DefaultThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.stereotype.Component;
+
+import io.choerodon.core.exception.CommonException;
+
+/**
+ * 应用市场导出包直接写入输出流，chart包在有界线程池中并行下载到临时文件，下载完成一个写入一个，
+ * 写入后立即删除，内存中不保留chart包内容
+ */
+@Component
+public class MarketExportWriter implements PublicMetrics {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MarketExportWriter.class);
+    private static final String METRIC_PREFIX = "devops.market.export.";
+
+    @Value("${market.export.downloadThreads:4}")
+    private Integer downloadThreads;
+
+    private final AtomicLong running = new AtomicLong();
+    private final AtomicLong exports = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong chartsTotal = new AtomicLong();
+    private final AtomicLong chartsWritten = new AtomicLong();
+    private final AtomicLong bytesWritten = new AtomicLong();
+    private final AtomicLong lastMillis = new AtomicLong();
+    private final AtomicLong lastBytesPerSecond = new AtomicLong();
+
+    private ExecutorService downloader;
+
+    @PostConstruct
+    public void init() {
+        downloader = new ThreadPoolExecutor(downloadThreads, downloadThreads, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), new DefaultThreadFactory("devops-market-export", true));
+    }
+
+    @PreDestroy
+    public void destroy() {
+        downloader.shutdownNow();
+    }
+
+    /**
+     * 写出zip包
+     *
+     * @param outputStream 输出流，写完后不关闭
+     * @param files        zip中的路径与文件内容，先于chart包写出
+     * @param charts       zip中的路径与chart包下载地址
+     */
+    public void write(OutputStream outputStream, Map<String, byte[]> files, Map<String, String> charts) {
+        long start = System.currentTimeMillis();
+        long written = 0;
+        running.incrementAndGet();
+        chartsTotal.addAndGet(charts.size());
+        ExecutorCompletionService<ChartFile> completionService = new ExecutorCompletionService<>(downloader);
+        List<Future<ChartFile>> futures = new ArrayList<>();
+        Spool spool = new Spool();
+        try {
+            charts.forEach((name, url) ->
+                    futures.add(completionService.submit(() -> download(spool, name, url))));
+            ZipOutputStream zos = new ZipOutputStream(outputStream);
+            for (Map.Entry<String, byte[]> file : files.entrySet()) {
+                written += putEntry(zos, file.getKey(), file.getValue());
+            }
+            for (int i = 0; i < futures.size(); i++) {
+                ChartFile chartFile = completionService.take().get();
+                try {
+                    written += putEntry(zos, chartFile.name, chartFile.path);
+                } finally {
+                    spool.release(chartFile.path);
+                }
+                chartsWritten.incrementAndGet();
+            }
+            zos.finish();
+            zos.flush();
+            exports.incrementAndGet();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failures.incrementAndGet();
+            throw new CommonException("error.market.export", e);
+        } catch (ExecutionException e) {
+            failures.incrementAndGet();
+            if (e.getCause() instanceof CommonException) {
+                throw (CommonException) e.getCause();
+            }
+            throw new CommonException("error.market.export", e.getCause());
+        } catch (IOException e) {
+            failures.incrementAndGet();
+            throw new CommonException("error.market.export", e);
+        } finally {
+            futures.forEach(future -> future.cancel(true));
+            spool.close();
+            long elapsed = Math.max(System.currentTimeMillis() - start, 1L);
+            lastMillis.set(elapsed);
+            lastBytesPerSecond.set(written * 1000 / elapsed);
+            running.decrementAndGet();
+            LOGGER.info("market export wrote {} charts, {} bytes in {} ms", charts.size(), written, elapsed);
+        }
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        List<Metric<?>> metrics = new ArrayList<>();
+        metrics.add(new Metric<>(METRIC_PREFIX + "running", running.get()));
+        metrics.add(new Metric<>(METRIC_PREFIX + "count", exports.get()));
+        metrics.add(new Metric<>(METRIC_PREFIX + "failure", failures.get()));
+        metrics.add(new Metric<>(METRIC_PREFIX + "charts.total", chartsTotal.get()));
+        metrics.add(new Metric<>(METRIC_PREFIX + "charts.written", chartsWritten.get()));
+        metrics.add(new Metric<>(METRIC_PREFIX + "bytes", bytesWritten.get()));
+        metrics.add(new Metric<>(METRIC_PREFIX + "last.time", lastMillis.get()));
+        metrics.add(new Metric<>(METRIC_PREFIX + "last.bytesPerSecond", lastBytesPerSecond.get()));
+        return metrics;
+    }
+
+    private ChartFile download(Spool spool, String name, String url) throws IOException {
+        Path path = Files.createTempFile("devops-market-chart", ".tgz");
+        try {
+            HttpClientUtil.getTgz(url, path);
+        } catch (RuntimeException e) {
+            FileUtil.deleteFile(path);
+            throw e;
+        }
+        spool.hold(path);
+        return new ChartFile(name, path);
+    }
+
+    private long putEntry(ZipOutputStream zos, String name, byte[] content) throws IOException {
+        zos.putNextEntry(new ZipEntry(name));
+        zos.write(content);
+        zos.closeEntry();
+        // 每写完一个文件就推送给客户端
+        zos.flush();
+        bytesWritten.addAndGet(content.length);
+        return content.length;
+    }
+
+    private long putEntry(ZipOutputStream zos, String name, Path path) throws IOException {
+        zos.putNextEntry(new ZipEntry(name));
+        long length = Files.copy(path, zos);
+        zos.closeEntry();
+        zos.flush();
+        bytesWritten.addAndGet(length);
+        return length;
+    }
+
+    /**
+     * 一次导出下载的临时文件，导出结束时删除还未写入的文件，结束后才下载完成的文件直接删除
+     */
+    private static class Spool {
+        private final Set<Path> paths = new HashSet<>();
+        private boolean closed;
+
+        synchronized void hold(Path path) {
+            if (closed) {
+                FileUtil.deleteFile(path);
+                throw new CommonException("error.market.export");
+            }
+            paths.add(path);
+        }
+
+        synchronized void release(Path path) {
+            paths.remove(path);
+            FileUtil.deleteFile(path);
+        }
+
+        synchronized void close() {
+            closed = true;
+            paths.forEach(FileUtil::deleteFile);
+            paths.clear();
+        }
+    }
+
+    private static class ChartFile {
+        private final String name;
+        private final Path path;
+
+        ChartFile(String name, Path path) {
+            this.name = name;
+            this.path = path;
+        }
+    }
+}
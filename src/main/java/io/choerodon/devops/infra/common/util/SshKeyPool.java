@@ -0,0 +1,168 @@
+package io.choerodon.devops.infra.common.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import com.jcraft.jsch.JSch;
+import com.jcraft.jsch.JSchException;
+import com.jcraft.jsch.KeyPair;
+import com.zaxxer.hikari.util.DefaultThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.stereotype.Component;
+
+import io.choerodon.core.exception.CommonException;
+
+/**
+ * 后台预先生成环境使用的rsa密钥对，创建环境时直接取用，取空时在调用线程中生成
+ * 密钥对只在内存中生成和输出，不再经过工作目录下的文件
+ */
+@Component
+public class SshKeyPool implements PublicMetrics {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SshKeyPool.class);
+    private static final String METRIC_PREFIX = "devops.ssh.key.pool.";
+
+    @Value("${ssh.keyPool.size:8}")
+    private Integer poolSize;
+
+    private final JSch jsch = new JSch();
+    private final AtomicInteger filling = new AtomicInteger();
+    private final AtomicLong hit = new AtomicLong();
+    private final AtomicLong miss = new AtomicLong();
+
+    private BlockingQueue<KeyPair> keyPairs;
+    private ExecutorService generator;
+
+    @PostConstruct
+    public void init() {
+        keyPairs = new ArrayBlockingQueue<>(Math.max(poolSize, 1));
+        int threads = Math.max(1, Math.min(poolSize, Runtime.getRuntime().availableProcessors()));
+        generator = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), new DefaultThreadFactory("devops-ssh-key", true));
+        fill();
+    }
+
+    @PreDestroy
+    public void destroy() {
+        generator.shutdownNow();
+        KeyPair keyPair;
+        while ((keyPair = keyPairs.poll()) != null) {
+            keyPair.dispose();
+        }
+    }
+
+    /**
+     * 取出一对密钥
+     *
+     * @param comment 公钥注释
+     * @return 私钥和公钥
+     */
+    public List<String> take(String comment) {
+        KeyPair keyPair = keyPairs.poll();
+        if (keyPair == null) {
+            miss.incrementAndGet();
+            keyPair = generate();
+        } else {
+            hit.incrementAndGet();
+        }
+        fill();
+        return FileUtil.getSshKey(keyPair, comment);
+    }
+
+    /**
+     * 批量取出密钥对，池中不足的部分在后台线程中并行生成
+     *
+     * @param count 数量
+     * @return 密钥对，使用FileUtil.getSshKey输出
+     */
+    public List<KeyPair> takeKeyPairs(int count) {
+        List<CompletableFuture<KeyPair>> futures = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            KeyPair keyPair = keyPairs.poll();
+            if (keyPair == null) {
+                miss.incrementAndGet();
+                futures.add(CompletableFuture.supplyAsync(this::generate, generator));
+            } else {
+                hit.incrementAndGet();
+                futures.add(CompletableFuture.completedFuture(keyPair));
+            }
+        }
+        List<KeyPair> result = new ArrayList<>();
+        try {
+            for (CompletableFuture<KeyPair> future : futures) {
+                result.add(future.join());
+            }
+        } catch (CompletionException e) {
+            result.forEach(KeyPair::dispose);
+            throw new CommonException("error.ssh.key.generate", e.getCause());
+        }
+        fill();
+        return result;
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        List<Metric<?>> metrics = new ArrayList<>();
+        metrics.add(new Metric<>(METRIC_PREFIX + "hit", hit.get()));
+        metrics.add(new Metric<>(METRIC_PREFIX + "miss", miss.get()));
+        metrics.add(new Metric<>(METRIC_PREFIX + "size", keyPairs.size()));
+        return metrics;
+    }
+
+    /**
+     * 补充到池满，正在生成的密钥也计入，避免连续取用时提交过多任务
+     */
+    private void fill() {
+        int current;
+        while ((current = filling.get()) + keyPairs.size() < poolSize) {
+            if (!filling.compareAndSet(current, current + 1)) {
+                continue;
+            }
+            try {
+                generator.execute(this::generateIntoPool);
+            } catch (RejectedExecutionException e) {
+                filling.decrementAndGet();
+                return;
+            }
+        }
+    }
+
+    private void generateIntoPool() {
+        try {
+            KeyPair keyPair = generate();
+            if (!keyPairs.offer(keyPair)) {
+                keyPair.dispose();
+            }
+        } catch (CommonException e) {
+            LOGGER.info(e.getMessage());
+        } finally {
+            filling.decrementAndGet();
+        }
+    }
+
+    private KeyPair generate() {
+        try {
+            return KeyPair.genKeyPair(jsch, KeyPair.RSA);
+        } catch (JSchException e) {
+            throw new CommonException("error.ssh.key.generate", e);
+        }
+    }
+}
@@ -0,0 +1,314 @@
+package io.choerodon.devops.infra.common.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.PreDestroy;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.dircache.DirCache;
+import org.eclipse.jgit.dircache.DirCacheBuilder;
+import org.eclipse.jgit.dircache.DirCacheEntry;
+import org.eclipse.jgit.lib.CommitBuilder;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
+import org.eclipse.jgit.transport.PushResult;
+import org.eclipse.jgit.transport.RefSpec;
+import org.eclipse.jgit.transport.RemoteRefUpdate;
+import org.eclipse.jgit.transport.UsernamePasswordCredentialsProvider;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.stereotype.Component;
+
+import io.choerodon.core.exception.CommonException;
+
+/**
+ * 应用模板的本地裸仓库镜像，每个模板库和分支一个，使用时按刷新间隔增量fetch
+ * 创建应用时不再clone和检出工作区，渲染后的文件和目录树写入一个通过alternates引用镜像对象的临时裸仓库，
+ * 生成提交推送到新项目后整体删除，长期保留的镜像中只有从模板库fetch的对象
+ */
+@Component
+public class TemplateRepositoryMirror implements PublicMetrics {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TemplateRepositoryMirror.class);
+    private static final String METRIC_PREFIX = "devops.template.mirror.";
+    private static final String MIRROR_DIR = "template-mirror";
+    private static final String RENDER_DIR = "template-render";
+    private static final String MASTER = "master";
+    private static final String MODEL_SERVICE = "model-service";
+    private static final String SERVICE_CODE = "{{service.code}}";
+    private static final String COMMIT_MESSAGE = "Render Variables[skip ci]";
+
+    @Value("${template.mirror.refreshSeconds:60}")
+    private Long refreshSeconds;
+
+    @Autowired
+    private GitUtil gitUtil;
+
+    private final Map<String, Mirror> mirrors = new ConcurrentHashMap<>();
+    private final AtomicLong fetches = new AtomicLong();
+    private final AtomicLong renders = new AtomicLong();
+    private final AtomicLong fetchMillis = new AtomicLong();
+    private final AtomicLong renderMillis = new AtomicLong();
+
+    @PreDestroy
+    public void destroy() {
+        mirrors.values().forEach(mirror -> mirror.repository.close());
+        mirrors.clear();
+    }
+
+    /**
+     * 渲染模板并推送到新项目
+     * 模板中的{{group.name}}等参数被替换，model-service目录重命名为应用编码，
+     * 渲染结果作为模板分支最新提交的子提交推送，预置模板同时推送为master分支
+     *
+     * @param templateUrl  模板库地址
+     * @param branch       模板分支
+     * @param params       模板参数
+     * @param repoUrl      新项目地址
+     * @param userName     gitlab用户名
+     * @param accessToken  gitlab访问令牌
+     * @param templateType 是否为预置模板
+     */
+    public void push(String templateUrl, String branch, Map<String, String> params, String repoUrl,
+                     String userName, String accessToken, Boolean templateType) {
+        Mirror mirror = mirror(templateUrl, branch);
+        ObjectId templateHead = refresh(mirror);
+        File directory = new File(gitUtil.getWorkingDirectory(RENDER_DIR + "/" + UUID.randomUUID()));
+        try (Repository repository = renderRepository(mirror.repository, directory)) {
+            long start = System.currentTimeMillis();
+            ObjectId commit;
+            try {
+                commit = render(repository, templateHead, params);
+            } catch (IOException e) {
+                throw new CommonException("error.param.render", e);
+            } finally {
+                renders.incrementAndGet();
+                renderMillis.addAndGet(System.currentTimeMillis() - start);
+            }
+            push(repository, commit, branch, repoUrl, userName, accessToken, templateType);
+        } finally {
+            FileUtil.deleteDirectory(directory);
+        }
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        List<Metric<?>> metrics = new ArrayList<>();
+        long fetchCount = fetches.get();
+        long renderCount = renders.get();
+        metrics.add(new Metric<>(METRIC_PREFIX + "size", mirrors.size()));
+        metrics.add(new Metric<>(METRIC_PREFIX + "fetch.count", fetchCount));
+        metrics.add(new Metric<>(METRIC_PREFIX + "fetch.time.avg", fetchCount == 0 ? 0 : fetchMillis.get() / fetchCount));
+        metrics.add(new Metric<>(METRIC_PREFIX + "render.count", renderCount));
+        metrics.add(new Metric<>(METRIC_PREFIX + "render.time.avg", renderCount == 0 ? 0 : renderMillis.get() / renderCount));
+        return metrics;
+    }
+
+    private static void push(Repository repository, ObjectId commit, String branch, String repoUrl,
+                             String userName, String accessToken, Boolean templateType) {
+        List<RefSpec> refSpecs = new ArrayList<>();
+        refSpecs.add(new RefSpec(commit.getName() + ":" + Constants.R_HEADS + branch));
+        if (templateType && !MASTER.equals(branch)) {
+            refSpecs.add(new RefSpec(commit.getName() + ":" + Constants.R_HEADS + MASTER));
+        }
+        try {
+            Iterable<PushResult> results = Git.wrap(repository).push()
+                    .setRemote(authorizedUrl(repoUrl, accessToken))
+                    .setRefSpecs(refSpecs)
+                    .setCredentialsProvider(new UsernamePasswordCredentialsProvider(userName, accessToken))
+                    .call();
+            for (PushResult result : results) {
+                for (RemoteRefUpdate update : result.getRemoteUpdates()) {
+                    if (update.getStatus() != RemoteRefUpdate.Status.OK
+                            && update.getStatus() != RemoteRefUpdate.Status.UP_TO_DATE) {
+                        throw new CommonException("error.git.push");
+                    }
+                }
+            }
+        } catch (GitAPIException e) {
+            throw new CommonException("error.git.push", e);
+        }
+    }
+
+    /**
+     * 创建本次渲染使用的临时裸仓库，模板对象从镜像的对象库中读取
+     */
+    private static Repository renderRepository(Repository mirror, File directory) {
+        try {
+            Repository repository = new FileRepositoryBuilder()
+                    .setGitDir(directory)
+                    .setBare()
+                    .addAlternateObjectDirectory(new File(mirror.getDirectory(), Constants.OBJECTS))
+                    .build();
+            repository.create(true);
+            return repository;
+        } catch (IOException | IllegalStateException e) {
+            throw new CommonException("error.param.render", e);
+        }
+    }
+
+    private Mirror mirror(String templateUrl, String branch) {
+        return mirrors.computeIfAbsent(templateUrl + "#" + branch, key -> {
+            // 目录名使用地址和分支的摘要，避免地址中的特殊字符
+            String name = new ObjectInserter.Formatter()
+                    .idFor(Constants.OBJ_BLOB, key.getBytes(StandardCharsets.UTF_8)).getName();
+            File directory = new File(gitUtil.getWorkingDirectory(MIRROR_DIR + "/" + name));
+            try {
+                Repository repository = new FileRepositoryBuilder().setGitDir(directory).setBare().build();
+                if (!repository.getObjectDatabase().exists()) {
+                    repository.create(true);
+                }
+                return new Mirror(templateUrl, branch, repository);
+            } catch (IOException | IllegalStateException e) {
+                throw new CommonException("error.git.clone", e);
+            }
+        });
+    }
+
+    /**
+     * 超过刷新间隔时从模板库增量fetch分支，返回分支最新提交
+     */
+    private ObjectId refresh(Mirror mirror) {
+        synchronized (mirror) {
+            String ref = Constants.R_HEADS + mirror.branch;
+            try {
+                ObjectId head = mirror.repository.resolve(ref);
+                if (head == null || System.currentTimeMillis() - mirror.fetchedAt
+                        >= TimeUnit.SECONDS.toMillis(refreshSeconds)) {
+                    long start = System.currentTimeMillis();
+                    Git.wrap(mirror.repository).fetch()
+                            .setRemote(mirror.url)
+                            .setRefSpecs(new RefSpec("+" + ref + ":" + ref))
+                            .call();
+                    mirror.fetchedAt = System.currentTimeMillis();
+                    fetches.incrementAndGet();
+                    fetchMillis.addAndGet(mirror.fetchedAt - start);
+                    head = mirror.repository.resolve(ref);
+                }
+                if (head == null) {
+                    throw new CommonException("error.git.clone");
+                }
+                return head;
+            } catch (GitAPIException | IOException e) {
+                LOGGER.info("fetch template {} branch {} failed", mirror.url, mirror.branch, e);
+                throw new CommonException("error.git.clone", e);
+            }
+        }
+    }
+
+    /**
+     * 遍历模板最新提交的目录树，替换参数后写入对象库，未包含参数的文件沿用原对象
+     */
+    private static ObjectId render(Repository repository, ObjectId templateHead, Map<String, String> params)
+            throws IOException {
+        String serviceCode = params.get(SERVICE_CODE);
+        try (ObjectInserter inserter = repository.newObjectInserter();
+             ObjectReader reader = repository.newObjectReader();
+             RevWalk revWalk = new RevWalk(reader);
+             TreeWalk treeWalk = new TreeWalk(reader)) {
+            RevCommit parent = revWalk.parseCommit(templateHead);
+            DirCache dirCache = DirCache.newInCore();
+            DirCacheBuilder builder = dirCache.builder();
+            treeWalk.addTree(parent.getTree());
+            treeWalk.setRecursive(true);
+            while (treeWalk.next()) {
+                String path = treeWalk.getPathString();
+                FileMode fileMode = treeWalk.getFileMode(0);
+                ObjectId objectId = treeWalk.getObjectId(0);
+                if (fileMode == FileMode.REGULAR_FILE || fileMode == FileMode.EXECUTABLE_FILE) {
+                    objectId = renderBlob(reader, inserter, path, objectId, params);
+                }
+                DirCacheEntry entry = new DirCacheEntry(renamePath(path, serviceCode));
+                entry.setFileMode(fileMode);
+                entry.setObjectId(objectId);
+                builder.add(entry);
+            }
+            builder.finish();
+            CommitBuilder commitBuilder = new CommitBuilder();
+            PersonIdent ident = new PersonIdent(repository);
+            commitBuilder.setTreeId(dirCache.writeTree(inserter));
+            commitBuilder.setParentId(parent);
+            commitBuilder.setAuthor(ident);
+            commitBuilder.setCommitter(ident);
+            commitBuilder.setMessage(COMMIT_MESSAGE);
+            ObjectId commit = inserter.insert(commitBuilder);
+            inserter.flush();
+            return commit;
+        }
+    }
+
+    private static ObjectId renderBlob(ObjectReader reader, ObjectInserter inserter, String path,
+                                       ObjectId objectId, Map<String, String> params) throws IOException {
+        for (String segment : path.split("/")) {
+            if (segment.endsWith(".xlsx")) {
+                return objectId;
+            }
+        }
+        String content = new String(reader.open(objectId, Constants.OBJ_BLOB).getBytes(), StandardCharsets.UTF_8);
+        String rendered = content;
+        for (Map.Entry<String, String> param : params.entrySet()) {
+            rendered = rendered.replace(param.getKey(), param.getValue());
+        }
+        if (rendered.equals(content)) {
+            return objectId;
+        }
+        return inserter.insert(Constants.OBJ_BLOB, rendered.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String renamePath(String path, String serviceCode) {
+        if (serviceCode == null || !(path.startsWith(MODEL_SERVICE + "/") || path.contains("/" + MODEL_SERVICE + "/"))) {
+            return path;
+        }
+        String[] segments = path.split("/");
+        for (int i = 0; i < segments.length - 1; i++) {
+            if (MODEL_SERVICE.equals(segments[i])) {
+                segments[i] = serviceCode;
+            }
+        }
+        return String.join("/", segments);
+    }
+
+    private static String authorizedUrl(String repoUrl, String accessToken) {
+        String[] url = repoUrl.split("://");
+        if (url.length != 2 || !url[0].startsWith("http")) {
+            return repoUrl;
+        }
+        return url[0] + "://gitlab-ci-token:" + accessToken + "@" + url[1];
+    }
+
+    private static class Mirror {
+        private final String url;
+        private final String branch;
+        private final Repository repository;
+        private long fetchedAt;
+
+        Mirror(String url, String branch, Repository repository) {
+            this.url = url;
+            this.branch = branch;
+            this.repository = repository;
+        }
+    }
+}
@@ -0,0 +1,406 @@
+package io.choerodon.devops.infra.common.util;
+
+import java.math.BigDecimal;
+import java.util.*;
+
+import org.yaml.snakeyaml.DumperOptions;
+import org.yaml.snakeyaml.Yaml;
+import org.yaml.snakeyaml.composer.Composer;
+import org.yaml.snakeyaml.nodes.*;
+import org.yaml.snakeyaml.parser.ParserImpl;
+import org.yaml.snakeyaml.reader.StreamReader;
+import org.yaml.snakeyaml.resolver.Resolver;
+
+import io.choerodon.devops.domain.application.valueobject.HighlightMarker;
+import io.choerodon.devops.domain.application.valueobject.ReplaceResult;
+
+/**
+ * 在内存中比较chart的values与部署values，生成合并后的values、差异values以及新增和修改的行标记
+ * 合并结果以chart values的原文为基础，保留其中的注释和格式，只替换或追加部署values中改动的部分
+ * <p>
+ * 比较规则沿用原values_yaml.py：sequence总是整体替换并记为新增，chart中为空的mapping整体替换并记为新增，
+ * 标量按值比较（1与1.0、true与1相等，"1"与1不相等），不同时记为修改。与原程序不同的地方：
+ * 1. 原程序只处理字符串、整数和布尔值，浮点数、null、时间等标量会被丢弃，这里与其他标量一样处理；
+ * 2. 部署values为mapping或sequence而chart values为其他类型时原程序忽略该key，这里整体替换，
+ * mapping记为修改，sequence记为新增；
+ * 3. chart values中非空的流式mapping无法按行合并，不同时整体替换并记为修改；
+ * 4. SnakeYAML按YAML 1.1解析，yes/no/on/off等会被识别为布尔值，原程序使用的ruamel按YAML 1.2解析为字符串；
+ * 5. 原程序用ruamel重新输出整个文件，这里保留chart values原文，只保证解析后的内容一致；
+ * 6. 新增行原来取值节点起止位置之间的行，值为block集合时不含key所在行，且会多出集合结束位置所在的下一行，
+ * 这里从key所在行开始，到值的最后一行结束。
+ */
+public class ValuesYamlUtil {
+
+    private static final String BLANK = " ";
+
+    private ValuesYamlUtil() {
+    }
+
+    /**
+     * 比较chart values与部署values
+     *
+     * @param versionValue chart values
+     * @param deployValue  部署values
+     * @return 合并结果、差异values以及新增行、修改标记
+     */
+    public static ReplaceResult replace(String versionValue, String deployValue) {
+        Node versionNode = compose(versionValue);
+        Node deployNode = compose(deployValue);
+        List<List<String>> adds = new ArrayList<>();
+        List<List<String>> updates = new ArrayList<>();
+        String yaml;
+        String deltaYaml;
+        if (!(deployNode instanceof MappingNode)) {
+            yaml = versionValue;
+            deltaYaml = "";
+        } else if (!(versionNode instanceof MappingNode) || new Source(versionValue).isFlow(versionNode)) {
+            yaml = deployValue;
+            deltaYaml = deployValue;
+            for (NodeTuple nodeTuple : ((MappingNode) deployNode).getValue()) {
+                adds.add(Collections.singletonList(keyOf(nodeTuple)));
+            }
+        } else {
+            Changes changes = new Changes(adds, updates);
+            Map<Object, Object> delta = new LinkedHashMap<>();
+            merge(new Source(versionValue), (MappingNode) versionNode,
+                    (Map<Object, Object>) new Yaml().load(versionValue),
+                    new Source(deployValue), (MappingNode) deployNode,
+                    (Map<Object, Object>) new Yaml().load(deployValue),
+                    new ArrayList<>(), changes, delta);
+            yaml = applyEdits(versionValue, changes.edits);
+            deltaYaml = delta.isEmpty() ? "" : dump(delta);
+        }
+        ReplaceResult replaceResult = markChanges(yaml, adds, updates);
+        replaceResult.setDeltaYaml(deltaYaml);
+        return replaceResult;
+    }
+
+    /**
+     * 在合并后的values中定位新增和修改的节点，新增节点标记为新行，修改节点标记为高亮
+     *
+     * @param yaml    合并后的values
+     * @param adds    新增节点的key路径
+     * @param updates 修改节点的key路径
+     * @return 替换结果
+     */
+    private static ReplaceResult markChanges(String yaml, List<List<String>> adds, List<List<String>> updates) {
+        List<Integer> addLines = new ArrayList<>();
+        List<HighlightMarker> highlightMarkers = new ArrayList<>();
+        Node root = compose(yaml);
+        if (root instanceof MappingNode) {
+            Source source = new Source(yaml);
+            MappingNode mappingNode = (MappingNode) root;
+            for (List<String> add : adds) {
+                NodeTuple nodeTuple = getKeysTuple(add, mappingNode);
+                if (nodeTuple != null) {
+                    appendLine(nodeTuple.getKeyNode().getStartMark().getLine(),
+                            source.lastLine(nodeTuple.getValueNode()), addLines);
+                }
+            }
+            for (List<String> update : updates) {
+                NodeTuple nodeTuple = getKeysTuple(update, mappingNode);
+                if (nodeTuple != null) {
+                    Node node = nodeTuple.getValueNode();
+                    int endLine = source.lastLine(node);
+                    HighlightMarker highlightMarker = new HighlightMarker();
+                    highlightMarker.setLine(node.getStartMark().getLine());
+                    highlightMarker.setEndLine(endLine);
+                    highlightMarker.setStartIndex(node.getStartMark().getIndex());
+                    highlightMarker.setEndIndex(node.getEndMark().getIndex());
+                    highlightMarker.setStartColumn(node.getStartMark().getColumn());
+                    highlightMarker.setEndColumn(node.getEndMark().getLine() == endLine
+                            ? node.getEndMark().getColumn() : source.line(endLine).length());
+                    highlightMarkers.add(highlightMarker);
+                }
+            }
+        }
+        ReplaceResult replaceResult = new ReplaceResult();
+        replaceResult.setNewLines(addLines);
+        replaceResult.setHighlightMarkers(highlightMarkers);
+        replaceResult.setYaml(yaml);
+        return replaceResult;
+    }
+
+    //以部署values为准逐层比较，差异的节点整体替换，缺少的key追加到所在层的末尾，同时记录差异values
+    private static void merge(Source version, MappingNode versionMapping, Map<Object, Object> versionObject,
+                              Source deploy, MappingNode deployMapping, Map<Object, Object> deployObject,
+                              List<String> path,
+                              Changes changes,
+                              Map<Object, Object> delta) {
+        List<String> inserts = new ArrayList<>();
+        int column = versionMapping.getValue().isEmpty()
+                ? 0 : versionMapping.getValue().get(0).getKeyNode().getStartMark().getColumn();
+        for (NodeTuple deployTuple : deployMapping.getValue()) {
+            String key = keyOf(deployTuple);
+            List<String> keys = new ArrayList<>(path);
+            keys.add(key);
+            Map.Entry<Object, Object> deployEntry = findEntry(key, deployObject);
+            if (deployEntry == null) {
+                continue;
+            }
+            NodeTuple versionTuple = findTuple(key, versionMapping);
+            if (versionTuple == null) {
+                inserts.addAll(tupleLines(deploy, deployMapping, deployTuple, column));
+                changes.adds.add(keys);
+                delta.put(deployEntry.getKey(), deployEntry.getValue());
+                continue;
+            }
+            Node versionNode = versionTuple.getValueNode();
+            Node deployNode = deployTuple.getValueNode();
+            Map.Entry<Object, Object> versionEntry = findEntry(key, versionObject);
+            Object versionValue = versionEntry == null ? null : versionEntry.getValue();
+            if (deployNode instanceof MappingNode && versionNode instanceof MappingNode
+                    && !((MappingNode) versionNode).getValue().isEmpty() && !version.isFlow(versionNode)) {
+                Map<Object, Object> child = new LinkedHashMap<>();
+                merge(version, (MappingNode) versionNode, asMap(versionValue),
+                        deploy, (MappingNode) deployNode, asMap(deployEntry.getValue()),
+                        keys, changes, child);
+                if (!child.isEmpty()) {
+                    delta.put(deployEntry.getKey(), child);
+                }
+                continue;
+            }
+            boolean added = deployNode instanceof SequenceNode
+                    || (deployNode instanceof MappingNode && versionNode instanceof MappingNode
+                    && ((MappingNode) versionNode).getValue().isEmpty());
+            if (added || deployNode instanceof MappingNode
+                    || !(versionNode instanceof ScalarNode)
+                    || !scalarEquals(versionValue, deployEntry.getValue())) {
+                int startLine = versionTuple.getKeyNode().getStartMark().getLine();
+                int endLine = version.lastLine(versionNode);
+                changes.edits.add(new Edit(startLine, endLine + 1, path.size(),
+                        tupleLines(deploy, deployMapping, deployTuple,
+                                versionTuple.getKeyNode().getStartMark().getColumn())));
+                (added ? changes.adds : changes.updates).add(keys);
+                delta.put(deployEntry.getKey(), deployEntry.getValue());
+            }
+        }
+        if (!inserts.isEmpty()) {
+            int line = versionMapping.getValue().isEmpty()
+                    ? versionMapping.getEndMark().getLine()
+                    : version.lastLine(versionMapping.getValue().get(versionMapping.getValue().size() - 1)
+                    .getValueNode()) + 1;
+            changes.edits.add(new Edit(line, line, path.size(), inserts));
+        }
+    }
+
+    //与原程序中python的比较一致，数值和布尔值按数值比较，其他按值比较
+    private static boolean scalarEquals(Object versionValue, Object deployValue) {
+        BigDecimal versionNumber = toNumber(versionValue);
+        BigDecimal deployNumber = toNumber(deployValue);
+        if (versionNumber != null && deployNumber != null) {
+            return versionNumber.compareTo(deployNumber) == 0;
+        }
+        return Objects.equals(versionValue, deployValue);
+    }
+
+    private static BigDecimal toNumber(Object value) {
+        if (value instanceof Boolean) {
+            return (Boolean) value ? BigDecimal.ONE : BigDecimal.ZERO;
+        }
+        if (value instanceof Number) {
+            try {
+                return new BigDecimal(value.toString());
+            } catch (NumberFormatException e) {
+                //NaN和无穷大
+                return null;
+            }
+        }
+        return null;
+    }
+
+    private static Map<Object, Object> asMap(Object value) {
+        return value instanceof Map ? (Map<Object, Object>) value : Collections.emptyMap();
+    }
+
+    //取出部署values中一个key的原文并调整缩进，流式写法的mapping无法按行截取，重新生成
+    private static List<String> tupleLines(Source deploy, MappingNode deployMapping, NodeTuple deployTuple, int column) {
+        List<String> lines = new ArrayList<>();
+        if (deploy.isFlow(deployMapping)) {
+            Map<Object, Object> value = new LinkedHashMap<>();
+            value.put(keyOf(deployTuple), new Yaml().load(deploy.text(deployTuple.getValueNode())));
+            for (String line : dump(value).split("\n")) {
+                lines.add(indent(column) + line);
+            }
+            return lines;
+        }
+        int keyColumn = deployTuple.getKeyNode().getStartMark().getColumn();
+        int startLine = deployTuple.getKeyNode().getStartMark().getLine();
+        int endLine = deploy.lastLine(deployTuple.getValueNode());
+        for (int i = startLine; i <= endLine; i++) {
+            String line = deploy.line(i);
+            int blank = 0;
+            while (blank < keyColumn && blank < line.length() && line.charAt(blank) == ' ') {
+                blank++;
+            }
+            lines.add(line.trim().isEmpty() ? "" : indent(column) + line.substring(blank));
+        }
+        return lines;
+    }
+
+    //从下往上应用修改，避免前面的修改影响后面修改的行号，同一行的插入先写外层再写内层，保证内层的key在前
+    private static String applyEdits(String yaml, List<Edit> edits) {
+        List<String> lines = new ArrayList<>(Arrays.asList(yaml.split("\n", -1)));
+        edits.sort((one, other) -> one.start != other.start
+                ? Integer.compare(other.start, one.start)
+                : Integer.compare(one.depth, other.depth));
+        for (Edit edit : edits) {
+            int start = Math.min(edit.start, lines.size());
+            int end = Math.min(edit.end, lines.size());
+            lines.subList(start, end).clear();
+            lines.addAll(start, edit.lines);
+        }
+        return String.join("\n", lines);
+    }
+
+    private static NodeTuple getKeysTuple(List<String> keys, MappingNode mappingNode) {
+        NodeTuple nodeTuple = null;
+        for (String key : keys) {
+            if (mappingNode == null) {
+                return null;
+            }
+            nodeTuple = findTuple(key, mappingNode);
+            if (nodeTuple == null) {
+                return null;
+            }
+            mappingNode = nodeTuple.getValueNode() instanceof MappingNode
+                    ? (MappingNode) nodeTuple.getValueNode() : null;
+        }
+        return nodeTuple;
+    }
+
+    private static void appendLine(int start, int end, List<Integer> adds) {
+        for (int i = start; i <= end; i++) {
+            adds.add(i);
+        }
+    }
+
+    private static NodeTuple findTuple(String key, MappingNode mappingNode) {
+        for (NodeTuple nodeTuple : mappingNode.getValue()) {
+            if (key.equals(keyOf(nodeTuple))) {
+                return nodeTuple;
+            }
+        }
+        return null;
+    }
+
+    private static Map.Entry<Object, Object> findEntry(String key, Map<Object, Object> map) {
+        if (map == null) {
+            return null;
+        }
+        for (Map.Entry<Object, Object> entry : map.entrySet()) {
+            if (key.equals(String.valueOf(entry.getKey()))) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    private static String keyOf(NodeTuple nodeTuple) {
+        Node keyNode = nodeTuple.getKeyNode();
+        return keyNode instanceof ScalarNode ? ((ScalarNode) keyNode).getValue() : keyNode.toString();
+    }
+
+    private static Node compose(String yaml) {
+        if (yaml == null || yaml.trim().isEmpty()) {
+            return null;
+        }
+        Composer composer = new Composer(new ParserImpl(new StreamReader(yaml)), new Resolver());
+        return composer.getSingleNode();
+    }
+
+    private static String dump(Object value) {
+        DumperOptions options = new DumperOptions();
+        options.setDefaultFlowStyle(DumperOptions.FlowStyle.BLOCK);
+        options.setIndent(2);
+        options.setWidth(Integer.MAX_VALUE);
+        return new Yaml(options).dump(value);
+    }
+
+    private static String indent(int column) {
+        StringBuilder stringBuilder = new StringBuilder();
+        for (int i = 0; i < column; i++) {
+            stringBuilder.append(BLANK);
+        }
+        return stringBuilder.toString();
+    }
+
+    /**
+     * yaml原文，用于按节点位置截取文本
+     */
+    private static class Source {
+        private final String text;
+        private final List<Integer> lineStarts = new ArrayList<>();
+
+        Source(String text) {
+            this.text = text;
+            lineStarts.add(0);
+            for (int i = 0; i < text.length(); i++) {
+                if (text.charAt(i) == '\n') {
+                    lineStarts.add(i + 1);
+                }
+            }
+        }
+
+        String text(Node node) {
+            return text.substring(node.getStartMark().getIndex(), node.getEndMark().getIndex());
+        }
+
+        String line(int line) {
+            int start = lineStarts.get(line);
+            int end = line + 1 < lineStarts.size() ? lineStarts.get(line + 1) - 1 : text.length();
+            return text.substring(start, end);
+        }
+
+        boolean isFlow(Node node) {
+            int index = node.getStartMark().getIndex();
+            return index < text.length() && (text.charAt(index) == '{' || text.charAt(index) == '[');
+        }
+
+        //节点内容所在的最后一行，block集合的结束位置会延伸到下一个token，所以取最后一个子节点的最后一行
+        int lastLine(Node node) {
+            if (node instanceof MappingNode && !isFlow(node) && !((MappingNode) node).getValue().isEmpty()) {
+                List<NodeTuple> nodeTuples = ((MappingNode) node).getValue();
+                return lastLine(nodeTuples.get(nodeTuples.size() - 1).getValueNode());
+            }
+            if (node instanceof SequenceNode && !isFlow(node) && !((SequenceNode) node).getValue().isEmpty()) {
+                List<Node> nodes = ((SequenceNode) node).getValue();
+                return lastLine(nodes.get(nodes.size() - 1));
+            }
+            int index = node.getEndMark().getIndex() - 1;
+            while (index > node.getStartMark().getIndex() && Character.isWhitespace(text.charAt(index))) {
+                index--;
+            }
+            if (index < 0) {
+                return node.getStartMark().getLine();
+            }
+            int line = Collections.binarySearch(lineStarts, index);
+            return line >= 0 ? line : -line - 2;
+        }
+    }
+
+    private static class Changes {
+        private final List<Edit> edits = new ArrayList<>();
+        private final List<List<String>> adds;
+        private final List<List<String>> updates;
+
+        Changes(List<List<String>> adds, List<List<String>> updates) {
+            this.adds = adds;
+            this.updates = updates;
+        }
+    }
+
+    private static class Edit {
+        private final int start;
+        private final int end;
+        private final int depth;
+        private final List<String> lines;
+
+        Edit(int start, int end, int depth, List<String> lines) {
+            this.start = start;
+            this.end = end;
+            this.depth = depth;
+            this.lines = lines;
+        }
+    }
+}
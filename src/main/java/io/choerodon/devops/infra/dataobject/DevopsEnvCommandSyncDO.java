@@ -0,0 +1,44 @@
+package io.choerodon.devops.infra.dataobject;
+
+/**
+ * 待同步状态的操作记录及其所属对象
+ */
+public class DevopsEnvCommandSyncDO {
+
+    private Long id;
+    private String resourceType;
+    private String resourceName;
+    private String sha;
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getResourceType() {
+        return resourceType;
+    }
+
+    public void setResourceType(String resourceType) {
+        this.resourceType = resourceType;
+    }
+
+    public String getResourceName() {
+        return resourceName;
+    }
+
+    public void setResourceName(String resourceName) {
+        this.resourceName = resourceName;
+    }
+
+    public String getSha() {
+        return sha;
+    }
+
+    public void setSha(String sha) {
+        this.sha = sha;
+    }
+}
@@ -21,16 +21,18 @@ public class DevopsGitlabPipelineDO {
     private Long appId;
     private Long pipelineId;
     private Long pipelineCreateUserId;
+    private String pipelineCreateUserName;
     private Long commitId;
+    private String ref;
+    private String sha;
     private String stage;
     private String status;
+    private String pipelineStatus;
     private Date pipelineCreationDate;
     private Long objectVersionNumber;
 
     @Transient
-    private String ref;
-    @Transient
-    private String sha;
+    private Boolean latest;
     @Transient
     private String content;
     @Transient
@@ -139,4 +141,28 @@ public class DevopsGitlabPipelineDO {
     public void setObjectVersionNumber(Long objectVersionNumber) {
         this.objectVersionNumber = objectVersionNumber;
     }
+
+    public String getPipelineCreateUserName() {
+        return pipelineCreateUserName;
+    }
+
+    public void setPipelineCreateUserName(String pipelineCreateUserName) {
+        this.pipelineCreateUserName = pipelineCreateUserName;
+    }
+
+    public String getPipelineStatus() {
+        return pipelineStatus;
+    }
+
+    public void setPipelineStatus(String pipelineStatus) {
+        this.pipelineStatus = pipelineStatus;
+    }
+
+    public Boolean getLatest() {
+        return latest;
+    }
+
+    public void setLatest(Boolean latest) {
+        this.latest = latest;
+    }
 }
@@ -0,0 +1,76 @@
+package io.choerodon.devops.infra.dataobject;
+
+import javax.persistence.GeneratedValue;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+import io.choerodon.mybatis.annotation.ModifyAudit;
+import io.choerodon.mybatis.annotation.VersionAudit;
+import io.choerodon.mybatis.domain.AuditDomain;
+
+/**
+ * 搜索索引，每个资源搜索字段中出现的每个三字符片段一行
+ */
+@VersionAudit
+@ModifyAudit
+@Table(name = "devops_search_index")
+public class DevopsSearchIndexDO extends AuditDomain {
+
+    @Id
+    @GeneratedValue
+    private Long id;
+    private Long projectId;
+    private String resourceType;
+    private Long resourceId;
+    private String gram;
+
+    public DevopsSearchIndexDO() {
+    }
+
+    public DevopsSearchIndexDO(Long projectId, String resourceType, Long resourceId, String gram) {
+        this.projectId = projectId;
+        this.resourceType = resourceType;
+        this.resourceId = resourceId;
+        this.gram = gram;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Long getProjectId() {
+        return projectId;
+    }
+
+    public void setProjectId(Long projectId) {
+        this.projectId = projectId;
+    }
+
+    public String getResourceType() {
+        return resourceType;
+    }
+
+    public void setResourceType(String resourceType) {
+        this.resourceType = resourceType;
+    }
+
+    public Long getResourceId() {
+        return resourceId;
+    }
+
+    public void setResourceId(Long resourceId) {
+        this.resourceId = resourceId;
+    }
+
+    public String getGram() {
+        return gram;
+    }
+
+    public void setGram(String gram) {
+        this.gram = gram;
+    }
+}
@@ -382,5 +382,6 @@ public interface GitlabServiceClient {
     ResponseEntity<ProjectHook> updateProjectHook(
             @RequestParam("projectId") Integer projectId,
             @RequestParam("hookId") Integer hookId,
-            @RequestParam("userId") Integer userId);
+            @RequestParam("userId") Integer userId,
+            @RequestBody ProjectHook projectHook);
 }
@@ -281,7 +281,8 @@ public class GitlabServiceClientFallback implements GitlabServiceClient {
     }
 
     @Override
-    public ResponseEntity<ProjectHook> updateProjectHook(Integer projectId, Integer hookId, Integer userId) {
+    public ResponseEntity<ProjectHook> updateProjectHook(Integer projectId, Integer hookId, Integer userId,
+                                                         ProjectHook projectHook) {
         return new ResponseEntity("error.projecthook.update", HttpStatus.INTERNAL_SERVER_ERROR);
     }
 }
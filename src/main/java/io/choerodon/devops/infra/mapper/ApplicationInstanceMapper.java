@@ -22,7 +22,8 @@ public interface ApplicationInstanceMapper extends BaseMapper<ApplicationInstanc
                                                         @Param("versionId") Long versionId,
                                                         @Param("appId") Long appId,
                                                         @Param("searchParam") Map<String, Object> searchParam,
-                                                        @Param("param") String param);
+                                                        @Param("param") String param,
+                                                        @Param("searchGrams") List<String> searchGrams);
 
     List<ApplicationInstanceDO> listApplicationInstanceCode(@Param("projectId") Long projectId,
                                                             @Param("envId") Long envId,
@@ -42,4 +43,6 @@ public interface ApplicationInstanceMapper extends BaseMapper<ApplicationInstanc
     List<DeployDO> listDeployTime(@Param("projectId") Long projectId, @Param("envId") Long envId, @Param("appIds") Long[] appIds, @Param("startTime") Date startTime, @Param("endTime") Date endTime);
 
     List<DeployDO> listDeployFrequency(@Param("projectId") Long projectId, @Param("envIds") Long[] envIds, @Param("appId") Long appId, @Param("startTime") Date startTime, @Param("endTime") Date endTime);
+
+    int updateStatusByIds(@Param("ids") List<Long> ids, @Param("status") String status);
 }
@@ -48,4 +48,9 @@ public interface ApplicationVersionMapper extends BaseMapper<ApplicationVersionD
     List<ApplicationVersionDO> selectUpgradeVersions(@Param("appVersionId") Long appVersionId);
 
     Integer checkProIdAndVerId(@Param("projectId") Long projectId, @Param("appVersionId") Long appVersionId);
+
+    /**
+     * 批量插入版本，参数不加@Param以便回填自增主键
+     */
+    int batchInsert(List<ApplicationVersionDO> versions);
 }
@@ -1,5 +1,7 @@
 package io.choerodon.devops.infra.mapper;
 
+import java.util.List;
+
 import io.choerodon.devops.infra.dataobject.ApplicationVersionReadmeDO;
 import io.choerodon.mybatis.common.BaseMapper;
 
@@ -10,4 +12,6 @@ import io.choerodon.mybatis.common.BaseMapper;
  * Description:
  */
 public interface ApplicationVersionReadmeMapper extends BaseMapper<ApplicationVersionReadmeDO> {
+
+    int batchInsert(List<ApplicationVersionReadmeDO> readmes);
 }
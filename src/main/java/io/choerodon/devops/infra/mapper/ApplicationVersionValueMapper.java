@@ -1,7 +1,14 @@
 package io.choerodon.devops.infra.mapper;
 
+import java.util.List;
+
 import io.choerodon.devops.infra.dataobject.ApplicationVersionValueDO;
 import io.choerodon.mybatis.common.BaseMapper;
 
 public interface ApplicationVersionValueMapper extends BaseMapper<ApplicationVersionValueDO> {
+
+    /**
+     * 批量插入版本参数，参数不加@Param以便回填自增主键
+     */
+    int batchInsert(List<ApplicationVersionValueDO> values);
 }
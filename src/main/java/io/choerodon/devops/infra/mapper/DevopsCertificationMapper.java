@@ -23,4 +23,6 @@ public interface DevopsCertificationMapper extends BaseMapper<CertificationDO> {
                                               @Param("param") String param);
 
     List<CertificationDO> getActiveByDomain(@Param("envId") Long envId, @Param("domain") String domain);
+
+    int updateStatusByIds(@Param("ids") List<Long> ids, @Param("status") String status);
 }
@@ -1,11 +1,23 @@
 package io.choerodon.devops.infra.mapper;
 
+import java.util.Date;
+import java.util.List;
+
 import org.apache.ibatis.annotations.Param;
 
 import io.choerodon.devops.infra.dataobject.DevopsEnvCommandDO;
+import io.choerodon.devops.infra.dataobject.DevopsEnvCommandSyncDO;
 import io.choerodon.mybatis.common.BaseMapper;
 
 public interface DevopsEnvCommandMapper extends BaseMapper<DevopsEnvCommandDO> {
 
     DevopsEnvCommandDO queryByObject(@Param("objectType") String objectType, @Param("objectId") Long objectId);
+
+    List<DevopsEnvCommandDO> listByIds(@Param("ids") List<Long> ids);
+
+    int batchUpdateStatus(@Param("commands") List<DevopsEnvCommandDO> commands);
+
+    List<DevopsEnvCommandSyncDO> listPendingByEnvId(@Param("envId") Long envId,
+                                                    @Param("status") String status,
+                                                    @Param("before") Date before);
 }
@@ -14,4 +14,6 @@ public interface DevopsEnvFileMapper extends BaseMapper<DevopsEnvFileDO> {
     DevopsEnvFileDO queryByEnvAndPathAndCommits(@Param("envId") Long envId, @Param("filePath") String filePath, @Param("commits") List<String> commits);
 
     List<DevopsEnvFileDO> pageByEnvId(@Param("envId") Long envId);
+
+    int batchUpdateAgentCommit(@Param("files") List<DevopsEnvFileDO> files);
 }
@@ -19,4 +19,6 @@ public interface DevopsEnvPodContainerMapper extends BaseMapper<DevopsEnvPodCont
     List<DevopsEnvPodContainerDO> listContainer(@Param("podId") Long podId,
                                                 @Param("searchParam") Map<String, Object> searchParam,
                                                 @Param("param") String param);
+
+    int batchInsert(@Param("containers") List<DevopsEnvPodContainerDO> containers);
 }
@@ -1,7 +1,21 @@
 package io.choerodon.devops.infra.mapper;
 
+import java.util.List;
+
+import org.apache.ibatis.annotations.Param;
+
 import io.choerodon.devops.infra.dataobject.DevopsGitlabCommitDO;
 import io.choerodon.mybatis.common.BaseMapper;
 
 public interface DevopsGitlabCommitMapper extends BaseMapper<DevopsGitlabCommitDO> {
+
+    /**
+     * 查询已存在的commit sha
+     */
+    List<String> listExistedCommitShas(@Param("commitShas") List<String> commitShas);
+
+    /**
+     * 批量插入commit，参数不加@Param以便回填自增主键
+     */
+    int batchInsert(List<DevopsGitlabCommitDO> commits);
 }
@@ -0,0 +1,13 @@
+package io.choerodon.devops.infra.mapper;
+
+import java.util.List;
+
+import org.apache.ibatis.annotations.Param;
+
+import io.choerodon.devops.infra.dataobject.DevopsGitlabPipelineJobDO;
+import io.choerodon.mybatis.common.BaseMapper;
+
+public interface DevopsGitlabPipelineJobMapper extends BaseMapper<DevopsGitlabPipelineJobDO> {
+
+    List<DevopsGitlabPipelineJobDO> listByPipelineIds(@Param("pipelineIds") List<Long> pipelineIds);
+}
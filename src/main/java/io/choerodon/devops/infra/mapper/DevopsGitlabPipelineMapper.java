@@ -12,4 +12,10 @@ public interface DevopsGitlabPipelineMapper extends BaseMapper<DevopsGitlabPipel
 
     List<DevopsGitlabPipelineDO> listDevopsGitlabPipeline(@Param("appId") Long appId, @Param("startTime") Date startTime, @Param("endTime") Date endTime);
 
+    List<DevopsGitlabPipelineDO> listPipelineWithLatest(@Param("appId") Long appId);
+
+    Integer countWithoutRef(@Param("appId") Long appId);
+
+    List<Long> listPipelineIdsWithRef(@Param("appId") Long appId);
+
 }
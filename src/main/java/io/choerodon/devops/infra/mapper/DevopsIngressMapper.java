@@ -21,7 +21,11 @@ public interface DevopsIngressMapper extends BaseMapper<DevopsIngressDO> {
             @Param("projectId") Long projectId,
             @Param("envId") Long envId,
             @Param("searchParam") Map<String, Object> searchParam,
-            @Param("param") String param);
+            @Param("param") String param,
+            @Param("searchGrams") List<String> searchGrams);
 
     Boolean checkEnvHasIngress(@Param("envId") Long envId);
+
+    int updateStatusByIds(@Param("ids") List<Long> ids, @Param("status") String status,
+                          @Param("usable") Boolean usable);
 }
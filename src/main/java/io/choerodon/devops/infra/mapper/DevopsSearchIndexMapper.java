@@ -0,0 +1,36 @@
+package io.choerodon.devops.infra.mapper;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.ibatis.annotations.Param;
+
+import io.choerodon.devops.infra.dataobject.DevopsSearchIndexDO;
+import io.choerodon.mybatis.common.BaseMapper;
+
+public interface DevopsSearchIndexMapper extends BaseMapper<DevopsSearchIndexDO> {
+
+    /**
+     * 查询资源的搜索字段，每行包含resourceId、projectId以及若干搜索字段，
+     * 按资源id、环境id或应用id过滤
+     */
+    List<Map<String, Object>> listDocuments(@Param("resourceType") String resourceType,
+                                            @Param("resourceIds") Collection<Long> resourceIds,
+                                            @Param("envId") Long envId,
+                                            @Param("appId") Long appId);
+
+    /**
+     * 查询项目下还没有建立索引的资源
+     */
+    List<Long> listUnindexedIds(@Param("resourceType") String resourceType,
+                                @Param("projectId") Long projectId);
+
+    int deleteByResourceIds(@Param("resourceType") String resourceType,
+                            @Param("resourceIds") Collection<Long> resourceIds);
+
+    /**
+     * 批量插入索引，参数不加@Param以便回填自增主键
+     */
+    int batchInsert(List<DevopsSearchIndexDO> indexes);
+}
@@ -20,6 +20,7 @@ public interface DevopsServiceMapper extends BaseMapper<DevopsServiceDO> {
             @Param("envId") Long envId,
             @Param("searchParam") Map<String, Object> searchParam,
             @Param("param") String param,
+            @Param("searchGrams") List<String> searchGrams,
             @Param("start") Integer start,
             @Param("size") Integer size,
             @Param("sort") String sort);
@@ -33,7 +34,9 @@ public interface DevopsServiceMapper extends BaseMapper<DevopsServiceDO> {
     int selectCountByOptions(@Param("projectId") Long projectId, @Param("envId") Long envId, @Param("name") String name);
 
     int selectCountByName(@Param("projectId") Long projectId, @Param("envId") Long envId, @Param("searchParam") Map<String, Object> searchParam,
-                          @Param("param") String param);
+                          @Param("param") String param, @Param("searchGrams") List<String> searchGrams);
 
     Boolean checkEnvHasService(@Param("envId") Long envId);
+
+    int updateStatusByIds(@Param("ids") List<Long> ids, @Param("status") String status);
 }
@@ -13,7 +13,9 @@ import io.choerodon.core.domain.Page;
 import io.choerodon.core.exception.CommonException;
 import io.choerodon.devops.domain.application.entity.ApplicationInstanceE;
 import io.choerodon.devops.domain.application.repository.ApplicationInstanceRepository;
+import io.choerodon.devops.domain.application.repository.DevopsSearchIndexRepository;
 import io.choerodon.devops.infra.common.util.TypeUtil;
+import io.choerodon.devops.infra.common.util.enums.ObjectType;
 import io.choerodon.devops.infra.dataobject.ApplicationInstanceDO;
 import io.choerodon.devops.infra.dataobject.ApplicationInstancesDO;
 import io.choerodon.devops.infra.dataobject.DeployDO;
@@ -29,9 +31,12 @@ public class ApplicationInstanceRepositoryImpl implements ApplicationInstanceRep
     private static final Gson gson = new Gson();
 
     private ApplicationInstanceMapper applicationInstanceMapper;
+    private DevopsSearchIndexRepository devopsSearchIndexRepository;
 
-    public ApplicationInstanceRepositoryImpl(ApplicationInstanceMapper applicationInstanceMapper) {
+    public ApplicationInstanceRepositoryImpl(ApplicationInstanceMapper applicationInstanceMapper,
+                                             DevopsSearchIndexRepository devopsSearchIndexRepository) {
         this.applicationInstanceMapper = applicationInstanceMapper;
+        this.devopsSearchIndexRepository = devopsSearchIndexRepository;
     }
 
     @Override
@@ -40,9 +45,11 @@ public class ApplicationInstanceRepositoryImpl implements ApplicationInstanceRep
         Map<String, Object> maps = gson.fromJson(params, Map.class);
         Map<String, Object> searchParamMap = TypeUtil.cast(maps.get(TypeUtil.SEARCH_PARAM));
         String paramMap = TypeUtil.cast(maps.get(TypeUtil.PARAM));
+        List<String> searchGrams = devopsSearchIndexRepository.listSearchGrams(
+                projectId, ObjectType.INSTANCE.getType(), paramMap);
         Page<ApplicationInstanceDO> applicationInstanceDOPage = PageHelper.doPageAndSort(pageRequest, () ->
-                applicationInstanceMapper
-                        .listApplicationInstance(projectId, envId, versionId, appId, searchParamMap, paramMap));
+                applicationInstanceMapper.listApplicationInstance(
+                        projectId, envId, versionId, appId, searchParamMap, paramMap, searchGrams));
         return ConvertPageHelper.convertPage(applicationInstanceDOPage, ApplicationInstanceE.class);
     }
 
@@ -63,6 +70,7 @@ public class ApplicationInstanceRepositoryImpl implements ApplicationInstanceRep
         if (applicationInstanceMapper.insert(applicationInstanceDO) != 1) {
             throw new CommonException("error.application.instance.create");
         }
+        devopsSearchIndexRepository.index(ObjectType.INSTANCE.getType(), applicationInstanceDO.getId());
         return ConvertHelper.convert(applicationInstanceDO, ApplicationInstanceE.class);
     }
 
@@ -92,11 +100,16 @@ public class ApplicationInstanceRepositoryImpl implements ApplicationInstanceRep
     public void update(ApplicationInstanceE applicationInstanceE) {
         ApplicationInstanceDO applicationInstanceDO = ConvertHelper.convert(
                 applicationInstanceE, ApplicationInstanceDO.class);
-        applicationInstanceDO.setObjectVersionNumber(
-                applicationInstanceMapper.selectByPrimaryKey(applicationInstanceDO.getId()).getObjectVersionNumber());
+        ApplicationInstanceDO oldApplicationInstanceDO =
+                applicationInstanceMapper.selectByPrimaryKey(applicationInstanceDO.getId());
+        applicationInstanceDO.setObjectVersionNumber(oldApplicationInstanceDO.getObjectVersionNumber());
         if (applicationInstanceMapper.updateByPrimaryKeySelective(applicationInstanceDO) != 1) {
             throw new CommonException("error.instance.update");
         }
+        if (changed(applicationInstanceDO.getCode(), oldApplicationInstanceDO.getCode())
+                || changed(applicationInstanceDO.getAppVersionId(), oldApplicationInstanceDO.getAppVersionId())) {
+            devopsSearchIndexRepository.index(ObjectType.INSTANCE.getType(), applicationInstanceDO.getId());
+        }
     }
 
     @Override
@@ -125,6 +138,7 @@ public class ApplicationInstanceRepositoryImpl implements ApplicationInstanceRep
     @Override
     public void deleteById(Long id) {
         applicationInstanceMapper.deleteByPrimaryKey(id);
+        devopsSearchIndexRepository.delete(ObjectType.INSTANCE.getType(), id);
     }
 
     @Override
@@ -152,4 +166,19 @@ public class ApplicationInstanceRepositoryImpl implements ApplicationInstanceRep
                         .listDeployTime(projectId, envId, appIds, new java.sql.Date(startTime.getTime()), new java.sql.Date(endTime.getTime())));
         return deployDOS;
     }
+
+    @Override
+    public void updateStatusByIds(List<Long> ids, String status) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        applicationInstanceMapper.updateStatusByIds(ids, status);
+    }
+
+    /**
+     * 选择性更新中非空且与原值不同的字段
+     */
+    private static boolean changed(Object value, Object oldValue) {
+        return value != null && !value.equals(oldValue);
+    }
 }
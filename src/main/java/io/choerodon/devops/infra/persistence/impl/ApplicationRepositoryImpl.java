@@ -14,6 +14,7 @@ import io.choerodon.core.domain.Page;
 import io.choerodon.core.exception.CommonException;
 import io.choerodon.devops.domain.application.entity.ApplicationE;
 import io.choerodon.devops.domain.application.repository.ApplicationRepository;
+import io.choerodon.devops.domain.application.repository.DevopsSearchIndexRepository;
 import io.choerodon.devops.domain.application.repository.IamRepository;
 import io.choerodon.devops.infra.common.util.TypeUtil;
 import io.choerodon.devops.infra.dataobject.ApplicationDO;
@@ -31,6 +32,8 @@ public class ApplicationRepositoryImpl implements ApplicationRepository {
 
     @Autowired
     private IamRepository iamRepository;
+    @Autowired
+    private DevopsSearchIndexRepository devopsSearchIndexRepository;
     private ApplicationMapper applicationMapper;
 
     public ApplicationRepositoryImpl(ApplicationMapper applicationMapper) {
@@ -78,7 +81,12 @@ public class ApplicationRepositoryImpl implements ApplicationRepository {
         ApplicationDO applicationDO = applicationMapper.selectByPrimaryKey(applicationE.getId());
         ApplicationDO newApplicationDO = ConvertHelper.convert(applicationE, ApplicationDO.class);
         newApplicationDO.setObjectVersionNumber(applicationDO.getObjectVersionNumber());
-        return applicationMapper.updateByPrimaryKeySelective(newApplicationDO);
+        int count = applicationMapper.updateByPrimaryKeySelective(newApplicationDO);
+        //网络和实例的搜索字段包含应用名称
+        if (newApplicationDO.getName() != null && !newApplicationDO.getName().equals(applicationDO.getName())) {
+            devopsSearchIndexRepository.indexByAppId(newApplicationDO.getId());
+        }
+        return count;
     }
 
     @Override
@@ -139,6 +139,34 @@ public class ApplicationVersionRepositoryImpl implements ApplicationVersionRepos
         return ConvertHelper.convert(applicationVersionDOS.get(0), ApplicationVersionE.class);
     }
 
+    @Override
+    public List<ApplicationVersionE> listAllByAppId(Long appId) {
+        ApplicationVersionDO applicationVersionDO = new ApplicationVersionDO();
+        applicationVersionDO.setAppId(appId);
+        return ConvertHelper.convertList(applicationVersionMapper.select(applicationVersionDO),
+                ApplicationVersionE.class);
+    }
+
+    @Override
+    public void batchCreate(List<ApplicationVersionE> applicationVersionES) {
+        if (applicationVersionES.isEmpty()) {
+            return;
+        }
+        List<ApplicationVersionDO> applicationVersionDOS =
+                ConvertHelper.convertList(applicationVersionES, ApplicationVersionDO.class);
+        if (applicationVersionMapper.batchInsert(applicationVersionDOS) != applicationVersionDOS.size()) {
+            throw new CommonException("error.version.insert");
+        }
+        List<ApplicationVersionReadmeDO> readmeDOS = new ArrayList<>();
+        for (int i = 0; i < applicationVersionES.size(); i++) {
+            ApplicationVersionE applicationVersionE = applicationVersionES.get(i);
+            applicationVersionE.setId(applicationVersionDOS.get(i).getId());
+            readmeDOS.add(new ApplicationVersionReadmeDO(
+                    applicationVersionE.getId(), applicationVersionE.getApplicationVersionReadmeV().getReadme()));
+        }
+        applicationVersionReadmeMapper.batchInsert(readmeDOS);
+    }
+
     @Override
     public void updatePublishLevelByIds(List<Long> appVersionIds, Long level) {
         ApplicationVersionDO applicationVersionDO = new ApplicationVersionDO();
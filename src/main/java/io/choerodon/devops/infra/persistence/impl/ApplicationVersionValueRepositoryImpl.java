@@ -1,5 +1,8 @@
 package io.choerodon.devops.infra.persistence.impl;
 
+import java.util.Collections;
+import java.util.List;
+
 import org.springframework.stereotype.Service;
 
 import io.choerodon.core.convertor.ConvertHelper;
@@ -27,4 +30,17 @@ public class ApplicationVersionValueRepositoryImpl implements ApplicationVersion
         }
         return ConvertHelper.convert(applicationVersionValueDO, ApplicationVersionValueE.class);
     }
+
+    @Override
+    public List<ApplicationVersionValueE> batchCreate(List<ApplicationVersionValueE> applicationVersionValueES) {
+        if (applicationVersionValueES.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<ApplicationVersionValueDO> applicationVersionValueDOS = ConvertHelper
+                .convertList(applicationVersionValueES, ApplicationVersionValueDO.class);
+        if (applcationVersionValueMapper.batchInsert(applicationVersionValueDOS) != applicationVersionValueDOS.size()) {
+            throw new CommonException("error.version.value.insert");
+        }
+        return ConvertHelper.convertList(applicationVersionValueDOS, ApplicationVersionValueE.class);
+    }
 }
@@ -186,4 +186,12 @@ public class CertificationRepositoryImpl implements CertificationRepository {
             devopsCertificationFileMapper.delete(certificationFileDO);
         }
     }
+
+    @Override
+    public void updateStatusByIds(List<Long> ids, String status) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        devopsCertificationMapper.updateStatusByIds(ids, status);
+    }
 }
@@ -1,6 +1,9 @@
 package io.choerodon.devops.infra.persistence.impl;
 
+import java.util.ArrayList;
+import java.util.Date;
 import java.util.List;
+import java.util.stream.Collectors;
 
 import org.springframework.stereotype.Service;
 
@@ -8,7 +11,9 @@ import io.choerodon.core.convertor.ConvertHelper;
 import io.choerodon.core.exception.CommonException;
 import io.choerodon.devops.domain.application.entity.DevopsEnvCommandE;
 import io.choerodon.devops.domain.application.repository.DevopsEnvCommandRepository;
+import io.choerodon.devops.domain.application.valueobject.Command;
 import io.choerodon.devops.infra.dataobject.DevopsEnvCommandDO;
+import io.choerodon.devops.infra.dataobject.DevopsEnvCommandSyncDO;
 import io.choerodon.devops.infra.mapper.DevopsEnvCommandMapper;
 
 @Service
@@ -62,4 +67,36 @@ public class DevopsEnvCommandRepositoryImpl implements DevopsEnvCommandRepositor
         return ConvertHelper.convertList(devopsEnvCommandMapper.select(devopsEnvCommandDO), DevopsEnvCommandE.class);
     }
 
+    @Override
+    public List<DevopsEnvCommandE> listByIds(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return ConvertHelper.convertList(devopsEnvCommandMapper.listByIds(ids), DevopsEnvCommandE.class);
+    }
+
+    @Override
+    public void batchUpdateStatus(List<DevopsEnvCommandE> devopsEnvCommandES) {
+        if (devopsEnvCommandES.isEmpty()) {
+            return;
+        }
+        devopsEnvCommandMapper.batchUpdateStatus(
+                ConvertHelper.convertList(devopsEnvCommandES, DevopsEnvCommandDO.class));
+    }
+
+    @Override
+    public List<Command> listPendingByEnvId(Long envId, String status, Date before) {
+        return devopsEnvCommandMapper.listPendingByEnvId(envId, status, before).stream()
+                .map(DevopsEnvCommandRepositoryImpl::toCommand)
+                .collect(Collectors.toList());
+    }
+
+    private static Command toCommand(DevopsEnvCommandSyncDO devopsEnvCommandSyncDO) {
+        Command command = new Command();
+        command.setId(devopsEnvCommandSyncDO.getId());
+        command.setResourceType(devopsEnvCommandSyncDO.getResourceType());
+        command.setResourceName(devopsEnvCommandSyncDO.getResourceName());
+        command.setCommit(devopsEnvCommandSyncDO.getSha());
+        return command;
+    }
 }
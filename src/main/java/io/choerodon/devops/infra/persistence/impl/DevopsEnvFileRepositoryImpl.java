@@ -88,5 +88,12 @@ public class DevopsEnvFileRepositoryImpl implements DevopsEnvFileRepository {
         return ConvertHelper.convertList(devopsEnvFileMapper.select(devopsEnvFileDO), DevopsEnvFileE.class);
     }
 
-
+    @Override
+    public void batchUpdateAgentCommit(List<DevopsEnvFileE> devopsEnvFileES) {
+        if (devopsEnvFileES.isEmpty()) {
+            return;
+        }
+        devopsEnvFileMapper.batchUpdateAgentCommit(
+                ConvertHelper.convertList(devopsEnvFileES, DevopsEnvFileDO.class));
+    }
 }
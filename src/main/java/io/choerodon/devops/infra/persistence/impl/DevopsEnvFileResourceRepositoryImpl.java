@@ -79,4 +79,12 @@ public class DevopsEnvFileResourceRepositoryImpl implements DevopsEnvFileResourc
         devopsEnvFileResourceDO.setResourceType(resourceType);
         devopsEnvFileResourceMapper.delete(devopsEnvFileResourceDO);
     }
+
+    @Override
+    public List<DevopsEnvFileResourceE> listByEnvId(Long envId) {
+        DevopsEnvFileResourceDO devopsEnvFileResourceDO = new DevopsEnvFileResourceDO();
+        devopsEnvFileResourceDO.setEnvId(envId);
+        return ConvertHelper.convertList(
+                devopsEnvFileResourceMapper.select(devopsEnvFileResourceDO), DevopsEnvFileResourceE.class);
+    }
 }
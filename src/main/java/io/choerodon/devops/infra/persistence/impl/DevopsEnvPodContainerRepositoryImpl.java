@@ -32,6 +32,19 @@ public class DevopsEnvPodContainerRepositoryImpl implements DevopsEnvPodContaine
         containerMapper.insert(containerDO);
     }
 
+    @Override
+    public void batchInsert(List<DevopsEnvPodContainerDO> containers) {
+        if (!containers.isEmpty()) {
+            containerMapper.batchInsert(containers);
+        }
+    }
+
+    @Override
+    public void replaceByPodId(Long podId, List<DevopsEnvPodContainerDO> containers) {
+        deleteByPodId(podId);
+        batchInsert(containers);
+    }
+
     @Override
     public void update(DevopsEnvPodContainerDO containerDO) {
         containerMapper.updateByPrimaryKey(containerDO);
@@ -54,6 +54,13 @@ public class DevopsEnvPodRepositoryImpl implements DevopsEnvPodRepository {
         devopsEnvPodMapper.insert(pod);
     }
 
+    @Override
+    public Long upsert(DevopsEnvPodE devopsEnvPodE) {
+        DevopsEnvPodDO pod = ConvertHelper.convert(devopsEnvPodE, DevopsEnvPodDO.class);
+        devopsEnvPodMapper.upsertPod(pod);
+        return pod.getId();
+    }
+
     @Override
     public void update(DevopsEnvPodE devopsEnvPodE) {
         devopsEnvPodMapper.updateByPrimaryKey(ConvertHelper.convert(devopsEnvPodE, DevopsEnvPodDO.class));
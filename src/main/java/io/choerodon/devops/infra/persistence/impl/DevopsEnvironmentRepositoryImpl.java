@@ -8,6 +8,7 @@ import io.choerodon.core.convertor.ConvertHelper;
 import io.choerodon.core.exception.CommonException;
 import io.choerodon.devops.domain.application.entity.DevopsEnvironmentE;
 import io.choerodon.devops.domain.application.repository.DevopsEnvironmentRepository;
+import io.choerodon.devops.domain.application.repository.DevopsSearchIndexRepository;
 import io.choerodon.devops.infra.dataobject.DevopsEnvironmentDO;
 import io.choerodon.devops.infra.mapper.DevopsEnvironmentMapper;
 
@@ -18,9 +19,12 @@ import io.choerodon.devops.infra.mapper.DevopsEnvironmentMapper;
 public class DevopsEnvironmentRepositoryImpl implements DevopsEnvironmentRepository {
 
     private DevopsEnvironmentMapper devopsEnvironmentMapper;
+    private DevopsSearchIndexRepository devopsSearchIndexRepository;
 
-    public DevopsEnvironmentRepositoryImpl(DevopsEnvironmentMapper devopsEnvironmentMapper) {
+    public DevopsEnvironmentRepositoryImpl(DevopsEnvironmentMapper devopsEnvironmentMapper,
+                                           DevopsSearchIndexRepository devopsSearchIndexRepository) {
         this.devopsEnvironmentMapper = devopsEnvironmentMapper;
+        this.devopsSearchIndexRepository = devopsSearchIndexRepository;
     }
 
     @Override
@@ -61,6 +65,11 @@ public class DevopsEnvironmentRepositoryImpl implements DevopsEnvironmentReposit
         if (devopsEnvironmentMapper.updateByPrimaryKeySelective(devopsEnvironmentDO) != 1) {
             throw new CommonException("error.environment.update");
         }
+        //域名、网络、实例的搜索字段包含环境名称和编码
+        if ((devopsEnvironmentDO.getName() != null && !devopsEnvironmentDO.getName().equals(newDevopsEnvironmentDO.getName()))
+                || (devopsEnvironmentDO.getCode() != null && !devopsEnvironmentDO.getCode().equals(newDevopsEnvironmentDO.getCode()))) {
+            devopsSearchIndexRepository.indexByEnvId(devopsEnvironmentDO.getId());
+        }
         return ConvertHelper.convert(devopsEnvironmentDO, DevopsEnvironmentE.class);
     }
 
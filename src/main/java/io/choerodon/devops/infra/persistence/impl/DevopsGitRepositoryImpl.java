@@ -26,6 +26,8 @@ import io.choerodon.devops.domain.application.entity.gitlab.CompareResultsE;
 import io.choerodon.devops.domain.application.entity.iam.UserE;
 import io.choerodon.devops.domain.application.repository.*;
 import io.choerodon.devops.domain.application.valueobject.Organization;
+import io.choerodon.devops.infra.cache.GitlabTagCache;
+import io.choerodon.devops.infra.cache.IamUserCache;
 import io.choerodon.devops.infra.common.util.GitUserNameUtil;
 import io.choerodon.devops.infra.common.util.TypeUtil;
 import io.choerodon.devops.infra.dataobject.ApplicationDO;
@@ -33,7 +35,6 @@ import io.choerodon.devops.infra.dataobject.DevopsBranchDO;
 import io.choerodon.devops.infra.dataobject.gitlab.BranchDO;
 import io.choerodon.devops.infra.dataobject.gitlab.CommitDO;
 import io.choerodon.devops.infra.dataobject.gitlab.TagDO;
-import io.choerodon.devops.infra.dataobject.gitlab.TagNodeDO;
 import io.choerodon.devops.infra.feign.GitlabServiceClient;
 import io.choerodon.devops.infra.mapper.ApplicationMapper;
 import io.choerodon.devops.infra.mapper.DevopsBranchMapper;
@@ -69,6 +70,10 @@ public class DevopsGitRepositoryImpl implements DevopsGitRepository {
     @Autowired
     private IamRepository iamRepository;
     @Autowired
+    private IamUserCache iamUserCache;
+    @Autowired
+    private GitlabTagCache gitlabTagCache;
+    @Autowired
     private DevopsGitRepository devopsGitRepository;
     @Autowired
     private DevopsMergeRequestMapper devopsMergeRequestMapper;
@@ -87,6 +92,8 @@ public class DevopsGitRepositoryImpl implements DevopsGitRepository {
             gitlabServiceClient.createTag(gitLabProjectId, tag, ref, msg, releaseNotes, userId);
         } catch (Exception e) {
             throw new CommonException("create gitlab tag failed: " + e.getMessage(), e);
+        } finally {
+            gitlabTagCache.invalidate(gitLabProjectId);
         }
     }
 
@@ -99,6 +106,8 @@ public class DevopsGitRepositoryImpl implements DevopsGitRepository {
             return gitlabServiceClient.updateTagRelease(gitLabProjectId, tag, releaseNotes, userId).getBody();
         } catch (Exception e) {
             throw new CommonException("update gitlab tag failed: " + e.getMessage(), e);
+        } finally {
+            gitlabTagCache.invalidate(gitLabProjectId);
         }
     }
 
@@ -107,8 +116,10 @@ public class DevopsGitRepositoryImpl implements DevopsGitRepository {
         try {
             gitlabServiceClient.deleteTag(gitLabProjectId, tag, userId);
         } catch (Exception e) {
+            gitlabTagCache.invalidate(gitLabProjectId);
             throw new CommonException("delete gitlab tag failed: " + e.getMessage(), e);
         }
+        gitlabTagCache.removeTag(gitLabProjectId, tag);
     }
 
     @Override
@@ -214,25 +225,28 @@ public class DevopsGitRepositoryImpl implements DevopsGitRepository {
         Integer projectId = getGitLabId(appId);
         List<TagDO> tagTotalList = getGitLabTags(projectId, userId);
         Page<TagDTO> tagsPage = new Page<>();
-        List<TagDO> tagList = tagTotalList.stream()
-                .filter(t -> filterTag(t, params))
+        Map<String, Object> maps = StringUtils.isEmpty(params) ? null : json.deserialize(params, Map.class);
+        List<TagDO> tagList = maps == null ? tagTotalList : tagTotalList.stream()
+                .filter(t -> filterTag(t, maps))
                 .collect(Collectors.toCollection(ArrayList::new));
         int totalPageSizes = tagList.size() / size + (tagList.size() % size == 0 ? 0 : 1);
         if (page > totalPageSizes - 1 && page > 0) {
             page = totalPageSizes - 1;
         }
         List<TagDTO> tagDTOS = tagList.stream()
-                .sorted(this::sortTag)
                 .skip(page.longValue() * size).limit(size)
                 .map(TagDTO::new)
-                .parallel()
-                .peek(t -> {
-                    UserE commitUserE = iamRepository.queryByLoginName(t.getCommit()
-                            .getAuthorName().equals("root") ? "admin" : t.getCommit().getAuthorName());
-                    t.setCommitUserImage(commitUserE.getImageUrl());
-                    t.getCommit().setUrl(String.format("%s/commit/%s?view=parallel", path, t.getCommit().getId()));
-                })
                 .collect(Collectors.toCollection(ArrayList::new));
+        Map<String, UserE> users = iamUserCache.listByLoginNames(tagDTOS.stream()
+                .map(this::getTagAuthorLoginName)
+                .collect(Collectors.toList()));
+        tagDTOS.forEach(t -> {
+            UserE commitUserE = users.get(getTagAuthorLoginName(t));
+            if (commitUserE != null) {
+                t.setCommitUserImage(commitUserE.getImageUrl());
+            }
+            t.getCommit().setUrl(String.format("%s/commit/%s?view=parallel", path, t.getCommit().getId()));
+        });
         tagsPage.setSize(size);
         tagsPage.setTotalElements(tagList.size());
         tagsPage.setTotalPages(totalPageSizes);
@@ -242,10 +256,13 @@ public class DevopsGitRepositoryImpl implements DevopsGitRepository {
         return tagsPage;
     }
 
-    private Boolean filterTag(TagDO tagDO, String params) {
+    private String getTagAuthorLoginName(TagDTO tagDTO) {
+        return tagDTO.getCommit().getAuthorName().equals("root") ? "admin" : tagDTO.getCommit().getAuthorName();
+    }
+
+    private Boolean filterTag(TagDO tagDO, Map<String, Object> maps) {
         Integer index = 0;
-        if (!StringUtils.isEmpty(params)) {
-            Map<String, Object> maps = json.deserialize(params, Map.class);
+        if (maps != null) {
             String param = TypeUtil.cast(maps.get(TypeUtil.PARAM)).toString();
             if (!param.equals("")) {
                 if (tagDO.getName().contains(param) || tagDO.getCommit().getShortId().contains(param)
@@ -322,6 +339,15 @@ public class DevopsGitRepositoryImpl implements DevopsGitRepository {
 
     @Override
     public List<TagDO> getGitLabTags(Integer projectId, Integer userId) {
+        return gitlabTagCache.listTags(projectId, () -> loadGitLabTags(projectId, userId));
+    }
+
+    @Override
+    public Boolean tagExists(Integer projectId, String tagName, Integer userId) {
+        return gitlabTagCache.exists(projectId, tagName, () -> loadGitLabTags(projectId, userId));
+    }
+
+    private List<TagDO> loadGitLabTags(Integer projectId, Integer userId) {
         ResponseEntity<List<TagDO>> tagResponseEntity;
         try {
             tagResponseEntity = gitlabServiceClient.getTags(projectId, userId);
@@ -447,7 +473,7 @@ public class DevopsGitRepositoryImpl implements DevopsGitRepository {
                 devopsMergeRequestE.getProjectId().intValue(),
                 gitlabMergeRequestId.intValue(), gitlabUserId).getBody();
         mergeRequestDTO.setCommits(ConvertHelper.convertList(commitDOS, CommitDTO.class));
-        UserE authorUser = iamRepository.queryUserByUserId(authorUserId);
+        UserE authorUser = iamUserCache.queryById(authorUserId);
         if (authorUser != null) {
             AuthorDTO authorDTO = new AuthorDTO();
             authorDTO.setUsername(authorUser.getLoginName());
@@ -456,7 +482,7 @@ public class DevopsGitRepositoryImpl implements DevopsGitRepository {
             authorDTO.setWebUrl(authorUser.getImageUrl());
             mergeRequestDTO.setAuthor(authorDTO);
         }
-        UserE assigneeUser = iamRepository.queryUserByUserId(assigneeId);
+        UserE assigneeUser = iamUserCache.queryById(assigneeId);
         if (assigneeUser != null) {
             AssigneeDTO assigneeDTO = new AssigneeDTO();
             assigneeDTO.setUsername(assigneeUser.getLoginName());
@@ -500,20 +526,6 @@ public class DevopsGitRepositoryImpl implements DevopsGitRepository {
         return ConvertHelper.convertList(devopsBranchMapper.select(devopsBranchDO), DevopsBranchE.class);
     }
 
-    private Integer sortTag(TagDO a, TagDO b) {
-        TagNodeDO tagA = TagNodeDO.tagNameToTagNode(a.getName());
-        TagNodeDO tagB = TagNodeDO.tagNameToTagNode(b.getName());
-        if (tagA != null && tagB != null) {
-            return tagA.compareTo(tagB) * -1;
-        } else if (tagA == null && tagB != null) {
-            return 1;
-        } else if (tagA != null) {
-            return -1;
-        } else {
-            return a.getName().compareToIgnoreCase(b.getName());
-        }
-    }
-
     @Override
     public List<CommitDO> getCommits(Integer gitLabProjectId, String branchName, String date) {
         return gitlabServiceClient.getCommits(gitLabProjectId, branchName, date).getBody();
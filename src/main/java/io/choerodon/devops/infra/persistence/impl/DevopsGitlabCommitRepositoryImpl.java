@@ -1,6 +1,14 @@
 package io.choerodon.devops.infra.persistence.impl;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.stereotype.Service;
 
 import io.choerodon.core.convertor.ConvertHelper;
@@ -32,4 +40,46 @@ public class DevopsGitlabCommitRepositoryImpl implements DevopsGitlabCommitRepos
         devopsGitlabCommitDO.setCommitSha(sha);
         return ConvertHelper.convert(devopsGitlabCommitMapper.selectOne(devopsGitlabCommitDO), DevopsGitlabCommitE.class);
     }
+
+    @Override
+    public List<DevopsGitlabCommitE> batchCreate(List<DevopsGitlabCommitE> devopsGitlabCommitES) {
+        if (devopsGitlabCommitES.isEmpty()) {
+            return Collections.emptyList();
+        }
+        Set<String> existedShas = new HashSet<>(devopsGitlabCommitMapper.listExistedCommitShas(
+                devopsGitlabCommitES.stream().map(DevopsGitlabCommitE::getCommitSha).collect(Collectors.toList())));
+        List<DevopsGitlabCommitDO> devopsGitlabCommitDOS = new ArrayList<>();
+        for (DevopsGitlabCommitE devopsGitlabCommitE : devopsGitlabCommitES) {
+            // 同一次推送中重复的sha也只写入一次
+            if (existedShas.add(devopsGitlabCommitE.getCommitSha())) {
+                devopsGitlabCommitDOS.add(ConvertHelper.convert(devopsGitlabCommitE, DevopsGitlabCommitDO.class));
+            }
+        }
+        if (devopsGitlabCommitDOS.isEmpty()) {
+            return Collections.emptyList();
+        }
+        try {
+            if (devopsGitlabCommitMapper.batchInsert(devopsGitlabCommitDOS) != devopsGitlabCommitDOS.size()) {
+                throw new CommonException("error.gitlab.commit.create");
+            }
+        } catch (DuplicateKeyException e) {
+            // 并发的重试请求已写入部分commit，逐条写入剩余的commit
+            return createAbsent(devopsGitlabCommitDOS);
+        }
+        return ConvertHelper.convertList(devopsGitlabCommitDOS, DevopsGitlabCommitE.class);
+    }
+
+    private List<DevopsGitlabCommitE> createAbsent(List<DevopsGitlabCommitDO> devopsGitlabCommitDOS) {
+        List<DevopsGitlabCommitE> created = new ArrayList<>();
+        for (DevopsGitlabCommitDO devopsGitlabCommitDO : devopsGitlabCommitDOS) {
+            devopsGitlabCommitDO.setId(null);
+            try {
+                devopsGitlabCommitMapper.insert(devopsGitlabCommitDO);
+                created.add(ConvertHelper.convert(devopsGitlabCommitDO, DevopsGitlabCommitE.class));
+            } catch (DuplicateKeyException e) {
+                // 已存在，跳过
+            }
+        }
+        return created;
+    }
 }
@@ -1,9 +1,11 @@
 package io.choerodon.devops.infra.persistence.impl;
 
-import java.util.Date;
-import java.util.List;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.stereotype.Service;
 
 import io.choerodon.core.convertor.ConvertHelper;
@@ -12,6 +14,8 @@ import io.choerodon.core.exception.CommonException;
 import io.choerodon.devops.domain.application.entity.DevopsGitlabPipelineE;
 import io.choerodon.devops.domain.application.repository.DevopsGitlabPipelineRepository;
 import io.choerodon.devops.infra.dataobject.DevopsGitlabPipelineDO;
+import io.choerodon.devops.infra.dataobject.DevopsGitlabPipelineJobDO;
+import io.choerodon.devops.infra.mapper.DevopsGitlabPipelineJobMapper;
 import io.choerodon.devops.infra.mapper.DevopsGitlabPipelineMapper;
 import io.choerodon.mybatis.pagehelper.PageHelper;
 import io.choerodon.mybatis.pagehelper.domain.PageRequest;
@@ -22,6 +26,8 @@ public class DevopsGitlabPipelineRepositoryImpl implements DevopsGitlabPipelineR
 
     @Autowired
     private DevopsGitlabPipelineMapper devopsGitlabPipelineMapper;
+    @Autowired
+    private DevopsGitlabPipelineJobMapper devopsGitlabPipelineJobMapper;
 
 
     @Override
@@ -70,4 +76,70 @@ public class DevopsGitlabPipelineRepositoryImpl implements DevopsGitlabPipelineR
                         .listDevopsGitlabPipeline(appId, startTime == null ? null : new java.sql.Date(startTime.getTime()), endTime == null ? null : new java.sql.Date(endTime.getTime())));
         return pipelineDOS;
     }
+
+    @Override
+    public Page<DevopsGitlabPipelineDO> pagePipelineWithLatest(Long appId, PageRequest pageRequest) {
+        return PageHelper.doPage(pageRequest.getPage(), pageRequest.getSize(),
+                () -> devopsGitlabPipelineMapper.listPipelineWithLatest(appId));
+    }
+
+    @Override
+    public Boolean needSync(Long appId) {
+        DevopsGitlabPipelineDO devopsGitlabPipelineDO = new DevopsGitlabPipelineDO();
+        devopsGitlabPipelineDO.setAppId(appId);
+        return devopsGitlabPipelineMapper.countWithoutRef(appId) > 0
+                || devopsGitlabPipelineMapper.selectCount(devopsGitlabPipelineDO) == 0;
+    }
+
+    @Override
+    public List<Long> listSyncedPipelineIds(Long appId) {
+        return devopsGitlabPipelineMapper.listPipelineIdsWithRef(appId);
+    }
+
+    @Override
+    public List<DevopsGitlabPipelineJobDO> listJobs(List<Long> pipelineIds) {
+        if (pipelineIds.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return devopsGitlabPipelineJobMapper.listByPipelineIds(pipelineIds);
+    }
+
+    @Override
+    public void saveJobs(Long pipelineId, List<DevopsGitlabPipelineJobDO> jobs) {
+        DevopsGitlabPipelineJobDO condition = new DevopsGitlabPipelineJobDO();
+        condition.setPipelineId(pipelineId);
+        Map<Long, DevopsGitlabPipelineJobDO> existed = devopsGitlabPipelineJobMapper.select(condition).stream()
+                .collect(Collectors.toMap(DevopsGitlabPipelineJobDO::getJobId, Function.identity(), (a, b) -> a));
+        for (DevopsGitlabPipelineJobDO job : jobs) {
+            job.setPipelineId(pipelineId);
+            DevopsGitlabPipelineJobDO existedJob = existed.get(job.getJobId());
+            if (existedJob == null) {
+                try {
+                    devopsGitlabPipelineJobMapper.insert(job);
+                    continue;
+                } catch (DuplicateKeyException e) {
+                    // 同一job的webhook并发写入
+                    DevopsGitlabPipelineJobDO jobCondition = new DevopsGitlabPipelineJobDO();
+                    jobCondition.setJobId(job.getJobId());
+                    existedJob = devopsGitlabPipelineJobMapper.selectOne(jobCondition);
+                }
+            }
+            if (!changed(existedJob, job)) {
+                continue;
+            }
+            job.setId(existedJob.getId());
+            job.setObjectVersionNumber(existedJob.getObjectVersionNumber());
+            if (devopsGitlabPipelineJobMapper.updateByPrimaryKeySelective(job) != 1) {
+                throw new CommonException("error.gitlab.pipeline.job.update");
+            }
+        }
+    }
+
+    private static boolean changed(DevopsGitlabPipelineJobDO existed, DevopsGitlabPipelineJobDO job) {
+        return !Objects.equals(existed.getStatus(), job.getStatus())
+                || job.getStartedAt() != null && !job.getStartedAt().equals(existed.getStartedAt())
+                || job.getFinishedAt() != null && !job.getFinishedAt().equals(existed.getFinishedAt())
+                || job.getJobCreationDate() != null && existed.getJobCreationDate() == null
+                || job.getName() != null && !job.getName().equals(existed.getName());
+    }
 }
@@ -21,9 +21,11 @@ import io.choerodon.devops.domain.application.entity.*;
 import io.choerodon.devops.domain.application.repository.CertificationRepository;
 import io.choerodon.devops.domain.application.repository.DevopsEnvironmentRepository;
 import io.choerodon.devops.domain.application.repository.DevopsIngressRepository;
+import io.choerodon.devops.domain.application.repository.DevopsSearchIndexRepository;
 import io.choerodon.devops.domain.application.repository.DevopsServiceRepository;
 import io.choerodon.devops.infra.common.util.TypeUtil;
 import io.choerodon.devops.infra.common.util.enums.IngressStatus;
+import io.choerodon.devops.infra.common.util.enums.ObjectType;
 import io.choerodon.devops.infra.common.util.enums.ServiceStatus;
 import io.choerodon.devops.infra.dataobject.DevopsIngressDO;
 import io.choerodon.devops.infra.dataobject.DevopsIngressPathDO;
@@ -56,6 +58,8 @@ public class DevopsIngressRepositoryImpl implements DevopsIngressRepository {
 
     @Autowired
     private CertificationRepository certificationRepository;
+    @Autowired
+    private DevopsSearchIndexRepository devopsSearchIndexRepository;
 
     /**
      * 构造函数
@@ -82,6 +86,7 @@ public class DevopsIngressRepositoryImpl implements DevopsIngressRepository {
             t.setIngressId(devopsIngressDO.getId());
             devopsIngressPathMapper.insert(t);
         });
+        devopsSearchIndexRepository.index(ObjectType.INGRESS.getType(), devopsIngressDO.getId());
         return devopsIngressDO;
     }
 
@@ -108,6 +113,7 @@ public class DevopsIngressRepositoryImpl implements DevopsIngressRepository {
                 devopsIngressPathMapper.insert(t);
             });
         }
+        devopsSearchIndexRepository.index(ObjectType.INGRESS.getType(), id);
     }
 
     @Override
@@ -123,6 +129,7 @@ public class DevopsIngressRepositoryImpl implements DevopsIngressRepository {
         }
         devopsIngressDO.setObjectVersionNumber(ingressDO.getObjectVersionNumber());
         devopsIngressMapper.updateByPrimaryKeySelective(devopsIngressDO);
+        devopsSearchIndexRepository.index(ObjectType.INGRESS.getType(), id);
     }
 
     @Override
@@ -132,6 +139,8 @@ public class DevopsIngressRepositoryImpl implements DevopsIngressRepository {
         }.getType());
         Map<String, Object> searchParamMap = TypeUtil.cast(maps.get(TypeUtil.SEARCH_PARAM));
         String paramMap = TypeUtil.cast(maps.get(TypeUtil.PARAM));
+        List<String> searchGrams = devopsSearchIndexRepository.listSearchGrams(
+                projectId, ObjectType.INGRESS.getType(), paramMap);
 
         if (pageRequest.getSort() != null) {
             Map<String, String> map = new HashMap<>();
@@ -142,7 +151,7 @@ public class DevopsIngressRepositoryImpl implements DevopsIngressRepository {
 
         Page<DevopsIngressDO> devopsIngressDOS =
                 PageHelper.doPageAndSort(pageRequest,
-                        () -> devopsIngressMapper.selectIngress(projectId, envId, searchParamMap, paramMap));
+                        () -> devopsIngressMapper.selectIngress(projectId, envId, searchParamMap, paramMap, searchGrams));
         Map<String, EnvSession> envs = envListener.connectedEnv();
         devopsIngressDOS.getContent().forEach(t -> {
             DevopsIngressDTO devopsIngressDTO =
@@ -209,6 +218,7 @@ public class DevopsIngressRepositoryImpl implements DevopsIngressRepository {
     public void deleteIngress(Long ingressId) {
         devopsIngressMapper.deleteByPrimaryKey(ingressId);
         devopsIngressPathMapper.delete(new DevopsIngressPathDO(ingressId));
+        devopsSearchIndexRepository.delete(ObjectType.INGRESS.getType(), ingressId);
     }
 
     @Override
@@ -255,14 +265,17 @@ public class DevopsIngressRepositoryImpl implements DevopsIngressRepository {
         if (devopsIngressMapper.insert(ingressDO) != 1) {
             throw new CommonException("error.domain.insert");
         }
+        devopsSearchIndexRepository.index(ObjectType.INGRESS.getType(), ingressDO.getId());
         return ConvertHelper.convert(ingressDO, DevopsIngressE.class);
     }
 
     @Override
     public void insertIngressPath(DevopsIngressPathE devopsIngressPathE) {
-        if (devopsIngressPathMapper.insert(ConvertHelper.convert(devopsIngressPathE, DevopsIngressPathDO.class)) != 1) {
+        DevopsIngressPathDO devopsIngressPathDO = ConvertHelper.convert(devopsIngressPathE, DevopsIngressPathDO.class);
+        if (devopsIngressPathMapper.insert(devopsIngressPathDO) != 1) {
             throw new CommonException("error.domainAttr.insert");
         }
+        devopsSearchIndexRepository.index(ObjectType.INGRESS.getType(), devopsIngressPathDO.getIngressId());
     }
 
     @Override
@@ -297,10 +310,11 @@ public class DevopsIngressRepositoryImpl implements DevopsIngressRepository {
 
     @Override
     public void updateIngressPath(DevopsIngressPathE devopsIngressPathE) {
-        if (devopsIngressPathMapper.updateByPrimaryKey(
-                ConvertHelper.convert(devopsIngressPathE, DevopsIngressPathDO.class)) != 1) {
+        DevopsIngressPathDO devopsIngressPathDO = ConvertHelper.convert(devopsIngressPathE, DevopsIngressPathDO.class);
+        if (devopsIngressPathMapper.updateByPrimaryKey(devopsIngressPathDO) != 1) {
             throw new CommonException("error.domainAttr.update");
         }
+        devopsSearchIndexRepository.index(ObjectType.INGRESS.getType(), devopsIngressPathDO.getIngressId());
     }
 
     @Override
@@ -308,6 +322,7 @@ public class DevopsIngressRepositoryImpl implements DevopsIngressRepository {
         DevopsIngressPathDO devopsIngressPathDO = new DevopsIngressPathDO();
         devopsIngressPathDO.setIngressId(ingressId);
         devopsIngressPathMapper.delete(devopsIngressPathDO);
+        devopsSearchIndexRepository.index(ObjectType.INGRESS.getType(), ingressId);
     }
 
     @Override
@@ -328,4 +343,14 @@ public class DevopsIngressRepositoryImpl implements DevopsIngressRepository {
         devopsIngressPathDTO.setServicePort(e.getServicePort());
         devopsIngressDTO.addDevopsIngressPathDTO(devopsIngressPathDTO);
     }
+
+    @Override
+    public void updateStatusByIds(List<Long> ids, String status) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        //与setStatus保持一致，运行中的域名同时置为可用
+        devopsIngressMapper.updateStatusByIds(ids, status,
+                status.equals(IngressStatus.RUNNING.getStatus()) ? Boolean.TRUE : null);
+    }
 }
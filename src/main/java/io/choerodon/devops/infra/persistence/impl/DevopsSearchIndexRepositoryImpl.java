@@ -0,0 +1,219 @@
+package io.choerodon.devops.infra.persistence.impl;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import io.netty.util.concurrent.DefaultThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.stereotype.Service;
+
+import io.choerodon.devops.domain.application.repository.DevopsSearchIndexRepository;
+import io.choerodon.devops.infra.common.util.TypeUtil;
+import io.choerodon.devops.infra.common.util.enums.ObjectType;
+import io.choerodon.devops.infra.dataobject.DevopsSearchIndexDO;
+import io.choerodon.devops.infra.mapper.DevopsSearchIndexMapper;
+
+@Service
+public class DevopsSearchIndexRepositoryImpl implements DevopsSearchIndexRepository, PublicMetrics {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DevopsSearchIndexRepositoryImpl.class);
+    private static final String METRIC_PREFIX = "devops.search.index.";
+    private static final int GRAM_LENGTH = 3;
+    private static final int BATCH_SIZE = 1000;
+    private static final String RESOURCE_ID = "resourceId";
+    private static final String PROJECT_ID = "projectId";
+
+    @Value("${search.index.backfill.threads:1}")
+    private Integer backfillThreads;
+
+    private DevopsSearchIndexMapper devopsSearchIndexMapper;
+
+    /**
+     * 本节点已补建完成索引的项目和资源类型
+     */
+    private final Set<String> indexedProjects = ConcurrentHashMap.newKeySet();
+    private final Set<String> indexingProjects = ConcurrentHashMap.newKeySet();
+    private final AtomicLong documents = new AtomicLong();
+    private final AtomicLong searches = new AtomicLong();
+    private final AtomicLong fallbacks = new AtomicLong();
+
+    private ExecutorService backfiller;
+
+    public DevopsSearchIndexRepositoryImpl(DevopsSearchIndexMapper devopsSearchIndexMapper) {
+        this.devopsSearchIndexMapper = devopsSearchIndexMapper;
+    }
+
+    @PostConstruct
+    public void init() {
+        backfiller = new ThreadPoolExecutor(backfillThreads, backfillThreads, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), new DefaultThreadFactory("devops-search-index", true));
+    }
+
+    @PreDestroy
+    public void destroy() {
+        backfiller.shutdownNow();
+    }
+
+    @Override
+    public void index(String resourceType, Collection<Long> resourceIds) {
+        if (resourceIds == null || resourceIds.isEmpty()) {
+            return;
+        }
+        devopsSearchIndexMapper.deleteByResourceIds(resourceType, resourceIds);
+        insert(resourceType, devopsSearchIndexMapper.listDocuments(resourceType, resourceIds, null, null));
+    }
+
+    @Override
+    public void index(String resourceType, Long resourceId) {
+        if (resourceId != null) {
+            index(resourceType, Collections.singletonList(resourceId));
+        }
+    }
+
+    @Override
+    public void indexByEnvId(Long envId) {
+        for (ObjectType objectType : new ObjectType[]{ObjectType.INGRESS, ObjectType.SERVICE, ObjectType.INSTANCE}) {
+            reindex(objectType.getType(), devopsSearchIndexMapper.listDocuments(objectType.getType(), null, envId, null));
+        }
+    }
+
+    @Override
+    public void indexByAppId(Long appId) {
+        for (ObjectType objectType : new ObjectType[]{ObjectType.SERVICE, ObjectType.INSTANCE}) {
+            reindex(objectType.getType(), devopsSearchIndexMapper.listDocuments(objectType.getType(), null, null, appId));
+        }
+    }
+
+    @Override
+    public void delete(String resourceType, Long resourceId) {
+        if (resourceId != null) {
+            devopsSearchIndexMapper.deleteByResourceIds(resourceType, Collections.singletonList(resourceId));
+        }
+    }
+
+    @Override
+    public List<String> listSearchGrams(Long projectId, String resourceType, String param) {
+        if (param == null || param.isEmpty()) {
+            return null;
+        }
+        searches.incrementAndGet();
+        // LIKE中的通配符无法用片段表示，这类搜索词和过短的搜索词仍然走原有的LIKE条件
+        if (param.length() < GRAM_LENGTH || param.indexOf('%') >= 0 || param.indexOf('_') >= 0) {
+            fallbacks.incrementAndGet();
+            return null;
+        }
+        // 项目的历史资源在后台补建索引，补建完成前仍然走原有的LIKE条件
+        String key = resourceType + ":" + projectId;
+        if (!indexedProjects.contains(key)) {
+            backfill(key, resourceType, projectId);
+            fallbacks.incrementAndGet();
+            return null;
+        }
+        return new ArrayList<>(grams(param));
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        List<Metric<?>> metrics = new ArrayList<>();
+        metrics.add(new Metric<>(METRIC_PREFIX + "documents", documents.get()));
+        metrics.add(new Metric<>(METRIC_PREFIX + "search.count", searches.get()));
+        metrics.add(new Metric<>(METRIC_PREFIX + "search.fallback", fallbacks.get()));
+        return metrics;
+    }
+
+    /**
+     * 字段值转为小写后按字符切分为三字符片段，片段不跨字段
+     */
+    static Set<String> grams(String value) {
+        Set<String> grams = new LinkedHashSet<>();
+        String lowerCase = value.toLowerCase(Locale.ROOT);
+        for (int i = 0; i + GRAM_LENGTH <= lowerCase.length(); i++) {
+            grams.add(lowerCase.substring(i, i + GRAM_LENGTH));
+        }
+        return grams;
+    }
+
+    private void backfill(String key, String resourceType, Long projectId) {
+        if (!indexingProjects.add(key)) {
+            return;
+        }
+        try {
+            backfiller.execute(() -> {
+                try {
+                    index(resourceType, devopsSearchIndexMapper.listUnindexedIds(resourceType, projectId));
+                    indexedProjects.add(key);
+                } catch (RuntimeException e) {
+                    LOGGER.warn("backfill search index of {} failed", key, e);
+                } finally {
+                    indexingProjects.remove(key);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            indexingProjects.remove(key);
+        }
+    }
+
+    private void reindex(String resourceType, List<Map<String, Object>> rows) {
+        Set<Long> resourceIds = new LinkedHashSet<>();
+        rows.forEach(row -> resourceIds.add(TypeUtil.objToLong(column(row, RESOURCE_ID))));
+        if (!resourceIds.isEmpty()) {
+            devopsSearchIndexMapper.deleteByResourceIds(resourceType, resourceIds);
+            insert(resourceType, rows);
+        }
+    }
+
+    private void insert(String resourceType, List<Map<String, Object>> rows) {
+        // 一个资源可能因关联的路径、实例等查出多行，合并后去重
+        Map<Long, Long> projectIds = new LinkedHashMap<>();
+        Map<Long, Set<String>> resourceGrams = new LinkedHashMap<>();
+        for (Map<String, Object> row : rows) {
+            Long resourceId = TypeUtil.objToLong(column(row, RESOURCE_ID));
+            projectIds.put(resourceId, TypeUtil.objToLong(column(row, PROJECT_ID)));
+            Set<String> grams = resourceGrams.computeIfAbsent(resourceId, id -> new LinkedHashSet<>());
+            row.forEach((column, value) -> {
+                if (value != null && !RESOURCE_ID.equalsIgnoreCase(column) && !PROJECT_ID.equalsIgnoreCase(column)) {
+                    grams.addAll(grams(value.toString()));
+                }
+            });
+        }
+        List<DevopsSearchIndexDO> indexes = new ArrayList<>();
+        resourceGrams.forEach((resourceId, grams) -> grams.forEach(gram ->
+                indexes.add(new DevopsSearchIndexDO(projectIds.get(resourceId), resourceType, resourceId, gram))));
+        for (int i = 0; i < indexes.size(); i += BATCH_SIZE) {
+            devopsSearchIndexMapper.batchInsert(indexes.subList(i, Math.min(i + BATCH_SIZE, indexes.size())));
+        }
+        documents.addAndGet(resourceGrams.size());
+    }
+
+    /**
+     * 不同数据库返回的列名大小写不同
+     */
+    private static Object column(Map<String, Object> row, String name) {
+        for (Map.Entry<String, Object> entry : row.entrySet()) {
+            if (name.equalsIgnoreCase(entry.getKey())) {
+                return entry.getValue();
+            }
+        }
+        return null;
+    }
+}
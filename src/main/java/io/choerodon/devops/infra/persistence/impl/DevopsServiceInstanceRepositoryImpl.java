@@ -7,7 +7,9 @@ import org.springframework.stereotype.Component;
 import io.choerodon.core.convertor.ConvertHelper;
 import io.choerodon.core.exception.CommonException;
 import io.choerodon.devops.domain.application.entity.DevopsServiceAppInstanceE;
+import io.choerodon.devops.domain.application.repository.DevopsSearchIndexRepository;
 import io.choerodon.devops.domain.application.repository.DevopsServiceInstanceRepository;
+import io.choerodon.devops.infra.common.util.enums.ObjectType;
 import io.choerodon.devops.infra.dataobject.DevopsServiceAppInstanceDO;
 import io.choerodon.devops.infra.mapper.DevopsServiceAppInstanceMapper;
 
@@ -18,9 +20,12 @@ import io.choerodon.devops.infra.mapper.DevopsServiceAppInstanceMapper;
 public class DevopsServiceInstanceRepositoryImpl implements DevopsServiceInstanceRepository {
 
     private DevopsServiceAppInstanceMapper devopsServiceAppInstanceMapper;
+    private DevopsSearchIndexRepository devopsSearchIndexRepository;
 
-    public DevopsServiceInstanceRepositoryImpl(DevopsServiceAppInstanceMapper devopsServiceAppInstanceMapper) {
+    public DevopsServiceInstanceRepositoryImpl(DevopsServiceAppInstanceMapper devopsServiceAppInstanceMapper,
+                                               DevopsSearchIndexRepository devopsSearchIndexRepository) {
         this.devopsServiceAppInstanceMapper = devopsServiceAppInstanceMapper;
+        this.devopsSearchIndexRepository = devopsSearchIndexRepository;
     }
 
     @Override
@@ -29,6 +34,8 @@ public class DevopsServiceInstanceRepositoryImpl implements DevopsServiceInstanc
                 ConvertHelper.convert(devopsServiceAppInstanceE, DevopsServiceAppInstanceDO.class)) != 1) {
             throw new CommonException("error.service.app.instance.insert");
         }
+        //网络的搜索字段包含关联的实例编码
+        devopsSearchIndexRepository.index(ObjectType.SERVICE.getType(), devopsServiceAppInstanceE.getServiceId());
     }
 
     @Override
@@ -54,11 +61,16 @@ public class DevopsServiceInstanceRepositoryImpl implements DevopsServiceInstanc
         devopsServiceAppInstanceDO.setServiceId(serviceId);
         devopsServiceAppInstanceDO.setAppInstanceId(instanceId);
         devopsServiceAppInstanceMapper.delete(devopsServiceAppInstanceDO);
+        devopsSearchIndexRepository.index(ObjectType.SERVICE.getType(), serviceId);
     }
 
     @Override
     public void deleteById(Long id) {
+        DevopsServiceAppInstanceDO devopsServiceAppInstanceDO = devopsServiceAppInstanceMapper.selectByPrimaryKey(id);
         devopsServiceAppInstanceMapper.deleteByPrimaryKey(id);
+        if (devopsServiceAppInstanceDO != null) {
+            devopsSearchIndexRepository.index(ObjectType.SERVICE.getType(), devopsServiceAppInstanceDO.getServiceId());
+        }
     }
 
     @Override
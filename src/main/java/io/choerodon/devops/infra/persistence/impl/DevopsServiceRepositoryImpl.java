@@ -16,9 +16,11 @@ import io.choerodon.core.domain.Page;
 import io.choerodon.core.domain.PageInfo;
 import io.choerodon.core.exception.CommonException;
 import io.choerodon.devops.domain.application.entity.DevopsServiceE;
+import io.choerodon.devops.domain.application.repository.DevopsSearchIndexRepository;
 import io.choerodon.devops.domain.application.repository.DevopsServiceRepository;
 import io.choerodon.devops.domain.application.valueobject.DevopsServiceV;
 import io.choerodon.devops.infra.common.util.TypeUtil;
+import io.choerodon.devops.infra.common.util.enums.ObjectType;
 import io.choerodon.devops.infra.dataobject.DevopsServiceDO;
 import io.choerodon.devops.infra.dataobject.DevopsServiceQueryDO;
 import io.choerodon.devops.infra.mapper.DevopsServiceMapper;
@@ -33,9 +35,12 @@ public class DevopsServiceRepositoryImpl implements DevopsServiceRepository {
 
     private static JSON json = new JSON();
     private DevopsServiceMapper devopsServiceMapper;
+    private DevopsSearchIndexRepository devopsSearchIndexRepository;
 
-    public DevopsServiceRepositoryImpl(DevopsServiceMapper devopsServiceMapper) {
+    public DevopsServiceRepositoryImpl(DevopsServiceMapper devopsServiceMapper,
+                                       DevopsSearchIndexRepository devopsSearchIndexRepository) {
         this.devopsServiceMapper = devopsServiceMapper;
+        this.devopsSearchIndexRepository = devopsSearchIndexRepository;
     }
 
     @Override
@@ -69,19 +74,22 @@ public class DevopsServiceRepositoryImpl implements DevopsServiceRepository {
         List<DevopsServiceQueryDO> devopsServiceQueryDOList;
         if (!StringUtils.isEmpty(searchParam)) {
             Map<String, Object> searchParamMap = json.deserialize(searchParam, Map.class);
+            String param = TypeUtil.cast(searchParamMap.get(TypeUtil.PARAM));
+            List<String> searchGrams = devopsSearchIndexRepository.listSearchGrams(
+                    projectId, ObjectType.SERVICE.getType(), param);
             count = devopsServiceMapper.selectCountByName(
                     projectId, envId, TypeUtil.cast(searchParamMap.get(TypeUtil.SEARCH_PARAM)),
-                    TypeUtil.cast(searchParamMap.get(TypeUtil.PARAM)));
+                    param, searchGrams);
             devopsServiceQueryDOList = PageHelper.doSort(
                     pageRequest.getSort(), () -> devopsServiceMapper.listDevopsServiceByPage(
                             projectId, envId, TypeUtil.cast(searchParamMap.get(TypeUtil.SEARCH_PARAM)),
-                            TypeUtil.cast(searchParamMap.get(TypeUtil.PARAM)), start, size, sort));
+                            param, searchGrams, start, size, sort));
         } else {
             count = devopsServiceMapper
-                    .selectCountByName(projectId, envId, null, null);
+                    .selectCountByName(projectId, envId, null, null, null);
             devopsServiceQueryDOList = PageHelper.doSort(pageRequest.getSort(), () ->
                     devopsServiceMapper.listDevopsServiceByPage(
-                            projectId, envId, null, null, start, size, sort));
+                            projectId, envId, null, null, null, start, size, sort));
         }
 
         return ConvertPageHelper.convertPage(
@@ -111,6 +119,7 @@ public class DevopsServiceRepositoryImpl implements DevopsServiceRepository {
         if (devopsServiceMapper.insert(devopsServiceDO) != 1) {
             throw new CommonException("error.k8s.service.create");
         }
+        devopsSearchIndexRepository.index(ObjectType.SERVICE.getType(), devopsServiceDO.getId());
         return ConvertHelper.convert(
                 devopsServiceDO, DevopsServiceE.class);
     }
@@ -124,6 +133,7 @@ public class DevopsServiceRepositoryImpl implements DevopsServiceRepository {
     @Override
     public void delete(Long id) {
         devopsServiceMapper.deleteByPrimaryKey(id);
+        devopsSearchIndexRepository.delete(ObjectType.SERVICE.getType(), id);
     }
 
     @Override
@@ -135,6 +145,18 @@ public class DevopsServiceRepositoryImpl implements DevopsServiceRepository {
                 devopsServiceDOUpdate) != 1) {
             throw new CommonException("error.k8s.service.update");
         }
+        if (changed(devopsServiceDOUpdate.getName(), devopsServiceDO.getName())
+                || changed(devopsServiceDOUpdate.getExternalIp(), devopsServiceDO.getExternalIp())
+                || changed(devopsServiceDOUpdate.getAppId(), devopsServiceDO.getAppId())) {
+            devopsSearchIndexRepository.index(ObjectType.SERVICE.getType(), devopsServiceE.getId());
+        }
+    }
+
+    /**
+     * 选择性更新中非空且与原值不同的字段
+     */
+    private static boolean changed(Object value, Object oldValue) {
+        return value != null && !value.equals(oldValue);
     }
 
     @Override
@@ -174,4 +196,12 @@ public class DevopsServiceRepositoryImpl implements DevopsServiceRepository {
         devopsServiceDO.setEnvId(envId);
         return ConvertHelper.convertList(devopsServiceMapper.select(devopsServiceDO), DevopsServiceE.class);
     }
+
+    @Override
+    public void updateStatusByIds(List<Long> ids, String status) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        devopsServiceMapper.updateStatusByIds(ids, status);
+    }
 }
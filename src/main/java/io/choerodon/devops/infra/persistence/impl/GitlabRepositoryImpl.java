@@ -147,11 +147,11 @@ public class GitlabRepositoryImpl implements GitlabRepository {
 
 
     @Override
-    public ProjectHook updateWebHook(Integer projectId, Integer hookId, Integer userId) {
+    public ProjectHook updateWebHook(Integer projectId, Integer hookId, Integer userId, ProjectHook projectHook) {
         ResponseEntity<ProjectHook> projectHookResponseEntity;
         try {
             projectHookResponseEntity = gitlabServiceClient
-                    .updateProjectHook(projectId, hookId, userId);
+                    .updateProjectHook(projectId, hookId, userId, projectHook);
         } catch (FeignException e) {
             throw new CommonException(e.getMessage(), e);
         }
@@ -1,8 +1,24 @@
 package io.choerodon.devops.infra.persistence.impl;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.LoadingCache;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import com.zaxxer.hikari.util.DefaultThreadFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Component;
 
@@ -22,21 +38,70 @@ import io.choerodon.devops.infra.feign.IamServiceClient;
  * Created by younger on 2018/3/29.
  */
 @Component
-public class IamRepositoryImpl implements IamRepository {
+public class IamRepositoryImpl implements IamRepository, PublicMetrics {
+
+    private static final String METRIC_PREFIX = "devops.cache.iam.";
+
+    @Value("${cache.iam.project.maxEntries:5000}")
+    private Long maxEntries;
+    @Value("${cache.iam.project.refreshMinutes:5}")
+    private Long refreshMinutes;
+    @Value("${cache.iam.project.expireMinutes:30}")
+    private Long expireMinutes;
 
     private IamServiceClient iamServiceClient;
 
+    private ExecutorService refreshExecutor;
+    private LoadingCache<Long, ProjectDO> projects;
+    private LoadingCache<Long, OrganizationDO> organizations;
+
     public IamRepositoryImpl(IamServiceClient iamServiceClient) {
         this.iamServiceClient = iamServiceClient;
     }
 
+    /**
+     * 项目和组织信息几乎不变，按id缓存
+     * 写入超过refreshMinutes后的首次访问会在后台刷新，刷新完成前仍返回旧值
+     */
+    @PostConstruct
+    public void init() {
+        refreshExecutor = Executors.newSingleThreadExecutor(new DefaultThreadFactory("devops-iam-refresh", true));
+        projects = CacheBuilder.newBuilder()
+                .maximumSize(maxEntries)
+                .refreshAfterWrite(refreshMinutes, TimeUnit.MINUTES)
+                .expireAfterWrite(expireMinutes, TimeUnit.MINUTES)
+                .recordStats()
+                .build(CacheLoader.asyncReloading(CacheLoader.from(this::loadProject), refreshExecutor));
+        organizations = CacheBuilder.newBuilder()
+                .maximumSize(maxEntries)
+                .refreshAfterWrite(refreshMinutes, TimeUnit.MINUTES)
+                .expireAfterWrite(expireMinutes, TimeUnit.MINUTES)
+                .recordStats()
+                .build(CacheLoader.asyncReloading(CacheLoader.from(this::loadOrganization), refreshExecutor));
+    }
+
+    @PreDestroy
+    public void destroy() {
+        refreshExecutor.shutdownNow();
+    }
+
     @Override
     public ProjectE queryIamProject(Long projectId) {
-        ResponseEntity<ProjectDO> projectDO = iamServiceClient.queryIamProject(projectId);
-        if (!projectDO.getStatusCode().is2xxSuccessful()) {
-            throw new CommonException("error.project.get");
+        return ConvertHelper.convert(getCached(projects, projectId), ProjectE.class);
+    }
+
+    @Override
+    public void evictProject(Long projectId) {
+        if (projectId != null) {
+            projects.invalidate(projectId);
+        }
+    }
+
+    @Override
+    public void evictOrganization(Long organizationId) {
+        if (organizationId != null) {
+            organizations.invalidate(organizationId);
         }
-        return ConvertHelper.convert(projectDO.getBody(), ProjectE.class);
     }
 
     @Override
@@ -51,22 +116,25 @@ public class IamRepositoryImpl implements IamRepository {
 
     @Override
     public Organization queryOrganizationById(Long organizationId) {
-        ResponseEntity<OrganizationDO> organization = iamServiceClient.queryOrganizationById(organizationId);
-        if (organization.getStatusCode().is2xxSuccessful()) {
-            return ConvertHelper.convert(organization.getBody(), Organization.class);
-        } else {
-            throw new CommonException("error.organization.get");
-        }
+        return ConvertHelper.convert(getCached(organizations, organizationId), Organization.class);
     }
 
     @Override
     public UserE queryByLoginName(String userName) {
+        ResponseEntity<UserDO> responseEntity;
         try {
-            ResponseEntity<UserDO> responseEntity = iamServiceClient.queryByLoginName(userName);
-            return ConvertHelper.convert(responseEntity.getBody(), UserE.class);
+            responseEntity = iamServiceClient.queryByLoginName(userName);
         } catch (Exception e) {
+            throw new CommonException("error.user.get.byLoginName", e);
+        }
+        //iam不可用时抛出异常，只有确认不存在时才返回null
+        if (responseEntity.getStatusCode() == HttpStatus.NOT_FOUND) {
             return null;
         }
+        if (!responseEntity.getStatusCode().is2xxSuccessful()) {
+            throw new CommonException("error.user.get.byLoginName");
+        }
+        return ConvertHelper.convert(responseEntity.getBody(), UserE.class);
     }
 
     @Override
@@ -147,13 +215,67 @@ public class IamRepositoryImpl implements IamRepository {
 
     @Override
     public UserE queryByEmail(Long projectId, String email) {
+        ResponseEntity<Page<UserDO>> userDOResponseEntity;
         try {
-            ResponseEntity<Page<UserDO>> userDOResponseEntity = iamServiceClient.listUsersByEmail(projectId, 0, 10, email);
-            return ConvertHelper.convert(userDOResponseEntity.getBody().getContent().get(0), UserE.class);
-
+            userDOResponseEntity = iamServiceClient.listUsersByEmail(projectId, 0, 10, email);
         } catch (Exception e) {
-
+            throw new CommonException("error.user.get.byEmail", e);
+        }
+        //iam不可用时抛出异常，只有确认不存在时才返回null
+        if (!userDOResponseEntity.getStatusCode().is2xxSuccessful()) {
+            throw new CommonException("error.user.get.byEmail");
+        }
+        Page<UserDO> userDOPage = userDOResponseEntity.getBody();
+        if (userDOPage == null || userDOPage.getContent() == null || userDOPage.getContent().isEmpty()) {
             return null;
         }
+        return ConvertHelper.convert(userDOPage.getContent().get(0), UserE.class);
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        List<Metric<?>> metrics = new ArrayList<>();
+        addMetrics(metrics, "project.", projects);
+        addMetrics(metrics, "organization.", organizations);
+        return metrics;
+    }
+
+    private static void addMetrics(List<Metric<?>> metrics, String prefix, LoadingCache<Long, ?> cache) {
+        CacheStats stats = cache.stats();
+        metrics.add(new Metric<>(METRIC_PREFIX + prefix + "hit", stats.hitCount()));
+        metrics.add(new Metric<>(METRIC_PREFIX + prefix + "miss", stats.missCount()));
+        metrics.add(new Metric<>(METRIC_PREFIX + prefix + "hitRate", stats.hitRate()));
+        metrics.add(new Metric<>(METRIC_PREFIX + prefix + "refresh", stats.loadSuccessCount()));
+        metrics.add(new Metric<>(METRIC_PREFIX + prefix + "size", cache.size()));
+    }
+
+    private ProjectDO loadProject(Long projectId) {
+        ResponseEntity<ProjectDO> projectDO = iamServiceClient.queryIamProject(projectId);
+        if (!projectDO.getStatusCode().is2xxSuccessful() || projectDO.getBody() == null) {
+            throw new CommonException("error.project.get");
+        }
+        return projectDO.getBody();
+    }
+
+    private OrganizationDO loadOrganization(Long organizationId) {
+        ResponseEntity<OrganizationDO> organization = iamServiceClient.queryOrganizationById(organizationId);
+        if (!organization.getStatusCode().is2xxSuccessful() || organization.getBody() == null) {
+            throw new CommonException("error.organization.get");
+        }
+        return organization.getBody();
+    }
+
+    /**
+     * 每次返回新转换的对象，调用方修改返回值不会影响缓存
+     */
+    private static <T> T getCached(LoadingCache<Long, T> cache, Long id) {
+        try {
+            return cache.getUnchecked(id);
+        } catch (UncheckedExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new CommonException(e.getCause());
+        }
     }
 }
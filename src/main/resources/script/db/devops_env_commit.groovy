@@ -20,4 +20,10 @@ databaseChangeLog(logicalFilePath: 'db/devops_env_commit.groovy') {
         }
     }
 
+    changeSet(author: 'devops', id: '2018-09-25-add-index') {
+        createIndex(indexName: "env_commit_idx_env_id_commit_sha", tableName: "devops_env_commit") {
+            column(name: "env_id")
+            column(name: "commit_sha")
+        }
+    }
 }
\ No newline at end of file
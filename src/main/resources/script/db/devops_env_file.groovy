@@ -29,4 +29,9 @@ databaseChangeLog(logicalFilePath: 'db/devops_env_file.groovy') {
             column(name: 'agent_commit', type: 'VARCHAR(512)', remarks: 'agent sync commit', afterColumn: 'devops_commit')
         }
     }
+
+    changeSet(author: 'devops', id: '2018-09-25-add-index') {
+        // file_path为VARCHAR(512)，整列索引超过InnoDB 767字节的索引长度限制，只索引前191个字符
+        sql("CREATE INDEX env_file_idx_env_id_file_path ON devops_env_file (env_id, file_path(191))")
+    }
 }
\ No newline at end of file
@@ -26,4 +26,15 @@ databaseChangeLog(logicalFilePath: 'db/devops_env_file_resource.groovy') {
         dropUniqueConstraint(tableName: 'devops_env_file_resource',
                 constraintName: 'env_id')
     }
+
+    changeSet(author: 'devops', id: '2018-09-25-add-index') {
+        // file_path为VARCHAR(512)，整列索引超过InnoDB 767字节的索引长度限制，只索引前191个字符
+        sql("CREATE INDEX env_file_resource_idx_env_id_file_path ON devops_env_file_resource (env_id, file_path(191))")
+
+        createIndex(indexName: "env_file_resource_idx_env_id_resource", tableName: "devops_env_file_resource") {
+            column(name: "env_id")
+            column(name: "resource_id")
+            column(name: "resource_type")
+        }
+    }
 }
\ No newline at end of file
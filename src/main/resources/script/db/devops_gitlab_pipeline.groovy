@@ -25,4 +25,33 @@ databaseChangeLog(logicalFilePath: 'dba/devops_gitlab_pipeline.groovyovy') {
             column(name: "last_update_date", type: "DATETIME", defaultValueComputed: "CURRENT_TIMESTAMP")
         }
     }
-}
\ No newline at end of file
+
+    changeSet(author: 'devops', id: '2018-09-25-add-index') {
+        createIndex(indexName: "gitlab_pipeline_idx_commit_id", tableName: "devops_gitlab_pipeline") {
+            column(name: "commit_id")
+        }
+
+        createIndex(indexName: "gitlab_pipeline_idx_app_id_creation_date", tableName: "devops_gitlab_pipeline") {
+            column(name: "app_id")
+            column(name: "pipeline_creation_date")
+        }
+    }
+
+    changeSet(author: 'devops', id: '2018-09-28-add-column') {
+        addColumn(tableName: 'devops_gitlab_pipeline') {
+            column(name: 'ref', type: 'VARCHAR(255)', remarks: 'pipeline的分支或标签', afterColumn: 'commit_id')
+            column(name: 'sha', type: 'VARCHAR(128)', remarks: 'pipeline的commit sha', afterColumn: 'ref')
+            column(name: 'pipeline_status', type: 'VARCHAR(32)', remarks: 'gitlab中的pipeline状态', afterColumn: 'status')
+            column(name: 'pipeline_create_user_name', type: 'VARCHAR(255)', remarks: '触发pipeline的gitlab用户名', afterColumn: 'pipeline_create_user_id')
+        }
+        createIndex(indexName: "gitlab_pipeline_idx_app_id_ref_pipeline_id", tableName: "devops_gitlab_pipeline") {
+            column(name: "app_id")
+            column(name: "ref")
+            column(name: "pipeline_id")
+        }
+        createIndex(indexName: "gitlab_pipeline_idx_app_id_pipeline_id", tableName: "devops_gitlab_pipeline") {
+            column(name: "app_id")
+            column(name: "pipeline_id")
+        }
+    }
+}
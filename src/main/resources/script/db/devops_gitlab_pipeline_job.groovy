@@ -0,0 +1,30 @@
+package script.db
+
+databaseChangeLog(logicalFilePath: 'dba/devops_gitlab_pipeline_job.groovy') {
+    changeSet(author: 'devops', id: '2018-09-28-create-table') {
+        createTable(tableName: "devops_gitlab_pipeline_job", remarks: 'pipeline的job表') {
+            column(name: 'id', type: 'BIGINT UNSIGNED', remarks: '主键，ID', autoIncrement: true) {
+                constraints(primaryKey: true)
+            }
+            column(name: 'job_id', type: 'BIGINT UNSIGNED', remarks: 'gitlab job Id') {
+                constraints(unique: true)
+            }
+            column(name: 'pipeline_id', type: 'BIGINT UNSIGNED', remarks: 'gitlab pipeline Id')
+            column(name: 'name', type: 'VARCHAR(255)', remarks: 'job名称')
+            column(name: 'stage', type: 'VARCHAR(255)', remarks: 'job所属阶段')
+            column(name: 'status', type: 'VARCHAR(32)', remarks: 'job状态')
+            column(name: 'job_creation_date', type: 'DATETIME', remarks: 'job创建时间')
+            column(name: 'started_at', type: 'DATETIME', remarks: 'job开始时间')
+            column(name: 'finished_at', type: 'DATETIME', remarks: 'job结束时间')
+
+            column(name: "object_version_number", type: "BIGINT UNSIGNED", defaultValue: "1")
+            column(name: "created_by", type: "BIGINT UNSIGNED", defaultValue: "0")
+            column(name: "creation_date", type: "DATETIME", defaultValueComputed: "CURRENT_TIMESTAMP")
+            column(name: "last_updated_by", type: "BIGINT UNSIGNED", defaultValue: "0")
+            column(name: "last_update_date", type: "DATETIME", defaultValueComputed: "CURRENT_TIMESTAMP")
+        }
+        createIndex(indexName: "gitlab_pipeline_job_idx_pipeline_id", tableName: "devops_gitlab_pipeline_job") {
+            column(name: "pipeline_id")
+        }
+    }
+}
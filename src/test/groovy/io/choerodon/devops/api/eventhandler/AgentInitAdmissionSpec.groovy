@@ -0,0 +1,89 @@
+package io.choerodon.devops.api.eventhandler
+
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
+import io.choerodon.devops.infra.common.util.TokenBucket
+import spock.lang.Specification
+
+class AgentInitAdmissionSpec extends Specification {
+
+    AgentInitAdmission agentInitAdmission = new AgentInitAdmission()
+
+    def setup() {
+        agentInitAdmission.permitsPerSecond = 1000D
+        agentInitAdmission.burst = 1000
+        agentInitAdmission.threads = 1
+    }
+
+    def cleanup() {
+        if (agentInitAdmission.admitter != null) {
+            agentInitAdmission.destroy()
+        }
+    }
+
+    def "Active environments are initialized first and reconnects keep only the last session"() {
+        given:
+        List<String> inits = new CopyOnWriteArrayList<>()
+        CountDownLatch latch = new CountDownLatch(3)
+        def init = { String name -> { -> inits << name; latch.countDown() } as Runnable }
+        agentInitAdmission.submit(1L, false, init("disabled"))
+        agentInitAdmission.submit(2L, true, init("first session"))
+        agentInitAdmission.submit(3L, true, init("active"))
+        agentInitAdmission.submit(2L, true, init("second session"))
+
+        when:
+        agentInitAdmission.init()
+        latch.await(5, TimeUnit.SECONDS)
+
+        then:
+        inits == ["active", "second session", "disabled"]
+        def metrics = agentInitAdmission.metrics().collectEntries { [(it.name): it.value] }
+        metrics["devops.agent.init.connected"] == 4L
+        metrics["devops.agent.init.replaced"] == 1L
+        metrics["devops.agent.init.admitted"] == 3L
+        metrics["devops.agent.init.queue"] == 0
+    }
+
+    def "An idle admitter holds neither a token nor a running permit"() {
+        given:
+        agentInitAdmission.permitsPerSecond = 0.01D
+        agentInitAdmission.burst = 1
+        CountDownLatch latch = new CountDownLatch(1)
+
+        when:
+        agentInitAdmission.init()
+        Thread.sleep(100)
+        def running = agentInitAdmission.metrics().find { it.name == "devops.agent.init.running" }.value
+
+        then:
+        running == 0
+
+        when: "空闲时没有提前取走唯一的令牌"
+        agentInitAdmission.submit(1L, true, { -> latch.countDown() } as Runnable)
+
+        then:
+        latch.await(2, TimeUnit.SECONDS)
+    }
+
+    def "Token bucket paces requests after the burst"() {
+        given:
+        long now = 0L
+        TokenBucket tokenBucket = new TokenBucket(10D, 2, { now })
+
+        expect:
+        tokenBucket.reserve() == 0L
+        tokenBucket.reserve() == 0L
+        tokenBucket.reserve() == TimeUnit.MILLISECONDS.toNanos(100)
+        tokenBucket.reserve() == TimeUnit.MILLISECONDS.toNanos(200)
+
+        when:
+        now = TimeUnit.SECONDS.toNanos(10)
+
+        then:
+        tokenBucket.reserve() == 0L
+        tokenBucket.reserve() == 0L
+        tokenBucket.reserve() > 0L
+    }
+}
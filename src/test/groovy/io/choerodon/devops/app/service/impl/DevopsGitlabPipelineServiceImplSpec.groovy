@@ -0,0 +1,56 @@
+package io.choerodon.devops.app.service.impl
+
+import io.choerodon.devops.api.dto.JobWebHookDTO
+import io.choerodon.devops.domain.application.entity.DevopsGitlabCommitE
+import io.choerodon.devops.domain.application.entity.DevopsGitlabPipelineE
+import io.choerodon.devops.domain.application.repository.ApplicationVersionRepository
+import io.choerodon.devops.domain.application.repository.DevopsGitlabCommitRepository
+import io.choerodon.devops.domain.application.repository.DevopsGitlabPipelineRepository
+import io.choerodon.devops.infra.dataobject.DevopsGitlabPipelineDO
+import spock.lang.Specification
+
+class DevopsGitlabPipelineServiceImplSpec extends Specification {
+
+    DevopsGitlabPipelineServiceImpl devopsGitlabPipelineService = new DevopsGitlabPipelineServiceImpl()
+    DevopsGitlabPipelineRepository devopsGitlabPipelineRepository = Mock(DevopsGitlabPipelineRepository)
+    DevopsGitlabCommitRepository devopsGitlabCommitRepository = Mock(DevopsGitlabCommitRepository)
+    ApplicationVersionRepository applicationVersionRepository = Mock(ApplicationVersionRepository)
+
+    def setup() {
+        devopsGitlabPipelineService.devopsGitlabPipelineRepository = devopsGitlabPipelineRepository
+        devopsGitlabPipelineService.devopsGitlabCommitRepository = devopsGitlabCommitRepository
+        devopsGitlabPipelineService.applicationVersionRepository = applicationVersionRepository
+    }
+
+    def "GetPipelineTime counts pipelines whose stages are not written yet as zero"() {
+        given:
+        DevopsGitlabPipelineDO pipeline = new DevopsGitlabPipelineDO()
+        pipeline.setRef("master")
+        pipeline.setSha("sha")
+        pipeline.setPipelineCreationDate(new Date())
+
+        when:
+        def result = devopsGitlabPipelineService.getPipelineTime(1L, new Date(0), new Date())
+
+        then:
+        1 * devopsGitlabPipelineRepository.listPipeline(1L, _, _) >> [pipeline]
+        result.pipelineTime == ["0.00"]
+        result.refs == ["master-sha"]
+    }
+
+    def "UpdateStages leaves pipelines without stages to the saga"() {
+        given:
+        JobWebHookDTO jobWebHookDTO = new JobWebHookDTO()
+        jobWebHookDTO.setSha("sha")
+        jobWebHookDTO.setBuildName("build")
+        jobWebHookDTO.setBuildStatus("running")
+
+        when:
+        devopsGitlabPipelineService.updateStages(jobWebHookDTO)
+
+        then:
+        1 * devopsGitlabCommitRepository.queryBySha("sha") >> new DevopsGitlabCommitE(1L)
+        1 * devopsGitlabPipelineRepository.queryByCommitId(1L) >> new DevopsGitlabPipelineE()
+        0 * devopsGitlabPipelineRepository.update(_)
+    }
+}
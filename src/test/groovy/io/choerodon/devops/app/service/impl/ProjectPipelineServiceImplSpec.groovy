@@ -0,0 +1,139 @@
+package io.choerodon.devops.app.service.impl
+
+import io.choerodon.core.domain.Page
+import io.choerodon.devops.app.service.DevopsGitlabPipelineService
+import io.choerodon.devops.domain.application.entity.ApplicationE
+import io.choerodon.devops.domain.application.entity.ProjectE
+import io.choerodon.devops.domain.application.entity.iam.UserE
+import io.choerodon.devops.domain.application.repository.ApplicationRepository
+import io.choerodon.devops.domain.application.repository.DevopsGitlabPipelineRepository
+import io.choerodon.devops.domain.application.repository.GitlabProjectRepository
+import io.choerodon.devops.domain.application.repository.IamRepository
+import io.choerodon.devops.domain.application.valueobject.Organization
+import io.choerodon.devops.infra.cache.IamUserCache
+import io.choerodon.devops.infra.dataobject.DevopsGitlabPipelineDO
+import io.choerodon.devops.infra.dataobject.DevopsGitlabPipelineJobDO
+import io.choerodon.mybatis.pagehelper.domain.PageRequest
+import spock.lang.Specification
+
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
+class ProjectPipelineServiceImplSpec extends Specification {
+
+    ProjectPipelineServiceImpl projectPipelineService = Spy(ProjectPipelineServiceImpl)
+    ApplicationRepository applicationRepository = Mock(ApplicationRepository)
+    IamRepository iamRepository = Mock(IamRepository)
+    GitlabProjectRepository gitlabProjectRepository = Mock(GitlabProjectRepository)
+    DevopsGitlabPipelineRepository devopsGitlabPipelineRepository = Mock(DevopsGitlabPipelineRepository)
+    DevopsGitlabPipelineService devopsGitlabPipelineService = Mock(DevopsGitlabPipelineService)
+    IamUserCache iamUserCache = Mock(IamUserCache)
+
+    def setup() {
+        projectPipelineService.gitlabUrl = "http://git.example.com"
+        projectPipelineService.applicationRepository = applicationRepository
+        projectPipelineService.iamRepository = iamRepository
+        projectPipelineService.gitlabProjectRepository = gitlabProjectRepository
+        projectPipelineService.devopsGitlabPipelineRepository = devopsGitlabPipelineRepository
+        projectPipelineService.devopsGitlabPipelineService = devopsGitlabPipelineService
+        projectPipelineService.iamUserCache = iamUserCache
+        projectPipelineService.syncThreads = 1
+        projectPipelineService.init()
+
+        ApplicationE applicationE = new ApplicationE(1L, "app", "应用", true)
+        applicationE.initGitlabProjectE(10)
+        applicationRepository.query(1L) >> applicationE
+        ProjectE projectE = new ProjectE(2L)
+        projectE.setCode("pro")
+        projectE.initOrganization(3L)
+        iamRepository.queryIamProject(2L) >> projectE
+        Organization organization = new Organization(3L)
+        organization.setCode("org")
+        iamRepository.queryOrganizationById(3L) >> organization
+    }
+
+    def cleanup() {
+        projectPipelineService.destroy()
+    }
+
+    def "ListPipelines pages the local read model without calling gitlab"() {
+        given:
+        Page<DevopsGitlabPipelineDO> page = new Page<>()
+        page.setContent([pipeline(12L, "master", true), pipeline(11L, "master", false)])
+        page.setTotalElements(12)
+        page.setTotalPages(6)
+        page.setNumberOfElements(2)
+        UserE userE = new UserE()
+        userE.setImageUrl("avatar")
+
+        when:
+        def result = projectPipelineService.listPipelines(2L, 1L, new PageRequest(0, 2))
+
+        then:
+        1 * devopsGitlabPipelineRepository.needSync(1L) >> false
+        1 * devopsGitlabPipelineRepository.pagePipelineWithLatest(1L, _) >> page
+        1 * devopsGitlabPipelineRepository.listJobs([12L, 11L]) >> [
+                job(12L, 101L, "build", "failed"), job(12L, 102L, "build", "success"), job(11L, 100L, "build", "success")]
+        1 * iamUserCache.listByIds(_) >> [5L: userE]
+        0 * gitlabProjectRepository._
+        0 * devopsGitlabPipelineService._
+        result.totalElements == 12
+        result.content*.id == [12L, 11L]
+        result.content*.latest == [true, false]
+        result.content[0].jobs.size() == 1
+        result.content[0].jobs[0].id == 102
+        result.content[0].imageUrl == "avatar"
+        result.content[0].gitlabUrl == "http://git.example.com/org-pro/app.git"
+
+        when: "同一节点上已检查过的应用不再检查是否需要补齐"
+        projectPipelineService.listPipelines(2L, 1L, new PageRequest(0, 2))
+
+        then:
+        0 * devopsGitlabPipelineRepository.needSync(_)
+        1 * devopsGitlabPipelineRepository.pagePipelineWithLatest(1L, _) >> new Page<>()
+    }
+
+    def "ListPipelines serves stored rows while pipelines are synced in the background"() {
+        given:
+        CountDownLatch release = new CountDownLatch(1)
+        CountDownLatch synced = new CountDownLatch(1)
+        projectPipelineService.getGitlabUserId() >> 7
+
+        when:
+        projectPipelineService.listPipelines(2L, 1L, new PageRequest(0, 2))
+        projectPipelineService.listPipelines(2L, 1L, new PageRequest(0, 2))
+        release.countDown()
+
+        then:
+        1 * devopsGitlabPipelineRepository.needSync(1L) >> true
+        2 * devopsGitlabPipelineRepository.pagePipelineWithLatest(1L, _) >> new Page<>()
+        synced.await(5, TimeUnit.SECONDS)
+        1 * devopsGitlabPipelineService.syncPipelines({ it.id == 1L }, 7) >> {
+            release.await(5, TimeUnit.SECONDS)
+            synced.countDown()
+        }
+    }
+
+    private static DevopsGitlabPipelineDO pipeline(Long pipelineId, String ref, Boolean latest) {
+        DevopsGitlabPipelineDO pipelineDO = new DevopsGitlabPipelineDO()
+        pipelineDO.setPipelineId(pipelineId)
+        pipelineDO.setRef(ref)
+        pipelineDO.setSha("sha" + pipelineId)
+        pipelineDO.setPipelineStatus("success")
+        pipelineDO.setPipelineCreateUserId(5L)
+        pipelineDO.setPipelineCreateUserName("user")
+        pipelineDO.setPipelineCreationDate(new Date())
+        pipelineDO.setLatest(latest)
+        pipelineDO
+    }
+
+    private static DevopsGitlabPipelineJobDO job(Long pipelineId, Long jobId, String stage, String status) {
+        DevopsGitlabPipelineJobDO jobDO = new DevopsGitlabPipelineJobDO()
+        jobDO.setPipelineId(pipelineId)
+        jobDO.setJobId(jobId)
+        jobDO.setName(stage)
+        jobDO.setStage(stage)
+        jobDO.setStatus(status)
+        jobDO
+    }
+}
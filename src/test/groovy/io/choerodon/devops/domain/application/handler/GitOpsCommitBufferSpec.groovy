@@ -0,0 +1,122 @@
+package io.choerodon.devops.domain.application.handler
+
+import io.choerodon.core.exception.CommonException
+import io.choerodon.devops.domain.application.entity.DevopsEnvironmentE
+import io.choerodon.devops.domain.application.entity.ProjectE
+import io.choerodon.devops.domain.application.repository.DevopsEnvironmentRepository
+import io.choerodon.devops.domain.application.repository.GitlabRepository
+import io.choerodon.devops.domain.application.repository.IamRepository
+import io.choerodon.devops.domain.application.valueobject.Organization
+import io.choerodon.devops.infra.common.util.GitOpsRepositoryManager
+import spock.lang.Specification
+
+class GitOpsCommitBufferSpec extends Specification {
+
+    GitOpsRepositoryManager gitOpsRepositoryManager = Mock(GitOpsRepositoryManager)
+    GitlabRepository gitlabRepository = Mock(GitlabRepository)
+    DevopsEnvironmentRepository devopsEnvironmentRepository = Stub(DevopsEnvironmentRepository)
+    IamRepository iamRepository = Stub(IamRepository)
+    GitOpsCommitBuffer gitOpsCommitBuffer
+
+    def setup() {
+        DevopsEnvironmentE devopsEnvironmentE = new DevopsEnvironmentE()
+        devopsEnvironmentE.setId(1L)
+        devopsEnvironmentE.setCode("env")
+        devopsEnvironmentE.initProjectE(1L)
+        devopsEnvironmentE.setEnvIdRsa("key")
+        Organization organization = new Organization()
+        organization.setId(1L)
+        organization.setCode("org")
+        ProjectE projectE = new ProjectE()
+        projectE.setId(1L)
+        projectE.setCode("pro")
+        projectE.setOrganization(organization)
+        devopsEnvironmentRepository.queryById(1L) >> devopsEnvironmentE
+        iamRepository.queryIamProject(1L) >> projectE
+        iamRepository.queryOrganizationById(1L) >> organization
+
+        gitOpsCommitBuffer = new GitOpsCommitBuffer()
+        gitOpsCommitBuffer.gitlabSshUrl = "gitlab.example.com"
+        gitOpsCommitBuffer.gitOpsRepositoryManager = gitOpsRepositoryManager
+        gitOpsCommitBuffer.gitlabRepository = gitlabRepository
+        gitOpsCommitBuffer.devopsEnvironmentRepository = devopsEnvironmentRepository
+        gitOpsCommitBuffer.iamRepository = iamRepository
+    }
+
+    def "Writes outside a batch are committed at once by the acting user"() {
+        when:
+        gitOpsCommitBuffer.write(1L, "gitops/org/pro/env", 10, 1L, "release-a.yaml", "a", true)
+
+        then:
+        1 * gitlabRepository.createFile(10, "release-a.yaml", "a", "ADD FILE", 1)
+        0 * gitOpsRepositoryManager._
+    }
+
+    def "Writes to one env in a batch become one commit per user"() {
+        when:
+        gitOpsCommitBuffer.batch {
+            gitOpsCommitBuffer.write(1L, "gitops/org/pro/env", 10, 1L, "release-a.yaml", "a", true)
+            gitOpsCommitBuffer.write(1L, "gitops/org/pro/env", 10, 1L, "svc-a.yaml", "b", true)
+            gitOpsCommitBuffer.write(1L, "gitops/org/pro/env", 10, 2L, "ing-a.yaml", "c", true)
+        }
+
+        then:
+        1 * gitOpsRepositoryManager.commitFiles(1L, "gitops/org/pro/env", "git@gitlab.example.com:org-pro-gitops/env.git",
+                "key", ["release-a.yaml": "a", "svc-a.yaml": "b"], _, { it.startsWith("UPDATE FILES") }) >> "sha1"
+        1 * gitlabRepository.createFile(10, "ing-a.yaml", "c", "ADD FILE", 2)
+    }
+
+    def "Batch does not commit when the writes fail"() {
+        when:
+        gitOpsCommitBuffer.batch {
+            gitOpsCommitBuffer.write(1L, "gitops/org/pro/env", 10, 1L, "release-a.yaml", "a", true)
+            throw new CommonException("error.service.create")
+        }
+
+        then:
+        thrown(CommonException)
+        0 * gitOpsRepositoryManager._
+    }
+
+    def "Unchanged files are reported to the caller"() {
+        when:
+        gitOpsCommitBuffer.batch {
+            gitOpsCommitBuffer.write(1L, "gitops/org/pro/env", 10, 1L, "release-a.yaml", "a", false)
+            gitOpsCommitBuffer.write(1L, "gitops/org/pro/env", 10, 1L, "svc-a.yaml", "b", false)
+        }
+
+        then:
+        1 * gitOpsRepositoryManager.commitFiles(*_) >> null
+        def e = thrown(CommonException)
+        e.code == "error.gitops.file.unchanged"
+        0 * gitlabRepository._
+    }
+
+    def "Batch commits once and exposes pending content"() {
+        when:
+        String pending = null
+        gitOpsCommitBuffer.batch {
+            gitOpsCommitBuffer.write(1L, "gitops/org/pro/env", 10, 1L, "svc-a.yaml", "v1", false)
+            gitOpsCommitBuffer.write(1L, "gitops/org/pro/env", 10, 1L, "svc-a.yaml", "v2", false)
+            pending = gitOpsCommitBuffer.pendingContent(1L, "svc-a.yaml")
+        }
+
+        then:
+        pending == "v2"
+        1 * gitlabRepository.updateFile(10, "svc-a.yaml", "v2", "UPDATE FILE", 1)
+        0 * gitOpsRepositoryManager._
+    }
+
+    def "Falls back to gitlab api when push fails"() {
+        when:
+        gitOpsCommitBuffer.batch {
+            gitOpsCommitBuffer.write(1L, "gitops/org/pro/env", 10, 1L, "release-a.yaml", "a", true)
+            gitOpsCommitBuffer.write(1L, "gitops/org/pro/env", 10, 1L, "svc-a.yaml", "b", false)
+        }
+
+        then:
+        1 * gitOpsRepositoryManager.commitFiles(*_) >> { throw new CommonException("error.git.push") }
+        1 * gitlabRepository.createFile(10, "release-a.yaml", "a", "ADD FILE", 1)
+        1 * gitlabRepository.updateFile(10, "svc-a.yaml", "b", "UPDATE FILE", 1)
+    }
+}
@@ -0,0 +1,89 @@
+package io.choerodon.devops.domain.application.handler
+
+import io.kubernetes.client.models.V1Service
+import io.kubernetes.client.models.V1beta1Ingress
+import spock.lang.Specification
+
+import io.choerodon.devops.domain.application.valueobject.C7nHelmRelease
+
+/**
+ * gitops文件解析：类型化反序列化、结果顺序，以及并行解析与逐个解析的结果一致
+ */
+class GitOpsObjectParserSpec extends Specification {
+
+    def "parse documents into typed objects in file order"() {
+        when:
+        def parsedFiles = GitOpsObjectParser.parse("src/test/gitops", ["test1.yaml", "test6.yaml", "test7.yaml"])
+
+        then:
+        parsedFiles*.filePath == ["test1.yaml", "test6.yaml", "test7.yaml"]
+        parsedFiles.every { it.error == null }
+        parsedFiles[0].objects*.kind == ["C7NHelmRelease", "Service", "Ingress"]
+        parsedFiles[0].objects[0].object instanceof C7nHelmRelease
+        ((C7nHelmRelease) parsedFiles[0].objects[0].object).metadata.name == "instest1"
+        parsedFiles[1].objects[0].object instanceof V1Service
+        parsedFiles[2].objects[0].object instanceof V1beta1Ingress
+    }
+
+    def "record parse error on the failing file"() {
+        given:
+        File dir = File.createTempDir()
+        new File(dir, "bad.yaml").text = "kind: Service\nspec: [\n"
+
+        when:
+        def parsedFiles = GitOpsObjectParser.parse(dir.path, ["bad.yaml", "missing.yaml"])
+
+        then:
+        parsedFiles[0].error instanceof GitOpsExplainException
+        ((GitOpsExplainException) parsedFiles[0].error).filePath == "bad.yaml"
+        parsedFiles[1].error != null
+
+        cleanup:
+        dir.deleteDir()
+    }
+
+    def "parallel parse matches sequential parse in file order"() {
+        given:
+        File dir = File.createTempDir()
+        List<String> files = (0..<200).collect { i ->
+            String name = "app-${i}.yaml"
+            new File(dir, name).text = """\
+---
+apiVersion: choerodon.io/v1alpha1
+kind: C7NHelmRelease
+metadata:
+  name: app-${i}
+spec:
+  chartName: app
+  chartVersion: 0.1.${i}
+  repoUrl: http://chart.example.com/
+  values: |-
+    replicaCount: 1
+---
+apiVersion: v1
+kind: Service
+metadata:
+  name: svc-${i}
+spec:
+  ports:
+  - name: http
+    port: 8080
+    targetPort: 8080
+  type: ClusterIP
+"""
+            name
+        }
+
+        when:
+        def sequential = files.collect { GitOpsObjectParser.parseFile(dir.path, it) }
+        def parallel = GitOpsObjectParser.parse(dir.path, files)
+
+        then:
+        parallel*.filePath == files
+        parallel.collect { it.objects*.object } == sequential.collect { it.objects*.object }
+        parallel.every { it.error == null && it.objects.size() == 2 }
+
+        cleanup:
+        dir.deleteDir()
+    }
+}
@@ -0,0 +1,152 @@
+package io.choerodon.devops.domain.application.handler
+
+import io.choerodon.core.exception.CommonException
+import io.choerodon.core.oauth.CustomUserDetails
+import io.choerodon.devops.domain.application.entity.ApplicationE
+import io.choerodon.devops.domain.application.entity.ApplicationVersionE
+import io.choerodon.devops.domain.application.entity.ApplicationVersionValueE
+import io.choerodon.devops.domain.application.repository.ApplicationMarketRepository
+import io.choerodon.devops.domain.application.repository.ApplicationRepository
+import io.choerodon.devops.domain.application.repository.ApplicationVersionRepository
+import io.choerodon.devops.domain.application.repository.ApplicationVersionValueRepository
+import io.choerodon.devops.infra.common.util.GitUserNameUtil
+import io.choerodon.devops.infra.config.HarborConfigurationProperties
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream
+import org.apache.commons.compress.compressors.gzip.GzipCompressorOutputStream
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken
+import org.springframework.security.core.context.SecurityContextHolder
+import org.springframework.transaction.PlatformTransactionManager
+import spock.lang.Specification
+
+import java.nio.file.Files
+
+class MarketAppImporterSpec extends Specification {
+
+    MarketAppImporter marketAppImporter
+    ApplicationRepository applicationRepository = Mock(ApplicationRepository)
+    ApplicationVersionRepository applicationVersionRepository = Mock(ApplicationVersionRepository)
+    ApplicationVersionValueRepository applicationVersionValueRepository = Mock(ApplicationVersionValueRepository)
+    File directory
+
+    def setup() {
+        HarborConfigurationProperties harborConfigurationProperties = new HarborConfigurationProperties()
+        harborConfigurationProperties.setBaseUrl("harbor.example.com")
+        marketAppImporter = new MarketAppImporter()
+        marketAppImporter.importThreads = 2
+        marketAppImporter.statusExpireMinutes = 60L
+        marketAppImporter.applicationRepository = applicationRepository
+        marketAppImporter.applicationVersionRepository = applicationVersionRepository
+        marketAppImporter.applicationVersionValueRepository = applicationVersionValueRepository
+        marketAppImporter.applicationMarketRepository = Mock(ApplicationMarketRepository)
+        marketAppImporter.harborConfigurationProperties = harborConfigurationProperties
+        marketAppImporter.transactionManager = Mock(PlatformTransactionManager)
+        marketAppImporter.init()
+        directory = Files.createTempDirectory("market").toFile()
+    }
+
+    def cleanup() {
+        marketAppImporter.destroy()
+        directory.deleteDir()
+        new File("Charts/spec-org").deleteDir()
+        SecurityContextHolder.clearContext()
+    }
+
+    def "ImportApps batches new versions and reports progress"() {
+        given:
+        File appDirectory = app("demo", ["0.1.0", "0.2.0"])
+
+        when:
+        marketAppImporter.importApps("code", [appDirectory], 1L, "spec-org", "spec-pro", null)
+
+        then:
+        1 * applicationRepository.create(_) >> new ApplicationE(10L)
+        1 * applicationVersionRepository.listAllByAppId(10L) >> []
+        1 * applicationVersionValueRepository.batchCreate({ it*.value == ["v: 0.1.0", "v: 0.2.0"] }) >>
+                [new ApplicationVersionValueE(100L), new ApplicationVersionValueE(101L)]
+        1 * applicationVersionRepository.batchCreate({ List<ApplicationVersionE> versions ->
+            versions*.version == ["0.1.0", "0.2.0"] &&
+                    versions*.applicationVersionValueE*.id == [100L, 101L] &&
+                    versions[0].image == "harbor.example.com/spec-org-spec-pro/demo:0.1.0"
+        })
+        0 * applicationVersionRepository.updateVersion(_)
+        new File("Charts/spec-org/spec-pro/demo-0.2.0.tgz").isFile()
+
+        when:
+        def status = marketAppImporter.getStatus(1L, "code")
+
+        then:
+        status.status == "success"
+        status.totalVersions == 2
+        status.importedVersions == 2
+    }
+
+    def "ImportApps writes versions as the importing user"() {
+        given:
+        CustomUserDetails userDetails = new CustomUserDetails("importer", "unknown", Collections.emptyList())
+        userDetails.setUserId(7L)
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(userDetails, null, Collections.emptyList()))
+        File appDirectory = app("demo", ["0.1.0"])
+        List<Long> auditUserIds = []
+
+        when:
+        marketAppImporter.importApps("code", [appDirectory], 1L, "spec-org", "spec-pro", null)
+
+        then:
+        1 * applicationRepository.create(_) >> {
+            auditUserIds << GitUserNameUtil.getAuditUserId()
+            new ApplicationE(10L)
+        }
+        1 * applicationVersionRepository.listAllByAppId(10L) >> []
+        1 * applicationVersionValueRepository.batchCreate(_) >> {
+            auditUserIds << GitUserNameUtil.getAuditUserId()
+            [new ApplicationVersionValueE(100L)]
+        }
+        1 * applicationVersionRepository.batchCreate(_) >> { auditUserIds << GitUserNameUtil.getAuditUserId() }
+        // 批量插入的created_by和last_updated_by取自写入线程上的登录用户
+        auditUserIds == [7L, 7L, 7L]
+    }
+
+    def "ImportApps writes nothing when a chart is missing"() {
+        given:
+        File appDirectory = app("demo", ["0.1.0"])
+        new File(appDirectory, "demo.json").text = '{"code":"demo","appVersions":[{"version":"0.1.0"},{"version":"0.3.0"}]}'
+
+        when:
+        marketAppImporter.importApps("code", [appDirectory], 1L, "spec-org", "spec-pro", null)
+
+        then:
+        thrown(CommonException)
+        0 * applicationRepository._
+        0 * applicationVersionValueRepository._
+        marketAppImporter.getStatus(1L, "code").status == "failed"
+    }
+
+    private File app(String code, List<String> versions) {
+        File appDirectory = new File(directory, code)
+        appDirectory.mkdirs()
+        new File(appDirectory, code + ".json").text =
+                '{"code":"' + code + '","name":"' + code + '","appVersions":[' +
+                versions.collect { '{"version":"' + it + '"}' }.join(",") + ']}'
+        versions.each {
+            new File(appDirectory, "${code}-${it}.tgz").bytes = tgz(["${code}/values.yaml": "v: ${it}"])
+        }
+        appDirectory
+    }
+
+    private static byte[] tgz(Map<String, String> files) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream()
+        TarArchiveOutputStream tarOut = new TarArchiveOutputStream(new GzipCompressorOutputStream(out))
+        files.each { name, content ->
+            byte[] bytes = content.getBytes("UTF-8")
+            TarArchiveEntry entry = new TarArchiveEntry(name)
+            entry.setSize(bytes.length)
+            tarOut.putArchiveEntry(entry)
+            tarOut.write(bytes)
+            tarOut.closeArchiveEntry()
+        }
+        tarOut.close()
+        out.toByteArray()
+    }
+}
@@ -0,0 +1,94 @@
+package io.choerodon.devops.infra.cache
+
+import io.choerodon.devops.domain.application.entity.DevopsEnvironmentE
+import io.choerodon.devops.domain.application.entity.ProjectE
+import io.choerodon.devops.domain.application.repository.DevopsEnvironmentRepository
+import io.choerodon.devops.domain.application.repository.IamRepository
+import io.choerodon.devops.domain.application.valueobject.Organization
+import spock.lang.Specification
+
+class AgentInitPayloadCacheSpec extends Specification {
+
+    DevopsEnvironmentRepository devopsEnvironmentRepository = Mock(DevopsEnvironmentRepository)
+    IamRepository iamRepository = Mock(IamRepository)
+    AgentInitPayloadCache agentInitPayloadCache = new AgentInitPayloadCache(devopsEnvironmentRepository, iamRepository)
+
+    def setup() {
+        agentInitPayloadCache.maxEntries = 100L
+        agentInitPayloadCache.expireMinutes = 60L
+        agentInitPayloadCache.gitlabSshUrl = "gitlab.example.com"
+    }
+
+    def "Environments are loaded once at startup and projects are looked up once"() {
+        given:
+        Organization organization = new Organization(3L)
+        organization.setCode("org")
+        ProjectE projectE = new ProjectE(2L)
+        projectE.setCode("pro")
+        projectE.initOrganization(3L)
+
+        when:
+        agentInitPayloadCache.init()
+
+        then:
+        1 * devopsEnvironmentRepository.list() >> [env(1L, "dev", true), env(2L, "test", false)]
+
+        when:
+        def active = [agentInitPayloadCache.isActive(1L), agentInitPayloadCache.isActive(2L)]
+        def payloads = [agentInitPayloadCache.getPayload(1L), agentInitPayloadCache.getPayload(2L)]
+
+        then:
+        active == [true, false]
+        payloads[0].contains("git@gitlab.example.com:org-pro-gitops/dev.git")
+        payloads[1].contains("git@gitlab.example.com:org-pro-gitops/test.git")
+        1 * devopsEnvironmentRepository.queryById(1L) >> env(1L, "dev", true)
+        1 * devopsEnvironmentRepository.queryById(2L) >> env(2L, "test", false)
+        0 * devopsEnvironmentRepository._
+        1 * iamRepository.queryIamProject(2L) >> projectE
+        1 * iamRepository.queryOrganizationById(3L) >> organization
+    }
+
+    def "GetPayload sends the key stored in the database"() {
+        given:
+        Organization organization = new Organization(3L)
+        organization.setCode("org")
+        ProjectE projectE = new ProjectE(2L)
+        projectE.setCode("pro")
+        projectE.initOrganization(3L)
+        iamRepository.queryIamProject(2L) >> projectE
+        iamRepository.queryOrganizationById(3L) >> organization
+        devopsEnvironmentRepository.list() >> [env(1L, "dev", true)]
+        agentInitPayloadCache.init()
+        DevopsEnvironmentE upgraded = env(1L, "dev", true)
+        upgraded.setEnvIdRsa("new key")
+
+        when: "其他节点更新了环境密钥"
+        def payload = agentInitPayloadCache.getPayload(1L)
+
+        then:
+        1 * devopsEnvironmentRepository.queryById(1L) >> upgraded
+        payload.contains("new key")
+    }
+
+    def "IsActive does not query unknown environments"() {
+        given:
+        agentInitPayloadCache.init()
+
+        when:
+        def active = agentInitPayloadCache.isActive(9L)
+
+        then:
+        active
+        0 * devopsEnvironmentRepository.queryById(_)
+    }
+
+    private static DevopsEnvironmentE env(Long id, String code, Boolean active) {
+        DevopsEnvironmentE devopsEnvironmentE = new DevopsEnvironmentE()
+        devopsEnvironmentE.setId(id)
+        devopsEnvironmentE.setCode(code)
+        devopsEnvironmentE.setActive(active)
+        devopsEnvironmentE.setEnvIdRsa("key")
+        devopsEnvironmentE.initProjectE(2L)
+        devopsEnvironmentE
+    }
+}
@@ -0,0 +1,105 @@
+package io.choerodon.devops.infra.cache
+
+import io.choerodon.devops.infra.dataobject.gitlab.TagDO
+import org.springframework.data.redis.connection.DefaultMessage
+import org.springframework.data.redis.core.StringRedisTemplate
+import spock.lang.Specification
+
+import java.util.function.Supplier
+
+class GitlabTagCacheSpec extends Specification {
+
+    GitlabTagCache gitlabTagCache
+    StringRedisTemplate stringRedisTemplate = Mock(StringRedisTemplate)
+
+    def setup() {
+        gitlabTagCache = new GitlabTagCache()
+        gitlabTagCache.stringRedisTemplate = stringRedisTemplate
+        gitlabTagCache.maxProjects = 10L
+        gitlabTagCache.expireMinutes = 60L
+        gitlabTagCache.init()
+    }
+
+    def "ListTags loads once and keeps version order"() {
+        given:
+        Supplier<List<TagDO>> loader = Mock(Supplier)
+
+        when:
+        def tags = gitlabTagCache.listTags(1, loader)
+        gitlabTagCache.listTags(1, loader)
+
+        then:
+        1 * loader.get() >> [tag("0.9.0"), tag("feature"), tag("0.10.0"), tag("1.0.0")]
+        tags*.name == ["1.0.0", "0.10.0", "0.9.0", "feature"]
+    }
+
+    def "RemoveTag updates the index without reloading"() {
+        given:
+        Supplier<List<TagDO>> loader = Mock(Supplier)
+
+        when:
+        gitlabTagCache.listTags(1, loader)
+        gitlabTagCache.removeTag(1, "0.1.0")
+
+        then:
+        1 * loader.get() >> [tag("0.1.0"), tag("0.2.0")]
+        1 * stringRedisTemplate.convertAndSend(GitlabTagCache.CHANNEL, "1:0.1.0")
+        !gitlabTagCache.exists(1, "0.1.0", loader)
+        gitlabTagCache.exists(1, "0.2.0", loader)
+    }
+
+    def "Invalidate is broadcast to the other nodes"() {
+        given:
+        Supplier<List<TagDO>> loader = Mock(Supplier)
+
+        when:
+        gitlabTagCache.listTags(1, loader)
+        gitlabTagCache.invalidate(1)
+        gitlabTagCache.listTags(1, loader)
+
+        then:
+        2 * loader.get() >> [tag("0.1.0")]
+        1 * stringRedisTemplate.convertAndSend(GitlabTagCache.CHANNEL, "1")
+    }
+
+    def "Messages from other nodes update the local index"() {
+        given:
+        Supplier<List<TagDO>> loader = Mock(Supplier)
+
+        when: "其他节点删除了tag"
+        gitlabTagCache.listTags(1, loader)
+        gitlabTagCache.onMessage(message("1:0.1.0"), null)
+
+        then:
+        1 * loader.get() >> [tag("0.1.0"), tag("0.2.0")]
+        gitlabTagCache.listTags(1, loader)*.name == ["0.2.0"]
+
+        when: "其他节点新建了tag"
+        gitlabTagCache.onMessage(message("1"), null)
+        def tags = gitlabTagCache.listTags(1, loader)
+
+        then:
+        1 * loader.get() >> [tag("0.2.0"), tag("0.3.0")]
+        tags*.name == ["0.3.0", "0.2.0"]
+        0 * stringRedisTemplate._
+    }
+
+    def "Publish failures do not fail the local update"() {
+        when:
+        gitlabTagCache.invalidate(1)
+
+        then:
+        1 * stringRedisTemplate.convertAndSend(GitlabTagCache.CHANNEL, "1") >> { throw new IllegalStateException("redis") }
+        noExceptionThrown()
+    }
+
+    private static DefaultMessage message(String body) {
+        new DefaultMessage(GitlabTagCache.CHANNEL.bytes, body.getBytes("UTF-8"))
+    }
+
+    private static TagDO tag(String name) {
+        TagDO tagDO = new TagDO()
+        tagDO.setName(name)
+        tagDO
+    }
+}
@@ -0,0 +1,92 @@
+package io.choerodon.devops.infra.cache
+
+import io.choerodon.core.exception.CommonException
+import io.choerodon.devops.domain.application.entity.iam.UserE
+import io.choerodon.devops.domain.application.repository.IamRepository
+import spock.lang.Specification
+
+class IamUserCacheSpec extends Specification {
+
+    IamRepository iamRepository = Mock(IamRepository)
+    IamUserCache iamUserCache
+
+    def setup() {
+        iamUserCache = new IamUserCache(iamRepository)
+        iamUserCache.maxEntries = 100L
+        iamUserCache.expireMinutes = 10L
+        iamUserCache.missingExpireSeconds = 60L
+        iamUserCache.init()
+    }
+
+    def "ListByIds resolves a page with one remote call"() {
+        when:
+        def users = iamUserCache.listByIds([1L, 2L, 1L, null, 3L])
+        def again = iamUserCache.listByIds([1L, 2L, 3L])
+
+        then:
+        1 * iamRepository.listUsersByIds([1L, 2L, 3L]) >> [user(1L, "a"), user(2L, "b")]
+        0 * iamRepository._
+        users.keySet() == [1L, 2L] as Set
+        again.keySet() == [1L, 2L] as Set
+    }
+
+    def "Evict reloads the user"() {
+        given:
+        iamRepository.listUsersByIds([1L]) >>> [[user(1L, "a")], [user(1L, "b")]]
+        iamUserCache.queryById(1L)
+
+        when:
+        iamUserCache.evict(1L, "a")
+
+        then:
+        iamUserCache.queryById(1L).loginName == "b"
+        iamUserCache.queryByLoginName("b").id == 1L
+    }
+
+    def "ListByEmails queries each distinct email once"() {
+        when:
+        def users = iamUserCache.listByEmails(1L, ["a@x.com", "b@x.com", "a@x.com", null])
+        def again = iamUserCache.listByEmails(1L, ["a@x.com", "b@x.com"])
+
+        then:
+        1 * iamRepository.queryByEmail(1L, "a@x.com") >> user(1L, "a")
+        1 * iamRepository.queryByEmail(1L, "b@x.com") >> null
+        0 * iamRepository._
+        users.keySet() == ["a@x.com"] as Set
+        again["a@x.com"].id == 1L
+    }
+
+    def "ListByLoginNames does not cache a failed lookup"() {
+        when:
+        def failed = iamUserCache.queryByLoginName("a")
+        def missing = iamUserCache.queryByLoginName("b")
+        def again = iamUserCache.listByLoginNames(["a", "b"])
+
+        then:
+        2 * iamRepository.queryByLoginName("a") >> { throw new CommonException("error.user.get.byLoginName") } >> user(1L, "a")
+        1 * iamRepository.queryByLoginName("b") >> null
+        0 * iamRepository._
+        failed == null
+        missing == null
+        again.keySet() == ["a"] as Set
+    }
+
+    def "ListByEmails does not cache a failed lookup"() {
+        when:
+        def failed = iamUserCache.listByEmails(1L, ["a@x.com"])
+        def again = iamUserCache.listByEmails(1L, ["a@x.com"])
+
+        then:
+        2 * iamRepository.queryByEmail(1L, "a@x.com") >> { throw new CommonException("error.user.get.byEmail") } >> user(1L, "a")
+        0 * iamRepository._
+        failed.isEmpty()
+        again["a@x.com"].id == 1L
+    }
+
+    private static UserE user(Long id, String loginName) {
+        UserE userE = new UserE()
+        userE.setId(id)
+        userE.setLoginName(loginName)
+        userE
+    }
+}
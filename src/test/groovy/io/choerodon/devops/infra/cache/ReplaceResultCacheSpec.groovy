@@ -0,0 +1,80 @@
+package io.choerodon.devops.infra.cache
+
+import io.choerodon.devops.domain.application.valueobject.ReplaceResult
+import spock.lang.Specification
+
+import java.util.function.Supplier
+
+class ReplaceResultCacheSpec extends Specification {
+
+    ReplaceResultCache replaceResultCache
+
+    def setup() {
+        replaceResultCache = new ReplaceResultCache()
+        replaceResultCache.maxEntries = 10
+        replaceResultCache.maxWeight = 1000L
+        replaceResultCache.expireMinutes = 60L
+        replaceResultCache.init()
+    }
+
+    def "Get computes once for the same values and returns copies"() {
+        given:
+        Supplier<ReplaceResult> supplier = Mock(Supplier)
+
+        when:
+        def first = replaceResultCache.get("a: 1\n", "a: 2\n", supplier)
+        first.getNewLines().add(9)
+        def second = replaceResultCache.get("a: 1\n", "a: 2\n", supplier)
+
+        then:
+        1 * supplier.get() >> result("a: 2\n")
+        second.getYaml() == "a: 2\n"
+        second.getNewLines() == [0]
+        metric("hit") == 1L
+        metric("miss") == 1L
+    }
+
+    def "Changed chart or deploy values miss the cache"() {
+        given:
+        Supplier<ReplaceResult> supplier = Mock(Supplier)
+
+        when:
+        replaceResultCache.get("a: 1\n", "a: 2\n", supplier)
+        replaceResultCache.get("a: 1\n", "a: 3\n", supplier)
+        replaceResultCache.get("a: 0\n", "a: 2\n", supplier)
+        // 两段内容拼接相同但分界不同
+        replaceResultCache.get("a: 1\na", ": 2\n", supplier)
+
+        then:
+        4 * supplier.get() >> result("a: 2\n")
+        metric("hit") == 0L
+        metric("size") == 4L
+    }
+
+    def "Entries beyond the weight limit are evicted"() {
+        given:
+        Supplier<ReplaceResult> supplier = Mock(Supplier)
+
+        when: "每条至少占用maxWeight / maxEntries，超过总权重后较早的结果被淘汰"
+        (0..<20).each { replaceResultCache.get("a: 1\n", "a: ${it}\n", supplier) }
+        replaceResultCache.get("a: 1\n", "a: 0\n", supplier)
+
+        then:
+        (20..21) * supplier.get() >> result("a: 2\n")
+        metric("eviction") > 0L
+        metric("size") <= 10L
+    }
+
+    private Object metric(String name) {
+        replaceResultCache.metrics().find { it.name == "devops.cache.values." + name }.value
+    }
+
+    private static ReplaceResult result(String yaml) {
+        ReplaceResult replaceResult = new ReplaceResult()
+        replaceResult.setYaml(yaml)
+        replaceResult.setDeltaYaml(yaml)
+        replaceResult.setNewLines([0])
+        replaceResult.setHighlightMarkers([])
+        replaceResult
+    }
+}
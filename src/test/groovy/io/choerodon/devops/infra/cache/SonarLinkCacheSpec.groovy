@@ -0,0 +1,73 @@
+package io.choerodon.devops.infra.cache
+
+import com.sun.net.httpserver.HttpServer
+import spock.lang.Specification
+
+import java.util.concurrent.atomic.AtomicInteger
+
+class SonarLinkCacheSpec extends Specification {
+
+    HttpServer server
+    AtomicInteger requests = new AtomicInteger()
+    SonarLinkCache sonarLinkCache
+    String checkUrl
+
+    def setup() {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0)
+        server.createContext("/api/project_links/search") { exchange ->
+            requests.incrementAndGet()
+            exchange.sendResponseHeaders(exchange.requestURI.query.endsWith("app") ? 200 : 404, -1)
+            exchange.close()
+        }
+        server.start()
+        checkUrl = "http://127.0.0.1:${server.address.port}/api/project_links/search?projectKey=org-pro:app"
+
+        sonarLinkCache = new SonarLinkCache()
+        sonarLinkCache.maxEntries = 100L
+        sonarLinkCache.refreshMinutes = 10L
+        sonarLinkCache.expireMinutes = 60L
+        sonarLinkCache.refreshThreads = 1
+        sonarLinkCache.init()
+    }
+
+    def cleanup() {
+        sonarLinkCache.destroy()
+        server.stop(0)
+    }
+
+    def "GetLink returns immediately and uses the link after the background check"() {
+        when:
+        def first = sonarLinkCache.getLink(1L, checkUrl, "dashboard")
+        waitForRefresh(1)
+
+        then:
+        first == null
+        sonarLinkCache.getLink(1L, checkUrl, "dashboard") == "dashboard"
+        requests.get() == 1
+        sonarLinkCache.metrics().find { it.name == "devops.cache.sonar.link.refresh.count" }.value == 1L
+    }
+
+    def "Refresh checks cached apps again"() {
+        given:
+        sonarLinkCache.getLink(1L, checkUrl, "dashboard")
+        waitForRefresh(1)
+
+        when:
+        sonarLinkCache.refresh(1L)
+        sonarLinkCache.refresh(2L)
+        waitForRefresh(2)
+
+        then:
+        requests.get() == 2
+    }
+
+    private void waitForRefresh(long count) {
+        for (int i = 0; i < 100; i++) {
+            if (sonarLinkCache.metrics().find { it.name == "devops.cache.sonar.link.refresh.count" }.value >= count
+                    && sonarLinkCache.metrics().find { it.name == "devops.cache.sonar.link.refresh.pending" }.value == 0) {
+                return
+            }
+            sleep(50)
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package io.choerodon.devops.infra.common.util
+
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream
+import org.apache.commons.compress.compressors.gzip.GzipCompressorOutputStream
+import spock.lang.Specification
+
+import java.nio.file.Files
+
+class FileUtilSpec extends Specification {
+
+    def "ReadFilesFromTgz reads the chart's own files"() {
+        given:
+        byte[] tgz = tgz(["app/charts/sub/values.yaml": "sub: true", "app/values.yaml": "replicas: 1",
+                          "app/templates/deployment.yaml": "kind: Deployment", "app/README.md": "# app"])
+
+        when:
+        def files = FileUtil.readFilesFromTgz(new ByteArrayInputStream(tgz), "values.yaml", "README.md")
+
+        then:
+        files == ["values.yaml": "replicas: 1", "README.md": "# app"]
+    }
+
+    def "SaveTgzAndReadFiles keeps the whole package"() {
+        given:
+        byte[] tgz = tgz(["app/values.yaml": "replicas: 1"])
+        File directory = Files.createTempDirectory("charts").toFile()
+
+        when:
+        def files = FileUtil.saveTgzAndReadFiles(new ByteArrayInputStream(tgz), directory.path, "app-0.1.0.tgz", "values.yaml")
+
+        then:
+        files == ["values.yaml": "replicas: 1"]
+        directory.listFiles()*.name == ["app-0.1.0.tgz"]
+        new File(directory, "app-0.1.0.tgz").bytes == tgz
+
+        cleanup:
+        directory.deleteDir()
+    }
+
+    private static byte[] tgz(Map<String, String> files) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream()
+        TarArchiveOutputStream tarOut = new TarArchiveOutputStream(new GzipCompressorOutputStream(out))
+        files.each { name, content ->
+            byte[] bytes = content.getBytes("UTF-8")
+            TarArchiveEntry entry = new TarArchiveEntry(name)
+            entry.setSize(bytes.length)
+            tarOut.putArchiveEntry(entry)
+            tarOut.write(bytes)
+            tarOut.closeArchiveEntry()
+        }
+        tarOut.close()
+        out.toByteArray()
+    }
+}
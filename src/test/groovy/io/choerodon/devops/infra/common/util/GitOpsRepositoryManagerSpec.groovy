@@ -0,0 +1,235 @@
+package io.choerodon.devops.infra.common.util
+
+import io.choerodon.core.exception.CommonException
+import io.choerodon.devops.domain.application.entity.gitlab.DiffE
+import org.eclipse.jgit.api.Git
+import org.eclipse.jgit.api.MergeCommand
+import org.eclipse.jgit.lib.ObjectId
+import org.eclipse.jgit.lib.PersonIdent
+import org.eclipse.jgit.revwalk.RevWalk
+import org.eclipse.jgit.transport.RefSpec
+import org.eclipse.jgit.treewalk.TreeWalk
+import spock.lang.Specification
+
+import java.nio.file.Files
+
+class GitOpsRepositoryManagerSpec extends Specification {
+
+    GitOpsRepositoryManager gitOpsRepositoryManager = new GitOpsRepositoryManager()
+    File root
+    File work
+    File remote
+    String initCommit
+    int commitSeconds
+
+    def setup() {
+        root = Files.createTempDirectory("gitops").toFile()
+        work = new File(root, "work")
+        Git git = Git.init().setDirectory(work).call()
+        initCommit = commit(git, ["svc-a.yaml": "kind: Service\n"])
+        git.close()
+        // 本地裸库代替gitlab上的环境库
+        remote = new File(root, "remote.git")
+        Git.cloneRepository().setURI(work.toURI().toString()).setDirectory(remote).setBare(true).call().close()
+    }
+
+    def cleanup() {
+        gitOpsRepositoryManager.destroy()
+        root.deleteDir()
+    }
+
+    def "CommitFiles pushes all files in one commit"() {
+        when:
+        String sha = gitOpsRepositoryManager.commitFiles(1L, new File(root, "local").path, remote.toURI().toString(), "key",
+                ["release-a.yaml": "kind: C7NHelmRelease\n", "ing-a.yaml": "kind: Ingress\n", "svc-a.yaml": "kind: Service\nspec: {}\n"],
+                new PersonIdent("test", ""), "UPDATE FILES")
+
+        then:
+        Git remoteGit = Git.open(remote)
+        def commits = remoteGit.log().call().toList()
+        commits.size() == 2
+        commits[0].name == sha
+        files(remoteGit, commits[0]) == ["ing-a.yaml", "release-a.yaml", "svc-a.yaml"]
+
+        cleanup:
+        remoteGit?.close()
+    }
+
+    def "CommitFiles skips unchanged content"() {
+        when:
+        String sha = gitOpsRepositoryManager.commitFiles(1L, new File(root, "local").path, remote.toURI().toString(), "key",
+                ["svc-a.yaml": "kind: Service\n"], new PersonIdent("test", ""), "UPDATE FILE")
+
+        then:
+        sha == null
+        Git remoteGit = Git.open(remote)
+        remoteGit.log().call().toList().size() == 1
+
+        cleanup:
+        remoteGit?.close()
+    }
+
+    def "DiffFromSyncTag reports changes since the devops-sync tag like the gitlab compare api"() {
+        given:
+        Git git = Git.open(work)
+        String tagged = commit(git, ["deploy-a.yaml": "kind: Deployment\n",
+                                     "cm-a.yaml"    : "kind: ConfigMap\ndata:\n  a: b\n"])
+        tagSync(git, tagged)
+        String head = commit(git, ["deploy-a.yaml": "kind: Deployment\nspec: {}\n",
+                                   "svc-b.yaml"   : "kind: Service\n",
+                                   "ing-a.yaml"   : "kind: Ingress\nspec:\n  rules: []\n"],
+                ["cm-a.yaml", "svc-a.yaml"])
+        push(git)
+
+        when:
+        sync(head)
+        Map<String, DiffE> diffs = gitOpsRepositoryManager.diffFromSyncTag(1L, head).collectEntries { [it.newPath, it] }
+
+        then:
+        gitOpsRepositoryManager.syncTagExist(1L)
+        diffs.keySet() == ["deploy-a.yaml", "svc-b.yaml", "ing-a.yaml", "cm-a.yaml"] as Set
+        with(diffs["deploy-a.yaml"]) {
+            oldPath == "deploy-a.yaml"
+            !newFile && !deletedFile && !renamedFile
+        }
+        with(diffs["svc-b.yaml"]) {
+            oldPath == "svc-a.yaml"
+            renamedFile && !newFile && !deletedFile
+        }
+        with(diffs["ing-a.yaml"]) {
+            oldPath == "ing-a.yaml"
+            newFile && !deletedFile && !renamedFile
+        }
+        with(diffs["cm-a.yaml"]) {
+            oldPath == "cm-a.yaml"
+            deletedFile && !newFile && !renamedFile
+        }
+
+        cleanup:
+        git?.close()
+    }
+
+    def "DiffFromSyncTag fails when the devops-sync tag does not exist"() {
+        given:
+        sync(initCommit)
+
+        expect:
+        !gitOpsRepositoryManager.syncTagExist(1L)
+
+        when:
+        gitOpsRepositoryManager.diffFromSyncTag(1L, initCommit)
+
+        then:
+        def e = thrown(CommonException)
+        e.message == "error.git.revision.not.exist"
+    }
+
+    def "LatestCommits follows the checked out commit forwards and backwards"() {
+        given:
+        Git git = Git.open(work)
+        String added = commit(git, ["deploy-a.yaml": "kind: Deployment\n"])
+        String changed = commit(git, ["svc-a.yaml": "kind: Service\nspec: {}\n"], ["deploy-a.yaml"])
+        push(git)
+
+        when:
+        sync(added)
+        def first = gitOpsRepositoryManager.latestCommits(1L, ["svc-a.yaml", "deploy-a.yaml", "missing.yaml"])
+
+        then:
+        first == ["svc-a.yaml": initCommit, "deploy-a.yaml": added]
+
+        when: "检出提交前进时增量更新索引，已删除的文件不再返回"
+        sync(changed)
+
+        then:
+        gitOpsRepositoryManager.latestCommits(1L, ["svc-a.yaml", "deploy-a.yaml"]) == ["svc-a.yaml": changed]
+        gitOpsRepositoryManager.latestCommit(1L, "deploy-a.yaml") == ""
+
+        when: "检出较早的提交时重建索引"
+        sync(added)
+
+        then:
+        gitOpsRepositoryManager.latestCommits(1L, ["svc-a.yaml", "deploy-a.yaml"]) == ["svc-a.yaml": initCommit, "deploy-a.yaml": added]
+
+        cleanup:
+        git?.close()
+    }
+
+    def "LatestCommits does not attribute files to a merge commit that took them from a parent"() {
+        given:
+        Git git = Git.open(work)
+        commit(git, ["deploy-a.yaml": "kind: Deployment\n"])
+        git.checkout().setCreateBranch(true).setName("feature").call()
+        String feature = commit(git, ["deploy-a.yaml": "kind: Deployment\nspec: {}\n"])
+        git.checkout().setName("master").call()
+        String master = commit(git, ["svc-a.yaml": "kind: Service\nspec: {}\n"])
+        git.merge()
+                .include(git.repository.resolve("feature"))
+                .setFastForward(MergeCommand.FastForwardMode.NO_FF)
+                .setCommit(false)
+                .call()
+        String merge = commit(git, [:])
+        push(git)
+
+        when:
+        sync(merge)
+
+        then:
+        gitOpsRepositoryManager.latestCommits(1L, ["svc-a.yaml", "deploy-a.yaml"]) == ["svc-a.yaml": master, "deploy-a.yaml": feature]
+
+        cleanup:
+        git?.close()
+    }
+
+    def "LatestCommits is empty for an environment without a local repository"() {
+        expect:
+        gitOpsRepositoryManager.latestCommits(2L, ["svc-a.yaml"]).isEmpty()
+        gitOpsRepositoryManager.latestCommit(2L, "svc-a.yaml") == ""
+    }
+
+    private void sync(String commit) {
+        gitOpsRepositoryManager.sync(1L, new File(root, "local").path, remote.toURI().toString(), "key", commit)
+    }
+
+    /**
+     * 在工作库提交文件修改，提交时间逐次递增，保证按提交时间遍历的顺序确定
+     */
+    private String commit(Git git, Map<String, String> files, List<String> deletes = []) {
+        files.each { path, content -> new File(work, path).text = content }
+        if (files) {
+            git.add().addFilepattern(".").call()
+        }
+        deletes.each { git.rm().addFilepattern(it).call() }
+        PersonIdent ident = new PersonIdent("test", "", new Date(1537833600000L + 1000L * commitSeconds++), TimeZone.getTimeZone("UTC"))
+        git.commit().setMessage("update").setAuthor(ident).setCommitter(ident).call().name
+    }
+
+    private void push(Git git) {
+        git.push()
+                .setRemote(remote.toURI().toString())
+                .setRefSpecs(new RefSpec("+refs/heads/master:refs/heads/master"))
+                .call()
+    }
+
+    private void tagSync(Git git, String commit) {
+        RevWalk revWalk = new RevWalk(git.repository)
+        git.tag().setName(GitUtil.DEV_OPS_SYNC_TAG).setObjectId(revWalk.parseCommit(ObjectId.fromString(commit))).call()
+        revWalk.close()
+        git.push()
+                .setRemote(remote.toURI().toString())
+                .setRefSpecs(new RefSpec("+refs/tags/${GitUtil.DEV_OPS_SYNC_TAG}:refs/tags/${GitUtil.DEV_OPS_SYNC_TAG}".toString()))
+                .call()
+    }
+
+    private static List<String> files(Git git, def commit) {
+        TreeWalk treeWalk = new TreeWalk(git.repository)
+        treeWalk.addTree(commit.tree)
+        treeWalk.setRecursive(true)
+        List<String> files = []
+        while (treeWalk.next()) {
+            files << treeWalk.pathString
+        }
+        treeWalk.close()
+        files
+    }
+}
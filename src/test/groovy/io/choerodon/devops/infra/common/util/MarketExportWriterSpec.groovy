@@ -0,0 +1,75 @@
+package io.choerodon.devops.infra.common.util
+
+import com.sun.net.httpserver.HttpServer
+import io.choerodon.core.exception.CommonException
+import spock.lang.Specification
+
+import java.util.zip.ZipInputStream
+
+class MarketExportWriterSpec extends Specification {
+
+    HttpServer server
+    MarketExportWriter marketExportWriter
+    String baseUrl
+
+    def setup() {
+        // 本地http服务代替chart仓库
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0)
+        server.createContext("/charts") { exchange ->
+            byte[] body = exchange.requestURI.path.bytes
+            exchange.sendResponseHeaders(exchange.requestURI.path.endsWith("missing.tgz") ? 404 : 200, body.length)
+            exchange.responseBody.write(body)
+            exchange.close()
+        }
+        server.start()
+        baseUrl = "http://127.0.0.1:${server.address.port}"
+        marketExportWriter = new MarketExportWriter()
+        marketExportWriter.downloadThreads = 2
+        marketExportWriter.init()
+    }
+
+    def cleanup() {
+        marketExportWriter.destroy()
+        server.stop(0)
+    }
+
+    def "Write streams files and downloaded charts into one zip"() {
+        given:
+        ByteArrayOutputStream out = new ByteArrayOutputStream()
+
+        when:
+        marketExportWriter.write(out, ["charts/app/app.json": "{}".bytes],
+                ["charts/app/app-0.1.0.tgz": baseUrl + "/charts/app-0.1.0.tgz",
+                 "charts/app/app-0.2.0.tgz": baseUrl + "/charts/app-0.2.0.tgz"])
+
+        then:
+        def entries = unzip(out.toByteArray())
+        entries.keySet() == ["charts/app/app.json", "charts/app/app-0.1.0.tgz", "charts/app/app-0.2.0.tgz"] as Set
+        entries["charts/app/app-0.2.0.tgz"] == "/charts/app-0.2.0.tgz"
+        marketExportWriter.metrics().find { it.name == "devops.market.export.charts.written" }.value == 2L
+        spooledCharts() == []
+    }
+
+    def "Write fails when a chart can not be downloaded"() {
+        when:
+        marketExportWriter.write(new ByteArrayOutputStream(), [:], ["charts/app/missing.tgz": baseUrl + "/charts/missing.tgz"])
+
+        then:
+        thrown(CommonException)
+        spooledCharts() == []
+    }
+
+    private static List<String> spooledCharts() {
+        new File(System.getProperty("java.io.tmpdir")).list().findAll { it.startsWith("devops-market-chart") }
+    }
+
+    private static Map<String, String> unzip(byte[] zip) {
+        Map<String, String> entries = [:]
+        ZipInputStream zipIn = new ZipInputStream(new ByteArrayInputStream(zip))
+        def entry
+        while ((entry = zipIn.nextEntry) != null) {
+            entries[entry.name] = new String(zipIn.bytes)
+        }
+        entries
+    }
+}
@@ -0,0 +1,119 @@
+package io.choerodon.devops.infra.common.util
+
+import org.eclipse.jgit.api.Git
+import org.eclipse.jgit.lib.Constants
+import org.eclipse.jgit.lib.ObjectInserter
+import org.eclipse.jgit.revwalk.RevCommit
+import org.eclipse.jgit.treewalk.TreeWalk
+import spock.lang.Specification
+
+import java.nio.file.Files
+
+class TemplateRepositoryMirrorSpec extends Specification {
+
+    TemplateRepositoryMirror templateRepositoryMirror = new TemplateRepositoryMirror()
+    GitUtil gitUtil = Mock(GitUtil)
+    File root
+    File template
+    File target
+
+    def setup() {
+        root = Files.createTempDirectory("template").toFile()
+        gitUtil.getWorkingDirectory(_ as String) >> { String name -> new File(root, name).path }
+        templateRepositoryMirror.gitUtil = gitUtil
+        templateRepositoryMirror.refreshSeconds = 0L
+        // 本地仓库代替模板库和新项目
+        template = new File(root, "template")
+        Git git = Git.init().setDirectory(template).call()
+        new File(template, "model-service/src").mkdirs()
+        new File(template, "pom.xml").text = "<artifactId>{{service.code}}</artifactId>"
+        new File(template, "model-service/src/App.java").text = "package {{group.name}};"
+        new File(template, "README.md").text = "readme"
+        new File(template, "doc.xlsx").text = "{{service.code}}"
+        git.add().addFilepattern(".").call()
+        git.commit().setMessage("init").call()
+        git.close()
+        target = new File(root, "target.git")
+        Git.init().setDirectory(target).setBare(true).call().close()
+    }
+
+    def cleanup() {
+        templateRepositoryMirror.destroy()
+        root.deleteDir()
+    }
+
+    def "Push renders the template without a working copy"() {
+        when:
+        templateRepositoryMirror.push(template.toURI().toString(), "master",
+                ["{{group.name}}": "org-pro", "{{service.code}}": "demo"], target.toURI().toString(),
+                "user", "token", true)
+
+        then:
+        Git targetGit = Git.open(target)
+        RevCommit commit = targetGit.log().call().toList()[0]
+        commit.fullMessage == "Render Variables[skip ci]"
+        commit.parentCount == 1
+        read(targetGit, commit, "pom.xml") == "<artifactId>demo</artifactId>"
+        read(targetGit, commit, "demo/src/App.java") == "package org-pro;"
+        read(targetGit, commit, "doc.xlsx") == "{{service.code}}"
+        read(targetGit, commit, "README.md") == "readme"
+        read(targetGit, commit, "model-service/src/App.java") == null
+
+        cleanup:
+        targetGit?.close()
+    }
+
+    def "Push leaves no rendered objects in the mirror"() {
+        when:
+        templateRepositoryMirror.push(template.toURI().toString(), "master",
+                ["{{group.name}}": "org-pro", "{{service.code}}": "demo"], target.toURI().toString(),
+                "user", "token", true)
+
+        then:
+        File[] mirrors = new File(root, "template-mirror").listFiles()
+        mirrors.length == 1
+        Git mirrorGit = Git.open(mirrors[0])
+        def rendered = new ObjectInserter.Formatter().idFor(Constants.OBJ_BLOB,
+                "<artifactId>demo</artifactId>".getBytes("UTF-8"))
+        !mirrorGit.repository.hasObject(rendered)
+        Git.open(target).withCloseable { it.repository.hasObject(rendered) }
+        !new File(root, "template-render").exists() || new File(root, "template-render").list().length == 0
+
+        cleanup:
+        mirrorGit?.close()
+    }
+
+    def "Push fetches new template commits into the mirror"() {
+        given:
+        templateRepositoryMirror.push(template.toURI().toString(), "master",
+                ["{{service.code}}": "demo"], target.toURI().toString(), "user", "token", true)
+        Git git = Git.open(template)
+        new File(template, "README.md").text = "readme v2"
+        git.commit().setAll(true).setMessage("update").call()
+        git.close()
+        File other = new File(root, "other.git")
+        Git.init().setDirectory(other).setBare(true).call().close()
+
+        when:
+        templateRepositoryMirror.push(template.toURI().toString(), "master",
+                ["{{service.code}}": "other"], other.toURI().toString(), "user", "token", true)
+
+        then:
+        Git otherGit = Git.open(other)
+        RevCommit commit = otherGit.log().call().toList()[0]
+        read(otherGit, commit, "README.md") == "readme v2"
+        read(otherGit, commit, "other/src/App.java") == "package {{group.name}};"
+        templateRepositoryMirror.metrics().find { it.name == "devops.template.mirror.fetch.count" }.value == 2L
+
+        cleanup:
+        otherGit?.close()
+    }
+
+    private static String read(Git git, RevCommit commit, String path) {
+        TreeWalk treeWalk = TreeWalk.forPath(git.repository, path, commit.tree)
+        if (treeWalk == null) {
+            return null
+        }
+        new String(git.repository.open(treeWalk.getObjectId(0), Constants.OBJ_BLOB).bytes, "UTF-8")
+    }
+}
@@ -0,0 +1,78 @@
+package io.choerodon.devops.infra.common.util
+
+import spock.lang.Requires
+import spock.lang.Specification
+
+import java.nio.file.Files
+
+/**
+ * values比较的耗时基准，输入与ValuesYamlUtilSpec中golden用例相同，默认不执行
+ * mvn test -Dtest=ValuesYamlUtilBenchmarkSpec -Dbenchmark.values=true
+ * 通过benchmark.values.exec指定原values_yaml程序的路径时，同时按原方式写临时文件并调用程序作为对比，
+ * 通过benchmark.rounds调整每个用例的执行次数，结果写入target/values-yaml-benchmark.txt
+ */
+@Requires({ Boolean.getBoolean("benchmark.values") })
+class ValuesYamlUtilBenchmarkSpec extends Specification {
+
+    static final String SPLIT = "------love----you------choerodon----"
+
+    int rounds = Integer.getInteger("benchmark.rounds", 200)
+    String exec = System.getProperty("benchmark.values.exec")
+
+    def "In-process comparison against the forked values_yaml"() {
+        given:
+        List<List<String>> cases = ValuesYamlUtilSpec.goldenCases()
+        File directory = Files.createTempDirectory("values-yaml").toFile()
+
+        when:
+        StringBuilder report = new StringBuilder()
+        report.append(String.format("rounds=%d exec=%s%n", rounds, exec))
+        report.append(String.format("%-48s %14s %12s %12s %12s%n", "case", "in-process p50", "p95", "fork p50", "p95"))
+        cases.each { name, versionValue, deployValue ->
+            // 预热
+            ValuesYamlUtil.replace(versionValue, deployValue)
+            List<Long> inProcess = measure { ValuesYamlUtil.replace(versionValue, deployValue) }
+            List<Long> forked = exec == null ? null : measure { fork(directory, versionValue, deployValue) }
+            report.append(String.format("%-48s %12dus %10dus %12s %12s%n", name,
+                    percentile(inProcess, 50), percentile(inProcess, 95),
+                    forked == null ? "-" : percentile(forked, 50) + "us",
+                    forked == null ? "-" : percentile(forked, 95) + "us"))
+        }
+        new File("target").mkdirs()
+        new File("target/values-yaml-benchmark.txt").text = report.toString()
+
+        then:
+        cases.every { name, versionValue, deployValue -> ValuesYamlUtil.replace(versionValue, deployValue).getYaml() != null }
+
+        cleanup:
+        directory.deleteDir()
+    }
+
+    /**
+     * 原getReplaceResult的做法：两份values写入同一个文件，调用程序后读取全部输出
+     */
+    private String fork(File directory, String versionValue, String deployValue) {
+        File file = new File(directory, UUID.randomUUID().toString() + ".yaml")
+        file.text = versionValue + "\n---\n" + deployValue
+        Process process = [exec, file.path].execute()
+        String output = process.inputStream.getText("UTF-8")
+        process.waitFor()
+        file.delete()
+        assert output.contains(SPLIT)
+        output
+    }
+
+    private List<Long> measure(Closure call) {
+        List<Long> times = []
+        rounds.times {
+            long start = System.nanoTime()
+            call()
+            times << (System.nanoTime() - start).intdiv(1000L)
+        }
+        times.sort()
+    }
+
+    private static long percentile(List<Long> sorted, int percentile) {
+        sorted[Math.min(sorted.size() - 1, (int) (sorted.size() * percentile / 100))]
+    }
+}
@@ -0,0 +1,331 @@
+package io.choerodon.devops.infra.common.util
+
+import org.yaml.snakeyaml.DumperOptions
+import org.yaml.snakeyaml.Yaml
+import org.yaml.snakeyaml.composer.Composer
+import org.yaml.snakeyaml.nodes.MappingNode
+import org.yaml.snakeyaml.nodes.Node
+import org.yaml.snakeyaml.nodes.NodeTuple
+import org.yaml.snakeyaml.nodes.ScalarNode
+import org.yaml.snakeyaml.parser.ParserImpl
+import org.yaml.snakeyaml.reader.StreamReader
+import org.yaml.snakeyaml.resolver.Resolver
+import spock.lang.Specification
+import spock.lang.Unroll
+
+/**
+ * 覆盖原values_yaml程序的输出约定：合并后的values、差异values、新增行与修改高亮
+ * parity用例的合并结果、差异values和新增/修改的key由values_yaml.py的traversal对同样的输入计算得到
+ * golden用例对仓库中已有的values文件，与移植的traversal和原结果解析的节点定位逐项对比
+ */
+class ValuesYamlUtilSpec extends Specification {
+
+    def "replace scalar and append new key"() {
+        given:
+        String versionValue = "# chart values\na: 1\nb:\n  c: 2\n"
+        String deployValue = "a: 1\nb:\n  c: 3\n  d: 4\n"
+
+        when:
+        def result = ValuesYamlUtil.replace(versionValue, deployValue)
+
+        then:
+        result.getYaml() == "# chart values\na: 1\nb:\n  c: 3\n  d: 4\n"
+        result.getDeltaYaml() == "b:\n  c: 3\n  d: 4\n"
+        result.getNewLines() == [4]
+        result.getHighlightMarkers().size() == 1
+        result.getHighlightMarkers().get(0).getLine() == 3
+        result.getHighlightMarkers().get(0).getStartColumn() == 5
+        result.getHighlightMarkers().get(0).getEndColumn() == 6
+    }
+
+    def "keep comments and add whole sequence"() {
+        given:
+        String versionValue = "ingress:\n  hosts:\n    - chart.local\n  # hosts comment\nservice:\n  port: 80\n"
+        String deployValue = "ingress:\n  hosts:\n    - a.example.com\n    - b.example.com\nservice:\n  port: 80\n"
+
+        when:
+        def result = ValuesYamlUtil.replace(versionValue, deployValue)
+
+        then:
+        result.getYaml() == "ingress:\n  hosts:\n    - a.example.com\n    - b.example.com\n  # hosts comment\nservice:\n  port: 80\n"
+        result.getDeltaYaml() == "ingress:\n  hosts:\n  - a.example.com\n  - b.example.com\n"
+        result.getNewLines() == [1, 2, 3]
+        result.getHighlightMarkers().isEmpty()
+    }
+
+    def "insert nested keys before outer keys"() {
+        given:
+        String versionValue = "env:\n  open:\n    A: 1\n"
+        String deployValue = "env:\n  open:\n    A: 1\n    B: 2\n  secret:\n    C: 3\n"
+
+        when:
+        def result = ValuesYamlUtil.replace(versionValue, deployValue)
+
+        then:
+        result.getYaml() == "env:\n  open:\n    A: 1\n    B: 2\n  secret:\n    C: 3\n"
+        result.getNewLines() == [3, 4, 5]
+        result.getHighlightMarkers().isEmpty()
+    }
+
+    def "empty chart values take the deploy values"() {
+        when:
+        def result = ValuesYamlUtil.replace("", "x: 1\n")
+
+        then:
+        result.getYaml() == "x: 1\n"
+        result.getDeltaYaml() == "x: 1\n"
+        result.getNewLines() == [0]
+    }
+
+    def "same values have no delta"() {
+        when:
+        def result = ValuesYamlUtil.replace("a: 1\nb:\n  c: 2\n", "a: 1\nb:\n  c: 2\n")
+
+        then:
+        result.getDeltaYaml() == ""
+        result.getNewLines().isEmpty()
+        result.getHighlightMarkers().isEmpty()
+    }
+
+    def "parity: sequences are always added"() {
+        when:
+        def result = ValuesYamlUtil.replace("hosts:\n  - a\nports:\n  - 80\n", "hosts:\n  - a\nports:\n  - 80\n  - 443\n")
+
+        then:
+        load(result.getYaml()) == [hosts: ["a"], ports: [80, 443]]
+        load(result.getDeltaYaml()) == [hosts: ["a"], ports: [80, 443]]
+        result.getNewLines() == [0, 1, 2, 3, 4]
+        result.getHighlightMarkers().isEmpty()
+    }
+
+    def "parity: empty chart mappings are added"() {
+        when:
+        def result = ValuesYamlUtil.replace("env: {}\nresources: {}\n", "env:\n  A: 1\nresources: {}\n")
+
+        then:
+        load(result.getYaml()) == [env: [A: 1], resources: [:]]
+        load(result.getDeltaYaml()) == [env: [A: 1], resources: [:]]
+        result.getNewLines() == [0, 1, 2]
+        result.getHighlightMarkers().isEmpty()
+    }
+
+    def "parity: scalars compare by value"() {
+        when:
+        def result = ValuesYamlUtil.replace("replicas: 1\nratio: 1.0\nenabled: true\nport: '80'\n",
+                "replicas: 1\nratio: 1\nenabled: 1\nport: 80\n")
+
+        then:
+        load(result.getYaml()) == [replicas: 1, ratio: 1.0, enabled: true, port: 80]
+        load(result.getDeltaYaml()) == [port: 80]
+        result.getNewLines().isEmpty()
+        result.getHighlightMarkers().size() == 1
+        result.getHighlightMarkers().get(0).getLine() == 3
+    }
+
+    def "deviation: floats and nulls are kept"() {
+        // values_yaml.py丢弃浮点数和null：合并结果为[cpu: 0.5]，差异为空
+        when:
+        def result = ValuesYamlUtil.replace("cpu: 0.5\nhost: a\n", "cpu: 1.5\nhost:\nmem: 0.25\n")
+
+        then:
+        load(result.getYaml()) == [cpu: 1.5, host: null, mem: 0.25]
+        load(result.getDeltaYaml()) == [cpu: 1.5, host: null, mem: 0.25]
+        result.getNewLines() == [2]
+        result.getHighlightMarkers()*.getLine() == [0, 1]
+    }
+
+    def "deviation: collections replace other types"() {
+        // values_yaml.py忽略类型不一致的key：合并结果为[ingress: "disabled", hosts: "a"]，差异为空
+        when:
+        def result = ValuesYamlUtil.replace("ingress: disabled\nhosts: a\n", "ingress:\n  host: x\nhosts:\n  - b\n")
+
+        then:
+        load(result.getYaml()) == [ingress: [host: "x"], hosts: ["b"]]
+        load(result.getDeltaYaml()) == [ingress: [host: "x"], hosts: ["b"]]
+        result.getNewLines() == [2, 3]
+        result.getHighlightMarkers()*.getLine() == [1]
+    }
+
+    @Unroll
+    def "golden: #name matches the values_yaml.py traversal"() {
+        given:
+        Map merged = load(versionValue) as Map
+        Map delta = [:]
+        List<List<String>> updates = []
+        List<List<String>> adds = []
+        traversal(merged, load(deployValue) as Map, [], delta, updates, adds)
+
+        when:
+        def result = ValuesYamlUtil.replace(versionValue, deployValue)
+
+        then: "合并结果、差异values与原程序一致"
+        load(result.getYaml()) == merged
+        (load(result.getDeltaYaml()) ?: [:]) == delta
+
+        and: "修改高亮与原结果解析定位的节点一致"
+        result.getHighlightMarkers().collect { [it.getLine(), it.getStartColumn()] } ==
+                updates.collect { legacyNode(result.getYaml(), it) }.collect { [it.startMark.line, it.startMark.column] }
+
+        and: "新增行从key所在行开始，到值的最后一行结束，不再包含原结果中block集合结束位置所在的下一行"
+        adds.every { path ->
+            Node node = legacyNode(result.getYaml(), path)
+            int line = keyLine(result.getYaml(), path)
+            result.getNewLines().contains(line) && result.getNewLines().contains(node.startMark.line)
+        }
+        Set<Integer> legacyRanges = adds.collectMany { path ->
+            (keyLine(result.getYaml(), path)..legacyNode(result.getYaml(), path).endMark.line).toList()
+        } as Set
+        legacyRanges.containsAll(result.getNewLines())
+
+        where:
+        [name, versionValue, deployValue] << goldenCases()
+    }
+
+    /**
+     * 仓库中的chart values与修改后的自身对比，模板values与gitops测试文件中各实例的部署values对比
+     */
+    static List<List<String>> goldenCases() {
+        List<List<String>> cases = []
+        ["chart/devops-service/values.yaml", "src/main/resources/template/values.yaml"].each { path ->
+            String values = new File(path).getText("UTF-8")
+            cases << [path, values, edit(values)]
+        }
+        String template = new File("src/main/resources/template/values.yaml").getText("UTF-8")
+        new File("src/test/gitops").eachFileRecurse { file ->
+            if (file.name.endsWith(".yaml")) {
+                new Yaml().loadAll(file.getText("UTF-8")).each { doc ->
+                    if (doc instanceof Map && doc.kind == "C7NHelmRelease" && doc.spec?.values) {
+                        cases << [file.path, template, doc.spec.values as String]
+                    }
+                }
+            }
+        }
+        cases.sort { it[0] }
+    }
+
+    // 修改第一个字符串、空值、整数和列表，并新增一个顶层key和一个嵌套key
+    private static String edit(String values) {
+        Map deploy = load(values) as Map
+        boolean[] done = new boolean[4]
+        editMap(deploy, done)
+        deploy.goldenAdded = [a: 1, b: ["x"]]
+        Map first = deploy.values().find { it instanceof Map && !it.isEmpty() } as Map
+        first.goldenNested = true
+        DumperOptions options = new DumperOptions()
+        options.setDefaultFlowStyle(DumperOptions.FlowStyle.BLOCK)
+        new Yaml(options).dump(deploy)
+    }
+
+    private static void editMap(Map map, boolean[] done) {
+        map.keySet().toList().each { key ->
+            def value = map[key]
+            if (value instanceof Map) {
+                editMap(value, done)
+            } else if (value instanceof String && !done[0]) {
+                map[key] = value + "-deploy"
+                done[0] = true
+            } else if (value == null && !done[1]) {
+                map[key] = "filled"
+                done[1] = true
+            } else if (value instanceof Integer && !done[2]) {
+                map[key] = value + 1
+                done[2] = true
+            } else if (value instanceof List && !done[3]) {
+                map[key] = value + ["golden"]
+                done[3] = true
+            }
+        }
+    }
+
+    // values_yaml.py中traversal的移植，chart values就地合并为结果，标量只处理字符串、整数和布尔值
+    private static void traversal(Map version, Map deploy, List keys, Map delta, List updates, List adds) {
+        deploy.each { key, value ->
+            List path = keys + [key]
+            if (value instanceof Map) {
+                if (!version.containsKey(key)) {
+                    adds << path
+                    version[key] = value
+                    setItem(path, delta, value)
+                } else if (version[key] instanceof Map) {
+                    if (version[key].isEmpty()) {
+                        version[key] = value
+                        adds << path
+                        setItem(path, delta, value)
+                    } else {
+                        traversal(version[key] as Map, value, path, delta, updates, adds)
+                    }
+                }
+            } else if (value instanceof String || value instanceof Integer || value instanceof Long
+                    || value instanceof BigInteger || value instanceof Boolean) {
+                if (!version.containsKey(key)) {
+                    adds << path
+                    version[key] = value
+                    setItem(path, delta, value)
+                } else if (!pythonEquals(version[key], value)) {
+                    updates << path
+                    version[key] = value
+                    setItem(path, delta, value)
+                }
+            } else if (value instanceof List) {
+                if (!version.containsKey(key) || version[key] instanceof List) {
+                    adds << path
+                    version[key] = value
+                    setItem(path, delta, value)
+                }
+            }
+        }
+    }
+
+    private static boolean pythonEquals(Object version, Object deploy) {
+        def number = { it instanceof Boolean ? (it ? BigDecimal.ONE : BigDecimal.ZERO) : it instanceof Number ? new BigDecimal(it.toString()) : null }
+        BigDecimal versionNumber = number(version)
+        BigDecimal deployNumber = number(deploy)
+        versionNumber != null && deployNumber != null ? versionNumber.compareTo(deployNumber) == 0 : version == deploy
+    }
+
+    private static void setItem(List path, Map delta, Object value) {
+        Map map = delta
+        path[0..<path.size() - 1].each { key ->
+            if (!map.containsKey(key)) {
+                map[key] = [:]
+            }
+            map = map[key] as Map
+        }
+        map[path[-1]] = value
+    }
+
+    // 原结果解析按key路径查找值节点的方式
+    private static Node legacyNode(String yaml, List<String> keys) {
+        MappingNode mappingNode = compose(yaml)
+        Node value = null
+        keys.eachWithIndex { key, i ->
+            NodeTuple nodeTuple = mappingNode.value.find { it.keyNode instanceof ScalarNode && it.keyNode.value == key.toString() }
+            if (nodeTuple != null) {
+                if (i == keys.size() - 1) {
+                    value = nodeTuple.valueNode
+                } else {
+                    mappingNode = (MappingNode) nodeTuple.valueNode
+                }
+            }
+        }
+        value
+    }
+
+    private static int keyLine(String yaml, List<String> keys) {
+        MappingNode mappingNode = compose(yaml)
+        NodeTuple nodeTuple = null
+        keys.each { key ->
+            nodeTuple = mappingNode.value.find { ((ScalarNode) it.keyNode).value == key.toString() }
+            mappingNode = nodeTuple.valueNode instanceof MappingNode ? (MappingNode) nodeTuple.valueNode : null
+        }
+        nodeTuple.keyNode.startMark.line
+    }
+
+    private static MappingNode compose(String yaml) {
+        (MappingNode) new Composer(new ParserImpl(new StreamReader(yaml)), new Resolver()).getSingleNode()
+    }
+
+    private static Object load(String yaml) {
+        return new Yaml().load(yaml)
+    }
+}
@@ -0,0 +1,258 @@
+package io.choerodon.devops.infra.mapper
+
+import groovy.sql.Sql
+import spock.lang.Requires
+import spock.lang.Shared
+import spock.lang.Specification
+
+/**
+ * gitops相关表索引的数据量基准，默认不执行
+ * mvn test -Dtest=GitOpsIndexBenchmarkSpec -Dbenchmark.index=true
+ * 索引定义直接读取liquibase脚本中2018-09-25-add-index的变更，建在同结构的bench_*表上
+ * 默认使用内存h2，只用于检查索引能否建立和查询能否执行，h2的耗时不代表mysql上的表现，
+ * 需要性能数据时通过benchmark.jdbc.url/user/password指定一个空的mysql库，
+ * 通过benchmark.envs/instances/resources/files/probes调整数据量，
+ * 结果写入target/gitops-index-benchmark.txt
+ */
+@Requires({ Boolean.getBoolean("benchmark.index") })
+class GitOpsIndexBenchmarkSpec extends Specification {
+
+    static final List<String> TABLES = ["bench_app_instance", "bench_env_resource", "bench_env_command",
+                                        "bench_command_event", "bench_env_file", "bench_env_file_resource",
+                                        "bench_env_commit", "bench_gitlab_pipeline"]
+    static final String CHANGE_SET = "2018-09-25-add-index"
+    static final String CHANGE_LOG_DIR = "src/main/resources/script/db"
+
+    // 与mapper及通用mapper生成的查询一致
+    static final Map<String, String> QUERIES = [
+            "resource by instance, kind and name": "SELECT * FROM bench_env_resource dir WHERE dir.app_instance_id = ? AND dir.kind = ? AND dir.name = ?",
+            "latest job by kind and name"        : "SELECT * FROM bench_env_resource dir WHERE dir.kind = ? AND dir.name = ? ORDER BY dir.id DESC LIMIT 1",
+            "resources by env and kind"          : "SELECT der.* FROM bench_app_instance dai JOIN bench_env_resource der ON der.app_instance_id = dai.id AND der.kind = ? WHERE dai.env_id = ?",
+            "latest command by object"           : "SELECT d.* FROM bench_env_command d WHERE d.object = ? AND d.object_id = ? ORDER BY d.id DESC LIMIT 1",
+            "events by command and type"         : "SELECT * FROM bench_command_event WHERE command_id = ? AND type = ?",
+            "file by env and path"               : "SELECT * FROM bench_env_file WHERE env_id = ? AND file_path = ?",
+            "file resources by env and path"     : "SELECT * FROM bench_env_file_resource WHERE env_id = ? AND file_path = ?",
+            "file resource by env and resource"  : "SELECT * FROM bench_env_file_resource WHERE env_id = ? AND resource_id = ? AND resource_type = ?",
+            "commit by env and sha"              : "SELECT * FROM bench_env_commit WHERE env_id = ? AND commit_sha = ?",
+            "pipeline by commit"                 : "SELECT * FROM bench_gitlab_pipeline WHERE commit_id = ?"]
+
+    @Shared
+    Sql sql
+    @Shared
+    int envs = Integer.getInteger("benchmark.envs", 20)
+    @Shared
+    int instances = Integer.getInteger("benchmark.instances", 100)
+    @Shared
+    int resources = Integer.getInteger("benchmark.resources", 25)
+    @Shared
+    int files = Integer.getInteger("benchmark.files", 500)
+    @Shared
+    int probes = Integer.getInteger("benchmark.probes", 200)
+
+    def setupSpec() {
+        sql = Sql.newInstance(
+                System.getProperty("benchmark.jdbc.url", "jdbc:h2:mem:benchmark;DB_CLOSE_DELAY=-1;MODE=MySQL"),
+                System.getProperty("benchmark.jdbc.user", "sa"),
+                System.getProperty("benchmark.jdbc.password", ""))
+        dropTables()
+        sql.execute("CREATE TABLE bench_app_instance (id BIGINT AUTO_INCREMENT PRIMARY KEY, env_id BIGINT, code VARCHAR(64))")
+        sql.execute("CREATE TABLE bench_env_resource (id BIGINT AUTO_INCREMENT PRIMARY KEY, app_instance_id BIGINT, message_id BIGINT, kind VARCHAR(32), name VARCHAR(64), weight BIGINT, reversion BIGINT)")
+        sql.execute("CREATE TABLE bench_env_command (id BIGINT AUTO_INCREMENT PRIMARY KEY, object VARCHAR(32), object_id BIGINT, command_type VARCHAR(32), status VARCHAR(32), sha VARCHAR(128))")
+        sql.execute("CREATE TABLE bench_command_event (id BIGINT AUTO_INCREMENT PRIMARY KEY, command_id BIGINT, type VARCHAR(64), name VARCHAR(64), message VARCHAR(2000))")
+        sql.execute("CREATE TABLE bench_env_file (id BIGINT AUTO_INCREMENT PRIMARY KEY, env_id BIGINT, file_path VARCHAR(512), devops_commit VARCHAR(100), agent_commit VARCHAR(512))")
+        sql.execute("CREATE TABLE bench_env_file_resource (id BIGINT AUTO_INCREMENT PRIMARY KEY, env_id BIGINT, file_path VARCHAR(512), resource_type VARCHAR(32), resource_id BIGINT)")
+        sql.execute("CREATE TABLE bench_env_commit (id BIGINT AUTO_INCREMENT PRIMARY KEY, env_id BIGINT, commit_user BIGINT, commit_sha VARCHAR(100), commit_date DATETIME)")
+        sql.execute("CREATE TABLE bench_gitlab_pipeline (id BIGINT AUTO_INCREMENT PRIMARY KEY, pipeline_id BIGINT, app_id BIGINT, commit_id BIGINT, status VARCHAR(32), pipeline_creation_date DATETIME)")
+        seed()
+    }
+
+    def cleanupSpec() {
+        dropTables()
+        sql?.close()
+    }
+
+    def "Lookup paths are served by the new indexes"() {
+        given:
+        List<String> indexes = changeLogIndexes()
+        boolean h2 = sql.connection.metaData.databaseProductName == "H2"
+
+        when:
+        Map<String, List<Long>> before = measure()
+        indexes.each { index ->
+            // h2不支持前缀索引，按整列建立
+            sql.execute(h2 ? index.replaceAll(/(\w+)\(\d+\)/, '$1') : index)
+        }
+        Map<String, List<Long>> after = measure()
+        String report = report(before, after)
+        new File("target").mkdirs()
+        new File("target/gitops-index-benchmark.txt").text = report
+
+        then:
+        indexes.size() == 11
+        after.keySet() == QUERIES.keySet()
+    }
+
+    /**
+     * 执行liquibase脚本，收集指定变更中的建索引语句，表名换为bench_*
+     */
+    private static List<String> changeLogIndexes() {
+        List<String> indexes = []
+        new File(CHANGE_LOG_DIR).eachFileMatch(~/.*\.groovy/) { file ->
+            Binding binding = new Binding()
+            binding.setVariable("databaseChangeLog", { Map attributes, Closure changeLog ->
+                changeLog.delegate = new ChangeLogCollector(indexes)
+                changeLog.resolveStrategy = Closure.DELEGATE_FIRST
+                changeLog()
+            })
+            new GroovyShell(binding).evaluate(file)
+        }
+        indexes.collect { it.replaceAll(/ ON devops_/, " ON bench_") }
+    }
+
+    static class ChangeLogCollector {
+        final List<String> indexes
+        List<String> columns
+
+        ChangeLogCollector(List<String> indexes) {
+            this.indexes = indexes
+        }
+
+        void changeSet(Map attributes, Closure changeSet) {
+            if (attributes.id == CHANGE_SET) {
+                changeSet.delegate = this
+                changeSet.resolveStrategy = Closure.DELEGATE_FIRST
+                changeSet()
+            }
+        }
+
+        void createIndex(Map attributes, Closure index) {
+            columns = []
+            index.delegate = this
+            index.resolveStrategy = Closure.DELEGATE_FIRST
+            index()
+            indexes << "CREATE INDEX " + attributes.indexName + " ON " + attributes.tableName + " (" + columns.join(", ") + ")"
+        }
+
+        void column(Map attributes) {
+            columns << attributes.name
+        }
+
+        void sql(String statement) {
+            indexes << statement
+        }
+
+        def methodMissing(String name, args) {
+            null
+        }
+    }
+
+    private void seed() {
+        Random random = new Random(42)
+        sql.withBatch(1000, "INSERT INTO bench_app_instance (env_id, code) VALUES (?, ?)") { ps ->
+            (1..envs).each { env -> (1..instances).each { ps.addBatch([env, "app-" + env + "-" + it]) } }
+        }
+        sql.withBatch(1000, "INSERT INTO bench_env_resource (app_instance_id, kind, name, weight, reversion) VALUES (?, ?, ?, ?, ?)") { ps ->
+            (1..envs * instances).each { instance ->
+                (1..resources).each { ps.addBatch([instance, kind(it), "res-" + instance + "-" + it, it, random.nextInt(1000)]) }
+            }
+        }
+        sql.withBatch(1000, "INSERT INTO bench_env_command (object, object_id, command_type, status, sha) VALUES (?, ?, ?, ?, ?)") { ps ->
+            (1..envs * instances).each { instance ->
+                (1..5).each { ps.addBatch(["instance", instance, "create", "success", sha(random)]) }
+            }
+        }
+        sql.withBatch(1000, "INSERT INTO bench_command_event (command_id, type, name, message) VALUES (?, ?, ?, ?)") { ps ->
+            (1..envs * instances * 5).each { command ->
+                (1..4).each { ps.addBatch([command, it % 2 == 0 ? "Job" : "Pod", "event-" + it, "message"]) }
+            }
+        }
+        sql.withBatch(1000, "INSERT INTO bench_env_file (env_id, file_path, devops_commit, agent_commit) VALUES (?, ?, ?, ?)") { ps ->
+            (1..envs).each { env -> (1..files).each { ps.addBatch([env, path(it), sha(random), sha(random)]) } }
+        }
+        sql.withBatch(1000, "INSERT INTO bench_env_file_resource (env_id, file_path, resource_type, resource_id) VALUES (?, ?, ?, ?)") { ps ->
+            (1..envs).each { env -> (1..files).each { ps.addBatch([env, path(it), "C7NHelmRelease", env * files + it]) } }
+        }
+        sql.withBatch(1000, "INSERT INTO bench_env_commit (env_id, commit_user, commit_sha, commit_date) VALUES (?, ?, ?, CURRENT_TIMESTAMP)") { ps ->
+            (1..envs).each { env -> (1..files).each { ps.addBatch([env, 1, commitSha(env, it)]) } }
+        }
+        sql.withBatch(1000, "INSERT INTO bench_gitlab_pipeline (pipeline_id, app_id, commit_id, status, pipeline_creation_date) VALUES (?, ?, ?, ?, CURRENT_TIMESTAMP)") { ps ->
+            (1..envs * files).each { ps.addBatch([it, it % instances, it, "success"]) }
+        }
+    }
+
+    /**
+     * 每个查询用固定种子生成的随机参数执行probes次，返回各次耗时（微秒）
+     */
+    private Map<String, List<Long>> measure() {
+        Random random = new Random(7)
+        Map<String, List<Long>> latencies = new LinkedHashMap<>()
+        QUERIES.each { name, query ->
+            List<Long> times = []
+            probes.times {
+                List<Object> params = params(name, random)
+                long start = System.nanoTime()
+                sql.rows(query, params)
+                times << (System.nanoTime() - start).intdiv(1000L)
+            }
+            latencies.put(name, times.sort())
+        }
+        latencies
+    }
+
+    private List<Object> params(String name, Random random) {
+        long env = random.nextInt(envs) + 1
+        long instance = random.nextInt(envs * instances) + 1
+        int resource = random.nextInt(resources) + 1
+        int file = random.nextInt(files) + 1
+        switch (name) {
+            case "resource by instance, kind and name": return [instance, kind(resource), "res-" + instance + "-" + resource]
+            case "latest job by kind and name": return [kind(resource), "res-" + instance + "-" + resource]
+            case "resources by env and kind": return [kind(resource), env]
+            case "latest command by object": return ["instance", instance]
+            case "events by command and type": return [random.nextInt(envs * instances * 5) + 1, "Job"]
+            case "file by env and path": return [env, path(file)]
+            case "file resources by env and path": return [env, path(file)]
+            case "file resource by env and resource": return [env, env * files + file, "C7NHelmRelease"]
+            case "commit by env and sha": return [env, commitSha(env, file)]
+            default: return [random.nextInt(envs * files) + 1]
+        }
+    }
+
+    private String report(Map<String, List<Long>> before, Map<String, List<Long>> after) {
+        StringBuilder report = new StringBuilder()
+        report.append(String.format("database=%s%n", sql.connection.metaData.databaseProductName))
+        report.append(String.format("envs=%d instances/env=%d resources/instance=%d files/env=%d probes=%d%n",
+                envs, instances, resources, files, probes))
+        report.append(String.format("%-38s %12s %12s %12s %12s%n", "query", "before p50", "before p95", "after p50", "after p95"))
+        QUERIES.keySet().each { name ->
+            report.append(String.format("%-38s %10dus %10dus %10dus %10dus%n", name,
+                    percentile(before[name], 50), percentile(before[name], 95),
+                    percentile(after[name], 50), percentile(after[name], 95)))
+        }
+        report.toString()
+    }
+
+    private void dropTables() {
+        TABLES.each { sql.execute("DROP TABLE IF EXISTS " + it) }
+    }
+
+    private static long percentile(List<Long> sorted, int percentile) {
+        sorted[Math.min(sorted.size() - 1, (int) (sorted.size() * percentile / 100))]
+    }
+
+    private static String kind(int resource) {
+        ["Pod", "Service", "Deployment", "ReplicaSet", "Job"][resource % 5]
+    }
+
+    private static String path(int file) {
+        "release-" + file + ".yaml"
+    }
+
+    private static String commitSha(long env, int file) {
+        String.format("%040x", env * 1000000 + file)
+    }
+
+    private static String sha(Random random) {
+        String.format("%040x", new BigInteger(160, random))
+    }
+}
@@ -0,0 +1,190 @@
+package io.choerodon.devops.infra.persistence.impl
+
+import groovy.sql.Sql
+import spock.lang.Requires
+import spock.lang.Shared
+import spock.lang.Specification
+
+/**
+ * 域名列表搜索的数据量基准，对比原有的LIKE扫描与三字符片段索引，默认不执行
+ * mvn test -Dtest=DevopsSearchIndexBenchmarkSpec -Dbenchmark.search=true
+ * 默认使用内存h2，可以通过benchmark.jdbc.url/user/password指定一个空的mysql库，
+ * 通过benchmark.ingresses/envs/probes调整数据量，结果写入target/search-index-benchmark.txt
+ */
+@Requires({ Boolean.getBoolean("benchmark.search") })
+class DevopsSearchIndexBenchmarkSpec extends Specification {
+
+    static final List<String> TABLES = ["bench_ingress", "bench_ingress_path", "bench_env", "bench_service",
+                                        "bench_search_index"]
+    static final long PROJECT_ID = 1L
+
+    // 与DevopsIngressMapper.selectIngress的全局搜索条件一致
+    static final String FROM = """
+        FROM bench_ingress di
+        JOIN bench_ingress_path dip ON dip.ingress_id = di.id
+        JOIN bench_env de ON de.id = di.env_id
+        LEFT JOIN bench_service ds ON ds.id = dip.service_id
+        WHERE di.project_id = ? """
+    static final String LIKE = """
+        AND (di.domain LIKE CONCAT(CONCAT('%', ?), '%')
+        OR di.name LIKE CONCAT(CONCAT('%', ?), '%')
+        OR de.name LIKE CONCAT(CONCAT('%', ?), '%')
+        OR de.code LIKE CONCAT(CONCAT('%', ?), '%')
+        OR dip.path LIKE CONCAT(CONCAT('%', ?), '%')
+        OR ds.name LIKE CONCAT(CONCAT('%', ?), '%'))"""
+
+    @Shared
+    Sql sql
+    @Shared
+    int ingresses = Integer.getInteger("benchmark.ingresses", 12000)
+    @Shared
+    int envs = Integer.getInteger("benchmark.envs", 40)
+    @Shared
+    int probes = Integer.getInteger("benchmark.probes", 100)
+
+    def setupSpec() {
+        sql = Sql.newInstance(
+                System.getProperty("benchmark.jdbc.url", "jdbc:h2:mem:search;DB_CLOSE_DELAY=-1;MODE=MySQL"),
+                System.getProperty("benchmark.jdbc.user", "sa"),
+                System.getProperty("benchmark.jdbc.password", ""))
+        dropTables()
+        sql.execute("CREATE TABLE bench_env (id BIGINT AUTO_INCREMENT PRIMARY KEY, project_id BIGINT, name VARCHAR(32), code VARCHAR(32))")
+        sql.execute("CREATE TABLE bench_service (id BIGINT AUTO_INCREMENT PRIMARY KEY, env_id BIGINT, name VARCHAR(253))")
+        sql.execute("CREATE TABLE bench_ingress (id BIGINT AUTO_INCREMENT PRIMARY KEY, project_id BIGINT, env_id BIGINT, name VARCHAR(64), domain VARCHAR(128))")
+        sql.execute("CREATE TABLE bench_ingress_path (id BIGINT AUTO_INCREMENT PRIMARY KEY, ingress_id BIGINT, path VARCHAR(64), service_id BIGINT)")
+        sql.execute("CREATE TABLE bench_search_index (id BIGINT AUTO_INCREMENT PRIMARY KEY, project_id BIGINT, resource_type VARCHAR(32), resource_id BIGINT, gram VARCHAR(3))")
+        // 与liquibase脚本devops_search_index.groovy中的索引一致
+        sql.execute("CREATE INDEX bench_search_index_idx_project_type_gram ON bench_search_index (project_id, resource_type, gram, resource_id)")
+        sql.execute("CREATE INDEX bench_search_index_idx_type_resource_id ON bench_search_index (resource_type, resource_id)")
+        seed()
+    }
+
+    def cleanupSpec() {
+        dropTables()
+        sql?.close()
+    }
+
+    def "Index search returns the same ingresses as the LIKE scan"() {
+        when:
+        Map<String, List<Long>> like = measure(false)
+        Map<String, List<Long>> indexed = measure(true)
+        String report = report(like, indexed)
+        new File("target").mkdirs()
+        new File("target/search-index-benchmark.txt").text = report
+        println report
+
+        then:
+        terms().every { term -> page(term, false) == page(term, true) }
+    }
+
+    private void seed() {
+        sql.withBatch(1000, "INSERT INTO bench_env (project_id, name, code) VALUES (?, ?, ?)") { ps ->
+            (1..envs).each { ps.addBatch([PROJECT_ID, "环境" + it, "env-" + it]) }
+        }
+        sql.withBatch(1000, "INSERT INTO bench_service (env_id, name) VALUES (?, ?)") { ps ->
+            (1..ingresses).each { ps.addBatch([env(it), "svc-" + it]) }
+        }
+        sql.withBatch(1000, "INSERT INTO bench_ingress (project_id, env_id, name, domain) VALUES (?, ?, ?, ?)") { ps ->
+            (1..ingresses).each { ps.addBatch([PROJECT_ID, env(it), "ingress-" + it, "app" + it + ".example.com"]) }
+        }
+        sql.withBatch(1000, "INSERT INTO bench_ingress_path (ingress_id, path, service_id) VALUES (?, ?, ?)") { ps ->
+            (1..ingresses).each { ps.addBatch([it, "/api/v" + (it % 3 + 1), it]) }
+        }
+        sql.withBatch(1000, "INSERT INTO bench_search_index (project_id, resource_type, resource_id, gram) VALUES (?, ?, ?, ?)") { ps ->
+            (1..ingresses).each { ingress ->
+                Set<String> grams = new LinkedHashSet<>()
+                ["ingress-" + ingress, "app" + ingress + ".example.com", "环境" + env(ingress), "env-" + env(ingress),
+                 "/api/v" + (ingress % 3 + 1), "svc-" + ingress].each { grams.addAll(DevopsSearchIndexRepositoryImpl.grams(it)) }
+                grams.each { ps.addBatch([PROJECT_ID, "ingress", ingress, it]) }
+            }
+        }
+    }
+
+    /**
+     * 每类搜索词执行probes次count和首页查询，返回各次耗时（微秒）
+     */
+    private Map<String, List<Long>> measure(boolean indexed) {
+        Random random = new Random(7)
+        Map<String, List<Long>> latencies = new LinkedHashMap<>()
+        ["single ingress", "one environment", "broad"].each { kind ->
+            List<Long> times = []
+            probes.times {
+                String term = term(kind, random)
+                long start = System.nanoTime()
+                count(term, indexed)
+                page(term, indexed)
+                times << (System.nanoTime() - start).intdiv(1000L)
+            }
+            latencies.put(kind, times.sort())
+        }
+        latencies
+    }
+
+    private long count(String term, boolean indexed) {
+        sql.firstRow("SELECT COUNT(DISTINCT di.id) c " + FROM + restriction(term, indexed) + LIKE, params(term, indexed)).c as long
+    }
+
+    private List<Long> page(String term, boolean indexed) {
+        sql.rows("SELECT DISTINCT di.id " + FROM + restriction(term, indexed) + LIKE + " ORDER BY di.id DESC LIMIT 10",
+                params(term, indexed)).collect { it.id as long }
+    }
+
+    /**
+     * 与DevopsSearchIndexMapper.matchedIds一致，不足三个字符的搜索词不使用索引
+     */
+    private static String restriction(String term, boolean indexed) {
+        Set<String> grams = DevopsSearchIndexRepositoryImpl.grams(term)
+        if (!indexed || grams.isEmpty()) {
+            return ""
+        }
+        "AND di.id IN (SELECT dsi.resource_id FROM bench_search_index dsi WHERE dsi.project_id = ? " +
+                "AND dsi.resource_type = 'ingress' AND dsi.gram IN (" + (["?"] * grams.size()).join(",") + ") " +
+                "GROUP BY dsi.resource_id HAVING COUNT(DISTINCT dsi.gram) = " + grams.size() + ") "
+    }
+
+    private List<Object> params(String term, boolean indexed) {
+        List<Object> params = [PROJECT_ID]
+        if (indexed && !DevopsSearchIndexRepositoryImpl.grams(term).isEmpty()) {
+            params << PROJECT_ID
+            params.addAll(DevopsSearchIndexRepositoryImpl.grams(term))
+        }
+        params.addAll([term] * 6)
+        params
+    }
+
+    private String term(String kind, Random random) {
+        switch (kind) {
+            case "single ingress": return "ingress-" + (random.nextInt(ingresses) + 1)
+            case "one environment": return "env-" + (random.nextInt(envs) + 1)
+            default: return "example"
+        }
+    }
+
+    private List<String> terms() {
+        ["ingress-42", "env-7", "example", "v2", "环境1"]
+    }
+
+    private String report(Map<String, List<Long>> like, Map<String, List<Long>> indexed) {
+        StringBuilder report = new StringBuilder()
+        report.append(String.format("ingresses=%d envs=%d probes=%d%n", ingresses, envs, probes))
+        report.append(String.format("%-20s %12s %12s %12s %12s%n", "term", "like p50", "like p95", "index p50", "index p95"))
+        like.keySet().each { kind ->
+            report.append(String.format("%-20s %10dus %10dus %10dus %10dus%n", kind,
+                    percentile(like[kind], 50), percentile(like[kind], 95),
+                    percentile(indexed[kind], 50), percentile(indexed[kind], 95)))
+        }
+        report.toString()
+    }
+
+    private void dropTables() {
+        TABLES.each { sql.execute("DROP TABLE IF EXISTS " + it) }
+    }
+
+    private int env(int ingress) {
+        ingress % envs + 1
+    }
+
+    private static long percentile(List<Long> sorted, int percentile) {
+        sorted[Math.min(sorted.size() - 1, (int) (sorted.size() * percentile / 100))]
+    }
+}
@@ -0,0 +1,93 @@
+package io.choerodon.devops.infra.persistence.impl
+
+import io.choerodon.devops.infra.mapper.DevopsSearchIndexMapper
+import spock.lang.Specification
+
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
+class DevopsSearchIndexRepositoryImplSpec extends Specification {
+
+    DevopsSearchIndexMapper devopsSearchIndexMapper = Mock(DevopsSearchIndexMapper)
+    DevopsSearchIndexRepositoryImpl devopsSearchIndexRepository = new DevopsSearchIndexRepositoryImpl(devopsSearchIndexMapper)
+
+    def setup() {
+        devopsSearchIndexRepository.backfillThreads = 1
+        devopsSearchIndexRepository.init()
+    }
+
+    def cleanup() {
+        devopsSearchIndexRepository.destroy()
+    }
+
+    def "ListSearchGrams falls back to LIKE while the project is backfilled in the background"() {
+        given:
+        CountDownLatch release = new CountDownLatch(1)
+        CountDownLatch indexed = new CountDownLatch(1)
+
+        when: "补建完成前的搜索不使用索引，也不重复提交补建"
+        def first = devopsSearchIndexRepository.listSearchGrams(1L, "instance", "nginx")
+        def second = devopsSearchIndexRepository.listSearchGrams(1L, "instance", "nginx")
+        release.countDown()
+
+        then:
+        first == null
+        second == null
+        indexed.await(5, TimeUnit.SECONDS)
+        1 * devopsSearchIndexMapper.listUnindexedIds("instance", 1L) >> {
+            release.await(5, TimeUnit.SECONDS)
+            [3L]
+        }
+        1 * devopsSearchIndexMapper.deleteByResourceIds("instance", [3L])
+        1 * devopsSearchIndexMapper.listDocuments("instance", [3L], null, null) >> [
+                [resourceId: 3L, projectId: 1L, code: "nginx-1"]]
+        1 * devopsSearchIndexMapper.batchInsert(_) >> { indexed.countDown() }
+
+        when:
+        waitIndexed()
+        def grams = devopsSearchIndexRepository.listSearchGrams(1L, "instance", "nginx")
+
+        then:
+        grams == ["ngi", "gin", "inx"]
+        0 * devopsSearchIndexMapper.listUnindexedIds(_, _)
+    }
+
+    def "ListSearchGrams retries the backfill after it fails"() {
+        given:
+        CountDownLatch failed = new CountDownLatch(1)
+        int calls = 0
+
+        when:
+        devopsSearchIndexRepository.listSearchGrams(1L, "ingress", "example")
+        failed.await(5, TimeUnit.SECONDS)
+        waitIdle()
+        def grams = devopsSearchIndexRepository.listSearchGrams(1L, "ingress", "example")
+        waitIdle()
+
+        then:
+        grams == null
+        2 * devopsSearchIndexMapper.listUnindexedIds("ingress", 1L) >> {
+            if (calls++ == 0) {
+                failed.countDown()
+                throw new IllegalStateException("db")
+            }
+            []
+        }
+        devopsSearchIndexRepository.indexedProjects.contains("ingress:1")
+    }
+
+    private void waitIndexed() {
+        long deadline = System.currentTimeMillis() + 5000
+        while (!devopsSearchIndexRepository.indexedProjects.contains("instance:1")
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10)
+        }
+    }
+
+    private void waitIdle() {
+        long deadline = System.currentTimeMillis() + 5000
+        while (!devopsSearchIndexRepository.indexingProjects.isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10)
+        }
+    }
+}
@@ -4,6 +4,7 @@ import io.choerodon.asgard.saga.feign.SagaClient
 import io.choerodon.devops.IntegrationTestConfiguration
 import io.choerodon.devops.domain.application.repository.IamRepository
 import io.choerodon.devops.infra.dataobject.iam.OrganizationDO
+import io.choerodon.devops.infra.dataobject.iam.ProjectDO
 import io.choerodon.devops.infra.feign.IamServiceClient
 import org.mockito.Mockito
 import org.springframework.beans.factory.annotation.Autowired
@@ -43,4 +44,30 @@ class IamRepositoryImplSpec extends Specification {
 
 
     }
+
+    def "QueryIamProject"() {
+        given:
+        IamRepositoryImpl cachedRepository = new IamRepositoryImpl(iamServiceClient)
+        cachedRepository.maxEntries = 100L
+        cachedRepository.refreshMinutes = 5L
+        cachedRepository.expireMinutes = 30L
+        cachedRepository.init()
+        ProjectDO projectDO = new ProjectDO()
+        projectDO.setId(1L)
+        projectDO.setCode("pro")
+        Mockito.doReturn(new ResponseEntity<>(projectDO, HttpStatus.OK)).when(iamServiceClient).queryIamProject(1L)
+
+        when:
+        cachedRepository.queryIamProject(1L)
+        cachedRepository.queryIamProject(1L)
+        cachedRepository.evictProject(1L)
+        def projectE = cachedRepository.queryIamProject(1L)
+
+        then:
+        projectE.getCode() == "pro"
+        Mockito.verify(iamServiceClient, Mockito.times(2)).queryIamProject(1L)
+
+        cleanup:
+        cachedRepository.destroy()
+    }
 }
@@ -35,4 +35,9 @@ databaseChangeLog(logicalFilePath: 'dba/devops_app_instance.groovy') {
                 }
             }
 
+    changeSet(author: 'devops', id: '2018-09-25-add-index') {
+        createIndex(indexName: "app_instance_idx_env_id", tableName: "devops_app_instance") {
+            column(name: "env_id")
+        }
+    }
 }
\ No newline at end of file
@@ -19,4 +19,11 @@ databaseChangeLog(logicalFilePath: 'dba/devops_command_event.groovy') {
             column(name: "last_update_date", type: "DATETIME", defaultValueComputed: "CURRENT_TIMESTAMP")
         }
     }
+
+    changeSet(author: 'devops', id: '2018-09-25-add-index') {
+        createIndex(indexName: "command_event_idx_command_id_type", tableName: "devops_command_event") {
+            column(name: "command_id")
+            column(name: "type")
+        }
+    }
 }
\ No newline at end of file
@@ -26,4 +26,11 @@ databaseChangeLog(logicalFilePath: 'dba/devops_env_command.groovy') {
                     column(name: 'sha', type: 'VARCHAR(128)', remarks: 'commit sha', afterColumn: 'status')
                 }
             }
+
+    changeSet(author: 'devops', id: '2018-09-25-add-index') {
+        createIndex(indexName: "env_command_idx_object", tableName: "devops_env_command") {
+            column(name: "object")
+            column(name: "object_id")
+        }
+    }
 }
\ No newline at end of file
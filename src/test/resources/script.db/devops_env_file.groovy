@@ -29,4 +29,11 @@ databaseChangeLog(logicalFilePath: 'db/devops_env_file.groovy') {
             column(name: 'agent_commit', type: 'VARCHAR(512)', remarks: 'agent sync commit', afterColumn: 'devops_commit')
         }
     }
+
+    changeSet(author: 'devops', id: '2018-09-25-add-index') {
+        createIndex(indexName: "env_file_idx_env_id_file_path", tableName: "devops_env_file") {
+            column(name: "env_id")
+            column(name: "file_path")
+        }
+    }
 }
\ No newline at end of file
@@ -21,4 +21,16 @@ databaseChangeLog(logicalFilePath: 'db/devops_env_file_resource.groovy') {
         }
     }
 
+    changeSet(author: 'devops', id: '2018-09-25-add-index') {
+        createIndex(indexName: "env_file_resource_idx_env_id_file_path", tableName: "devops_env_file_resource") {
+            column(name: "env_id")
+            column(name: "file_path")
+        }
+
+        createIndex(indexName: "env_file_resource_idx_env_id_resource", tableName: "devops_env_file_resource") {
+            column(name: "env_id")
+            column(name: "resource_id")
+            column(name: "resource_type")
+        }
+    }
 }
\ No newline at end of file
@@ -20,4 +20,17 @@ databaseChangeLog(logicalFilePath: 'dba/devops_env_resource.groovy') {
             column(name: "last_update_date", type: "DATETIME", defaultValueComputed: "CURRENT_TIMESTAMP")
         }
     }
+
+    changeSet(author: 'devops', id: '2018-09-25-add-index') {
+        createIndex(indexName: "env_resource_idx_instance_kind_name", tableName: "devops_env_resource") {
+            column(name: "app_instance_id")
+            column(name: "kind")
+            column(name: "name")
+        }
+
+        createIndex(indexName: "env_resource_idx_kind_name", tableName: "devops_env_resource") {
+            column(name: "kind")
+            column(name: "name")
+        }
+    }
 }
\ No newline at end of file
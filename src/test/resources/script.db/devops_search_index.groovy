@@ -0,0 +1,31 @@
+package script.db
+
+databaseChangeLog(logicalFilePath: 'dba/devops_search_index.groovy') {
+    changeSet(author: 'devops', id: '2018-09-27-create-table') {
+        createTable(tableName: "devops_search_index", remarks: '域名、网络、实例的搜索索引') {
+            column(name: 'id', type: 'BIGINT UNSIGNED', remarks: '主键，ID', autoIncrement: true) {
+                constraints(primaryKey: true)
+            }
+            column(name: 'project_id', type: 'BIGINT UNSIGNED', remarks: '项目 ID')
+            column(name: 'resource_type', type: 'VARCHAR(32)', remarks: '资源类型')
+            column(name: 'resource_id', type: 'BIGINT UNSIGNED', remarks: '资源 ID')
+            column(name: 'gram', type: 'VARCHAR(3)', remarks: '搜索字段中的三字符片段，小写')
+
+            column(name: "object_version_number", type: "BIGINT UNSIGNED", defaultValue: "1")
+            column(name: "created_by", type: "BIGINT UNSIGNED", defaultValue: "0")
+            column(name: "creation_date", type: "DATETIME", defaultValueComputed: "CURRENT_TIMESTAMP")
+            column(name: "last_updated_by", type: "BIGINT UNSIGNED", defaultValue: "0")
+            column(name: "last_update_date", type: "DATETIME", defaultValueComputed: "CURRENT_TIMESTAMP")
+        }
+        createIndex(indexName: "search_index_idx_project_type_gram", tableName: "devops_search_index") {
+            column(name: "project_id")
+            column(name: "resource_type")
+            column(name: "gram")
+            column(name: "resource_id")
+        }
+        createIndex(indexName: "search_index_idx_type_resource_id", tableName: "devops_search_index") {
+            column(name: "resource_type")
+            column(name: "resource_id")
+        }
+    }
+}